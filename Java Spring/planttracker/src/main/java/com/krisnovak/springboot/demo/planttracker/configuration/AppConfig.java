@@ -1,149 +1,245 @@
 package com.krisnovak.springboot.demo.planttracker.configuration;
 
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.OutboxMessage;
 import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import com.krisnovak.springboot.demo.planttracker.entity.ReminderShard;
 import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import com.krisnovak.springboot.demo.planttracker.service.ReminderQueue;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
-import java.io.FileReader;
-import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
 
 /**
- * Class used to send emails to users whose plants are overdue to be watered
+ * Class used to queue emails to users whose plants are overdue to be watered
  */
 @Configuration
 @EnableScheduling
 public class AppConfig {
     private PlantTrackerDAO plantTrackerDAO;
 
-    private JavaMailSender sender;
+    private PlantTrackerService plantTrackerService;
+
+    //Queue of plants waiting for an email reminder (only used when reminders are sent in wheel mode)
+    private ReminderQueue reminderQueue;
+
+    //Number of accounts whose due plants are read by each query of the email reminder
+    private int reminderPageSize;
+
+    //How long (in seconds) to wait before reminding about the same plant again
+    private long reminderPeriod;
+
+    //The local hour (0-23) of each user at which their email reminders are sent
+    private int reminderLocalHour;
+
+    //Number of shards the accounts are split into (must be the same on every node)
+    private int shardCount;
+
+    //How long (in seconds) a node has to send the reminders of a shard before another node can claim it
+    private long shardLeaseTime;
+
+    //How long (in seconds) after a shard is completed it can be claimed again (less than the time between runs)
+    private long shardRunInterval;
+
+    //Number of days past the present date of the plants loaded into the reminder queue by each refill
+    private int wheelRefillDays;
 
     @Autowired
-    public AppConfig(PlantTrackerDAO thePlantTrackerDAO) {
+    public AppConfig(PlantTrackerDAO thePlantTrackerDAO, PlantTrackerService thePlantTrackerService, ReminderQueue theReminderQueue,
+                     @Value("${planttracker.reminders.page-size:500}") int theReminderPageSize,
+                     @Value("${planttracker.reminders.period:72000}") long theReminderPeriod,
+                     @Value("${planttracker.reminders.local-hour:9}") int theReminderLocalHour,
+                     @Value("${planttracker.reminders.shard-count:16}") int theShardCount,
+                     @Value("${planttracker.reminders.shard-lease-time:1800}") long theShardLeaseTime,
+                     @Value("${planttracker.reminders.shard-run-interval:1800}") long theShardRunInterval,
+                     @Value("${planttracker.reminders.wheel-refill-days:2}") int theWheelRefillDays) {
         plantTrackerDAO = thePlantTrackerDAO;
-        sender = getJavaMailSender();
+        plantTrackerService = thePlantTrackerService;
+        reminderQueue = theReminderQueue;
+        reminderPageSize = theReminderPageSize;
+        reminderPeriod = theReminderPeriod;
+        reminderLocalHour = theReminderLocalHour;
+        shardCount = theShardCount;
+        shardLeaseTime = theShardLeaseTime;
+        shardRunInterval = theShardRunInterval;
+        wheelRefillDays = theWheelRefillDays;
     }
 
     /**
-     * Function that sends an email reminder to any user with a plant overdue to be watered
+     * Function that sends one digest email to each user with plants overdue to be watered, reminding about each plant
+     * at most once per reminder period and not while the plant is snoozed
+     * (each run only reminds the accounts in timezones where it is currently the reminder hour, so the reminders of the day
+     * are spread over 24 hourly runs, and each user's due date is their own current date)
+     * (every node runs this function, and each node leases shards of the accounts from the database until none are left,
+     * so the shards are split between the nodes instead of every node emailing every account)
+     * (does nothing in wheel mode, where reminders are fired by sendDueReminders instead)
+     * @return The number of emails that were queued by this node
      */
     @Scheduled(cron = "0 0 * * * *")
-    private void sendEmailReminder(){
-        //Retrieve all plants from the database
-        List<Plant> allPlants = plantTrackerDAO.findAllPlants();
-
-        //The present date
-        LocalDate presentDay = LocalDate.now();
+    public int sendEmailReminder(){
 
-        //Last date the plant was watered
-        LocalDate lastWatered;
+        if(reminderQueue.isEnabled())
+            return 0;
 
-        //Next day the plant needs to be watered
-        LocalDate nextWatered;
+        //The timezones where it is currently the reminder hour, by their present date (plants whose next watering date
+        //is on or before the present date of their account's timezone are due)
+        Map<LocalDate, List<String>> reminderTimezones = Account.timezonesAtLocalHour(reminderLocalHour, Instant.now());
 
-        //How often (in days) the plant needs to be watered
-        int wateringInterval;
-
-        //Determine if an email needs to be sent for each plant
-        for (Plant plant : allPlants){
-            lastWatered = plant.getLastWatered();
-            wateringInterval = plant.getWateringInterval();
-            if(lastWatered == null || wateringInterval < 1){
-                continue;
-            }
-            nextWatered = lastWatered.plusDays(wateringInterval);
+        //Add any shards that are missing (e.g., the first time the application runs or after the shard count is raised)
+        try{
+            plantTrackerService.createReminderShards(shardCount);
+        }catch(DataIntegrityViolationException e){
+            //Another node added the shards at the same time
+        }
 
-            //Check if the next watering date is before the current date
-            if(presentDay.isAfter(nextWatered) || presentDay.isEqual(nextWatered)){
-                //Send an email to the corresponding account
-                sendEmail(plant, nextWatered);
+        int queuedEmailCount = 0;
+        ReminderShard theReminderShard;
+        while((theReminderShard = plantTrackerService.claimReminderShard(shardCount, shardLeaseTime)) != null){
+            for(Map.Entry<LocalDate, List<String>> timezones : reminderTimezones.entrySet()){
+                queuedEmailCount += sendEmailReminder(theReminderShard.getId(), timezones.getKey(), timezones.getValue());
             }
-
+            plantTrackerService.completeReminderShard(theReminderShard.getId(), shardRunInterval);
         }
 
+        return queuedEmailCount;
     }
 
-    //TODO: Check that this function properly escapes characters before sending the email
     /**
-     * Function that sends an email for a particular plant to the user
-     * @param thePlant
-     * @param nextWatered
+     * Function that loads the plants due within the next few days into the reminder queue in wheel mode
+     * (runs at startup to seed the queue, and then periodically to pick up plants that were due too far ahead to be queued
+     * and reminders that were lost, e.g., plants changed through another node)
+     * @return The number of plants that were loaded
      */
-    private void sendEmail(Plant thePlant, LocalDate nextWatered){
+    @Scheduled(fixedDelayString = "${planttracker.reminders.wheel-refill-interval:21600000}")
+    public int refillReminderQueue(){
 
-        //The email address linked to the account associated with the plant
-        String email = thePlant.getAccount().getEmail();
+        if(!reminderQueue.isEnabled())
+            return 0;
 
-        //The name of the plant
-        String plantName = thePlant.getPlantName();
+        //Cover the present date of every timezone (at most a day ahead of UTC) plus the days until well after the next refill
+        LocalDate dueBefore = LocalDate.now(ZoneOffset.UTC).plusDays(wheelRefillDays);
 
-        //The date the plant was supposed to be watered
-        String overdueDate = nextWatered.toString();
+        int loadedPlantCount = 0;
+        LocalDate afterNextWateringDate = null;
+        int afterPlantID = 0;
 
-        //The text to be provided in the email
-        String subject = plantName + " is ready to be watered";
-        String text = "It looks like " + plantName + " was set to be watered on " + overdueDate + ". Be sure to water it now!";
+        List<Plant> plants;
+        do{
+            //Each page is read through the (next_watering_date, id) index outside of a transaction
+            plants = plantTrackerDAO.findPlantsDueBefore(dueBefore, afterNextWateringDate, afterPlantID, reminderPageSize);
+            if(plants.isEmpty())
+                break;
 
-        //Send the email
-        sendSimpleMessage(email, subject, text);
-        System.out.println("Message sent");
+            reminderQueue.update(plants);
+            loadedPlantCount += plants.size();
+
+            Plant lastPlant = plants.get(plants.size() - 1);
+            afterNextWateringDate = lastPlant.getNextWateringDate();
+            afterPlantID = lastPlant.getId();
+
+        //A partial page means there are no plants left
+        }while(plants.size() == reminderPageSize);
+
+        return loadedPlantCount;
     }
 
     /**
-     * Function that gets a mail sender
-     * @return The mail sender
+     * Function that sends the reminders fired by the reminder queue in wheel mode, so each reminder is sent within a tick
+     * of when it is due instead of at the next hourly scan
+     * @return The number of plants that were reminded
      */
-    public JavaMailSender getJavaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost("smtp.gmail.com");
-        mailSender.setPort(587);
+    @Scheduled(fixedDelayString = "${planttracker.reminders.wheel-tick-interval:60000}")
+    public int sendDueReminders(){
 
-        //Grab the credentials of the email address used to send the message
-        Properties emailProperties = new Properties();
-        try{
-            emailProperties.load(new FileReader("../../../email.properties"));
-        } catch(IOException e){
-            throw new RuntimeException("File could not be found");
+        if(!reminderQueue.isEnabled())
+            return 0;
+
+        List<Integer> duePlantIDs = reminderQueue.advance(System.currentTimeMillis()/1000);
+
+        //Each page of plants is locked and reminded in its own transaction
+        int remindedPlantCount = 0;
+        for(int i = 0; i < duePlantIDs.size(); i += reminderPageSize){
+            remindedPlantCount += plantTrackerService.queueDueReminders(duePlantIDs.subList(i, Math.min(i + reminderPageSize, duePlantIDs.size())));
         }
 
-        //Set the mail sender with the retrieved email username and password
-        mailSender.setUsername(emailProperties.getProperty("emailUsername"));
-        mailSender.setPassword(emailProperties.getProperty("emailPassword"));
+        return remindedPlantCount;
+    }
+
+    /**
+     * Function that sends the digest emails of the accounts of one shard in timezones that share the same present date
+     * (due plants are read for one page of accounts at a time through the next watering date indexes, so a run only holds
+     * one page of accounts' plants in memory and makes two queries per page no matter how many plants there are in total)
+     * @param shardID The shard leased by this node
+     * @param presentDay The present date in the timezones (plants whose next watering date is on or before it are due)
+     * @param timezones The timezones of the accounts to remind
+     * @return The number of emails that were queued
+     */
+    private int sendEmailReminder(int shardID, LocalDate presentDay, List<String> timezones){
+
+        //The present time in seconds (plants reminded within the last reminder period are skipped)
+        long presentTime = System.currentTimeMillis()/1000;
+        long remindedBefore = presentTime - reminderPeriod;
+
+        //The ID of the last account of the previous page
+        int afterAccountID = 0;
+
+        int queuedEmailCount = 0;
 
-        //Get properties for the mail sender
-        Properties props = mailSender.getJavaMailProperties();
-        props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.debug", "true");
+        List<Integer> dueAccountIDs;
+        do{
+            //Each page is read outside of a transaction, so its plants are detached once the query returns
+            //and are not kept by a persistence context for the rest of the run
+            dueAccountIDs = plantTrackerDAO.findDueAccountIDs(presentDay, presentTime, remindedBefore, timezones,
+                    shardCount, shardID, afterAccountID, reminderPageSize);
+            if(dueAccountIDs.isEmpty())
+                break;
 
-        return mailSender;
+            List<Plant> duePlants = plantTrackerDAO.findDuePlantsByAccountIDs(dueAccountIDs, presentDay, presentTime, remindedBefore);
+
+            //Group the due plants by account (the accounts were fetched with the plants)
+            Map<Integer, List<Plant>> duePlantsByAccount = new LinkedHashMap<Integer, List<Plant>>();
+            for(Plant plant : duePlants){
+                duePlantsByAccount.computeIfAbsent(plant.getAccount().getId(), accountID -> new ArrayList<Plant>()).add(plant);
+            }
+
+            //Queue one email to each account in the outbox (the mail workers deliver it outside of the scheduler thread)
+            for(List<Plant> accountPlants : duePlantsByAccount.values()){
+                queueDigestEmail(accountPlants);
+            }
+            queuedEmailCount += duePlantsByAccount.size();
+
+            afterAccountID = dueAccountIDs.get(dueAccountIDs.size() - 1);
+
+        //A partial page means there are no accounts with due plants left
+        }while(dueAccountIDs.size() == reminderPageSize);
+
+        return queuedEmailCount;
     }
 
     /**
-     * Function that sends the message to the user
-     * @param to The address to send the message to
-     * @param subject The subject header of the message
-     * @param text The text of the message
+     * Function that queues a single email to a user listing all of their plants that are due to be watered, and records
+     * the reminders so the plants are not reminded again until the reminder period has passed
+     * @param accountPlants The due plants of one account (with the account loaded), most overdue first
      */
-    public void sendSimpleMessage(
-            String to, String subject, String text) {
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom("noreply@botaniclock.com");
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(text);
-        sender.send(message);
+    private void queueDigestEmail(List<Plant> accountPlants){
+
+        //Queue the email along with the reminders of its plants
+        List<Integer> remindedPlantIDs = new ArrayList<Integer>();
+        for(Plant plant : accountPlants){
+            remindedPlantIDs.add(plant.getId());
+        }
+        plantTrackerService.queueReminder(OutboxMessage.digestReminder(accountPlants), remindedPlantIDs);
     }
 }
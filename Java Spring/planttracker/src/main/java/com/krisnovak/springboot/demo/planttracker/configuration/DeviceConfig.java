@@ -0,0 +1,92 @@
+package com.krisnovak.springboot.demo.planttracker.configuration;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.service.DeviceEventBuffer;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class used to flush the device events buffered by DeviceEventBuffer on a schedule
+ */
+@Configuration
+public class DeviceConfig {
+
+    private PlantTrackerService plantTrackerService;
+
+    private DeviceEventBuffer deviceEventBuffer;
+
+    //Largest number of buffered events applied by a single transaction
+    private int flushBatchSize;
+
+    @Autowired
+    public DeviceConfig(PlantTrackerService thePlantTrackerService, DeviceEventBuffer theDeviceEventBuffer,
+                        @Value("${planttracker.devices.flush-batch-size:500}") int theFlushBatchSize) {
+        plantTrackerService = thePlantTrackerService;
+        deviceEventBuffer = theDeviceEventBuffer;
+        flushBatchSize = theFlushBatchSize;
+    }
+
+    /**
+     * Function that applies the buffered device events in batches, updating each device that reported more than once
+     * since the last flush only once (does nothing unless buffered mode is enabled). It relies on
+     * spring.task.scheduling.pool.size leaving it a thread, since devices wait on it in flush durability
+     * @return The number of plants that were updated
+     */
+    @Scheduled(fixedDelayString = "${planttracker.devices.flush-interval:1000}")
+    public int flushDeviceEvents(){
+
+        if(!deviceEventBuffer.isEnabled())
+            return 0;
+
+        int updatedPlantCount = 0;
+
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents;
+        do{
+            deviceEvents = deviceEventBuffer.drain(flushBatchSize);
+            if(deviceEvents.isEmpty())
+                break;
+
+            //Coalesce the events of each device, since watering a plant twice in a row on the same day changes nothing
+            Set<Device> devices = new LinkedHashSet<Device>();
+            for(DeviceEventBuffer.DeviceEvent deviceEvent : deviceEvents){
+                devices.add(deviceEvent.getDevice());
+            }
+
+            //Each batch is applied in its own transaction
+            List<Device> updatedDevices;
+            try{
+                updatedDevices = plantTrackerService.updateTimestamps(new ArrayList<Device>(devices));
+            }catch(RuntimeException e){
+                //Leave the rest of the buffer for the next flush (e.g., the database is unavailable)
+                deviceEventBuffer.fail(deviceEvents, e);
+                break;
+            }
+
+            deviceEventBuffer.complete(deviceEvents, new HashSet<Device>(updatedDevices), devices.size());
+            updatedPlantCount += updatedDevices.size();
+
+        //A partial batch means there are no events left
+        }while(deviceEvents.size() == flushBatchSize);
+
+        return updatedPlantCount;
+    }
+
+    /**
+     * Function that flushes the events left in the buffer when the application shuts down, so devices acknowledged in
+     * memory durability are not lost on a clean shutdown
+     */
+    @PreDestroy
+    public void shutdown(){
+        flushDeviceEvents();
+    }
+}
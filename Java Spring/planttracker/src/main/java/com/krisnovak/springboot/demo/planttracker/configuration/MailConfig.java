@@ -0,0 +1,29 @@
+package com.krisnovak.springboot.demo.planttracker.configuration;
+
+import com.krisnovak.springboot.demo.planttracker.service.OutboxMailSender;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Class used to deliver the emails queued in the outbox on a schedule
+ */
+@Configuration
+public class MailConfig {
+
+    private OutboxMailSender outboxMailSender;
+
+    @Autowired
+    public MailConfig(OutboxMailSender theOutboxMailSender) {
+        outboxMailSender = theOutboxMailSender;
+    }
+
+    /**
+     * Function that hands the messages of the outbox that are ready to be delivered to the mail workers
+     * (the scheduler thread does not wait for the messages to be sent)
+     */
+    @Scheduled(fixedDelayString = "${planttracker.mail.drain-interval:5000}")
+    public void drainOutbox(){
+        outboxMailSender.drainOutbox();
+    }
+}
@@ -0,0 +1,143 @@
+package com.krisnovak.springboot.demo.planttracker.configuration;
+
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import com.krisnovak.springboot.demo.planttracker.service.SessionTokenSigner;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class used to perform scheduled maintenance on sessions
+ */
+@Configuration
+public class SessionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionConfig.class);
+
+    private PlantTrackerService plantTrackerService;
+
+    private SessionTokenSigner sessionTokenSigner;
+
+    //The maximum number of expired sessions deleted by a single statement
+    private int reaperBatchSize;
+
+    //The maximum number of batches deleted during a single run of the session reaper
+    private int reaperMaximumBatches;
+
+    //How long (in milliseconds) the session reaper waits between batches
+    private long reaperBatchPause;
+
+    //The number of expired sessions deleted during the last run of the session reaper
+    private volatile int lastReapedSessionCount;
+
+    //Thread the session reaper runs on, so its pauses between batches do not hold up the other scheduled jobs
+    private final ExecutorService reaper;
+
+    //Whether a run of the session reaper has been started and has not finished yet
+    private final AtomicBoolean reaperRunning;
+
+    @Autowired
+    public SessionConfig(PlantTrackerService thePlantTrackerService, SessionTokenSigner theSessionTokenSigner,
+                         @Value("${planttracker.session.reaper-batch-size:1000}") int theReaperBatchSize,
+                         @Value("${planttracker.session.reaper-maximum-batches:100}") int theReaperMaximumBatches,
+                         @Value("${planttracker.session.reaper-batch-pause:100}") long theReaperBatchPause) {
+        plantTrackerService = thePlantTrackerService;
+        sessionTokenSigner = theSessionTokenSigner;
+        reaperBatchSize = theReaperBatchSize;
+        reaperMaximumBatches = theReaperMaximumBatches;
+        reaperBatchPause = theReaperBatchPause;
+        reaper = Executors.newSingleThreadExecutor();
+        reaperRunning = new AtomicBoolean();
+    }
+
+    /**
+     * Function that keeps this node's set of revoked signed session tokens in sync with the database,
+     * so that a logout made on any node is honored by every node
+     */
+    @Scheduled(fixedDelayString = "${planttracker.session.revocation-refresh-interval:10000}")
+    public void refreshRevokedSessionTokens(){
+
+        //Revocations are only used when sessions are carried by signed tokens
+        if(!sessionTokenSigner.isEnabled())
+            return;
+
+        plantTrackerService.refreshRevokedSessionTokens();
+    }
+
+    /**
+     * Function that starts a run of the session reaper on its own thread (called by the scheduler, which returns right
+     * away instead of waiting through the pauses between batches)
+     * @return true if a run was started and false if the previous run has not finished yet
+     */
+    @Scheduled(fixedDelayString = "${planttracker.session.reaper-interval:300000}")
+    public boolean startReaper(){
+
+        if(!reaperRunning.compareAndSet(false, true))
+            return false;
+
+        reaper.execute(() -> {
+            try{
+                reapExpiredSessions();
+            }catch(RuntimeException e){
+                logger.warn("Session reaper run failed", e);
+            }finally{
+                reaperRunning.set(false);
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Function that deletes expired sessions from the database in bounded batches
+     * (including sessions of accounts that never log in again)
+     * @return The number of expired sessions that were deleted
+     */
+    public int reapExpiredSessions(){
+
+        int reapedSessionCount = 0;
+
+        for(int batch = 0; batch < reaperMaximumBatches; batch++){
+
+            //Each batch is deleted in its own transaction so locks are only held briefly
+            int deletedSessionCount = plantTrackerService.deleteExpiredSessions(reaperBatchSize);
+            reapedSessionCount += deletedSessionCount;
+
+            //A partial batch means there are no expired sessions left
+            if(deletedSessionCount < reaperBatchSize)
+                break;
+
+            //Pace the batches so the reaper does not compete with requests for the database
+            try{Thread.sleep(reaperBatchPause);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        lastReapedSessionCount = reapedSessionCount;
+        logger.info("Session reaper deleted {} expired sessions", reapedSessionCount);
+
+        return reapedSessionCount;
+    }
+
+    public int getLastReapedSessionCount() {
+        return lastReapedSessionCount;
+    }
+
+    /**
+     * Function that stops the session reaper when the application shuts down
+     */
+    @PreDestroy
+    public void shutdown(){
+        reaper.shutdownNow();
+    }
+}
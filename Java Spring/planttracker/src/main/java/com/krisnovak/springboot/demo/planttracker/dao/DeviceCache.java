@@ -0,0 +1,179 @@
+package com.krisnovak.springboot.demo.planttracker.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that represents a bounded, in-memory cache of the plants linked to device registration IDs.
+ * A registration ID never changes and stays linked to the same plant and account, so entries only have to be removed
+ * when the plant or its account is deleted, and the least recently used entry is evicted once the cache is full.
+ */
+@Component
+public class DeviceCache {
+
+    //The maximum number of registration IDs held in the cache
+    private final int maximumSize;
+
+    //The cached devices (kept in access order so the least recently used entry is evicted first)
+    private final LinkedHashMap<String, CachedDevice> cachedDevices;
+
+    //Number of lookups that were served by the cache
+    private final AtomicLong hitCount = new AtomicLong();
+
+    //Number of lookups that were not served by the cache
+    private final AtomicLong missCount = new AtomicLong();
+
+    public DeviceCache(@Value("${planttracker.device-cache.maximum-size:10000}") int maximumSize){
+        this.maximumSize = maximumSize;
+        this.cachedDevices = new LinkedHashMap<String, CachedDevice>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDevice> eldest) {
+                return size() > DeviceCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Function that returns the cached plant linked to a registration ID
+     * @param registrationID The registration ID provided by a device
+     * @return The cached device, or null if the registration ID is not cached
+     */
+    public synchronized CachedDevice get(String registrationID){
+
+        CachedDevice cachedDevice = cachedDevices.get(registrationID);
+
+        if(cachedDevice == null){
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return cachedDevice;
+    }
+
+    /**
+     * Function that adds the plant linked to a registration ID to the cache
+     * @param cachedDevice The plant linked to the registration ID
+     */
+    public synchronized void put(CachedDevice cachedDevice){
+        if(cachedDevice == null || cachedDevice.getRegistrationID() == null)
+            return;
+
+        cachedDevices.put(cachedDevice.getRegistrationID(), cachedDevice);
+    }
+
+    /**
+     * Function that removes a registration ID from the cache (e.g., when its plant is deleted)
+     * @param registrationID The registration ID to remove
+     */
+    public synchronized void evict(String registrationID){
+        if(registrationID == null) return;
+        cachedDevices.remove(registrationID);
+    }
+
+    /**
+     * Function that removes every registration ID of an account's plants from the cache (when the account is deleted)
+     * @param accountID The database ID of the account
+     */
+    public synchronized void evictAccount(int accountID){
+        cachedDevices.values().removeIf(cachedDevice -> cachedDevice.getAccountID() == accountID);
+    }
+
+    /**
+     * Function that removes every registration ID from the cache
+     */
+    public synchronized void clear(){
+        cachedDevices.clear();
+    }
+
+    public synchronized int size(){
+        return cachedDevices.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Function that returns the fraction of lookups that were served by the cache
+     * @return The hit ratio of the cache (0 if no lookups have been made)
+     */
+    public double getHitRatio(){
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        if(total == 0) return 0;
+        return (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceCache{" +
+                "size=" + size() +
+                ", maximumSize=" + maximumSize +
+                ", hitCount=" + hitCount.get() +
+                ", missCount=" + missCount.get() +
+                '}';
+    }
+
+    /**
+     * Class that represents the plant linked to a registration ID that is held in the cache
+     */
+    public static class CachedDevice {
+
+        //The registration ID of the plant
+        private final String registrationID;
+
+        //The database ID of the plant
+        private final int plantID;
+
+        //The database ID of the account linked to the plant
+        private final int accountID;
+
+        //The email of the account linked to the plant
+        private final String accountEmail;
+
+        public CachedDevice(String registrationID, int plantID, int accountID, String accountEmail) {
+            this.registrationID = registrationID;
+            this.plantID = plantID;
+            this.accountID = accountID;
+            this.accountEmail = accountEmail;
+        }
+
+        public String getRegistrationID() {
+            return registrationID;
+        }
+
+        public int getPlantID() {
+            return plantID;
+        }
+
+        public int getAccountID() {
+            return accountID;
+        }
+
+        public String getAccountEmail() {
+            return accountEmail;
+        }
+
+        /**
+         * Function that checks if a device's account email matches the account of the cached plant
+         * @param accountEmail The account email provided by the device
+         * @return true if the device's account email is the email of the account linked to the plant
+         */
+        public boolean isLinkedTo(String accountEmail){
+            return this.accountEmail.equals(accountEmail);
+        }
+    }
+}
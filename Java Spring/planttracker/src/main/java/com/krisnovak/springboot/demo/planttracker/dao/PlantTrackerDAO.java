@@ -2,12 +2,23 @@ package com.krisnovak.springboot.demo.planttracker.dao;
 
 import com.krisnovak.springboot.demo.planttracker.entity.Account;
 import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.entity.OutboxMessage;
 import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantFields;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantPage;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantTombstone;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantView;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantVersion;
+import com.krisnovak.springboot.demo.planttracker.entity.ReminderShard;
+import com.krisnovak.springboot.demo.planttracker.entity.RevokedSessionToken;
 import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import com.krisnovak.springboot.demo.planttracker.entity.WateringEvent;
+import jakarta.persistence.NoResultException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 //TODO: Need to add what these throw
@@ -22,6 +33,23 @@ public interface PlantTrackerDAO {
      */
     public Account findAccount(Account theAccount);
 
+    /**
+     * Function that changes the timezone of an account using a single statement
+     * @param accountID The ID of the account
+     * @param timezone The new timezone of the account
+     * @return The number of accounts that were updated
+     */
+    public int updateTimezone(int accountID, String timezone);
+
+    /**
+     * Function that returns a managed account with its sessions loaded (using the Account.sessions entity graph)
+     * if the associated email and passwordCurrent match an account in the database
+     * @param theAccount The account to find in the database
+     * @return A managed account with its sessions loaded
+     * @throws EmptyResultDataAccessException Thrown if no account exists with the provided email and passwordCurrent
+     */
+    public Account findAccountWithSessions(Account theAccount);
+
     /**
      * Function that adds a new account to the database using the provided email and passwordNew fields
      * @param theAccount The account to add to the database
@@ -56,6 +84,58 @@ public interface PlantTrackerDAO {
      */
     public Session findSessionBySessionID(String sessionID);
 
+    /**
+     * Function that finds and returns a managed session by the provided session ID,
+     * with its account and all the sessions of that account loaded in the same query
+     * @param sessionID The text of the field Session ID provided in the cookie of the client request
+     * @return A managed session whose account has its sessions loaded
+     * @throws EmptyResultDataAccessException Thrown if no session linked to the session ID exists
+     */
+    public Session findSessionWithAccountSessions(String sessionID);
+
+    /**
+     * Function that returns a cached copy of a session without querying the database
+     * @param sessionID The text of the field Session ID provided in the cookie of the client request
+     * @return The cached session, or null if the session is not cached or is expired
+     */
+    public SessionCache.CachedSession findCachedSession(String sessionID);
+
+    /**
+     * Function that removes a session from the session cache so it is no longer treated as valid
+     * @param sessionID The text of the field Session ID of the session to remove from the cache
+     */
+    public void evictCachedSession(String sessionID);
+
+    /**
+     * Function that deletes up to a fixed number of expired sessions using a single statement
+     * @param currentTime The current time in seconds (sessions that expired before this time are deleted)
+     * @param batchSize The maximum number of sessions to delete
+     * @return The number of sessions that were deleted
+     */
+    public int deleteExpiredSessions(long currentTime, int batchSize);
+
+    /**
+     * Function that stores a revoked signed session token (or a revocation of every token of an account) so that it is
+     * rejected by every node until it expires
+     * @param theRevokedSessionToken The revoked token to store
+     * @return The provided revoked token
+     */
+    public RevokedSessionToken add(RevokedSessionToken theRevokedSessionToken);
+
+    /**
+     * Function that checks (without querying the database) if a signed session token has been revoked
+     * @param signature The signature of the signed session token
+     * @return true if the token was revoked and has not expired yet
+     */
+    public boolean isRevokedSessionToken(String signature);
+
+    /**
+     * Function that loads revocations made since the last refresh (possibly by other nodes) into memory
+     * and deletes revocations for tokens that have already expired
+     * @return The number of revocations that were loaded and were not already in memory
+     */
+    public int refreshRevokedSessionTokens();
+
     /**
      * Function that finds and returns a managed plant by the provided plant ID
      * @param plantID The ID of a plant in the database
@@ -64,17 +144,201 @@ public interface PlantTrackerDAO {
      */
     public Plant findPlantByPlantID(int plantID);
 
+    /**
+     * Function that finds and returns a managed plant by its Plant ID if it is linked to the provided account
+     * (a plant linked to a different account is never loaded)
+     * @param plantID The ID of the plant in the database
+     * @param accountID The ID of the account that the plant should be linked to
+     * @return A managed plant with the provided Plant ID that is linked to the account
+     * @throws EmptyResultDataAccessException Thrown if no plant with the Plant ID is linked to the account
+     */
+    public Plant findPlantByPlantIDAndAccountID(int plantID, int accountID);
+
+    /**
+     * Function that finds and returns the managed plants with the provided Plant IDs that are linked to the provided account
+     * (with a single query; plants linked to a different account are never loaded)
+     * @param plantIDs The IDs of the plants in the database
+     * @param accountID The ID of the account that the plants should be linked to
+     * @return The managed plants that were found (plant IDs that are not linked to the account are left out)
+     */
+    public List<Plant> findPlantsByPlantIDsAndAccountID(List<Integer> plantIDs, int accountID);
+
     /**
      * Function that returns all plants linked to an account
      * @param theAccount The account for whom plants are being retrieved
      * @return A list of all managed plants linked to an account
      */
     public List<Plant> findAllPlants(Account theAccount);
+
+    /**
+     * Function that returns one page of the plants linked to an account, ordered by Plant ID or by next watering date
+     * (keyset pagination: the page starts right after the cursor of the previous page)
+     * @param theAccount The account for whom plants are being retrieved
+     * @param plantPage The requested page (sort order, cursor, due date filter, and page size)
+     * @return A list of managed plants linked to the account that come after the cursor of the page
+     */
+    public List<Plant> findPlants(Account theAccount, PlantPage plantPage);
+
+    /**
+     * Function that returns the requested fields of one page of the plants linked to an account
+     * (only the columns behind the requested fields are read)
+     * @param theAccount The account for whom plants are being retrieved
+     * @param plantFields The requested fields
+     * @param plantPage The requested page (sort order, cursor, due date filter, and page size)
+     * @return The requested fields of the plants linked to the account that come after the cursor of the page
+     */
+    public List<PlantView> findPlantViews(Account theAccount, PlantFields plantFields, PlantPage plantPage);
+
+    /**
+     * Function that returns the requested fields of a plant by its Plant ID if it is linked to the provided account
+     * (only the columns behind the requested fields are read)
+     * @param plantID The ID of the plant in the database
+     * @param accountID The ID of the account that the plant should be linked to
+     * @param plantFields The requested fields
+     * @return The requested fields of the plant
+     * @throws EmptyResultDataAccessException Thrown if no plant with the Plant ID is linked to the account
+     */
+    public PlantView findPlantViewByPlantIDAndAccountID(int plantID, int accountID, PlantFields plantFields);
+
+    /**
+     * Function that returns the versions of one page of the plants linked to an account
+     * (the plants themselves are not loaded)
+     * @param theAccount The account for whom plant versions are being retrieved
+     * @param plantPage The requested page (sort order, cursor, due date filter, and page size)
+     * @return The versions of the plants linked to the account that come after the cursor of the page
+     */
+    public List<PlantVersion> findPlantVersions(Account theAccount, PlantPage plantPage);
+
+    /**
+     * Function that returns the version of a plant by its Plant ID if it is linked to the provided account
+     * (the plant itself is not loaded)
+     * @param plantID The ID of the plant in the database
+     * @param accountID The ID of the account that the plant should be linked to
+     * @return The version of the plant
+     * @throws EmptyResultDataAccessException Thrown if no plant with the Plant ID is linked to the account
+     */
+    public PlantVersion findPlantVersionByPlantIDAndAccountID(int plantID, int accountID);
+
+    /**
+     * Function that returns one page of the IDs of the accounts that have plants due to be watered, ordered by Account ID
+     * (keyset pagination: the page starts right after the last Account ID of the previous page)
+     * @param dueBefore Only plants due to be watered on or before this date are considered
+     * @param currentTime The current time in seconds (plants snoozed until after this time are left out)
+     * @param remindedBefore Plants reminded after this time in seconds are left out
+     * @param timezones Only accounts in one of these timezones are returned
+     * @param shardCount The number of reminder shards the accounts are split into
+     * @param shardID The reminder shard whose accounts are returned (accounts whose ID modulo shardCount equals shardID)
+     * @param afterAccountID The last Account ID of the previous page (0 for the first page)
+     * @param pageSize The maximum number of Account IDs to return
+     * @return The IDs of the accounts of the shard in one of the timezones with a plant due to be watered on or before
+     * dueBefore that is neither snoozed nor recently reminded
+     */
+    public List<Integer> findDueAccountIDs(LocalDate dueBefore, long currentTime, long remindedBefore, List<String> timezones,
+                                           int shardCount, int shardID, int afterAccountID, int pageSize);
+
+    /**
+     * Function that returns the plants of several accounts that are due to be watered, ordered by Account ID,
+     * next watering date, and then Plant ID, with the account of each plant fetched by the same query
+     * @param accountIDs The IDs of the accounts whose due plants are returned
+     * @param dueBefore Only plants due to be watered on or before this date are returned
+     * @param currentTime The current time in seconds (plants snoozed until after this time are left out)
+     * @param remindedBefore Plants reminded after this time in seconds are left out
+     * @return A list of the plants of the accounts due to be watered on or before dueBefore that are neither snoozed
+     * nor recently reminded, with their accounts loaded
+     */
+    public List<Plant> findDuePlantsByAccountIDs(List<Integer> accountIDs, LocalDate dueBefore, long currentTime, long remindedBefore);
+
+    /**
+     * Function that returns plants with their accounts loaded, locking them so that they are only reminded by one node
+     * (plants locked by another transaction are skipped)
+     * (should be called within a transaction)
+     * @param plantIDs The IDs of the plants
+     * @return The managed plants that still exist, grouped by account and then ordered by next watering date and Plant ID
+     */
+    public List<Plant> findPlantsForReminder(List<Integer> plantIDs);
+
+    /**
+     * Function that returns a page of the plants due to be watered on or before a date, whether or not they are snoozed
+     * or were recently reminded, ordered by next watering date and then Plant ID, with the account of each plant
+     * fetched by the same query
+     * @param dueBefore Only plants due to be watered on or before this date are returned
+     * @param afterNextWateringDate The next watering date of the last plant of the previous page (null for the first page)
+     * @param afterPlantID The Plant ID of the last plant of the previous page (ignored for the first page)
+     * @param pageSize The maximum number of plants to return
+     * @return A page of the plants due to be watered on or before dueBefore, with their accounts loaded
+     */
+    public List<Plant> findPlantsDueBefore(LocalDate dueBefore, LocalDate afterNextWateringDate, int afterPlantID, int pageSize);
+
+    /**
+     * Function that records when an email reminder was sent for several plants using a single statement
+     * (the version and change number of the plants are left as is since the time is not returned to clients)
+     * @param plantIDs The IDs of the plants that were reminded
+     * @param remindedAt The time the reminders were sent in seconds
+     * @return The number of plants that were updated
+     */
+    public int updateLastRemindedAt(List<Integer> plantIDs, long remindedAt);
+
+    /**
+     * Function that returns the IDs of the reminder shards that exist in the database
+     * @return The shard numbers, in ascending order
+     */
+    public List<Integer> findReminderShardIDs();
+
+    /**
+     * Function that adds a reminder shard to the database
+     * @param theReminderShard The shard to add
+     * @return The managed shard
+     * @throws DataIntegrityViolationException Thrown if the shard already exists
+     */
+    public ReminderShard add(ReminderShard theReminderShard);
+
+    /**
+     * Function that returns a reminder shard that is ready to be run, locking it so it can be leased to this node
+     * (shards locked by another transaction are skipped)
+     * (should be called within a transaction)
+     * @param shardCount The number of shards in use (shards numbered shardCount or higher are left out)
+     * @param currentTime The current time in seconds (shards whose next run is after this time are left out)
+     * @return The managed shard that has waited the longest to run, or null if every shard is leased or has already run
+     */
+    public ReminderShard findClaimableReminderShard(int shardCount, long currentTime);
+
+    /**
+     * Function that returns a reminder shard by its shard number
+     * @param shardID The shard number
+     * @return The managed shard, or null if the shard does not exist
+     */
+    public ReminderShard findReminderShard(int shardID);
+
     /**
-     * Function that returns all plants in the database
-     * @return A list of all managed plants in the database
+     * Function that adds a message to the outbox to be delivered by the mail workers
+     * @param theOutboxMessage The message to add
+     * @return The managed message
      */
-    public List<Plant> findAllPlants();
+    public OutboxMessage add(OutboxMessage theOutboxMessage);
+
+    /**
+     * Function that returns pending messages of the outbox that are ready to be delivered, locking them so they
+     * can be leased to a worker (messages locked by another transaction are skipped)
+     * (should be called within a transaction)
+     * @param currentTime The current time in seconds (messages whose next attempt is after this time are left out)
+     * @param batchSize The maximum number of messages to return
+     * @return The managed messages that are ready to be delivered, those waiting the longest first
+     */
+    public List<OutboxMessage> findDueOutboxMessages(long currentTime, int batchSize);
+
+    /**
+     * Function that returns messages of the outbox by their IDs
+     * @param outboxMessageIDs The IDs of the messages
+     * @return The managed messages that still exist
+     */
+    public List<OutboxMessage> findOutboxMessagesByIDs(List<Integer> outboxMessageIDs);
+
+    /**
+     * Function that deletes messages from the outbox using a single statement
+     * @param outboxMessageIDs The IDs of the messages to delete
+     * @return The number of messages that were deleted
+     */
+    public int deleteOutboxMessages(List<Integer> outboxMessageIDs);
 
     /**
      * A function that saves a provided plant
@@ -100,6 +364,113 @@ public interface PlantTrackerDAO {
 
     public Plant delete(Plant thePlant);
 
+    /**
+     * Function that increments the change counter of an account and returns the new change number
+     * (the account row stays locked until the transaction commits, so change numbers become visible in order)
+     * @param theAccount The account whose plants are being changed
+     * @return The new value of the change counter of the account
+     */
+    public long nextChangeNumber(Account theAccount);
+
+    /**
+     * Function that increments the change counter of an account by the provided count with a single statement
+     * (the account row stays locked until the transaction commits, so change numbers become visible in order)
+     * @param theAccount The account whose plants are being changed
+     * @param count The number of change numbers to reserve
+     * @return The new value of the change counter of the account (the last reserved change number)
+     */
+    public long reserveChangeNumbers(Account theAccount, int count);
+
+    /**
+     * Function that returns the committed value of the change counter of an account
+     * @param theAccount The account whose change counter is being retrieved
+     * @return The change number of the latest change made to the plants of the account
+     */
+    public long findChangeCounter(Account theAccount);
+
+    /**
+     * Function that returns the plants linked to an account that were added or updated within a range of change numbers
+     * @param theAccount The account for whom plants are being retrieved
+     * @param afterChangeNumber The change number after which changes are returned
+     * @param throughChangeNumber The last change number for which changes are returned
+     * @return The managed plants that were added or updated within the range, ordered by change number
+     */
+    public List<Plant> findChangedPlants(Account theAccount, long afterChangeNumber, long throughChangeNumber);
+
+    /**
+     * Function that returns the IDs of the plants linked to an account that were deleted within a range of change numbers
+     * @param theAccount The account for whom deleted plants are being retrieved
+     * @param afterChangeNumber The change number after which deletions are returned
+     * @param throughChangeNumber The last change number for which deletions are returned
+     * @return The IDs of the plants that were deleted within the range, ordered by change number
+     */
+    public List<Integer> findDeletedPlantIDs(Account theAccount, long afterChangeNumber, long throughChangeNumber);
+
+    /**
+     * Function that adds a tombstone for a deleted plant to the database
+     * @param thePlantTombstone The tombstone to add
+     * @return The provided tombstone (which should be managed now)
+     */
+    public PlantTombstone add(PlantTombstone thePlantTombstone);
+
+    /**
+     * Function that records that the plant linked to a device was watered on the current date in the timezone of its account,
+     * without loading the plant or its account (the plant's next watering date, reminders, version, and change number are
+     * updated in the database along with it, so an edit made at the same time is never overwritten)
+     * @param theDevice The device with a device key (or an account email and a plant registration ID)
+     * @return The number of plants that were updated (0 if the device key was not issued to a plant, or the registration ID
+     * is not linked to a plant of the account with the provided email)
+     */
+    public int updateLastWatered(Device theDevice);
+
+    /**
+     * Function that records that the plants linked to several devices were watered, the same way as updateLastWatered,
+     * using one batch of statements for every device
+     * (plants of the same account share the change number of the account after the whole batch)
+     * @param theDevices The devices with a device key (or an account email and a plant registration ID), each at most once
+     * @return The number of plants that were updated for each device, in the order the devices were provided
+     */
+    public int[] updateLastWatered(List<Device> theDevices);
+
+    /**
+     * Function that records watering events reported by devices, the same way as updateLastWatered but on the date of each
+     * event in the timezone of the plant's account (plants that were already watered on or after that date are left as they are)
+     * @param theWateringEvents The watering events (at most one per device)
+     * @return The number of plants that were updated for each event, in the order the events were provided
+     */
+    public int[] applyWateringEvents(List<WateringEvent> theWateringEvents);
+
+    /**
+     * Function that finds the plants linked to the provided devices (along with their accounts) using a single query
+     * (or one query for the devices that provide a device key and one for the others)
+     * @param theDevices The devices with a device key (or a plant registration ID)
+     * @return The plants that were found (plants that do not exist are left out)
+     */
+    public List<Plant> findPlantsByDevices(List<Device> theDevices);
+
+    /**
+     * Function that returns the plant linked to a registration ID from the device cache, querying only the IDs of the plant
+     * and its account (and the account email) and caching them if the registration ID is not cached yet
+     * @param registrationID The registration ID provided by a device
+     * @return The cached plant linked to the registration ID
+     * @throws NoResultException Thrown if no plant is linked to the registration ID
+     */
+    public DeviceCache.CachedDevice findDeviceByRegistrationID(String registrationID);
+
+    /**
+     * Function that removes a registration ID from the device cache (e.g., when its plant was found to be deleted)
+     * @param registrationID The registration ID to remove from the cache
+     */
+    public void evictCachedDevice(String registrationID);
+
+    /**
+     * Function that stores the hash of the key issued to the device of a plant, without loading the plant
+     * @param plantID The database ID of the plant
+     * @param deviceKeyHash The hash of the device key
+     * @return The number of plants that were updated (0 if the plant no longer exists)
+     */
+    public int updateDeviceKeyHash(int plantID, String deviceKeyHash);
+
     /**
      * Function that finds and returns a managed plant associated with a particular Plant registration ID
      * @param registrationID The registration ID of a plant
@@ -1,22 +1,149 @@
 package com.krisnovak.springboot.demo.planttracker.dao;
 
 import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.entity.OutboxMessage;
+import com.krisnovak.springboot.demo.planttracker.entity.ReminderShard;
 import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantFields;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantPage;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantTombstone;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantView;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantVersion;
+import com.krisnovak.springboot.demo.planttracker.entity.RevokedSessionToken;
 import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import com.krisnovak.springboot.demo.planttracker.entity.WateringEvent;
+import com.krisnovak.springboot.demo.planttracker.service.SessionTokenSigner;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class PlantTrackerDAOImpl implements PlantTrackerDAO{
 
+    //How far before the last refresh (in milliseconds) revoked session tokens are reloaded, which has to cover the longest
+    //transaction that revokes a token and the clock difference between nodes
+    private static final long REVOCATION_REFRESH_OVERLAP = 60 * 1000;
+
+    //Lock timeout that makes a locking query skip rows already locked by another transaction instead of waiting for them
+    //(the value of Hibernate's deprecated LockOptions.SKIP_LOCKED)
+    private static final int SKIP_LOCKED_TIMEOUT = -2;
+
+    //Conditions of a query for the plants that need an email reminder: due to be watered, not snoozed, and not recently reminded
+    private static final String DUE_PLANT_CONDITIONS =
+            "p.nextWateringDate<=:dueBefore AND p.snoozedUntil<=:currentTime AND p.lastRemindedAt<=:remindedBefore";
+
+    //Statement that gives the plant linked to a device the next change number of its account, for a device whose
+    //registration ID and account email were already checked against the device cache (the plant is found by its ID, and
+    //the account row stays locked until the transaction commits, just like reserveChangeNumbers)
+    private static final String DEVICE_ACCOUNT_UPDATE =
+            "UPDATE account SET change_counter = change_counter + 1 " +
+            "WHERE id IN (SELECT account_id FROM plant WHERE id = ?)";
+
+    //Same as DEVICE_ACCOUNT_UPDATE for a device that provides a device key (the plant is found with the index
+    //on the key hash, without matching the account email)
+    private static final String DEVICE_KEY_ACCOUNT_UPDATE =
+            "UPDATE account SET change_counter = change_counter + 1 " +
+            "WHERE id IN (SELECT account_id FROM plant WHERE device_key_hash = ?)";
+
+    //Condition matching the plant linked to a device's registration ID by the ID the device cache resolved it to
+    private static final String DEVICE_PLANT_CONDITION = "id = ?";
+
+    //Condition matching the plant linked to a device's key hash
+    private static final String DEVICE_KEY_PLANT_CONDITION = "device_key_hash = ?";
+
+    //The date of a watering event (bound as a timestamp) in the timezone of the account of the plant being updated
+    private static final String PLANT_ACCOUNT_EVENT_DATE = plantAccountDate("CAST(? AS TIMESTAMP WITH TIME ZONE)");
+
+    //The current date in the timezone of the account of the plant being updated
+    private static final String PLANT_ACCOUNT_CURRENT_DATE = plantAccountDate("CURRENT_TIMESTAMP");
+
+    //Condition that leaves plants that were already watered on or after the date of a watering event as they are
+    private static final String WATERING_EVENT_CONDITION =
+            " AND (last_watered IS NULL OR last_watered < " + PLANT_ACCOUNT_EVENT_DATE + ")";
+
+    //Statements that water the plant linked to a device on the current date
+    private static final String DEVICE_PLANT_UPDATE = plantWateringUpdate(PLANT_ACCOUNT_CURRENT_DATE, DEVICE_PLANT_CONDITION);
+    private static final String DEVICE_KEY_PLANT_UPDATE = plantWateringUpdate(PLANT_ACCOUNT_CURRENT_DATE, DEVICE_KEY_PLANT_CONDITION);
+
+    //Statements that water the plant linked to a device on the date of a watering event
+    private static final String WATERING_EVENT_PLANT_UPDATE =
+            plantWateringUpdate(PLANT_ACCOUNT_EVENT_DATE, DEVICE_PLANT_CONDITION) + WATERING_EVENT_CONDITION;
+    private static final String WATERING_EVENT_DEVICE_KEY_PLANT_UPDATE =
+            plantWateringUpdate(PLANT_ACCOUNT_EVENT_DATE, DEVICE_KEY_PLANT_CONDITION) + WATERING_EVENT_CONDITION;
+
     private EntityManager entityManager;
+
+    //Cache of sessions used to validate cookies without querying the database
+    private SessionCache sessionCache;
+
+    //Signer used to verify sessions when signed session mode is enabled
+    private SessionTokenSigner sessionTokenSigner;
+
+    //Signed session tokens that were revoked but have not expired yet
+    private SessionTokenRevocationList sessionTokenRevocationList;
+
+    //Cache of the plants linked to registration IDs used to validate devices without querying the database
+    private DeviceCache deviceCache;
+
     @Autowired
-    public PlantTrackerDAOImpl(EntityManager theEntityManager){
+    public PlantTrackerDAOImpl(EntityManager theEntityManager, SessionCache theSessionCache,
+                               SessionTokenSigner theSessionTokenSigner, SessionTokenRevocationList theSessionTokenRevocationList,
+                               DeviceCache theDeviceCache){
         entityManager = theEntityManager;
+        sessionCache = theSessionCache;
+        sessionTokenSigner = theSessionTokenSigner;
+        sessionTokenRevocationList = theSessionTokenRevocationList;
+        deviceCache = theDeviceCache;
+    }
+
+    /**
+     * Function that returns the SQL expression for the date of a time in the timezone of the account of the plant being updated
+     * (the local time is formatted before it is cast, since some databases cast a time with a time zone to a date
+     * in the time zone of the session rather than its own)
+     * @param time The SQL expression for the time (a timestamp with a time zone)
+     * @return The SQL expression for the date
+     */
+    private static String plantAccountDate(String time){
+        return "CAST(TO_CHAR(" + time + " AT TIME ZONE (SELECT a.timezone FROM account a WHERE a.id = plant.account_id), " +
+                "'YYYY-MM-DD') AS DATE)";
+    }
+
+    /**
+     * Function that returns a statement that waters the plant linked to a device in place the same way Plant.setLastWatered
+     * and recordChange do (every expression reads the row as it was before the update, so reminders and snoozes are only
+     * reset if the plant was not already watered on the date)
+     * @param wateringDate The SQL expression for the date the plant was watered
+     * @param plantCondition The condition matching the plant linked to the device
+     * @return The statement, whose parameters following those of the date are those of the condition
+     */
+    private static String plantWateringUpdate(String wateringDate, String plantCondition){
+        return "UPDATE plant SET " +
+                "last_reminded_at = CASE WHEN last_watered = " + wateringDate + " THEN last_reminded_at ELSE 0 END, " +
+                "snoozed_until = CASE WHEN last_watered = " + wateringDate + " THEN snoozed_until ELSE 0 END, " +
+                "last_watered = " + wateringDate + ", " +
+                "next_watering_date = CASE WHEN watering_interval < 1 THEN NULL " +
+                "ELSE CAST(" + wateringDate + " + watering_interval * INTERVAL '1' DAY AS DATE) END, " +
+                "version = version + 1, " +
+                "change_number = (SELECT a.change_counter FROM account a WHERE a.id = plant.account_id) " +
+                "WHERE " + plantCondition;
     }
 
     public Account findAccount(Account theAccount){
@@ -34,6 +161,33 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
         return theQuery.getSingleResult();
     }
 
+    @Override
+    public int updateTimezone(int accountID, String timezone){
+
+        Query theQuery = entityManager.createQuery("UPDATE Account SET timezone=:timezone WHERE id=:accountID");
+        theQuery.setParameter("timezone", timezone);
+        theQuery.setParameter("accountID", accountID);
+
+        return theQuery.executeUpdate();
+    }
+
+    @Override
+    public Account findAccountWithSessions(Account theAccount){
+        //Check that an actual account was provided
+        if(theAccount == null)
+            throw new NullPointerException("No account was provided");
+
+        //Create query that will locate an account with a particular email and password along with its sessions
+        String queryContent = "FROM Account WHERE email = :email AND passwordCurrent =: passwordCurrent";
+        TypedQuery<Account> theQuery = entityManager.createQuery(queryContent, Account.class);
+        theQuery.setParameter("email", theAccount.getEmail());
+        theQuery.setParameter("passwordCurrent", theAccount.getPasswordCurrent());
+        theQuery.setHint("jakarta.persistence.fetchgraph", entityManager.getEntityGraph(Account.SESSIONS_ENTITY_GRAPH));
+
+        //return the resulting account
+        return theQuery.getSingleResult();
+    }
+
     //saveNewAccount adds a new account to the database
     @Override
     public Account add(Account theAccount){
@@ -73,6 +227,19 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
             throw new NullPointerException("No account was provided");
         }
 
+        //Make sure none of the account's sessions can still be validated from the cache
+        if(theAccount.getSessions() != null){
+            for(Session s : theAccount.getSessions()) sessionCache.evict(s.getSessionID());
+        }
+
+        //Make sure devices of the account's plants can no longer be validated from the cache
+        deviceCache.evictAccount(theAccount.getId());
+
+        //Tombstones of deleted plants are not linked to the account entity, so they are removed in one statement
+        Query theQuery = entityManager.createQuery("DELETE FROM PlantTombstone WHERE account.id=:accountID");
+        theQuery.setParameter("accountID", theAccount.getId());
+        theQuery.executeUpdate();
+
         //remove the account from the database
         entityManager.remove(theAccount);
 
@@ -82,15 +249,143 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
     @Override
     public Session findSessionBySessionID(String sessionID) {
 
+        //In signed session mode the session is verified from the token itself instead of being queried
+        if(sessionTokenSigner.isEnabled())
+            return findSignedSession(sessionID);
+
         //Create query to find all sessions that have a given session ID
         String queryContent = "FROM Session WHERE sessionID=:sessionID";
         TypedQuery<Session> theQuery = entityManager.createQuery(queryContent, Session.class);
         theQuery.setParameter("sessionID", sessionID);
 
+        Session theSession = theQuery.getSingleResult();
+
+        //Cache the session so that later validations of the same cookie do not need the database
+        sessionCache.put(theSession);
+
+        //return the session
+        return theSession;
+    }
+
+    @Override
+    public Session findSessionWithAccountSessions(String sessionID) {
+
+        //Create query to find the session with its account and all the sessions of that account
+        String queryContent = "SELECT s FROM Session s JOIN FETCH s.account a LEFT JOIN FETCH a.sessions WHERE s.sessionID=:sessionID";
+        TypedQuery<Session> theQuery = entityManager.createQuery(queryContent, Session.class);
+        theQuery.setParameter("sessionID", sessionID);
+
         //return the session
         return theQuery.getSingleResult();
     }
 
+    /**
+     * Function that returns an unmanaged session built from a signed session token
+     * @param sessionID The signed session token provided in the cookie of the client request
+     * @return An unmanaged session linked to a reference to the account carried by the token
+     * @throws NoResultException Thrown if the token is malformed, has an invalid signature, or was revoked
+     */
+    private Session findSignedSession(String sessionID){
+
+        SessionTokenSigner.SessionToken theToken = sessionTokenSigner.verify(sessionID);
+
+        if(theToken == null || sessionTokenRevocationList.contains(theToken.getSignature()) ||
+                sessionTokenRevocationList.containsAccount(theToken.getAccountID(), theToken.getIssuedAt()))
+            throw new NoResultException("No valid signed session exists for the provided session ID");
+
+        //A reference is used so that the account is only loaded if one of its fields is needed
+        Account theAccount = entityManager.getReference(Account.class, theToken.getAccountID());
+
+        return Session.signedInstance(sessionID, theAccount, theToken.getTimeCreated(), theToken.getMaxAge());
+    }
+
+    @Override
+    public SessionCache.CachedSession findCachedSession(String sessionID) {
+        return sessionCache.get(sessionID);
+    }
+
+    @Override
+    public void evictCachedSession(String sessionID) {
+        sessionCache.evict(sessionID);
+    }
+
+    @Override
+    public int deleteExpiredSessions(long currentTime, int batchSize) {
+
+        //Delete a bounded batch of expired sessions (found using the index on expiration_time) in one statement
+        Query theQuery = entityManager.createNativeQuery(
+                "DELETE FROM session WHERE id IN " +
+                "(SELECT id FROM session WHERE expiration_time < :currentTime ORDER BY expiration_time LIMIT :batchSize)");
+        theQuery.setParameter("currentTime", currentTime);
+        theQuery.setParameter("batchSize", batchSize);
+
+        return theQuery.executeUpdate();
+    }
+
+    @Override
+    public RevokedSessionToken add(RevokedSessionToken theRevokedSessionToken) {
+
+        //Store the revocation so that other nodes pick it up on their next refresh
+        entityManager.persist(theRevokedSessionToken);
+
+        //Reject the token on this node right away
+        loadRevokedSessionToken(theRevokedSessionToken);
+
+        return theRevokedSessionToken;
+    }
+
+    /**
+     * Function that adds a revocation to the in-memory set of revoked session tokens
+     * @param theRevokedSessionToken The revocation of a single token or of every token of an account
+     * @return true if the revocation was not already in the set
+     */
+    private boolean loadRevokedSessionToken(RevokedSessionToken theRevokedSessionToken){
+
+        if(theRevokedSessionToken.getAccountID() != null)
+            return sessionTokenRevocationList.addAccount(theRevokedSessionToken.getAccountID(),
+                    theRevokedSessionToken.getRevokedAt(), theRevokedSessionToken.getExpirationTime());
+
+        return sessionTokenRevocationList.add(theRevokedSessionToken.getSignature(), theRevokedSessionToken.getExpirationTime());
+    }
+
+    @Override
+    public boolean isRevokedSessionToken(String signature) {
+        return sessionTokenRevocationList.contains(signature);
+    }
+
+    @Override
+    public int refreshRevokedSessionTokens() {
+
+        long refreshTime = System.currentTimeMillis();
+        long currentTime = refreshTime/1000;
+
+        //Revocations for expired tokens are no longer needed since expired tokens are rejected anyway
+        Query deleteQuery = entityManager.createQuery("DELETE FROM RevokedSessionToken WHERE expirationTime < :currentTime");
+        deleteQuery.setParameter("currentTime", currentTime);
+        deleteQuery.executeUpdate();
+        sessionTokenRevocationList.removeExpired();
+
+        //Load every revocation made since shortly before the last refresh. A revocation can commit after the last refresh
+        //even though it was made (and given its ID) before it, so the overlap window reloads recent revocations,
+        //and the ones that were already loaded are skipped by their signature
+        long revokedSince = sessionTokenRevocationList.getLastRefreshTime() == 0 ? 0 :
+                sessionTokenRevocationList.getLastRefreshTime() - REVOCATION_REFRESH_OVERLAP;
+
+        TypedQuery<RevokedSessionToken> theQuery = entityManager.createQuery(
+                "FROM RevokedSessionToken WHERE revokedAt >= :revokedSince", RevokedSessionToken.class);
+        theQuery.setParameter("revokedSince", revokedSince);
+
+        int loadedRevocationCount = 0;
+        for(RevokedSessionToken revokedSessionToken : theQuery.getResultList()){
+            if(loadRevokedSessionToken(revokedSessionToken))
+                loadedRevocationCount++;
+        }
+
+        sessionTokenRevocationList.setLastRefreshTime(refreshTime);
+
+        return loadedRevocationCount;
+    }
+
     @Override
     public Plant findPlantByPlantID(int plantID) {
 
@@ -102,6 +397,34 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
         return theQuery.getSingleResult();
     }
 
+    @Override
+    public Plant findPlantByPlantIDAndAccountID(int plantID, int accountID) {
+
+        //Create query to find a plant with a particular plant ID that is linked to the account
+        //(account.id is compared against the account_id column, so the account table is not joined)
+        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant WHERE id=:id AND account.id=:accountID", Plant.class);
+        theQuery.setParameter("id", plantID);
+        theQuery.setParameter("accountID", accountID);
+
+        //Return back the requested plant
+        return theQuery.getSingleResult();
+    }
+
+    @Override
+    public List<Plant> findPlantsByPlantIDsAndAccountID(List<Integer> plantIDs, int accountID) {
+
+        //An empty IN list is not valid in every database, and no plants would be found anyway
+        if(plantIDs.isEmpty()) return new ArrayList<Plant>();
+
+        //Create query to find every requested plant that is linked to the account in one round trip
+        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant WHERE id IN :ids AND account.id=:accountID", Plant.class);
+        theQuery.setParameter("ids", plantIDs);
+        theQuery.setParameter("accountID", accountID);
+
+        //Return back the requested plants
+        return theQuery.getResultList();
+    }
+
     @Override
     public List<Plant> findAllPlants(Account theAccount) {
 
@@ -110,23 +433,375 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
         }
 
         //Create a query to return back all plants linked to the provided account
-        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant WHERE account.email=:email ORDER BY id", Plant.class);
-        theQuery.setParameter("email", theAccount.getEmail());
+        //(account.id is compared against the account_id column, so the account table is not joined)
+        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant WHERE account.id=:accountID ORDER BY id", Plant.class);
+        theQuery.setParameter("accountID", theAccount.getId());
 
         //Return back all the plants that were retrieved
         return theQuery.getResultList();
     }
 
-    //TODO: Replace this with a function with a query to retrieve only the plants that are overdue
     @Override
-    public List<Plant> findAllPlants(){
-        //Create query for all the plants in the database
-        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant", Plant.class);
+    public List<Plant> findPlants(Account theAccount, PlantPage plantPage) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Create a query that seeks to the first plant after the previous page using the index that matches the sort order
+        TypedQuery<Plant> theQuery = entityManager.createQuery("SELECT p" + fromPlantPage(plantPage), Plant.class);
+        setPlantPageParameters(theQuery, theAccount, plantPage);
+
+        //Return back the page of plants that were retrieved
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public List<PlantView> findPlantViews(Account theAccount, PlantFields plantFields, PlantPage plantPage) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Create a query that only selects the columns behind the requested fields, seeking with the index that matches the sort order
+        TypedQuery<Tuple> theQuery = entityManager.createQuery(selectPlantFields(plantFields) + fromPlantPage(plantPage), Tuple.class);
+        setPlantPageParameters(theQuery, theAccount, plantPage);
+
+        //Return back the requested fields of the page of plants that were retrieved
+        List<PlantView> plantViews = new ArrayList<PlantView>();
+        for(Tuple theTuple : theQuery.getResultList()){
+            plantViews.add(toPlantView(theTuple, plantFields));
+        }
+        return plantViews;
+    }
+
+    @Override
+    public PlantView findPlantViewByPlantIDAndAccountID(int plantID, int accountID, PlantFields plantFields) {
+
+        //Create a query that only selects the columns behind the requested fields of a plant linked to the account
+        TypedQuery<Tuple> theQuery = entityManager.createQuery(selectPlantFields(plantFields) +
+                " FROM Plant p WHERE p.id=:id AND p.account.id=:accountID", Tuple.class);
+        theQuery.setParameter("id", plantID);
+        theQuery.setParameter("accountID", accountID);
+
+        //Return back the requested fields of the plant
+        return toPlantView(theQuery.getSingleResult(), plantFields);
+    }
+
+    @Override
+    public List<PlantVersion> findPlantVersions(Account theAccount, PlantPage plantPage) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Create a query that reads only the version of each plant in the page, seeking with the index that matches the sort order
+        TypedQuery<PlantVersion> theQuery = entityManager.createQuery("SELECT new " + PlantVersion.class.getName() +
+                "(p.id, p.version, p.imageKey)" + fromPlantPage(plantPage), PlantVersion.class);
+        setPlantPageParameters(theQuery, theAccount, plantPage);
+
+        //Return back the versions of the page of plants
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public PlantVersion findPlantVersionByPlantIDAndAccountID(int plantID, int accountID) {
+
+        //Create a query that reads only the version of a plant linked to the account
+        TypedQuery<PlantVersion> theQuery = entityManager.createQuery("SELECT new " + PlantVersion.class.getName() +
+                "(p.id, p.version, p.imageKey) FROM Plant p WHERE p.id=:id AND p.account.id=:accountID", PlantVersion.class);
+        theQuery.setParameter("id", plantID);
+        theQuery.setParameter("accountID", accountID);
+
+        //Return back the version of the plant
+        return theQuery.getSingleResult();
+    }
+
+    /**
+     * Function that creates the from, where, and order by clauses of a query for a page of the plants of an account
+     * (ID order seeks with the (account_id, id) index and urgency order with the (account_id, next_watering_date, id) index)
+     * @param plantPage The requested page of plants
+     * @return The from, where, and order by clauses of the query (with the parameters set by setPlantPageParameters)
+     */
+    private String fromPlantPage(PlantPage plantPage){
+
+        StringBuilder queryContent = new StringBuilder(" FROM Plant p WHERE p.account.id=:accountID");
+
+        if(!plantPage.isUrgencySort())
+            queryContent.append(" AND p.id>:afterPlantID");
+        else if(plantPage.getAfterNextWateringDate() == null)
+            queryContent.append(" AND p.nextWateringDate IS NOT NULL");
+        else
+            queryContent.append(" AND (p.nextWateringDate>:afterNextWateringDate OR (p.nextWateringDate=:afterNextWateringDate AND p.id>:afterPlantID))");
+
+        if(plantPage.getDueBefore() != null)
+            queryContent.append(" AND p.nextWateringDate<=:dueBefore");
+
+        queryContent.append(plantPage.isUrgencySort() ? " ORDER BY p.nextWateringDate, p.id" : " ORDER BY p.id");
+
+        return queryContent.toString();
+    }
+
+    /**
+     * Function that sets the parameters of a query created with fromPlantPage
+     * @param theQuery The query for a page of plants
+     * @param theAccount The account for whom plants are being retrieved
+     * @param plantPage The requested page of plants
+     */
+    private void setPlantPageParameters(TypedQuery<?> theQuery, Account theAccount, PlantPage plantPage){
+
+        theQuery.setParameter("accountID", theAccount.getId());
+
+        if(!plantPage.isUrgencySort() || plantPage.getAfterNextWateringDate() != null)
+            theQuery.setParameter("afterPlantID", plantPage.getAfterPlantID());
+
+        if(plantPage.isUrgencySort() && plantPage.getAfterNextWateringDate() != null)
+            theQuery.setParameter("afterNextWateringDate", plantPage.getAfterNextWateringDate());
+
+        if(plantPage.getDueBefore() != null)
+            theQuery.setParameter("dueBefore", plantPage.getDueBefore());
+
+        theQuery.setMaxResults(plantPage.getPageSize());
+    }
+
+    /**
+     * Function that creates the select clause of a query for the requested fields of a plant
+     * (the plant ID and next watering date are always selected since they make up the cursor for the next page)
+     * @param plantFields The requested fields (only names from the PlantFields whitelist reach the query)
+     * @return The select clause of the query
+     */
+    private String selectPlantFields(PlantFields plantFields){
+
+        StringBuilder selectClause = new StringBuilder("SELECT p.id AS plantID, p.nextWateringDate AS cursorNextWateringDate");
+
+        for(String fieldName : plantFields.getFieldNames()){
+            String attribute = plantFields.getAttribute(fieldName);
+            selectClause.append(", p.").append(attribute).append(" AS ").append(attribute);
+        }
+
+        return selectClause.toString();
+    }
+
+    /**
+     * Function that converts a row returned by a plant field query to a plant view
+     * @param theTuple The row returned by the query
+     * @param plantFields The requested fields
+     * @return The plant view holding the requested fields of the row
+     */
+    private PlantView toPlantView(Tuple theTuple, PlantFields plantFields){
+
+        PlantView thePlantView = new PlantView(theTuple.get("plantID", Integer.class));
+        thePlantView.setNextWateringDate(theTuple.get("cursorNextWateringDate", LocalDate.class));
+
+        for(String fieldName : plantFields.getFieldNames()){
+            Object value = theTuple.get(plantFields.getAttribute(fieldName));
+
+            //The image key is kept out of the response and converted to a URL by the service
+            if(PlantFields.IMAGE_URL_FIELD.equals(fieldName)){
+                thePlantView.setImageKey((String) value);
+                value = null;
+            }
+
+            thePlantView.setField(fieldName, value);
+        }
+
+        return thePlantView;
+    }
+
+    @Override
+    public List<Integer> findDueAccountIDs(LocalDate dueBefore, long currentTime, long remindedBefore, List<String> timezones,
+                                           int shardCount, int shardID, int afterAccountID, int pageSize){
+
+        if(timezones.isEmpty()) return new ArrayList<Integer>();
+
+        //Create a query that finds the accounts of the shard and timezones with due plants through the (next_watering_date, id) index,
+        //starting after the last account of the previous page
+        TypedQuery<Integer> theQuery = entityManager.createQuery("SELECT DISTINCT p.account.id FROM Plant p WHERE " +
+                DUE_PLANT_CONDITIONS + " AND p.account.timezone IN :timezones AND MOD(p.account.id, :shardCount)=:shardID" +
+                " AND p.account.id>:afterAccountID ORDER BY p.account.id", Integer.class);
+        setDuePlantParameters(theQuery, dueBefore, currentTime, remindedBefore);
+        theQuery.setParameter("timezones", timezones);
+        theQuery.setParameter("shardCount", shardCount);
+        theQuery.setParameter("shardID", shardID);
+        theQuery.setParameter("afterAccountID", afterAccountID);
+        theQuery.setMaxResults(pageSize);
+
+        //Return back the page of account IDs
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public List<Plant> findDuePlantsByAccountIDs(List<Integer> accountIDs, LocalDate dueBefore, long currentTime, long remindedBefore){
+
+        if(accountIDs.isEmpty()) return new ArrayList<Plant>();
+
+        //Create a query that reads the due plants of each account through the (account_id, next_watering_date, id) index,
+        //fetching the account of each plant in the same query so its email does not need to be loaded separately
+        TypedQuery<Plant> theQuery = entityManager.createQuery("SELECT p FROM Plant p JOIN FETCH p.account WHERE " +
+                DUE_PLANT_CONDITIONS + " AND p.account.id IN :accountIDs ORDER BY p.account.id, p.nextWateringDate, p.id", Plant.class);
+        setDuePlantParameters(theQuery, dueBefore, currentTime, remindedBefore);
+        theQuery.setParameter("accountIDs", accountIDs);
+
+        //Return back the due plants grouped by account
+        return theQuery.getResultList();
+    }
+
+    /**
+     * Function that sets the parameters of DUE_PLANT_CONDITIONS in a query
+     * @param theQuery The query for due plants
+     * @param dueBefore Only plants due to be watered on or before this date are included
+     * @param currentTime The current time in seconds (plants snoozed until after this time are left out)
+     * @param remindedBefore Plants reminded after this time in seconds are left out
+     */
+    private void setDuePlantParameters(TypedQuery<?> theQuery, LocalDate dueBefore, long currentTime, long remindedBefore){
+        theQuery.setParameter("dueBefore", dueBefore);
+        theQuery.setParameter("currentTime", currentTime);
+        theQuery.setParameter("remindedBefore", remindedBefore);
+    }
+
+    @Override
+    public List<Plant> findPlantsForReminder(List<Integer> plantIDs){
+
+        if(plantIDs.isEmpty()) return new ArrayList<Plant>();
+
+        TypedQuery<Plant> theQuery = entityManager.createQuery("SELECT p FROM Plant p JOIN FETCH p.account WHERE p.id IN :plantIDs" +
+                " ORDER BY p.account.id, p.nextWateringDate, p.id", Plant.class);
+        theQuery.setParameter("plantIDs", plantIDs);
+        lockSkippingLockedRows(theQuery);
+
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public List<Plant> findPlantsDueBefore(LocalDate dueBefore, LocalDate afterNextWateringDate, int afterPlantID, int pageSize){
+
+        //Create a query that reads the plants through the (next_watering_date, id) index,
+        //starting after the last plant of the previous page
+        String afterCondition = afterNextWateringDate == null ? "" :
+                " AND (p.nextWateringDate>:afterNextWateringDate OR (p.nextWateringDate=:afterNextWateringDate AND p.id>:afterPlantID))";
+        TypedQuery<Plant> theQuery = entityManager.createQuery("SELECT p FROM Plant p JOIN FETCH p.account WHERE " +
+                "p.nextWateringDate<=:dueBefore" + afterCondition + " ORDER BY p.nextWateringDate, p.id", Plant.class);
+        theQuery.setParameter("dueBefore", dueBefore);
+        if(afterNextWateringDate != null){
+            theQuery.setParameter("afterNextWateringDate", afterNextWateringDate);
+            theQuery.setParameter("afterPlantID", afterPlantID);
+        }
+        theQuery.setMaxResults(pageSize);
+
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public int updateLastRemindedAt(List<Integer> plantIDs, long remindedAt){
+
+        if(plantIDs.isEmpty()) return 0;
+
+        //Update every reminded plant in one statement instead of loading and updating each plant
+        Query theQuery = entityManager.createQuery("UPDATE Plant SET lastRemindedAt=:remindedAt WHERE id IN :plantIDs");
+        theQuery.setParameter("remindedAt", remindedAt);
+        theQuery.setParameter("plantIDs", plantIDs);
+
+        return theQuery.executeUpdate();
+    }
+
+    @Override
+    public List<Integer> findReminderShardIDs(){
+
+        TypedQuery<Integer> theQuery = entityManager.createQuery("SELECT s.id FROM ReminderShard s ORDER BY s.id", Integer.class);
+
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public ReminderShard add(ReminderShard theReminderShard){
+
+        //Add the shard to the database
+        entityManager.persist(theReminderShard);
+
+        return theReminderShard;
+    }
+
+    @Override
+    public ReminderShard findClaimableReminderShard(int shardCount, long currentTime){
+
+        //Create a query that finds the shard that has waited the longest to run,
+        //locking it while skipping shards that another node is claiming at the same time
+        TypedQuery<ReminderShard> theQuery = entityManager.createQuery("FROM ReminderShard WHERE id<:shardCount" +
+                " AND nextRunAt<=:currentTime ORDER BY nextRunAt, id", ReminderShard.class);
+        theQuery.setParameter("shardCount", shardCount);
+        theQuery.setParameter("currentTime", currentTime);
+        lockSkippingLockedRows(theQuery);
+        theQuery.setMaxResults(1);
+
+        List<ReminderShard> reminderShards = theQuery.getResultList();
+
+        //Return back the shard, or null if there is no shard ready to be run
+        return reminderShards.isEmpty() ? null : reminderShards.get(0);
+    }
+
+    @Override
+    public ReminderShard findReminderShard(int shardID){
+        return entityManager.find(ReminderShard.class, shardID);
+    }
+
+    @Override
+    public OutboxMessage add(OutboxMessage theOutboxMessage){
+
+        //Add the message to the outbox
+        entityManager.persist(theOutboxMessage);
+
+        return theOutboxMessage;
+    }
+
+    @Override
+    public List<OutboxMessage> findDueOutboxMessages(long currentTime, int batchSize){
+
+        //Create a query that finds the pending messages ready to be delivered through the (status, next_attempt_at) index,
+        //locking them while skipping messages that another node is leasing at the same time
+        TypedQuery<OutboxMessage> theQuery = entityManager.createQuery("FROM OutboxMessage WHERE status=:status" +
+                " AND nextAttemptAt<=:currentTime ORDER BY nextAttemptAt, id", OutboxMessage.class);
+        theQuery.setParameter("status", OutboxMessage.PENDING_STATUS);
+        theQuery.setParameter("currentTime", currentTime);
+        lockSkippingLockedRows(theQuery);
+        theQuery.setMaxResults(batchSize);
+
+        //Return back the messages that are ready to be delivered
+        return theQuery.getResultList();
+    }
+
+    /**
+     * Function that makes a query lock the rows it returns for writing, skipping rows that another transaction
+     * already locked instead of waiting for them (so that several nodes can claim work from the same table at once)
+     * @param theQuery The query to lock the rows of
+     */
+    private static void lockSkippingLockedRows(TypedQuery<?> theQuery){
+        theQuery.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        theQuery.setHint("jakarta.persistence.lock.timeout", SKIP_LOCKED_TIMEOUT);
+    }
+
+    @Override
+    public List<OutboxMessage> findOutboxMessagesByIDs(List<Integer> outboxMessageIDs){
+
+        if(outboxMessageIDs.isEmpty()) return new ArrayList<OutboxMessage>();
+
+        TypedQuery<OutboxMessage> theQuery = entityManager.createQuery("FROM OutboxMessage WHERE id IN :outboxMessageIDs", OutboxMessage.class);
+        theQuery.setParameter("outboxMessageIDs", outboxMessageIDs);
 
-        //return back all the plants in the database
         return theQuery.getResultList();
     }
 
+    @Override
+    public int deleteOutboxMessages(List<Integer> outboxMessageIDs){
+
+        if(outboxMessageIDs.isEmpty()) return 0;
+
+        //Delete every delivered message in one statement
+        Query theQuery = entityManager.createQuery("DELETE FROM OutboxMessage WHERE id IN :outboxMessageIDs");
+        theQuery.setParameter("outboxMessageIDs", outboxMessageIDs);
+
+        return theQuery.executeUpdate();
+    }
+
     @Override
     public Plant add(Plant thePlant){
 
@@ -150,6 +825,9 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
     @Override
     public Plant delete(Plant thePlant){
 
+        //Make sure the device of the plant can no longer be validated from the cache
+        deviceCache.evict(thePlant.getRegistrationID());
+
         //Remove the plant from the database
         entityManager.remove(thePlant);
 
@@ -157,6 +835,325 @@ public class PlantTrackerDAOImpl implements PlantTrackerDAO{
         return thePlant;
     }
 
+    @Override
+    public long nextChangeNumber(Account theAccount) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        return reserveChangeNumbers(theAccount, 1);
+    }
+
+    @Override
+    public long reserveChangeNumbers(Account theAccount, int count) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Increment the counter in the database (rather than the managed account) so concurrent changes never share a number
+        Query theQuery = entityManager.createQuery("UPDATE Account SET changeCounter = changeCounter + :count WHERE id=:accountID");
+        theQuery.setParameter("count", (long) count);
+        theQuery.setParameter("accountID", theAccount.getId());
+        theQuery.executeUpdate();
+
+        return findChangeCounter(theAccount);
+    }
+
+    @Override
+    public long findChangeCounter(Account theAccount) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Read the counter from the database since the managed account is never updated with it
+        TypedQuery<Long> theQuery = entityManager.createQuery("SELECT a.changeCounter FROM Account a WHERE a.id=:accountID", Long.class);
+        theQuery.setParameter("accountID", theAccount.getId());
+
+        return theQuery.getSingleResult();
+    }
+
+    @Override
+    public List<Plant> findChangedPlants(Account theAccount, long afterChangeNumber, long throughChangeNumber) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Create a query that seeks to the changes after the client's token using the (account_id, change_number) index
+        TypedQuery<Plant> theQuery = entityManager.createQuery("FROM Plant WHERE account.id=:accountID " +
+                "AND changeNumber>:afterChangeNumber AND changeNumber<=:throughChangeNumber ORDER BY changeNumber", Plant.class);
+        theQuery.setParameter("accountID", theAccount.getId());
+        theQuery.setParameter("afterChangeNumber", afterChangeNumber);
+        theQuery.setParameter("throughChangeNumber", throughChangeNumber);
+
+        //Return back the plants that changed
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public List<Integer> findDeletedPlantIDs(Account theAccount, long afterChangeNumber, long throughChangeNumber) {
+
+        if(theAccount == null){
+            throw new NullPointerException("The provided account was null");
+        }
+
+        //Create a query that seeks to the deletions after the client's token using the (account_id, change_number) index
+        TypedQuery<Integer> theQuery = entityManager.createQuery("SELECT t.plantID FROM PlantTombstone t WHERE t.account.id=:accountID " +
+                "AND t.changeNumber>:afterChangeNumber AND t.changeNumber<=:throughChangeNumber ORDER BY t.changeNumber", Integer.class);
+        theQuery.setParameter("accountID", theAccount.getId());
+        theQuery.setParameter("afterChangeNumber", afterChangeNumber);
+        theQuery.setParameter("throughChangeNumber", throughChangeNumber);
+
+        //Return back the IDs of the plants that were deleted
+        return theQuery.getResultList();
+    }
+
+    @Override
+    public PlantTombstone add(PlantTombstone thePlantTombstone) {
+
+        //Add the tombstone to the database
+        entityManager.persist(thePlantTombstone);
+
+        return thePlantTombstone;
+    }
+
+    @Override
+    public int updateLastWatered(Device theDevice) {
+        return updateLastWatered(List.of(theDevice))[0];
+    }
+
+    @Override
+    public int[] updateLastWatered(List<Device> theDevices) {
+        return updateLastWatered(DEVICE_PLANT_UPDATE, DEVICE_KEY_PLANT_UPDATE, theDevices, null);
+    }
+
+    @Override
+    public int[] applyWateringEvents(List<WateringEvent> theWateringEvents) {
+
+        List<Device> theDevices = new ArrayList<Device>();
+        List<Long> wateredAt = new ArrayList<Long>();
+        for(WateringEvent theWateringEvent : theWateringEvents){
+            theDevices.add(theWateringEvent.getDevice());
+            wateredAt.add(theWateringEvent.getWateredAt());
+        }
+
+        return updateLastWatered(WATERING_EVENT_PLANT_UPDATE, WATERING_EVENT_DEVICE_KEY_PLANT_UPDATE, theDevices, wateredAt);
+    }
+
+    /**
+     * Function that waters the plants linked to several devices with one JDBC batch per statement, so any number of devices
+     * takes two round trips (or four if some devices provide a device key and others an account email and a registration ID,
+     * plus one query for registration IDs that are not in the device cache)
+     * @param plantUpdate The statement that waters the plant linked to a device's account email and registration ID
+     * @param deviceKeyPlantUpdate The statement that waters the plant linked to a device's key
+     * @param theDevices The devices with a device key (or an account email and a plant registration ID)
+     * @param wateredAt When each plant was watered in seconds (null if the plants were watered on the current date)
+     * @return The number of plants that were updated for each device
+     */
+    private int[] updateLastWatered(String plantUpdate, String deviceKeyPlantUpdate, List<Device> theDevices, List<Long> wateredAt){
+
+        if(theDevices.isEmpty()) return new int[0];
+
+        //Resolve the registration IDs of devices without a key to plant IDs (from the cache when possible)
+        List<String> registrationIDs = new ArrayList<String>();
+        for(Device theDevice : theDevices){
+            if(!theDevice.hasDeviceKey()) registrationIDs.add(theDevice.getRegistrationID());
+        }
+        Map<String, DeviceCache.CachedDevice> cachedDevices = findCachedDevices(registrationIDs);
+
+        int[] updatedPlantCounts = entityManager.unwrap(org.hibernate.Session.class).doReturningWork(connection -> {
+
+            try(PreparedStatement accountStatement = connection.prepareStatement(DEVICE_ACCOUNT_UPDATE);
+                PreparedStatement plantStatement = connection.prepareStatement(plantUpdate);
+                PreparedStatement deviceKeyAccountStatement = connection.prepareStatement(DEVICE_KEY_ACCOUNT_UPDATE);
+                PreparedStatement deviceKeyPlantStatement = connection.prepareStatement(deviceKeyPlantUpdate)){
+
+                //Which devices were added to the batches of each pair of statements
+                List<Integer> deviceIndexes = new ArrayList<Integer>();
+                List<Integer> deviceKeyIndexes = new ArrayList<Integer>();
+
+                for(int i = 0; i < theDevices.size(); i++){
+                    Device theDevice = theDevices.get(i);
+                    OffsetDateTime wateringTime = (wateredAt == null) ? null :
+                            OffsetDateTime.ofInstant(Instant.ofEpochSecond(wateredAt.get(i)), ZoneOffset.UTC);
+
+                    if(theDevice.hasDeviceKey()){
+                        String deviceKeyHash = theDevice.getDeviceKeyHash();
+                        deviceKeyAccountStatement.setString(1, deviceKeyHash);
+                        deviceKeyAccountStatement.addBatch();
+                        addPlantUpdate(deviceKeyPlantStatement, wateringTime, deviceKeyHash);
+                        deviceKeyIndexes.add(i);
+                    }
+                    else{
+                        //A device whose registration ID is not linked to a plant of its account updates nothing
+                        DeviceCache.CachedDevice cachedDevice = cachedDevices.get(theDevice.getRegistrationID());
+                        if(cachedDevice == null || !cachedDevice.isLinkedTo(theDevice.getAccountEmail())) continue;
+
+                        accountStatement.setInt(1, cachedDevice.getPlantID());
+                        accountStatement.addBatch();
+                        addPlantUpdate(plantStatement, wateringTime, cachedDevice.getPlantID());
+                        deviceIndexes.add(i);
+                    }
+                }
+
+                //The change counters are incremented first so the plants read the new counters
+                if(!deviceIndexes.isEmpty()) accountStatement.executeBatch();
+                if(!deviceKeyIndexes.isEmpty()) deviceKeyAccountStatement.executeBatch();
+
+                int[] batchPlantCounts = new int[theDevices.size()];
+                if(!deviceIndexes.isEmpty()) copyUpdatedPlantCounts(plantStatement.executeBatch(), deviceIndexes, batchPlantCounts);
+                if(!deviceKeyIndexes.isEmpty()) copyUpdatedPlantCounts(deviceKeyPlantStatement.executeBatch(), deviceKeyIndexes, batchPlantCounts);
+
+                return batchPlantCounts;
+            }
+        });
+
+        //A cached plant that was not updated may have been deleted by another node (watering events skip plants
+        //that were watered later, so only an update on the current date shows that the plant is gone)
+        if(wateredAt == null){
+            for(int i = 0; i < theDevices.size(); i++){
+                Device theDevice = theDevices.get(i);
+                if(updatedPlantCounts[i] > 0 || theDevice.hasDeviceKey()) continue;
+
+                DeviceCache.CachedDevice cachedDevice = cachedDevices.get(theDevice.getRegistrationID());
+                if(cachedDevice != null && cachedDevice.isLinkedTo(theDevice.getAccountEmail()))
+                    deviceCache.evict(theDevice.getRegistrationID());
+            }
+        }
+
+        return updatedPlantCounts;
+    }
+
+    /**
+     * Function that finds the plants linked to several registration IDs, querying only the registration IDs that are not
+     * cached (with a single query) and adding them to the cache
+     * @param registrationIDs The registration IDs provided by devices
+     * @return The plants linked to the registration IDs keyed by registration ID (registration IDs not linked to a plant are left out)
+     */
+    private Map<String, DeviceCache.CachedDevice> findCachedDevices(List<String> registrationIDs){
+
+        Map<String, DeviceCache.CachedDevice> cachedDevices = new HashMap<String, DeviceCache.CachedDevice>();
+        List<String> uncachedRegistrationIDs = new ArrayList<String>();
+        for(String registrationID : registrationIDs){
+            DeviceCache.CachedDevice cachedDevice = deviceCache.get(registrationID);
+            if(cachedDevice == null) uncachedRegistrationIDs.add(registrationID);
+            else cachedDevices.put(registrationID, cachedDevice);
+        }
+
+        if(uncachedRegistrationIDs.isEmpty()) return cachedDevices;
+
+        //Only the IDs and the account email are read, so neither the plants nor their accounts are loaded
+        TypedQuery<Tuple> theQuery = entityManager.createQuery("SELECT p.registrationID AS registrationID, p.id AS plantID, " +
+                "a.id AS accountID, a.email AS accountEmail FROM Plant p JOIN p.account a " +
+                "WHERE p.registrationID IN :registrationIDs", Tuple.class);
+        theQuery.setParameter("registrationIDs", uncachedRegistrationIDs);
+
+        for(Tuple theTuple : theQuery.getResultList()){
+            DeviceCache.CachedDevice cachedDevice = new DeviceCache.CachedDevice(theTuple.get("registrationID", String.class),
+                    theTuple.get("plantID", Integer.class), theTuple.get("accountID", Integer.class),
+                    theTuple.get("accountEmail", String.class));
+            deviceCache.put(cachedDevice);
+            cachedDevices.put(cachedDevice.getRegistrationID(), cachedDevice);
+        }
+
+        return cachedDevices;
+    }
+
+    @Override
+    public DeviceCache.CachedDevice findDeviceByRegistrationID(String registrationID) {
+
+        DeviceCache.CachedDevice cachedDevice = findCachedDevices(List.of(registrationID)).get(registrationID);
+        if(cachedDevice == null)
+            throw new NoResultException("No plant is linked to the registration ID");
+
+        return cachedDevice;
+    }
+
+    @Override
+    public void evictCachedDevice(String registrationID) {
+        deviceCache.evict(registrationID);
+    }
+
+    @Override
+    public int updateDeviceKeyHash(int plantID, String deviceKeyHash) {
+
+        Query theQuery = entityManager.createQuery("UPDATE Plant SET deviceKeyHash=:deviceKeyHash WHERE id=:plantID");
+        theQuery.setParameter("deviceKeyHash", deviceKeyHash);
+        theQuery.setParameter("plantID", plantID);
+
+        return theQuery.executeUpdate();
+    }
+
+    /**
+     * Function that adds the statement watering the plant linked to one device to the batch of a plant update
+     * @param plantStatement The statement that waters the plant linked to a device
+     * @param wateringTime When the plant was watered (null if it was watered on the current date)
+     * @param plantConditionParameter The parameter of the condition matching the plant linked to the device
+     * @throws SQLException Thrown if a parameter cannot be bound
+     */
+    private static void addPlantUpdate(PreparedStatement plantStatement, OffsetDateTime wateringTime, Object plantConditionParameter) throws SQLException{
+
+        //The time of the event is bound for each date in the SET clause (and once more after the condition)
+        int parameterIndex = 1;
+        if(wateringTime != null){
+            for(; parameterIndex <= 4; parameterIndex++) plantStatement.setObject(parameterIndex, wateringTime);
+        }
+        plantStatement.setObject(parameterIndex++, plantConditionParameter);
+        if(wateringTime != null)
+            plantStatement.setObject(parameterIndex, wateringTime);
+        plantStatement.addBatch();
+    }
+
+    /**
+     * Function that copies the row counts of a batch of plant updates to the devices that were added to the batch
+     * @param batchCounts The row counts reported for the batch
+     * @param deviceIndexes The position of the device of each statement of the batch
+     * @param updatedPlantCounts The number of plants that were updated for each device
+     */
+    private static void copyUpdatedPlantCounts(int[] batchCounts, List<Integer> deviceIndexes, int[] updatedPlantCounts){
+        for(int i = 0; i < batchCounts.length; i++){
+            //Some drivers do not report the row count of each statement of a batch
+            updatedPlantCounts[deviceIndexes.get(i)] = (batchCounts[i] == Statement.SUCCESS_NO_INFO) ? 1 : batchCounts[i];
+        }
+    }
+
+    @Override
+    public List<Plant> findPlantsByDevices(List<Device> theDevices) {
+
+        List<String> registrationIDs = new ArrayList<String>();
+        List<String> deviceKeyHashes = new ArrayList<String>();
+        for(Device theDevice : theDevices){
+            if(theDevice.hasDeviceKey()) deviceKeyHashes.add(theDevice.getDeviceKeyHash());
+            else registrationIDs.add(theDevice.getRegistrationID());
+        }
+
+        List<Plant> foundPlants = new ArrayList<Plant>();
+        if(!registrationIDs.isEmpty())
+            foundPlants.addAll(findPlantsWithAccounts("registrationID", registrationIDs));
+        if(!deviceKeyHashes.isEmpty())
+            foundPlants.addAll(findPlantsWithAccounts("deviceKeyHash", deviceKeyHashes));
+
+        return foundPlants;
+    }
+
+    /**
+     * Function that finds the plants (along with their accounts) whose value of an attribute is one of the provided values
+     * @param attribute The attribute of Plant to match
+     * @param values The values of the attribute
+     * @return The plants that were found
+     */
+    private List<Plant> findPlantsWithAccounts(String attribute, List<String> values){
+
+        TypedQuery<Plant> theQuery = entityManager.createQuery("SELECT p FROM Plant p JOIN FETCH p.account " +
+                "WHERE p." + attribute + " IN :values", Plant.class);
+        theQuery.setParameter("values", values);
+
+        return theQuery.getResultList();
+    }
+
     @Override
     public Plant findPlantByRegistrationID(String registrationID) {
         //Create query to find the plant with the provided registration ID
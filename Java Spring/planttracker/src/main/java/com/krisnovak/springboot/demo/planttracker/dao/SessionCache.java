@@ -0,0 +1,186 @@
+package com.krisnovak.springboot.demo.planttracker.dao;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that represents a bounded, in-memory cache of sessions keyed by session ID.
+ * Entries expire at the session's creation time plus its maximum age, or once they have been cached for the
+ * time to live if that comes first, and the least recently used entry is evicted once the cache is full.
+ * Evictions only reach the local node, so the time to live bounds how long a session removed through another node
+ * (e.g., by logging out) is still accepted by this one.
+ */
+@Component
+public class SessionCache {
+
+    //The maximum number of sessions held in the cache
+    private final int maximumSize;
+
+    //How long (in seconds) a session is held in the cache before it has to be looked up again
+    private final long timeToLive;
+
+    //The cached sessions (kept in access order so the least recently used entry is evicted first)
+    private final LinkedHashMap<String, CachedSession> cachedSessions;
+
+    //Number of lookups that were served by the cache
+    private final AtomicLong hitCount = new AtomicLong();
+
+    //Number of lookups that were not served by the cache
+    private final AtomicLong missCount = new AtomicLong();
+
+    public SessionCache(@Value("${planttracker.session-cache.maximum-size:10000}") int maximumSize,
+                        @Value("${planttracker.session-cache.ttl:30}") long timeToLive){
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.cachedSessions = new LinkedHashMap<String, CachedSession>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+                return size() > SessionCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Function that returns a cached session if one exists for the session ID and is not expired
+     * @param sessionID Text of the Session ID in the cookie provided by the client request
+     * @return The cached session, or null if the session is not cached or is expired
+     */
+    public synchronized CachedSession get(String sessionID){
+
+        CachedSession cachedSession = cachedSessions.get(sessionID);
+
+        //Expired sessions are removed as soon as they are found
+        if(cachedSession != null && cachedSession.isExpired()){
+            cachedSessions.remove(sessionID);
+            cachedSession = null;
+        }
+
+        if(cachedSession == null){
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return cachedSession;
+    }
+
+    /**
+     * Function that adds a session to the cache until it expires or its time to live runs out (expired sessions are not added)
+     * @param theSession The session to add to the cache
+     */
+    public synchronized void put(Session theSession){
+        if(theSession == null || theSession.getSessionID() == null || theSession.isExpiredSession())
+            return;
+
+        long expirationTime = Math.min(theSession.getTimeCreated() + theSession.getMaxAge(),
+                (System.currentTimeMillis()/1000) + timeToLive);
+
+        CachedSession cachedSession = new CachedSession(theSession.getSessionID(),
+                theSession.getAccount() == null ? 0 : theSession.getAccount().getId(), expirationTime);
+
+        cachedSessions.put(cachedSession.getSessionID(), cachedSession);
+    }
+
+    /**
+     * Function that removes a session from the cache
+     * @param sessionID Text of the Session ID of the session to remove
+     */
+    public synchronized void evict(String sessionID){
+        if(sessionID == null) return;
+        cachedSessions.remove(sessionID);
+    }
+
+    /**
+     * Function that removes every session from the cache
+     */
+    public synchronized void clear(){
+        cachedSessions.clear();
+    }
+
+    public synchronized int size(){
+        return cachedSessions.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Function that returns the fraction of lookups that were served by the cache
+     * @return The hit ratio of the cache (0 if no lookups have been made)
+     */
+    public double getHitRatio(){
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        if(total == 0) return 0;
+        return (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionCache{" +
+                "size=" + size() +
+                ", maximumSize=" + maximumSize +
+                ", hitCount=" + hitCount.get() +
+                ", missCount=" + missCount.get() +
+                '}';
+    }
+
+    /**
+     * Class that represents the information about a session that is held in the cache
+     */
+    public static class CachedSession {
+
+        //The ID of the session provided by the cookie
+        private final String sessionID;
+
+        //The database ID of the account linked to the session
+        private final int accountID;
+
+        //When the cached entry expires in seconds (no later than the session itself)
+        private final long expirationTime;
+
+        public CachedSession(String sessionID, int accountID, long expirationTime) {
+            this.sessionID = sessionID;
+            this.accountID = accountID;
+            this.expirationTime = expirationTime;
+        }
+
+        public String getSessionID() {
+            return sessionID;
+        }
+
+        public int getAccountID() {
+            return accountID;
+        }
+
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+
+        /**
+         * Function that checks if the cached session is expired (using the same rule as Session.isExpiredSession)
+         * @return true if the cached session is expired and false if it is not expired
+         */
+        public boolean isExpired(){
+            return (System.currentTimeMillis()/1000) > expirationTime;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.krisnovak.springboot.demo.planttracker.dao;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that represents the in-memory set of signed session tokens that were revoked but have not expired yet.
+ * Tokens are identified by their signature (or, when every token of an account was revoked, by the account and the
+ * time they were issued) and are dropped from the set as soon as they expire,
+ * so the set only ever holds tokens that could still be presented by a client.
+ */
+@Component
+public class SessionTokenRevocationList {
+
+    //Signatures of revoked tokens mapped to when the tokens expire (in seconds)
+    private final Map<String, Long> revokedSignatures = new ConcurrentHashMap<String, Long>();
+
+    //Database IDs of accounts whose tokens were all revoked mapped to when they were revoked (in milliseconds)
+    private final Map<Integer, Long> revokedAccounts = new ConcurrentHashMap<Integer, Long>();
+
+    //Database IDs of accounts whose tokens were all revoked mapped to when the last of those tokens expires (in seconds)
+    private final Map<Integer, Long> revokedAccountExpirations = new ConcurrentHashMap<Integer, Long>();
+
+    //When revocations were last loaded from the database in milliseconds (0 if they have never been loaded)
+    private volatile long lastRefreshTime = 0;
+
+    /**
+     * Function that adds a revoked token to the set (expired tokens are not added)
+     * @param signature The signature of the revoked token
+     * @param expirationTime When the revoked token expires in seconds
+     * @return true if the token was added and false if it was already in the set or is expired
+     */
+    public boolean add(String signature, long expirationTime){
+        if(signature == null || isExpired(expirationTime)) return false;
+        return revokedSignatures.put(signature, expirationTime) == null;
+    }
+
+    /**
+     * Function that revokes every token issued to an account up to a point in time (expired revocations are not added)
+     * @param accountID The database ID of the account
+     * @param revokedAt When the tokens were revoked in milliseconds (tokens issued at or before this time are revoked)
+     * @param expirationTime When the last of the revoked tokens expires in seconds
+     * @return true if the revocation was added and false if a later revocation of the account is already in the set or it is expired
+     */
+    public synchronized boolean addAccount(int accountID, long revokedAt, long expirationTime){
+        if(isExpired(expirationTime)) return false;
+
+        Long previousRevokedAt = revokedAccounts.get(accountID);
+        if(previousRevokedAt != null && previousRevokedAt >= revokedAt) return false;
+
+        revokedAccounts.put(accountID, revokedAt);
+        revokedAccountExpirations.put(accountID, expirationTime);
+        return true;
+    }
+
+    /**
+     * Function that checks if every token of an account issued up to a point in time has been revoked
+     * @param accountID The database ID of the account linked to the token
+     * @param issuedAt When the token was signed in milliseconds
+     * @return true if the tokens of the account were revoked at or after the token was issued
+     */
+    public boolean containsAccount(int accountID, long issuedAt){
+        Long revokedAt = revokedAccounts.get(accountID);
+        return revokedAt != null && issuedAt <= revokedAt;
+    }
+
+    /**
+     * Function that checks if a token has been revoked
+     * @param signature The signature of the token
+     * @return true if the token was revoked and has not expired yet
+     */
+    public boolean contains(String signature){
+        if(signature == null) return false;
+
+        Long expirationTime = revokedSignatures.get(signature);
+        if(expirationTime == null) return false;
+
+        //An expired token no longer needs to be tracked since it is rejected for being expired
+        if(isExpired(expirationTime)){
+            revokedSignatures.remove(signature);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Function that removes every expired token from the set
+     * @return The number of tokens that were removed
+     */
+    public synchronized int removeExpired(){
+        int sizeBefore = size();
+        revokedSignatures.values().removeIf(this::isExpired);
+
+        revokedAccountExpirations.values().removeIf(this::isExpired);
+        revokedAccounts.keySet().retainAll(revokedAccountExpirations.keySet());
+
+        return sizeBefore - size();
+    }
+
+    public int size(){
+        return revokedSignatures.size() + revokedAccounts.size();
+    }
+
+    public long getLastRefreshTime() {
+        return lastRefreshTime;
+    }
+
+    public void setLastRefreshTime(long lastRefreshTime) {
+        this.lastRefreshTime = lastRefreshTime;
+    }
+
+    private boolean isExpired(long expirationTime){
+        return (System.currentTimeMillis()/1000) > expirationTime;
+    }
+}
@@ -6,16 +6,34 @@ import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import jakarta.persistence.*;
 import org.springframework.dao.EmptyResultDataAccessException;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Class that represents the account of a user
  */
 @Entity
 @Table(name="account")
+@NamedEntityGraph(name = Account.SESSIONS_ENTITY_GRAPH, attributeNodes = @NamedAttributeNode("sessions"))
 public class Account {
 
+    //Name of the entity graph that loads an account together with its sessions
+    public static final String SESSIONS_ENTITY_GRAPH = "Account.sessions";
+
+    //The maximum number of sessions an account can have (the oldest sessions are removed past this number)
+    public static final int MAXIMUM_SESSIONS = 20;
+
+    //The timezone of accounts that have not provided one
+    public static final String DEFAULT_TIMEZONE = "UTC";
+
     //The ID of the account in the database
     @Id
     @GeneratedValue(strategy= GenerationType.IDENTITY)
@@ -38,16 +56,29 @@ public class Account {
     @JsonProperty("passwordNew")
     private String passwordNew;
 
+    //The timezone of the user (a region ID such as America/New_York), used to determine the user's current date
+    //and the hour at which the user's email reminders are sent
+    @Column(name="timezone")
+    @JsonProperty("timezone")
+    private String timezone;
+
     //A list of all the plants owned by the account (NOTE: this is set to lazy fetch)
     @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnore
     private List<Plant> plants;
 
-    //A list of all the sessions/cookies that exist for the account
-    @OneToMany(mappedBy = "account", cascade=CascadeType.ALL, fetch=FetchType.EAGER, orphanRemoval = true)
+    //A list of all the sessions/cookies that exist for the account (NOTE: this is set to lazy fetch,
+    //use managedInstanceWithSessions when the sessions are needed)
+    @OneToMany(mappedBy = "account", cascade=CascadeType.ALL, fetch=FetchType.LAZY, orphanRemoval = true)
     @JsonIgnore
     private List<Session> sessions;
 
+    //The number of changes (additions, updates, and deletions) made to the plants of the account
+    //(only incremented in the database by PlantTrackerDAO.nextChangeNumber, so it is never written by an update)
+    @Column(name="change_counter", updatable = false)
+    @JsonIgnore
+    private long changeCounter;
+
     private Account(){}
 
     //Creates a new account
@@ -55,6 +86,7 @@ public class Account {
         this.id = 0;
         this.email = email;
         this.passwordNew = password;
+        this.timezone = DEFAULT_TIMEZONE;
     }
 
     public String getEmail() {
@@ -85,12 +117,37 @@ public class Account {
         this.passwordNew= passwordNew;
     }
 
+    public String getTimezone() {
+        return timezone;
+    }
+
+    public void setTimezone(String timezone) {
+        this.timezone = timezone;
+    }
+
+    /**
+     * Function that returns the timezone of the account as a ZoneId
+     * @return The timezone of the account (UTC if the account has no timezone)
+     */
+    public ZoneId getZoneId(){
+        return ZoneId.of(timezone == null ? DEFAULT_TIMEZONE : timezone);
+    }
+
+    /**
+     * Function that returns the current date of the user in the timezone of the account
+     * @return The current date of the user
+     */
+    public LocalDate currentDate(){
+        return LocalDate.now(getZoneId());
+    }
+
     @Override
     public String toString() {
         return "Account{" +
                 ", email='" + email + '\'' +
                 ", password='" + passwordCurrent + '\'' +
                 ", password_new='" + passwordNew + '\'' +
+                ", timezone='" + timezone + '\'' +
                 '}';
     }
 
@@ -135,6 +192,30 @@ public class Account {
         }
     }
 
+    /**
+     * Function that removes the oldest sessions of the account until it has no more than the provided number of sessions
+     * @param maximumSessions The maximum number of sessions the account should keep
+     * @return The sessions that were removed
+     */
+    public List<Session> removeOldestSessions(int maximumSessions){
+
+        List<Session> removedSessions = new ArrayList<Session>();
+        if(sessions == null || sessions.size() <= maximumSessions)
+            return removedSessions;
+
+        //Order the sessions from oldest to newest
+        List<Session> sessionsByAge = new ArrayList<Session>(sessions);
+        sessionsByAge.sort(Comparator.comparingLong(Session::getTimeCreated));
+
+        //Remove the oldest sessions from the list
+        for(int i = 0; i < sessionsByAge.size() - maximumSessions; i++){
+            removedSessions.add(sessionsByAge.get(i));
+        }
+        sessions.removeAll(removedSessions);
+
+        return removedSessions;
+    }
+
     public Session removeSession(Session theSession){
 
         int removeSessionIndex = -1;
@@ -170,6 +251,43 @@ public class Account {
         return id;
     }
 
+    public long getChangeCounter() {
+        return changeCounter;
+    }
+
+    /**
+     * Function that checks that a timezone is a known region ID
+     * @param timezone The timezone to check
+     * @return The timezone
+     * @throws InvalidTimezoneException Thrown if the timezone is null or is not a known region ID
+     * (fixed offsets such as +05:00 are not accepted since they do not follow daylight saving time)
+     */
+    public static String validTimezone(String timezone) throws InvalidTimezoneException {
+        if(timezone == null || !ZoneId.getAvailableZoneIds().contains(timezone))
+            throw new InvalidTimezoneException("Timezone is not a known region ID");
+
+        return timezone;
+    }
+
+    /**
+     * Function that finds every timezone in which it is currently the provided hour, grouped by the current date
+     * in the timezone (timezones more than 24 hours apart share the hour but not the date)
+     * @param localHour The hour of the day (0-23)
+     * @param instant The current time
+     * @return The timezones in which it is localHour at instant, by their current date
+     */
+    public static Map<LocalDate, List<String>> timezonesAtLocalHour(int localHour, Instant instant){
+
+        Map<LocalDate, List<String>> timezonesByDate = new TreeMap<LocalDate, List<String>>();
+        for(String timezone : new TreeSet<String>(ZoneId.getAvailableZoneIds())){
+            ZonedDateTime localTime = instant.atZone(ZoneId.of(timezone));
+            if(localTime.getHour() == localHour)
+                timezonesByDate.computeIfAbsent(localTime.toLocalDate(), date -> new ArrayList<String>()).add(timezone);
+        }
+
+        return timezonesByDate;
+    }
+
     /**
      * Function that returns a managed instance of an account
      * @param theAccount The account for whom to pull up a managed instance
@@ -184,6 +302,20 @@ public class Account {
         }
     }
 
+    /**
+     * Function that returns a managed instance of an account with its sessions loaded in the same query
+     * @param theAccount The account for whom to pull up a managed instance
+     * @param plantTrackerDAO The DAO which can be used to find the account
+     * @return A managed copy of the account with its sessions loaded
+     * @throws InvalidAccountException Thrown if no account with a matching email and a matching current password is found
+     */
+    public static Account managedInstanceWithSessions(Account theAccount, PlantTrackerDAO plantTrackerDAO) throws InvalidAccountException {
+        try{return plantTrackerDAO.findAccountWithSessions(theAccount);
+        }catch(EmptyResultDataAccessException | NoResultException e){
+            throw new InvalidAccountException("Account with the provided credentials not located in the database");
+        }
+    }
+
     /**
      * Returns true if the ID is the same, meaning unmanaged accounts will register as the same
      * @param o The supposed account that is being compared with this account
@@ -1,9 +1,12 @@
 package com.krisnovak.springboot.demo.planttracker.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import jakarta.persistence.*;
 
+import java.util.Objects;
+
 /**
  * Class that represents information provided by a device attempting to update a timestamp for an associated plant
  */
@@ -20,6 +23,12 @@ public class Device {
     @Transient
     private String accountEmail;
 
+    //Key issued to the device when it registered (a device that provides a key does not need to provide
+    //an account email or a registration ID)
+    @JsonProperty("deviceKey")
+    @Transient
+    private String deviceKey;
+
     public Device(){}
 
     public String getRegistrationID() {
@@ -38,11 +47,46 @@ public class Device {
         this.accountEmail = accountEmail;
     }
 
+    public String getDeviceKey() {
+        return deviceKey;
+    }
+
+    public void setDeviceKey(String deviceKey) {
+        this.deviceKey = deviceKey;
+    }
+
+    /**
+     * Function that indicates whether the device identifies its plant with a device key
+     * (instead of an account email and a registration ID)
+     * @return true if the device provided a device key
+     */
+    public boolean hasDeviceKey(){
+        return deviceKey != null;
+    }
+
+    /**
+     * Function that indicates whether the device provided enough information to identify its plant
+     * @return true if the device provided a device key, or both an account email and a registration ID
+     */
+    public boolean hasCredentials(){
+        return deviceKey != null || (accountEmail != null && registrationID != null);
+    }
+
+    /**
+     * Function that returns the hash of the key provided by the device, which is how the key is stored in its plant
+     * @return The hash of the device key
+     */
+    @JsonIgnore
+    public String getDeviceKeyHash(){
+        return Plant.hashDeviceKey(deviceKey);
+    }
+
     @Override
     public String toString() {
         return "Device{" +
                 "accountEmail=" + accountEmail +
                 ", registrationID='" + registrationID + '\'' +
+                ", hasDeviceKey=" + hasDeviceKey() +
                 '}';
     }
 
@@ -55,6 +99,7 @@ public class Device {
         Device otherDevice = (Device) o;
 
         if(!bothNullOrEqual(otherDevice.getAccountEmail(), this.accountEmail)) return false;
+        if(!bothNullOrEqual(otherDevice.getDeviceKey(), this.deviceKey)) return false;
         return bothNullOrEqual(otherDevice.getRegistrationID(), this.registrationID);
 
     }
@@ -67,6 +112,6 @@ public class Device {
 
     @Override
     public int hashCode(){
-        return this.registrationID.hashCode() + this.accountEmail.hashCode()*31;
+        return Objects.hash(this.registrationID, this.accountEmail, this.deviceKey);
     }
 }
@@ -0,0 +1,20 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if the buffered event of a device could not be written to the database in time,
+ * so the device should report its event again
+ */
+public class DeviceEventNotFlushedException extends RuntimeException{
+
+    public DeviceEventNotFlushedException(String message) {
+        super(message);
+    }
+
+    public DeviceEventNotFlushedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DeviceEventNotFlushedException(Throwable cause) {
+        super(cause);
+    }
+}
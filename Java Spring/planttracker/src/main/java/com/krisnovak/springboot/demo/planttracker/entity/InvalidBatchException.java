@@ -0,0 +1,19 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if a batch of plants provided by a client is too large
+ */
+public class InvalidBatchException extends RuntimeException{
+
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+
+    public InvalidBatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidBatchException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if a change token provided by a client was not issued for its account
+ */
+public class InvalidChangeTokenException extends RuntimeException{
+
+    public InvalidChangeTokenException(String message) {
+        super(message);
+    }
+
+    public InvalidChangeTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidChangeTokenException(Throwable cause) {
+        super(cause);
+    }
+}
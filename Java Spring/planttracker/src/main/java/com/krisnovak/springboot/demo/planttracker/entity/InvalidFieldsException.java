@@ -0,0 +1,19 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if a requested set of fields is empty or includes a field that does not exist
+ */
+public class InvalidFieldsException extends RuntimeException{
+
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+
+    public InvalidFieldsException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidFieldsException(Throwable cause) {
+        super(cause);
+    }
+}
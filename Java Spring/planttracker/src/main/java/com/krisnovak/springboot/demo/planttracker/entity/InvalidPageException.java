@@ -0,0 +1,19 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if a requested page of plants has an unknown sort order or a cursor in the wrong format
+ */
+public class InvalidPageException extends RuntimeException{
+
+    public InvalidPageException(String message) {
+        super(message);
+    }
+
+    public InvalidPageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidPageException(Throwable cause) {
+        super(cause);
+    }
+}
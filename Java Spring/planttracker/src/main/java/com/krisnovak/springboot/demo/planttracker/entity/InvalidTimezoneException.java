@@ -0,0 +1,19 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+/**
+ * Exception that is thrown if an account is given a timezone that is not a known region ID (e.g., America/New_York)
+ */
+public class InvalidTimezoneException extends RuntimeException{
+
+    public InvalidTimezoneException(String message) {
+        super(message);
+    }
+
+    public InvalidTimezoneException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidTimezoneException(Throwable cause) {
+        super(cause);
+    }
+}
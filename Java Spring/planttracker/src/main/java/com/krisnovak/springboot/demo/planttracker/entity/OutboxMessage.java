@@ -0,0 +1,201 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import jakarta.persistence.*;
+
+import java.util.List;
+
+/**
+ * Class used to represent an email that is waiting in the outbox to be delivered by the mail workers.
+ * Messages are deleted once they are delivered, and messages that fail too many times are dead-lettered
+ * (kept in the outbox with a dead status so they can be inspected)
+ */
+@Entity
+@Table(name="outbox_message", indexes = {@Index(name="outbox_message_status_next_attempt_at_idx", columnList="status, next_attempt_at")})
+public class OutboxMessage {
+
+    //Status of a message that is waiting to be delivered
+    public static final String PENDING_STATUS = "pending";
+
+    //Status of a message that failed too many times to be delivered
+    public static final String DEAD_STATUS = "dead";
+
+    //How long the text of a message can be in characters
+    public static final int MAXIMUM_TEXT_LENGTH = 10000;
+
+    //How long the last delivery error of a message can be in characters
+    private static final int MAXIMUM_ERROR_LENGTH = 1000;
+
+    //Largest power of two that the retry backoff is multiplied by (so the backoff does not overflow)
+    private static final int MAXIMUM_BACKOFF_EXPONENT = 16;
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="outbox_message_id_seq")
+    @SequenceGenerator(name="outbox_message_id_seq", sequenceName="outbox_message_id_seq", allocationSize=50)
+    @Column(name="id")
+    private int id;
+
+    //The address to send the message to
+    @Column(name="recipient")
+    private String recipient;
+
+    //The subject header of the message
+    @Column(name="subject")
+    private String subject;
+
+    //The text of the message
+    @Column(name="text", length=MAXIMUM_TEXT_LENGTH)
+    private String text;
+
+    //Whether the message is pending or dead
+    @Column(name="status")
+    private String status;
+
+    //Number of times delivery of the message has failed
+    @Column(name="attempts")
+    private int attempts;
+
+    //The message is not delivered before this time in seconds (also used as the lease of a worker delivering the message)
+    @Column(name="next_attempt_at")
+    private long nextAttemptAt;
+
+    //The error of the last failed delivery (null if delivery has not failed)
+    @Column(name="last_error", length=MAXIMUM_ERROR_LENGTH)
+    private String lastError;
+
+    //When the message was added to the outbox in seconds
+    @Column(name="time_created")
+    private long timeCreated;
+
+    private OutboxMessage(){}
+
+    /**
+     * Function that creates a message that is ready to be delivered
+     * @param recipient The address to send the message to
+     * @param subject The subject header of the message
+     * @param text The text of the message
+     */
+    public OutboxMessage(String recipient, String subject, String text){
+        this.id = 0;
+        this.recipient = recipient;
+        this.subject = subject;
+        this.text = text.length() > MAXIMUM_TEXT_LENGTH ? text.substring(0, MAXIMUM_TEXT_LENGTH) : text;
+        this.status = PENDING_STATUS;
+        this.attempts = 0;
+        this.timeCreated = System.currentTimeMillis()/1000;
+        this.nextAttemptAt = this.timeCreated;
+    }
+
+    //TODO: Check that this function properly escapes characters before sending the email
+    /**
+     * Function that creates a single email to a user listing all of their plants that are due to be watered
+     * @param accountPlants The due plants of one account (with the account loaded), most overdue first
+     * @return The email reminder
+     */
+    public static OutboxMessage digestReminder(List<Plant> accountPlants){
+
+        //The email address linked to the account associated with the plants
+        String email = accountPlants.get(0).getAccount().getEmail();
+
+        //The text to be provided in the email
+        String subject;
+        StringBuilder text = new StringBuilder();
+        if(accountPlants.size() == 1){
+            Plant thePlant = accountPlants.get(0);
+            subject = thePlant.getPlantName() + " is ready to be watered";
+            text.append("It looks like ").append(thePlant.getPlantName()).append(" was set to be watered on ")
+                    .append(thePlant.getNextWateringDate()).append(". Be sure to water it now!");
+        }
+        else{
+            subject = accountPlants.size() + " plants are ready to be watered";
+            text.append("It looks like these plants are ready to be watered:\n\n");
+            for(Plant plant : accountPlants){
+                text.append(plant.getPlantName()).append(" (set to be watered on ").append(plant.getNextWateringDate()).append(")\n");
+            }
+            text.append("\nBe sure to water them now!");
+        }
+
+        return new OutboxMessage(email, subject, text.toString());
+    }
+
+    /**
+     * Function that records that delivery of the message failed. The message is retried with an exponential backoff
+     * until it has failed the maximum number of times, after which it is dead-lettered
+     * @param error The error of the failed delivery
+     * @param maximumAttempts The number of failed deliveries after which the message is dead-lettered
+     * @param retryBackoff How long (in seconds) to wait before retrying after the first failure (doubled after each failure)
+     * @param currentTime The current time in seconds
+     */
+    public void recordFailure(String error, int maximumAttempts, long retryBackoff, long currentTime){
+
+        this.attempts++;
+        this.lastError = (error != null && error.length() > MAXIMUM_ERROR_LENGTH) ? error.substring(0, MAXIMUM_ERROR_LENGTH) : error;
+
+        if(this.attempts >= maximumAttempts){
+            this.status = DEAD_STATUS;
+            return;
+        }
+
+        this.nextAttemptAt = currentTime + (retryBackoff << Math.min(this.attempts - 1, MAXIMUM_BACKOFF_EXPONENT));
+    }
+
+    /**
+     * Function that leases the message to a worker, so no other worker claims it until the lease expires
+     * (if the worker stops before completing the message, the message is delivered again after the lease expires)
+     * @param leaseExpirationTime When the lease expires in seconds
+     */
+    public void lease(long leaseExpirationTime){
+        this.nextAttemptAt = leaseExpirationTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isDead(){
+        return DEAD_STATUS.equals(status);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getTimeCreated() {
+        return timeCreated;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxMessage{" +
+                "id=" + id +
+                ", recipient='" + recipient + '\'' +
+                ", subject='" + subject + '\'' +
+                ", status='" + status + '\'' +
+                ", attempts=" + attempts +
+                ", nextAttemptAt=" + nextAttemptAt +
+                '}';
+    }
+}
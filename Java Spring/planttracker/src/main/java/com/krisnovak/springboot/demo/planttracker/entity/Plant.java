@@ -2,6 +2,7 @@ package com.krisnovak.springboot.demo.planttracker.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.krisnovak.springboot.demo.planttracker.dao.DeviceCache;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import com.krisnovak.springboot.demo.planttracker.service.RandomString;
 import com.krisnovak.springboot.demo.planttracker.service.S3Bucket;
@@ -15,14 +16,27 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class that represents the information associated with a Plant
  */
 @Entity
-@Table(name="plant")
+@Table(name="plant", indexes = {@Index(name="plant_account_id_id_idx", columnList="account_id, id"),
+        @Index(name="plant_account_id_change_number_idx", columnList="account_id, change_number"),
+        @Index(name="plant_account_id_next_watering_date_idx", columnList="account_id, next_watering_date, id"),
+        @Index(name="plant_next_watering_date_id_idx", columnList="next_watering_date, id"),
+        @Index(name="plant_device_key_hash_idx", columnList="device_key_hash", unique=true)})
 public class Plant {
 
     //How long a registration ID can be in characters
@@ -31,9 +45,23 @@ public class Plant {
     //Maximum image resolution to be stored in S3 in KB
     private static final int MAX_IMAGE_RESOLUTION = 1000;
 
+    //Number of plant IDs reserved from the sequence at a time (should match the increment of plant_id_seq
+    //and hibernate.jdbc.batch_size so inserts of new plants can be batched)
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    //Number of seconds in a day
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    //How long a device key is in characters
+    static public final int DEVICE_KEY_LENGTH = 32;
+
+    //Algorithm used to hash device keys before they are stored
+    private static final String DEVICE_KEY_HASH_ALGORITHM = "SHA-256";
+
 
     @Id
-    @GeneratedValue(strategy= GenerationType.IDENTITY)
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="plant_id_seq")
+    @SequenceGenerator(name="plant_id_seq", sequenceName="plant_id_seq", allocationSize=ID_ALLOCATION_SIZE)
     @Column(name="id")
     @JsonProperty("id")
     private int id;
@@ -54,9 +82,42 @@ public class Plant {
     @JsonProperty("registrationID")
     private String registrationID;
 
+    //The date the plant should next be watered (kept in sync with lastWatered and wateringInterval by their setters,
+    //and null if either is not set, so due plants can be found with an index instead of computing the date per row)
+    @Column(name="next_watering_date")
+    @JsonProperty(value="nextWateringDate", access=JsonProperty.Access.READ_ONLY)
+    private LocalDate nextWateringDate;
+
+    //When the last email reminder for the plant was sent in seconds (0 if none was sent since it was last watered)
+    @Column(name="last_reminded_at")
+    @JsonIgnore
+    private long lastRemindedAt;
+
+    //Email reminders for the plant are not sent before this time in seconds (0 if the plant is not snoozed)
+    @Column(name="snoozed_until")
+    @JsonProperty(value="snoozedUntil", access=JsonProperty.Access.READ_ONLY)
+    private long snoozedUntil;
+
     @Column(name="image_key")
     private String imageKey;
 
+    //Hash of the key issued to the device of the plant (null if no device is registered or its key was revoked)
+    //Only the hash is stored, so the keys of devices cannot be read from the database
+    @Column(name="device_key_hash")
+    @JsonIgnore
+    private String deviceKeyHash;
+
+    //Incremented each time the plant is updated (used to compute the ETag of plant responses)
+    @Version
+    @Column(name="version")
+    @JsonIgnore
+    private int version;
+
+    //The change number of the account when the plant was last added or updated (used for delta sync)
+    @Column(name="change_number")
+    @JsonIgnore
+    private long changeNumber;
+
     @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.DETACH, CascadeType.REFRESH})
     @JoinColumn(name="account_id")
     @JsonIgnore
@@ -71,8 +132,15 @@ public class Plant {
      * @throws InvalidSessionException Thrown if the provided session ID is not linked to a valid session
      */
     public Plant(String sessionID, PlantTrackerDAO plantTrackerDAO) throws InvalidSessionException{
+        this(Session.managedInstance(sessionID, plantTrackerDAO));
+    }
+
+    /**
+     * Function used to create a new plant for the account of a session that was already authenticated
+     * @param managedSession The managed session whose account the plant will be linked to
+     */
+    public Plant(Session managedSession){
         this.id = 0;
-        Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
         this.account = managedSession.getAccount();
         this.registrationID = RandomString.generateRandomString(MAXIMUM_REGISTRATION_ID_LENGTH);
         this.imageKey = null;
@@ -107,7 +175,15 @@ public class Plant {
     }
 
     public void setLastWatered(LocalDate lastWatered) {
+
+        //Watering the plant starts a new reminder cycle, so earlier reminders and snoozes no longer apply
+        if(lastWatered != null && !lastWatered.equals(this.lastWatered)){
+            this.lastRemindedAt = 0;
+            this.snoozedUntil = 0;
+        }
+
         this.lastWatered = lastWatered;
+        this.nextWateringDate = computeNextWateringDate(this.lastWatered, this.wateringInterval);
     }
 
     public int getWateringInterval() {
@@ -116,6 +192,81 @@ public class Plant {
 
     public void setWateringInterval(int wateringInterval) {
         this.wateringInterval = wateringInterval;
+        this.nextWateringDate = computeNextWateringDate(this.lastWatered, this.wateringInterval);
+    }
+
+    public LocalDate getNextWateringDate() {
+        return nextWateringDate;
+    }
+
+    public long getLastRemindedAt() {
+        return lastRemindedAt;
+    }
+
+    public long getSnoozedUntil() {
+        return snoozedUntil;
+    }
+
+    /**
+     * Function that stops email reminders from being sent for the plant for a number of days
+     * @param snoozeDays The number of days to snooze the plant for
+     */
+    public void snooze(int snoozeDays){
+        this.snoozedUntil = (System.currentTimeMillis()/1000) + (long) snoozeDays * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Function that computes when the next email reminder for the plant should be sent: the reminder hour of the plant's
+     * next watering date in the timezone of its account, unless the plant is snoozed or was reminded within the last
+     * reminder period, in which case it is the first reminder hour after that (the account must be loaded)
+     * @param reminderLocalHour The local hour (0-23) at which reminders are sent
+     * @param reminderPeriod How long (in seconds) to wait before reminding about the same plant again
+     * @return When the next reminder should be sent in seconds, or -1 if the plant has no next watering date
+     */
+    public long nextReminderTime(int reminderLocalHour, long reminderPeriod){
+        return nextReminderTime(reminderLocalHour, reminderPeriod, lastRemindedAt);
+    }
+
+    /**
+     * Function that computes when the next email reminder for the plant should be sent if it was last reminded at the
+     * given time (e.g., a reminder that was just queued by a bulk update, which does not change the loaded plant)
+     * @param reminderLocalHour The local hour (0-23) at which reminders are sent
+     * @param reminderPeriod How long (in seconds) to wait before reminding about the same plant again
+     * @param remindedAt When the plant was last reminded in seconds (0 if it was never reminded)
+     * @return When the next reminder should be sent in seconds, or -1 if the plant has no next watering date
+     */
+    public long nextReminderTime(int reminderLocalHour, long reminderPeriod, long remindedAt){
+        if(nextWateringDate == null)
+            return -1;
+
+        ZoneId zoneId = account.getZoneId();
+        long dueTime = nextWateringDate.atTime(reminderLocalHour, 0).atZone(zoneId).toEpochSecond();
+        long remindAgainTime = remindedAt == 0 ? 0 : remindedAt + reminderPeriod;
+        long heldUntil = Math.max(snoozedUntil, remindAgainTime);
+
+        if(heldUntil <= dueTime)
+            return dueTime;
+
+        //Round up to the next reminder hour, so a repeat or snoozed reminder still goes out at the local reminder hour
+        LocalDate heldUntilDate = Instant.ofEpochSecond(heldUntil).atZone(zoneId).toLocalDate();
+        long reminderTime = heldUntilDate.atTime(reminderLocalHour, 0).atZone(zoneId).toEpochSecond();
+        if(reminderTime < heldUntil)
+            reminderTime = heldUntilDate.plusDays(1).atTime(reminderLocalHour, 0).atZone(zoneId).toEpochSecond();
+
+        return reminderTime;
+    }
+
+    /**
+     * Function that computes the date a plant should next be watered
+     * @param lastWatered The date the plant was last watered
+     * @param wateringInterval How often the plant should be watered in days
+     * @return The date the plant should next be watered, or null if the plant was never watered or has no watering interval
+     */
+    public static LocalDate computeNextWateringDate(LocalDate lastWatered, int wateringInterval){
+        if(lastWatered == null || wateringInterval < 1)
+            return null;
+
+        return lastWatered.plusDays(wateringInterval);
     }
 
     public String getRegistrationID() {
@@ -137,6 +288,18 @@ public class Plant {
         this.imageKey = imageKey;
     }
 
+    public String getDeviceKeyHash() {
+        return deviceKeyHash;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getChangeNumber() {
+        return changeNumber;
+    }
+
     @Override
     public String toString() {
         return "Plant{" +
@@ -145,115 +308,194 @@ public class Plant {
                 ", imageURL='" + imageURL + '\'' +
                 ", lastWatered=" + lastWatered +
                 ", wateringInterval=" + wateringInterval +
+                ", nextWateringDate=" + nextWateringDate +
                 ", registrationID='" + registrationID + '\'' +
                 '}';
     }
 
     /**
      * Function that returns a managed instance of Plant if the plant ID is linked to an existing plant
-     * and the session ID is linked to the same account as the plant
+     * and the authenticated session is linked to the same account as the plant
      * @param plantID Database ID of the plant to retrieve
-     * @param sessionID Text of the SessionID field in the received cookie in a client request
-     * @param plantTrackerDAO Database Access Object for retrieving the plant and session from the database
-     * @return A managed plant linked to both the plant ID and the session ID
-     * @throws InvalidSessionException Thrown if the session ID is not linked to a valid session
+     * @param managedSession The authenticated session of the client request
+     * @param plantTrackerDAO Database Access Object for retrieving the plant from the database
+     * @return A managed plant linked to both the plant ID and the session
      * @throws InvalidPlantException Thrown if the plant ID has an invalid format (not an integer),
-     * a plant linked to the plant ID does not exist, or the account associated with the session ID
+     * a plant linked to the plant ID does not exist, or the account associated with the session
      * does not match the account associated with the found plant
      */
-    public static Plant managedInstance(String plantID, String sessionID, PlantTrackerDAO plantTrackerDAO) throws InvalidSessionException, InvalidPlantException {
+    public static Plant managedInstance(String plantID, Session managedSession, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException {
+
+        //Return a managed instance of the plant using the integer version of the plant ID
+        return managedInstance(parsePlantID(plantID), managedSession, plantTrackerDAO);
+
+    }
+
+    /**
+     * Function that converts a plant ID provided by a client request to an integer
+     * @param plantID Database ID of the plant (should be an integer)
+     * @return The integer version of the plant ID
+     * @throws InvalidPlantException Thrown if the plant ID has an invalid format (not an integer)
+     */
+    static int parsePlantID(String plantID) throws InvalidPlantException {
 
         //Determine if the provided plant ID is an integer
-        Integer plantIDInt;
-        try{plantIDInt = Integer.valueOf(plantID);
+        try{return Integer.parseInt(plantID);
         }catch(NumberFormatException e){
             throw new InvalidPlantException("Plant ID should be an integer value");
         }
-
-        //Return a managed instance of the plant using the integer version of the plant ID
-        return managedInstance(plantIDInt, sessionID, plantTrackerDAO);
-
     }
 
     /**
      * Function that returns a managed instance of Plant if the plant ID is linked to an existing plant
-     * and the session ID is linked to the same account as the plant
+     * and the authenticated session is linked to the same account as the plant
      * @param plantID Database ID of the plant to retrieve
-     * @param sessionID Text of the SessionID field in the received cookie in a client request
-     * @param plantTrackerDAO Database Access Object for retrieving the plant and session from the database
-     * @return A managed plant linked to both the plant ID and the session ID
-     * @throws InvalidSessionException Thrown if the session ID is not linked to a valid session
+     * @param managedSession The authenticated session of the client request
+     * @param plantTrackerDAO Database Access Object for retrieving the plant from the database
+     * @return A managed plant linked to both the plant ID and the session
      * @throws InvalidPlantException Thrown if a plant linked to the plant ID does not exist or
-     * the account associated with the session ID does not match the account associated with the found plant
+     * the account associated with the session does not match the account associated with the found plant
      */
-    public static Plant managedInstance(int plantID, String sessionID, PlantTrackerDAO plantTrackerDAO) throws InvalidSessionException, InvalidPlantException{
-
-        //First pull up the session from the database
-        Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
+    public static Plant managedInstance(int plantID, Session managedSession, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException{
 
-        //Then verify that the provided plant ID exists
-        Plant managedPlant;
-        try {managedPlant = plantTrackerDAO.findPlantByPlantID(plantID);
+        //Look up the plant only among the plants linked to the account of the session
+        //(a plant linked to another account is reported the same way as a plant that does not exist)
+        try {return plantTrackerDAO.findPlantByPlantIDAndAccountID(plantID, managedSession.getAccount().getId());
         } catch(EmptyResultDataAccessException | NoResultException e){
-            throw new InvalidPlantException("Plant with provided Plant ID does not exist");
-        }
-
-        //Then verify that the account associated with the plant matches the account associated with the session
-        String emailLinkedToPlant = managedPlant.getAccount().getEmail();
-        String emailLinkedToSession = managedSession.getAccount().getEmail();
-
-        if(!emailLinkedToPlant.equals(emailLinkedToSession)){
             throw new InvalidPlantException("Plant ID does not exist with provided account");
         }
 
-        return managedPlant;
-
     }
 
     /**
-     * Function that returns a managed instance of a plant if the device has the right credentials (an account email linked to a Plant registration ID)
+     * Function that issues a new key to a device if the device has the right credentials (an account email linked to a
+     * Plant registration ID), revoking the key issued to a device of the plant before (if any). The credentials are checked
+     * against the device cache and the key is stored by plant ID, so neither the plant nor its account is loaded
      * @param theDevice The connected device with an account email and a plant registration ID
-     * @param plantTrackerDAO The data access object for locating the plant and the account
-     * @return A managed plant linked to both the account email and the plant registration ID
+     * @param plantTrackerDAO The data access object for locating the plant and storing the hash of the key
+     * @return The new device key (only its hash is stored in the plant)
      * @throws InvalidPlantException if the registration ID is not linked to a plant, if the account email is not
      * linked to an account, or if the registration ID and the account email are not linked to the same account
      */
-    public static Plant managedInstance(Device theDevice, PlantTrackerDAO plantTrackerDAO){
+    public static String issueDeviceKey(Device theDevice, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException{
 
         //Set up the error message to throw if something goes wrong
         String errorMessage= "No plant with the registration ID and linked to provided account email could be found";
 
-        //Attempt to grab a managed plant using the provided registration ID
-        Plant managedPlant;
-        try{managedPlant = plantTrackerDAO.findPlantByRegistrationID(theDevice.getRegistrationID());
+        //Registering a device always requires the account email and the registration ID (a device key is not enough)
+        if(theDevice.getRegistrationID() == null || theDevice.getAccountEmail() == null)
+            throw new InvalidPlantException(errorMessage);
+
+        //Find the plant linked to the registration ID (and the email of its account)
+        DeviceCache.CachedDevice cachedDevice;
+        try{cachedDevice = plantTrackerDAO.findDeviceByRegistrationID(theDevice.getRegistrationID());
         }catch(EmptyResultDataAccessException | NoResultException e){
             throw new InvalidPlantException(errorMessage);
         }
 
-        //Grab the account associated with the registration ID
-        Account accountAssociatedWithRegistrationID = managedPlant.getAccount();
-
         //Ensure that the provided email matches the email associated with the plant
-        if(!theDevice.getAccountEmail().equals(accountAssociatedWithRegistrationID.getEmail())){
+        if(!cachedDevice.isLinkedTo(theDevice.getAccountEmail()))
+            throw new InvalidPlantException(errorMessage);
+
+        String deviceKey = RandomString.generateRandomString(DEVICE_KEY_LENGTH);
+
+        //The cached plant may have been deleted by another node since it was cached
+        if(plantTrackerDAO.updateDeviceKeyHash(cachedDevice.getPlantID(), hashDeviceKey(deviceKey)) == 0){
+            plantTrackerDAO.evictCachedDevice(theDevice.getRegistrationID());
             throw new InvalidPlantException(errorMessage);
         }
 
-        return managedPlant;
+        return deviceKey;
     }
 
     /**
-     * Function that returns a list of all plants associated with the account linked to a particular session ID
-     * @param sessionID Text of the SessionID field in the received cookie in a client request
-     * @param plantTrackerDAO Database Access Object for retrieving the plant and session from the database
-     * @return A list of managed plants associated with
-     * @throws InvalidSessionException Thrown if the provided session ID is not linked to a valid session
+     * Function that revokes the key issued to the device of the plant, so the device has to register again
+     */
+    public void revokeDeviceKey(){
+        this.deviceKeyHash = null;
+    }
+
+    /**
+     * Function that hashes a device key the way it is stored in a plant. Device keys are long random strings,
+     * so a single unsalted hash is enough and the plant of a device can be found with an index on the hash
+     * @param deviceKey The key provided by a device
+     * @return The hash of the device key
+     */
+    public static String hashDeviceKey(String deviceKey){
+        try{
+            byte[] hash = MessageDigest.getInstance(DEVICE_KEY_HASH_ALGORITHM).digest(deviceKey.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        }catch(NoSuchAlgorithmException e){
+            throw new RuntimeException("Device key could not be hashed", e);
+        }
+    }
+
+    /**
+     * Function that returns managed instances of the plants with the provided plant IDs if every plant ID is linked
+     * to an existing plant and each plant is linked to the same account as the authenticated session
+     * @param plantIDs Database IDs of the plants to retrieve
+     * @param managedSession The authenticated session of the client request
+     * @param plantTrackerDAO Database Access Object for retrieving the plants from the database (with a single query)
+     * @return The managed plants keyed by plant ID (in the order the plant IDs were provided)
+     * @throws InvalidPlantException Thrown if any of the plant IDs does not exist with the account associated with the session
      */
-    public static List<Plant> allManagedInstances(String sessionID, PlantTrackerDAO plantTrackerDAO) throws InvalidSessionException{
+    public static Map<Integer, Plant> managedInstances(List<Integer> plantIDs, Session managedSession, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException{
 
-        Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
+        //Look up every plant at once among the plants linked to the account of the session
+        Map<Integer, Plant> foundPlants = new HashMap<Integer, Plant>();
+        for(Plant managedPlant : plantTrackerDAO.findPlantsByPlantIDsAndAccountID(plantIDs, managedSession.getAccount().getId())){
+            foundPlants.put(managedPlant.getId(), managedPlant);
+        }
+
+        Map<Integer, Plant> managedPlants = new LinkedHashMap<Integer, Plant>();
+        for(Integer plantID : plantIDs){
+            Plant managedPlant = foundPlants.get(plantID);
+            if(managedPlant == null)
+                throw new InvalidPlantException("Plant ID does not exist with provided account");
+            managedPlants.put(plantID, managedPlant);
+        }
 
-        return plantTrackerDAO.findAllPlants(managedSession.getAccount());
+        return managedPlants;
+    }
+
+    /**
+     * Function that returns one page of the plants associated with the account of an authenticated session
+     * @param managedSession The authenticated session of the client request
+     * @param plantPage The requested page of plants
+     * @param plantTrackerDAO Database Access Object for retrieving the plants from the database
+     * @return A list of managed plants associated with the account of the session, in the sort order of the page
+     */
+    public static List<Plant> managedInstances(Session managedSession, PlantPage plantPage, PlantTrackerDAO plantTrackerDAO){
 
+        return plantTrackerDAO.findPlants(managedSession.getAccount(), plantPage);
+
+    }
+
+    /**
+     * Function that records that the plant was added or updated by giving it the next change number of its account
+     * (should be called within the transaction that adds or updates the plant)
+     * @param plantTrackerDAO Database Access Object for incrementing the change counter of the account
+     */
+    public void recordChange(PlantTrackerDAO plantTrackerDAO){
+        this.changeNumber = plantTrackerDAO.nextChangeNumber(this.account);
+    }
+
+    /**
+     * Function that records that several plants of the same account were added or updated by reserving
+     * a block of change numbers from the account at once (in the order the plants are provided)
+     * @param managedPlants The plants that were added or updated (all linked to the same account)
+     * @param plantTrackerDAO Database Access Object for incrementing the change counter of the account
+     */
+    public static void recordChanges(List<Plant> managedPlants, PlantTrackerDAO plantTrackerDAO){
+
+        if(managedPlants.isEmpty()) return;
+
+        //Reserve one change number per plant with a single statement
+        long changeNumber = plantTrackerDAO.reserveChangeNumbers(managedPlants.get(0).getAccount(), managedPlants.size()) - managedPlants.size();
+
+        for(Plant managedPlant : managedPlants){
+            managedPlant.changeNumber = ++changeNumber;
+        }
     }
 
     /**
@@ -261,7 +503,8 @@ public class Plant {
      * @param s3Bucket The bucket from which an image URL is being retrieved
      */
     public void generateAndSetImageURL(S3Bucket s3Bucket){
-        this.imageURL = s3Bucket.generateImageURL(this.imageKey);
+        //No URL is signed for a plant without an image
+        this.imageURL = (this.imageKey == null) ? null : s3Bucket.generateImageURL(this.imageKey);
     }
 
     /**
@@ -0,0 +1,101 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.service.S3Bucket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that represents the changes made to the plants of an account since a change token held by a client
+ */
+public class PlantChanges {
+
+    //The change token of a client that does not have a copy of the plants yet
+    public static final String INITIAL_CHANGE_TOKEN = "0";
+
+    //The plants that were added or updated since the provided change token
+    @JsonProperty("plants")
+    private final List<Plant> plants;
+
+    //The IDs of the plants that were deleted since the provided change token
+    @JsonProperty("deletedPlantIDs")
+    private final List<Integer> deletedPlantIDs;
+
+    //The change token to provide on the next sync
+    @JsonProperty("token")
+    private final String token;
+
+    public PlantChanges(List<Plant> plants, List<Integer> deletedPlantIDs, String token) {
+        this.plants = plants;
+        this.deletedPlantIDs = deletedPlantIDs;
+        this.token = token;
+    }
+
+    public List<Plant> getPlants() {
+        return plants;
+    }
+
+    public List<Integer> getDeletedPlantIDs() {
+        return deletedPlantIDs;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Function that returns the changes made to the plants of the account of an authenticated session since a change token
+     * @param since The change token returned by the previous sync ("0" if the client does not have a copy of the plants yet)
+     * @param managedSession The authenticated session of the client request
+     * @param plantTrackerDAO Database Access Object for retrieving the changes from the database
+     * @return The plants added or updated and the IDs of the plants deleted since the change token, along with a new change token
+     * @throws InvalidChangeTokenException Thrown if the change token is not a change number that was issued for the account
+     */
+    public static PlantChanges instance(String since, Session managedSession, PlantTrackerDAO plantTrackerDAO) throws InvalidChangeTokenException{
+
+        //Determine if the provided change token is a change number
+        long sinceChangeNumber;
+        try{sinceChangeNumber = Long.parseLong(since);
+        }catch(NumberFormatException e){
+            throw new InvalidChangeTokenException("Change token should be an integer value");
+        }
+
+        Account managedAccount = managedSession.getAccount();
+
+        //Read the change counter before the changes: changes with a higher number may not be committed yet,
+        //so they are left for the next sync
+        long throughChangeNumber = plantTrackerDAO.findChangeCounter(managedAccount);
+
+        if(sinceChangeNumber < 0 || sinceChangeNumber > throughChangeNumber)
+            throw new InvalidChangeTokenException("Change token was not issued for the provided account");
+
+        //A client without a copy of the plants receives all of them (including plants never changed since they were added)
+        if(sinceChangeNumber == 0)
+            return new PlantChanges(plantTrackerDAO.findAllPlants(managedAccount), new ArrayList<Integer>(), Long.toString(throughChangeNumber));
+
+        return new PlantChanges(plantTrackerDAO.findChangedPlants(managedAccount, sinceChangeNumber, throughChangeNumber),
+                plantTrackerDAO.findDeletedPlantIDs(managedAccount, sinceChangeNumber, throughChangeNumber),
+                Long.toString(throughChangeNumber));
+    }
+
+    /**
+     * Function that sets each added or updated plant with an image URL using the provided s3Bucket
+     * @param s3Bucket The bucket from which image URLs are being retrieved
+     */
+    public void generateAndSetImageURLs(S3Bucket s3Bucket){
+        for(Plant plant : plants){
+            plant.generateAndSetImageURL(s3Bucket);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PlantChanges{" +
+                "plants=" + plants +
+                ", deletedPlantIDs=" + deletedPlantIDs +
+                ", token='" + token + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that represents the fields of a plant requested by a client (e.g., fields=id,plantName,imageURL),
+ * so that only the columns behind those fields are read from the database
+ */
+public class PlantFields {
+
+    //Name of the field that holds the presigned image URL
+    public static final String IMAGE_URL_FIELD = "imageURL";
+
+    //The fields that can be requested, mapped to the attribute of Plant that each is read from
+    //(imageURL is generated from the image key)
+    private static final Map<String, String> FIELD_ATTRIBUTES = new LinkedHashMap<String, String>();
+    static {
+        FIELD_ATTRIBUTES.put("id", "id");
+        FIELD_ATTRIBUTES.put("plantName", "plantName");
+        FIELD_ATTRIBUTES.put(IMAGE_URL_FIELD, "imageKey");
+        FIELD_ATTRIBUTES.put("lastWatered", "lastWatered");
+        FIELD_ATTRIBUTES.put("wateringInterval", "wateringInterval");
+        FIELD_ATTRIBUTES.put("nextWateringDate", "nextWateringDate");
+        FIELD_ATTRIBUTES.put("registrationID", "registrationID");
+    }
+
+    //The requested fields in the order they were requested
+    private final List<String> fieldNames;
+
+    private PlantFields(List<String> fieldNames){
+        this.fieldNames = Collections.unmodifiableList(fieldNames);
+    }
+
+    /**
+     * Function that creates the set of requested fields from the text of a fields parameter
+     * @param fields Comma-separated names of plant fields (e.g., "id,plantName")
+     * @return The requested fields (each field is only included once)
+     * @throws InvalidFieldsException Thrown if no fields are provided or a field does not exist
+     */
+    public static PlantFields parse(String fields) throws InvalidFieldsException {
+
+        if(fields == null || fields.isBlank())
+            throw new InvalidFieldsException("No fields were requested");
+
+        List<String> fieldNames = new ArrayList<String>();
+        for(String field : fields.split(",")){
+            String fieldName = field.trim();
+
+            if(!FIELD_ATTRIBUTES.containsKey(fieldName))
+                throw new InvalidFieldsException("Plant does not have a field named " + fieldName);
+
+            if(!fieldNames.contains(fieldName))
+                fieldNames.add(fieldName);
+        }
+
+        return new PlantFields(fieldNames);
+    }
+
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    public boolean contains(String fieldName){
+        return fieldNames.contains(fieldName);
+    }
+
+    /**
+     * Function that returns the attribute of Plant that a field is read from
+     * @param fieldName The name of a requested field
+     * @return The name of the Plant attribute (e.g., imageKey for imageURL)
+     */
+    public String getAttribute(String fieldName){
+        return FIELD_ATTRIBUTES.get(fieldName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof PlantFields)) return false;
+        return fieldNames.equals(((PlantFields) o).fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return fieldNames.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PlantFields{" +
+                "fieldNames=" + fieldNames +
+                '}';
+    }
+}
@@ -0,0 +1,159 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Class that represents which page of the plants of an account is requested by a client: the sort order,
+ * the cursor of the previous page (keyset pagination), an optional due date filter, and the page size
+ */
+public class PlantPage {
+
+    //Sort order of plants by plant ID (the default)
+    public static final String ID_SORT = "id";
+
+    //Sort order of plants by next watering date, most urgent first (plants without a next watering date are left out)
+    public static final String URGENCY_SORT = "urgency";
+
+    //Separates the next watering date from the plant ID in a cursor of the urgency sort order
+    private static final String CURSOR_SEPARATOR = "_";
+
+    //The sort order of the plants
+    private final String sort;
+
+    //The plant ID of the last plant of the previous page (0 for the first page)
+    private final int afterPlantID;
+
+    //The next watering date of the last plant of the previous page (null for the first page or the ID sort order)
+    private final LocalDate afterNextWateringDate;
+
+    //Only plants due to be watered on or before this date are included (null to include every plant)
+    private final LocalDate dueBefore;
+
+    //The maximum number of plants in the page
+    private final int pageSize;
+
+    public PlantPage(String sort, int afterPlantID, LocalDate afterNextWateringDate, LocalDate dueBefore, int pageSize) {
+        this.sort = sort;
+        this.afterPlantID = afterPlantID;
+        this.afterNextWateringDate = afterNextWateringDate;
+        this.dueBefore = dueBefore;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Function that creates the first page of plants in plant ID order
+     * @param pageSize The maximum number of plants in the page
+     * @return The first page of plants
+     */
+    public static PlantPage firstPage(int pageSize){
+        return new PlantPage(ID_SORT, 0, null, null, pageSize);
+    }
+
+    /**
+     * Function that creates a page of plants from the parameters of a client request
+     * @param sort The sort order ("id" or "urgency", "id" if null)
+     * @param after The cursor returned with the previous page (null for the first page)
+     * @param dueBefore Only plants due to be watered on or before this date are included (null to include every plant)
+     * @param pageSize The maximum number of plants in the page
+     * @return The requested page of plants
+     * @throws InvalidPageException Thrown if the sort order is unknown or the cursor does not match the sort order
+     */
+    public static PlantPage parse(String sort, String after, LocalDate dueBefore, int pageSize) throws InvalidPageException {
+
+        if(sort == null)
+            sort = ID_SORT;
+
+        if(!sort.equals(ID_SORT) && !sort.equals(URGENCY_SORT))
+            throw new InvalidPageException("Plants cannot be sorted by " + sort);
+
+        if(after == null || after.isEmpty())
+            return new PlantPage(sort, 0, null, dueBefore, pageSize);
+
+        try{
+            //A cursor of the ID sort order is the last plant ID of the previous page
+            if(sort.equals(ID_SORT))
+                return new PlantPage(sort, Integer.parseInt(after), null, dueBefore, pageSize);
+
+            //A cursor of the urgency sort order is the next watering date and plant ID of the last plant of the previous page
+            int separatorIndex = after.indexOf(CURSOR_SEPARATOR);
+            if(separatorIndex < 0)
+                throw new InvalidPageException("Cursor does not match the urgency sort order");
+
+            return new PlantPage(sort, Integer.parseInt(after.substring(separatorIndex + 1)),
+                    LocalDate.parse(after.substring(0, separatorIndex)), dueBefore, pageSize);
+
+        }catch(NumberFormatException | DateTimeParseException e){
+            throw new InvalidPageException("Cursor does not match the " + sort + " sort order");
+        }
+    }
+
+    /**
+     * Function that returns the cursor that points a client to the page after the provided plant
+     * @param lastPlantID The plant ID of the last plant of this page
+     * @param lastNextWateringDate The next watering date of the last plant of this page
+     * @return The cursor to provide as the after parameter of the next page
+     */
+    public String nextCursor(int lastPlantID, LocalDate lastNextWateringDate){
+        if(isUrgencySort())
+            return lastNextWateringDate + CURSOR_SEPARATOR + lastPlantID;
+
+        return Integer.toString(lastPlantID);
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public boolean isUrgencySort(){
+        return sort.equals(URGENCY_SORT);
+    }
+
+    public int getAfterPlantID() {
+        return afterPlantID;
+    }
+
+    public LocalDate getAfterNextWateringDate() {
+        return afterNextWateringDate;
+    }
+
+    public LocalDate getDueBefore() {
+        return dueBefore;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof PlantPage)) return false;
+
+        PlantPage otherPage = (PlantPage) o;
+        return afterPlantID == otherPage.afterPlantID && pageSize == otherPage.pageSize && sort.equals(otherPage.sort) &&
+                bothNullOrEqual(afterNextWateringDate, otherPage.afterNextWateringDate) && bothNullOrEqual(dueBefore, otherPage.dueBefore);
+    }
+
+    private boolean bothNullOrEqual(Object o1, Object o2){
+        if(o1 == null && o2 == null) return true;
+        if(o1 == null || o2 == null) return false;
+        return o1.equals(o2);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sort.hashCode() + afterPlantID;
+    }
+
+    @Override
+    public String toString() {
+        return "PlantPage{" +
+                "sort='" + sort + '\'' +
+                ", afterPlantID=" + afterPlantID +
+                ", afterNextWateringDate=" + afterNextWateringDate +
+                ", dueBefore=" + dueBefore +
+                ", pageSize=" + pageSize +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import jakarta.persistence.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class used to represent a plant that was deleted, so that clients syncing changes can remove it from their copy
+ */
+@Entity
+@Table(name="plant_tombstone", indexes = {@Index(name="plant_tombstone_account_id_change_number_idx", columnList="account_id, change_number")})
+public class PlantTombstone {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="plant_tombstone_id_seq")
+    @SequenceGenerator(name="plant_tombstone_id_seq", sequenceName="plant_tombstone_id_seq", allocationSize=50)
+    @Column(name="id")
+    private int id;
+
+    //The ID that the deleted plant had in the database
+    @Column(name="plant_id")
+    private int plantID;
+
+    //The change number of the account when the plant was deleted
+    @Column(name="change_number")
+    private long changeNumber;
+
+    //The account that the deleted plant was linked to
+    @ManyToOne
+    @JoinColumn(name="account_id")
+    private Account account;
+
+    private PlantTombstone(){}
+
+    /**
+     * Function that creates a tombstone for a plant that is being deleted using the next change number of its account
+     * (should be called within the transaction that deletes the plant)
+     * @param managedPlant The managed plant that is being deleted
+     * @param plantTrackerDAO Database Access Object for incrementing the change counter of the account
+     */
+    public PlantTombstone(Plant managedPlant, PlantTrackerDAO plantTrackerDAO) {
+        this(managedPlant, plantTrackerDAO.nextChangeNumber(managedPlant.getAccount()));
+    }
+
+    private PlantTombstone(Plant managedPlant, long changeNumber) {
+        this.id = 0;
+        this.plantID = managedPlant.getId();
+        this.account = managedPlant.getAccount();
+        this.changeNumber = changeNumber;
+    }
+
+    /**
+     * Function that creates tombstones for several plants of the same account that are being deleted by reserving
+     * a block of change numbers from the account at once (should be called within the transaction that deletes the plants)
+     * @param managedPlants The managed plants that are being deleted (all linked to the same account)
+     * @param plantTrackerDAO Database Access Object for incrementing the change counter of the account
+     * @return A tombstone for each plant (in the order the plants are provided)
+     */
+    public static List<PlantTombstone> newInstances(List<Plant> managedPlants, PlantTrackerDAO plantTrackerDAO){
+
+        List<PlantTombstone> plantTombstones = new ArrayList<PlantTombstone>();
+        if(managedPlants.isEmpty()) return plantTombstones;
+
+        //Reserve one change number per plant with a single statement
+        long changeNumber = plantTrackerDAO.reserveChangeNumbers(managedPlants.get(0).getAccount(), managedPlants.size()) - managedPlants.size();
+
+        for(Plant managedPlant : managedPlants){
+            plantTombstones.add(new PlantTombstone(managedPlant, ++changeNumber));
+        }
+
+        return plantTombstones;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPlantID() {
+        return plantID;
+    }
+
+    public long getChangeNumber() {
+        return changeNumber;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    @Override
+    public String toString() {
+        return "PlantTombstone{" +
+                "id=" + id +
+                ", plantID=" + plantID +
+                ", changeNumber=" + changeNumber +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.service.S3Bucket;
+import jakarta.persistence.NoResultException;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Class that represents the version of a plant (read without loading the plant itself)
+ * and is used to compute the ETag of a plant response
+ */
+public class PlantVersion {
+
+    //Algorithm used to hash plant versions into an ETag
+    private static final String ETAG_ALGORITHM = "SHA-256";
+
+    //The ID of the plant in the database
+    private final int plantID;
+
+    //The number of times the plant has been updated
+    private final int version;
+
+    //Whether the plant has an image (its response then includes a presigned image URL)
+    private final boolean hasImage;
+
+    public PlantVersion(int plantID, int version, String imageKey) {
+        this.plantID = plantID;
+        this.version = version;
+        this.hasImage = (imageKey != null);
+    }
+
+    public int getPlantID() {
+        return plantID;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean hasImage() {
+        return hasImage;
+    }
+
+    /**
+     * Function that returns the version of a plant if the plant ID is linked to an existing plant
+     * and the authenticated session is linked to the same account as the plant
+     * @param plantID Database ID of the plant (should be an integer)
+     * @param managedSession The authenticated session of the client request
+     * @param plantTrackerDAO Database Access Object for retrieving the version from the database
+     * @return The version of the plant
+     * @throws InvalidPlantException Thrown if the plant ID has an invalid format (not an integer),
+     * or a plant linked to the plant ID does not exist with the account associated with the session
+     */
+    public static PlantVersion instance(String plantID, Session managedSession, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException {
+
+        int plantIDInt = Plant.parsePlantID(plantID);
+
+        try{return plantTrackerDAO.findPlantVersionByPlantIDAndAccountID(plantIDInt, managedSession.getAccount().getId());
+        }catch(EmptyResultDataAccessException | NoResultException e){
+            throw new InvalidPlantException("Plant ID does not exist with provided account");
+        }
+    }
+
+    /**
+     * Function that returns the versions of one page of the plants associated with the account of an authenticated session
+     * @param managedSession The authenticated session of the client request
+     * @param plantPage The requested page of plants
+     * @param plantTrackerDAO Database Access Object for retrieving the versions from the database
+     * @return The versions of the plants in the page, in the sort order of the page
+     */
+    public static List<PlantVersion> instances(Session managedSession, PlantPage plantPage, PlantTrackerDAO plantTrackerDAO){
+
+        return plantTrackerDAO.findPlantVersions(managedSession.getAccount(), plantPage);
+
+    }
+
+    /**
+     * Function that computes a strong ETag for a response made up of the provided plants. The ETag changes whenever
+     * a plant in the response is added, updated, or deleted, and (for responses that include image URLs)
+     * whenever previously presigned image URLs may be close to expiring
+     * @param plantVersions The versions of the plants in the response
+     * @param plantFields The requested fields of the response (null if every field is returned)
+     * @return The quoted ETag of the response
+     */
+    public static String eTag(List<PlantVersion> plantVersions, PlantFields plantFields){
+
+        StringBuilder representation = new StringBuilder(plantFields == null ? "*" : String.join(",", plantFields.getFieldNames()));
+
+        boolean includesImageURL = false;
+        for(PlantVersion plantVersion : plantVersions){
+            representation.append(';').append(plantVersion.plantID).append(':').append(plantVersion.version);
+            includesImageURL |= plantVersion.hasImage;
+        }
+
+        //Presigned image URLs expire, so a cached response that includes them is only reused within a window
+        if(includesImageURL && (plantFields == null || plantFields.contains(PlantFields.IMAGE_URL_FIELD)))
+            representation.append(";window:").append(System.currentTimeMillis() / S3Bucket.IMAGE_URL_REUSE_WINDOW_IN_MILLISECONDS);
+
+        try{
+            byte[] hash = MessageDigest.getInstance(ETAG_ALGORITHM).digest(representation.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        }catch(NoSuchAlgorithmException e){
+            throw new RuntimeException("ETag could not be computed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PlantVersion{" +
+                "plantID=" + plantID +
+                ", version=" + version +
+                ", hasImage=" + hasImage +
+                '}';
+    }
+}
@@ -0,0 +1,126 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.service.S3Bucket;
+import jakarta.persistence.NoResultException;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that represents the requested fields of a plant (it is serialized with only those fields)
+ */
+public class PlantView {
+
+    //The ID of the plant in the database (used as the cursor for the next page even if id is not requested)
+    @JsonIgnore
+    private final int plantID;
+
+    //The image key of the plant (only read if imageURL is requested)
+    @JsonIgnore
+    private String imageKey;
+
+    //The next watering date of the plant (used as part of the cursor for the next page of the urgency sort order)
+    @JsonIgnore
+    private LocalDate nextWateringDate;
+
+    //The requested fields and their values, in the order they were requested
+    private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+
+    public PlantView(int plantID){
+        this.plantID = plantID;
+    }
+
+    public int getPlantID() {
+        return plantID;
+    }
+
+    public String getImageKey() {
+        return imageKey;
+    }
+
+    public void setImageKey(String imageKey) {
+        this.imageKey = imageKey;
+    }
+
+    public LocalDate getNextWateringDate() {
+        return nextWateringDate;
+    }
+
+    public void setNextWateringDate(LocalDate nextWateringDate) {
+        this.nextWateringDate = nextWateringDate;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+
+    public Object getField(String fieldName){
+        return fields.get(fieldName);
+    }
+
+    public void setField(String fieldName, Object value){
+        fields.put(fieldName, value);
+    }
+
+    /**
+     * Function that sets the imageURL field to a presigned URL if imageURL was requested
+     * (no URL is signed for a plant without an image)
+     * @param s3Bucket The bucket from which an image URL is being retrieved
+     */
+    public void generateAndSetImageURL(S3Bucket s3Bucket){
+        if(!fields.containsKey(PlantFields.IMAGE_URL_FIELD))
+            return;
+
+        fields.put(PlantFields.IMAGE_URL_FIELD, imageKey == null ? null : s3Bucket.generateImageURL(imageKey));
+    }
+
+    /**
+     * Function that returns the requested fields of a plant if the plant ID is linked to an existing plant
+     * and the authenticated session is linked to the same account as the plant
+     * @param plantID Database ID of the plant to retrieve (should be an integer)
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields
+     * @param plantTrackerDAO Database Access Object for retrieving the plant from the database
+     * @return The requested fields of the plant
+     * @throws InvalidPlantException Thrown if the plant ID has an invalid format (not an integer),
+     * or a plant linked to the plant ID does not exist with the account associated with the session
+     */
+    public static PlantView instance(String plantID, Session managedSession, PlantFields plantFields, PlantTrackerDAO plantTrackerDAO) throws InvalidPlantException {
+
+        int plantIDInt = Plant.parsePlantID(plantID);
+
+        try{return plantTrackerDAO.findPlantViewByPlantIDAndAccountID(plantIDInt, managedSession.getAccount().getId(), plantFields);
+        }catch(EmptyResultDataAccessException | NoResultException e){
+            throw new InvalidPlantException("Plant ID does not exist with provided account");
+        }
+    }
+
+    /**
+     * Function that returns the requested fields of one page of the plants associated with the account of an authenticated session
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields
+     * @param plantPage The requested page of plants
+     * @param plantTrackerDAO Database Access Object for retrieving the plants from the database
+     * @return The requested fields of the plants, in the sort order of the page
+     */
+    public static List<PlantView> instances(Session managedSession, PlantFields plantFields, PlantPage plantPage, PlantTrackerDAO plantTrackerDAO){
+
+        return plantTrackerDAO.findPlantViews(managedSession.getAccount(), plantFields, plantPage);
+
+    }
+
+    @Override
+    public String toString() {
+        return "PlantView{" +
+                "plantID=" + plantID +
+                ", fields=" + fields +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Class used to represent one shard of the email reminder work. The accounts are split into shards by their ID, and each
+ * node running the email reminder leases shards from the database so every shard is processed by exactly one node per run
+ */
+@Entity
+@Table(name="reminder_shard")
+public class ReminderShard {
+
+    //The shard number (accounts whose ID modulo the number of shards equals the shard number belong to the shard)
+    @Id
+    @Column(name="id")
+    private int id;
+
+    //The shard is not claimed before this time in seconds (pushed back while a node holds the lease and after each run)
+    @Column(name="next_run_at")
+    private long nextRunAt;
+
+    //When a node last finished sending the reminders of the shard in seconds (0 if it was never run)
+    @Column(name="last_completed_at")
+    private long lastCompletedAt;
+
+    private ReminderShard(){}
+
+    /**
+     * Function that creates a shard that can be claimed right away
+     * @param id The shard number
+     */
+    public ReminderShard(int id){
+        this.id = id;
+        this.nextRunAt = 0;
+        this.lastCompletedAt = 0;
+    }
+
+    /**
+     * Function that leases the shard to a node, so no other node claims it until the lease expires
+     * (if the node stops before completing the shard, the shard is claimed again after the lease expires)
+     * @param leaseExpirationTime When the lease expires in seconds
+     */
+    public void lease(long leaseExpirationTime){
+        this.nextRunAt = leaseExpirationTime;
+    }
+
+    /**
+     * Function that records that a node finished sending the reminders of the shard
+     * @param completedAt When the reminders were sent in seconds
+     * @param nextRunAt When the shard can be claimed again in seconds
+     */
+    public void complete(long completedAt, long nextRunAt){
+        this.lastCompletedAt = completedAt;
+        this.nextRunAt = nextRunAt;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getNextRunAt() {
+        return nextRunAt;
+    }
+
+    public long getLastCompletedAt() {
+        return lastCompletedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ReminderShard{" +
+                "id=" + id +
+                ", nextRunAt=" + nextRunAt +
+                ", lastCompletedAt=" + lastCompletedAt +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Class used to represent a signed session token that was revoked (logged out) before it expired, or every signed
+ * session token issued to an account before a point in time
+ */
+@Entity
+@Table(name="revoked_session_token")
+public class RevokedSessionToken {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.IDENTITY)
+    @Column(name="id")
+    private int id;
+
+    //The signature of the revoked token (null if every token of the account was revoked)
+    @Column(name="signature")
+    private String signature;
+
+    //The database ID of the account whose tokens were all revoked (null if a single token was revoked)
+    @Column(name="account_id")
+    private Integer accountID;
+
+    //When the revoked token expires in seconds (after which the revocation no longer needs to be kept)
+    @Column(name="expiration_time")
+    private long expirationTime;
+
+    //When the token was revoked in milliseconds (used by other nodes to find revocations made since they last refreshed,
+    //and to tell tokens issued before a revocation of every token of an account from tokens issued in the same second after it)
+    @Column(name="revoked_at")
+    private long revokedAt;
+
+    private RevokedSessionToken(){}
+
+    /**
+     * Function that creates a new revoked session token
+     * @param signature The signature of the revoked token
+     * @param expirationTime When the revoked token expires in seconds
+     */
+    public RevokedSessionToken(String signature, long expirationTime) {
+        this.id = 0;
+        this.signature = signature;
+        this.expirationTime = expirationTime;
+        this.revokedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Function that creates a revocation of every token issued to an account so far (e.g., when the account is deleted
+     * or its password is changed)
+     * @param accountID The database ID of the account
+     * @return A revocation that lasts until the last token issued to the account so far expires
+     */
+    public static RevokedSessionToken forAccount(int accountID){
+        long revokedAt = System.currentTimeMillis();
+        RevokedSessionToken revokedSessionToken = new RevokedSessionToken(null, (revokedAt/1000) + Session.MAXIMUM_COOKIE_AGE);
+        revokedSessionToken.accountID = accountID;
+        revokedSessionToken.revokedAt = revokedAt;
+        return revokedSessionToken;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public Integer getAccountID() {
+        return accountID;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+
+    /**
+     * Function that checks if the revoked token is expired
+     * @return true if the revoked token is expired and false if it is not expired
+     */
+    public boolean isExpired(){
+        return (System.currentTimeMillis()/1000) > expirationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RevokedSessionToken{" +
+                "id=" + id +
+                ", signature='" + signature + '\'' +
+                ", accountID=" + accountID +
+                ", expirationTime=" + expirationTime +
+                ", revokedAt=" + revokedAt +
+                '}';
+    }
+}
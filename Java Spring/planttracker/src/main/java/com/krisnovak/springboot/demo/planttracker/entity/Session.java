@@ -11,7 +11,7 @@ import org.springframework.http.ResponseCookie;
  * Class used to represent a session linked to an account
  */
 @Entity
-@Table(name="session")
+@Table(name="session", indexes = {@Index(name="session_expiration_time_idx", columnList="expiration_time")})
 public class Session {
 
     //Constant used to set cookie length (in number of characters)
@@ -36,6 +36,10 @@ public class Session {
     @Column(name="time_created")
     long timeCreated;
 
+    //When the cookie expires in seconds (time created plus max age, stored so expired sessions can be found by index)
+    @Column(name="expiration_time")
+    long expirationTime;
+
     //The account linked to the session
     @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.DETACH, CascadeType.REFRESH})
     @JoinColumn(name="account_id")
@@ -52,11 +56,40 @@ public class Session {
      * does not have a username and password that matches one in the database)
      */
     public Session(Account theAccount, PlantTrackerDAO plantTrackerDAO) throws InvalidAccountException {
+        this(Account.managedInstance(theAccount, plantTrackerDAO));
+    }
+
+    /**
+     * Function that creates a new session for an account that was already retrieved from the database
+     * @param managedAccount The managed account to link to the session
+     */
+    public Session(Account managedAccount) {
         this.id = 0;
         this.sessionID = RandomString.generateRandomString(MAXIMUM_SESSION_ID_LENGTH);
         this.timeCreated = System.currentTimeMillis() / 1000;
         this.maxAge = MAXIMUM_COOKIE_AGE;
-        this.account = Account.managedInstance(theAccount, plantTrackerDAO);
+        this.expirationTime = this.timeCreated + this.maxAge;
+        this.account = managedAccount;
+    }
+
+    /**
+     * Function that creates an unmanaged session that is carried by a signed session token
+     * instead of being stored in the database
+     * @param sessionID The signed session token
+     * @param theAccount The account linked to the session
+     * @param timeCreated When the session was created in seconds
+     * @param maxAge How long the session is valid for in seconds
+     * @return An unmanaged session
+     */
+    public static Session signedInstance(String sessionID, Account theAccount, long timeCreated, int maxAge){
+        Session signedSession = new Session();
+        signedSession.id = 0;
+        signedSession.sessionID = sessionID;
+        signedSession.account = theAccount;
+        signedSession.timeCreated = timeCreated;
+        signedSession.maxAge = maxAge;
+        signedSession.expirationTime = timeCreated + maxAge;
+        return signedSession;
     }
 
     public int getId() {
@@ -83,6 +116,7 @@ public class Session {
 
     public void setMaxAge(int maxAge) {
         this.maxAge = maxAge;
+        this.expirationTime = this.timeCreated + maxAge;
     }
 
     public long getTimeCreated() {
@@ -91,6 +125,11 @@ public class Session {
 
     public void setTimeCreated(long timeCreated) {
         this.timeCreated = timeCreated;
+        this.expirationTime = timeCreated + this.maxAge;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
     }
 
     @Override
@@ -131,6 +170,21 @@ public class Session {
         }
     }
 
+    /**
+     * Function that returns a managed instance of a Session along with all the sessions of its account
+     * (for use when the account's sessions are going to be modified)
+     * @param sessionID Text of the Session ID in the cookie provided by the client request
+     * @param plantTrackerDAO The Data Access Object used to retrieve the managed session from the database
+     * @return A managed session whose account has its sessions loaded
+     * @throws InvalidSessionException Thrown if the session ID is not linked to a valid session
+     */
+    public static Session managedInstanceWithAccountSessions(String sessionID, PlantTrackerDAO plantTrackerDAO) throws InvalidSessionException {
+        try{return plantTrackerDAO.findSessionWithAccountSessions(sessionID);
+        }catch(EmptyResultDataAccessException | NoResultException e){
+            throw new InvalidSessionException("Session with the provided ID not located in the database");
+        }
+    }
+
     /**
      * Function that creates a response cookie using the configured fields of the session
      * @return A response cookie
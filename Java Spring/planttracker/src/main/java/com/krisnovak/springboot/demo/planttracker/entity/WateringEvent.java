@@ -0,0 +1,128 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that represents a press of a device's button recorded by the device (e.g., while it was offline),
+ * uploaded along with other presses to POST /devices/events
+ */
+public class WateringEvent {
+
+    //Registration ID of a Plant
+    @JsonProperty("registrationID")
+    private String registrationID;
+
+    //email associated with an account
+    @JsonProperty("accountEmail")
+    private String accountEmail;
+
+    //Key issued to the device when it registered (used instead of the account email and the registration ID)
+    @JsonProperty("deviceKey")
+    private String deviceKey;
+
+    //When the button was pressed in seconds
+    @JsonProperty("wateredAt")
+    private long wateredAt;
+
+    public WateringEvent(){}
+
+    /**
+     * Function that creates a watering event
+     * @param registrationID Registration ID of the plant
+     * @param accountEmail email associated with the account of the plant
+     * @param wateredAt When the plant was watered in seconds
+     */
+    public WateringEvent(String registrationID, String accountEmail, long wateredAt){
+        this.registrationID = registrationID;
+        this.accountEmail = accountEmail;
+        this.wateredAt = wateredAt;
+    }
+
+    /**
+     * Function that creates a watering event recorded by a device that identifies its plant with a device key
+     * @param deviceKey Key issued to the device when it registered
+     * @param wateredAt When the plant was watered in seconds
+     */
+    public WateringEvent(String deviceKey, long wateredAt){
+        this.deviceKey = deviceKey;
+        this.wateredAt = wateredAt;
+    }
+
+    public String getRegistrationID() {
+        return registrationID;
+    }
+
+    public String getAccountEmail() {
+        return accountEmail;
+    }
+
+    public String getDeviceKey() {
+        return deviceKey;
+    }
+
+    public long getWateredAt() {
+        return wateredAt;
+    }
+
+    /**
+     * Function that returns the device that recorded the event
+     * @return A device with the account email, the plant registration ID, and the device key of the event
+     */
+    @JsonIgnore
+    public Device getDevice(){
+        Device theDevice = new Device();
+        theDevice.setAccountUsername(this.accountEmail);
+        theDevice.setRegistrationID(this.registrationID);
+        theDevice.setDeviceKey(this.deviceKey);
+        return theDevice;
+    }
+
+    /**
+     * Function that keeps only the latest event of each device, since only the last time a plant was watered is stored
+     * (events from the future, e.g., from a device whose clock is ahead, are moved back to the current time)
+     * @param theWateringEvents The uploaded events, in any order
+     * @param currentTime The current time in seconds
+     * @return The latest event of each device, in the order each device first appears
+     * @throws InvalidBatchException Thrown if an event is missing its time, or both its device key and either its
+     * registration ID or its account email
+     */
+    public static List<WateringEvent> latestByDevice(List<WateringEvent> theWateringEvents, long currentTime) throws InvalidBatchException{
+
+        Map<Device, WateringEvent> latestEvents = new LinkedHashMap<Device, WateringEvent>();
+        for(WateringEvent theWateringEvent : theWateringEvents){
+
+            if(!theWateringEvent.getDevice().hasCredentials() || theWateringEvent.wateredAt <= 0)
+                throw new InvalidBatchException("Each event must include a device key (or a registration ID and an account email) and the time it occurred");
+
+            WateringEvent latestEvent = latestEvents.get(theWateringEvent.getDevice());
+            if(latestEvent == null || theWateringEvent.wateredAt > latestEvent.wateredAt)
+                latestEvents.put(theWateringEvent.getDevice(), theWateringEvent);
+        }
+
+        List<WateringEvent> coalescedEvents = new ArrayList<WateringEvent>();
+        for(WateringEvent latestEvent : latestEvents.values()){
+            WateringEvent coalescedEvent = new WateringEvent(latestEvent.registrationID, latestEvent.accountEmail,
+                    Math.min(latestEvent.wateredAt, currentTime));
+            coalescedEvent.deviceKey = latestEvent.deviceKey;
+            coalescedEvents.add(coalescedEvent);
+        }
+
+        return coalescedEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "WateringEvent{" +
+                "accountEmail=" + accountEmail +
+                ", registrationID='" + registrationID + '\'' +
+                ", hasDeviceKey=" + (deviceKey != null) +
+                ", wateredAt=" + wateredAt +
+                '}';
+    }
+}
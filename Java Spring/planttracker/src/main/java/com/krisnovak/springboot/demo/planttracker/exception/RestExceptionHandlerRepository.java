@@ -1,10 +1,18 @@
 package com.krisnovak.springboot.demo.planttracker.exception;
 
+import com.krisnovak.springboot.demo.planttracker.entity.DeviceEventNotFlushedException;
 import com.krisnovak.springboot.demo.planttracker.entity.InvalidAccountException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidBatchException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidChangeTokenException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidFieldsException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidPageException;
 import com.krisnovak.springboot.demo.planttracker.entity.InvalidPlantException;
 import com.krisnovak.springboot.demo.planttracker.entity.InvalidSessionException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidTimezoneException;
 import com.krisnovak.springboot.demo.planttracker.rest.HTTPResponseBody;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -42,6 +50,71 @@ public class RestExceptionHandlerRepository {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(httpResponseBody);
     }
 
+    /**
+     * Function that returns a bad request HTTP message if an InvalidBatchException is thrown
+     * @param e The InvalidBatchException
+     * @return An HTTP message indicating a bad request message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleInvalidBatchException(InvalidBatchException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.BAD_REQUEST, "INVALID_BATCH");
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a bad request HTTP message if an InvalidPageException is thrown
+     * @param e The InvalidPageException
+     * @return An HTTP message indicating a bad request message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleInvalidPageException(InvalidPageException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.BAD_REQUEST, "INVALID_PAGE");
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a bad request HTTP message if an InvalidTimezoneException is thrown
+     * @param e The InvalidTimezoneException
+     * @return An HTTP message indicating a bad request message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleInvalidTimezoneException(InvalidTimezoneException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.BAD_REQUEST, "INVALID_TIMEZONE");
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a bad request HTTP message if an InvalidChangeTokenException is thrown
+     * @param e The InvalidChangeTokenException
+     * @return An HTTP message indicating a bad request message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleInvalidChangeTokenException(InvalidChangeTokenException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.BAD_REQUEST, "INVALID_CHANGE_TOKEN");
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a bad request HTTP message if an InvalidFieldsException is thrown
+     * @param e The InvalidFieldsException
+     * @return An HTTP message indicating a bad request message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleInvalidFieldsException(InvalidFieldsException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.BAD_REQUEST, "INVALID_FIELDS");
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(httpResponseBody);
+    }
+
     /**
      * Function that returns a not found HTTP message if an InvalidSessionException is thrown
      * @param e The InvalidSessionException
@@ -55,6 +128,48 @@ public class RestExceptionHandlerRepository {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(httpResponseBody);
     }
 
+    /**
+     * Function that returns a forbidden HTTP message if the account of a signed session no longer exists
+     * (a signed session only holds a reference to its account, which is checked the first time the account is used)
+     * @param e The EntityNotFoundException
+     * @return An HTTP message indicating a forbidden message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleEntityNotFoundException(EntityNotFoundException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.FORBIDDEN, "INVALID_COOKIE");
+
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a conflict HTTP message if a plant was changed by another request (e.g., a device being
+     * pressed) between the time it was read and the time the update was committed
+     * @param e The OptimisticLockingFailureException
+     * @return An HTTP message indicating a conflict message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleOptimisticLockingFailureException(OptimisticLockingFailureException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.CONFLICT, "PLANT_CONFLICT");
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(httpResponseBody);
+    }
+
+    /**
+     * Function that returns a service unavailable HTTP message if the buffered event of a device could not be written to
+     * the database in time (the device should report its event again)
+     * @param e The DeviceEventNotFlushedException
+     * @return An HTTP message indicating a service unavailable message
+     */
+    @ExceptionHandler
+    public ResponseEntity<HTTPResponseBody> handleDeviceEventNotFlushedException(DeviceEventNotFlushedException e){
+
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.SERVICE_UNAVAILABLE, "DEVICE_EVENT_NOT_FLUSHED");
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(httpResponseBody);
+    }
+
     /**
      * Function that returns a bad request HTTP message if an IO Exception is thrown without being caught
      * @param e The IOException
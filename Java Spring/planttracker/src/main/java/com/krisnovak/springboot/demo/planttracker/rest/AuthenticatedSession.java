@@ -0,0 +1,15 @@
+package com.krisnovak.springboot.demo.planttracker.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that marks a Session parameter of a controller method as the authenticated session of the request.
+ * The session is resolved from the sessionId cookie by AuthenticatedSessionArgumentResolver once per request.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AuthenticatedSession {
+}
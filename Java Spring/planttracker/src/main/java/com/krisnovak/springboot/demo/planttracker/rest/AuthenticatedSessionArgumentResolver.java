@@ -0,0 +1,71 @@
+package com.krisnovak.springboot.demo.planttracker.rest;
+
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidSessionException;
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Class that resolves the sessionId cookie of a request to the authenticated session
+ * for controller parameters annotated with AuthenticatedSession. The session is looked up once per request
+ * and kept as a request attribute, so the rest of the request does not need to look it up again.
+ */
+@Component
+public class AuthenticatedSessionArgumentResolver implements HandlerMethodArgumentResolver {
+
+    //Name of the cookie that holds the session ID
+    public static final String SESSION_COOKIE_NAME = "sessionId";
+
+    //Name of the request attribute that holds the authenticated session once it has been resolved
+    public static final String AUTHENTICATED_SESSION_ATTRIBUTE = AuthenticatedSessionArgumentResolver.class.getName() + ".SESSION";
+
+    private PlantTrackerService plantTrackerService;
+
+    @Autowired
+    public AuthenticatedSessionArgumentResolver(PlantTrackerService thePlantTrackerService) {
+        plantTrackerService = thePlantTrackerService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(AuthenticatedSession.class)
+                && Session.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    /**
+     * Function that returns the authenticated session of the request
+     * (the session stays managed for the rest of the request since the persistence context is kept open for the whole request)
+     * @return The managed session linked to the sessionId cookie of the request
+     * @throws InvalidSessionException Thrown if the cookie is missing or is not linked to a valid session
+     */
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws InvalidSessionException {
+
+        //Return the session if it was already resolved during this request
+        Object authenticatedSession = webRequest.getAttribute(AUTHENTICATED_SESSION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(authenticatedSession != null)
+            return authenticatedSession;
+
+        //Grab the session ID from the cookie of the request (an empty session ID is never linked to a session)
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        Cookie sessionCookie = request == null ? null : WebUtils.getCookie(request, SESSION_COOKIE_NAME);
+        String sessionID = sessionCookie == null ? "" : sessionCookie.getValue();
+
+        //Resolve the session and keep it for the rest of the request
+        Session managedSession = plantTrackerService.authenticate(sessionID);
+        webRequest.setAttribute(AUTHENTICATED_SESSION_ATTRIBUTE, managedSession, RequestAttributes.SCOPE_REQUEST);
+
+        return managedSession;
+    }
+}
@@ -2,16 +2,20 @@ package com.krisnovak.springboot.demo.planttracker.rest;
 
 import com.krisnovak.springboot.demo.planttracker.entity.*;
 import com.krisnovak.springboot.demo.planttracker.service.*;
-import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @CrossOrigin()
@@ -19,11 +23,43 @@ import java.util.List;
 @RequestMapping("/api/v1")
 public class PlantTrackerRestController {
 
+    //Name of the response header that holds the cursor for the next page of plants
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private PlantTrackerService plantTrackerService;
 
+    //Number of plants returned by GET /plants when no limit is requested
+    private int plantPageSize;
+
+    //Buffer of device events (only used when device updates are written behind)
+    private DeviceEventBuffer deviceEventBuffer;
+
+    //Largest number of watering events that a device can upload at once
+    private int maximumWateringEventBatchSize;
+
+    //Largest number of plants that GET /plants returns at once
+    private int maximumPlantPageSize;
+
+    //Largest number of plants that a single batch request can add, update, or delete
+    private int maximumPlantBatchSize;
+
+    //Largest number of days that a plant can be snoozed for at once
+    private int maximumSnoozeDays;
+
     @Autowired
-    public PlantTrackerRestController(PlantTrackerService thePlantTrackerService) {
+    public PlantTrackerRestController(PlantTrackerService thePlantTrackerService, DeviceEventBuffer theDeviceEventBuffer,
+                                      @Value("${planttracker.plants.page-size:50}") int thePlantPageSize,
+                                      @Value("${planttracker.plants.maximum-page-size:200}") int theMaximumPlantPageSize,
+                                      @Value("${planttracker.plants.maximum-batch-size:200}") int theMaximumPlantBatchSize,
+                                      @Value("${planttracker.reminders.maximum-snooze-days:30}") int theMaximumSnoozeDays,
+                                      @Value("${planttracker.devices.maximum-event-batch-size:500}") int theMaximumWateringEventBatchSize) {
         plantTrackerService = thePlantTrackerService;
+        deviceEventBuffer = theDeviceEventBuffer;
+        plantPageSize = thePlantPageSize;
+        maximumPlantPageSize = theMaximumPlantPageSize;
+        maximumPlantBatchSize = theMaximumPlantBatchSize;
+        maximumSnoozeDays = theMaximumSnoozeDays;
+        maximumWateringEventBatchSize = theMaximumWateringEventBatchSize;
     }
 
     /**
@@ -128,6 +164,28 @@ public class PlantTrackerRestController {
         return ResponseEntity.ok().body(httpResponseBody);
     }
 
+    /**
+     * Function that changes the timezone of the account associated with a cookie/session
+     * @param timezone The new timezone (a region ID such as America/New_York)
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return An HTTP response with an OK status
+     * @throws InvalidSessionException Thrown if the provided session ID does not match with any sessions in the database
+     * @throws InvalidTimezoneException Thrown if the timezone is not a known region ID
+     */
+    @PutMapping("/account/timezone")
+    public ResponseEntity<HTTPResponseBody> changeTimezone(@RequestParam(name = "timezone") String timezone,
+                                                           @AuthenticatedSession Session managedSession) {
+
+        //Attempt to change the timezone
+        plantTrackerService.changeTimezone(managedSession, timezone);
+
+        //Create body of message to send back to client
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.OK, "TIMEZONE_CHANGED");
+
+        //return message back to the client
+        return ResponseEntity.ok().body(httpResponseBody);
+    }
+
     /**
      * Function that attempts to delete an account
      * @param theAccount Account with an email and a current password (passwordCurrent) to be verified
@@ -148,34 +206,129 @@ public class PlantTrackerRestController {
     }
 
     /**
-     * Function that gets information about all plants linked to an account associated with a cookie/session (via the provided session ID)
-     * @param sessionID The text provided by the cookie in its sessionID field
-     * @return A list of all the plants linked to an account associated with the provided session ID
+     * Function that gets information about one page of the plants linked to an account associated with a cookie/session
+     * (plants are ordered by plant ID or, most urgent first, by next watering date, and the next page starts after
+     * the cursor given in the X-Next-Cursor header)
+     * @param after The cursor returned with the previous page (absent for the first page)
+     * @param limit The maximum number of plants to return (the configured page size if absent)
+     * @param fields Comma-separated plant fields to return (every field if absent). Image URLs are only generated
+     * if imageURL is included
+     * @param sort The sort order of the plants: "id" (the default) or "urgency" (plants without a next watering date are left out)
+     * @param dueBefore Only plants due to be watered on or before this date (yyyy-MM-dd) are returned (every plant if absent)
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @param webRequest The request (used to compare its If-None-Match header with the ETag of the page)
+     * @return A page of the plants linked to an account associated with the provided session ID and its ETag,
+     * with an X-Next-Cursor header if there may be more plants after this page
+     * (or a Not Modified status without a body if the page matches the If-None-Match header)
      * @throws InvalidSessionException Thrown if the provided session ID does not match with any sessions in the database
+     * @throws InvalidFieldsException Thrown if fields is empty or includes a field that plants do not have
+     * @throws InvalidPageException Thrown if the sort order is unknown or the cursor does not match the sort order
      */
     @GetMapping("/plants")
-    public ResponseEntity<List<Plant>> getPlants(@CookieValue(name = "sessionId", defaultValue = "") String sessionID) {
+    public ResponseEntity<List<?>> getPlants(@RequestParam(name = "after", required = false) String after,
+                                             @RequestParam(name = "limit", required = false) Integer limit,
+                                             @RequestParam(name = "fields", required = false) String fields,
+                                             @RequestParam(name = "sort", required = false) String sort,
+                                             @RequestParam(name = "dueBefore", required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueBefore,
+                                             @AuthenticatedSession Session managedSession,
+                                             WebRequest webRequest) {
+
+        //Use the configured page size unless a valid limit was requested
+        int pageSize = (limit == null || limit < 1) ? plantPageSize : Math.min(limit, maximumPlantPageSize);
+        PlantPage plantPage = PlantPage.parse(sort, after, dueBefore, pageSize);
+        PlantFields plantFields = (fields == null) ? null : PlantFields.parse(fields);
+
+        //Respond with Not Modified before loading any plants if the client already has this page
+        String eTag = plantTrackerService.findPlantsETag(managedSession, plantFields, plantPage);
+        if(webRequest.checkNotModified(eTag))
+            return null;
+
+        //Retrieve the page of plants linked to the provided session ID (only the requested fields if fields were provided)
+        List<?> thePlants;
+        String nextCursor = null;
+        if(plantFields == null){
+            List<Plant> plants = plantTrackerService.findPlants(managedSession, plantPage);
+            if(!plants.isEmpty()){
+                Plant lastPlant = plants.get(plants.size() - 1);
+                nextCursor = plantPage.nextCursor(lastPlant.getId(), lastPlant.getNextWateringDate());
+            }
+            thePlants = plants;
+        }
+        else{
+            List<PlantView> plantViews = plantTrackerService.findPlantViews(managedSession, plantFields, plantPage);
+            if(!plantViews.isEmpty()){
+                PlantView lastPlantView = plantViews.get(plantViews.size() - 1);
+                nextCursor = plantPage.nextCursor(lastPlantView.getPlantID(), lastPlantView.getNextWateringDate());
+            }
+            thePlants = plantViews;
+        }
+
+        //Clients should revalidate the page with its ETag before reusing it
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate());
+
+        //A full page means there may be more plants, so point the client to the next page
+        if(thePlants.size() == pageSize)
+            responseBuilder.header(NEXT_CURSOR_HEADER, nextCursor);
+
+        return responseBuilder.body(thePlants);
+    }
+
+    /**
+     * Function that returns the changes made to the plants linked to an account associated with a cookie/session
+     * since a change token held by the client (so a client keeping a copy of its plants only downloads what changed)
+     * @param since The change token returned by the previous sync (0 or absent if the client does not have a copy yet)
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return The plants added or updated and the IDs of the plants deleted since the change token, along with a new change token
+     * @throws InvalidSessionException Thrown if the provided session ID does not match with any sessions in the database
+     * @throws InvalidChangeTokenException Thrown if the change token was not issued for the account
+     */
+    @GetMapping("/plants/changes")
+    public ResponseEntity<PlantChanges> getPlantChanges(@RequestParam(name = "since", defaultValue = PlantChanges.INITIAL_CHANGE_TOKEN) String since,
+                                                        @AuthenticatedSession Session managedSession){
+
+        //Return the changes made after the change token to the plants linked to the session ID
+        return ResponseEntity.ok().body(plantTrackerService.findPlantChanges(since, managedSession));
 
-        //Return all the plants linked to the provided session ID
-        return ResponseEntity.ok().body(plantTrackerService.findPlants(sessionID));
     }
 
     /**
      * Function that returns information about a particular plant within the database
      * @param plantID The ID of the plant stored within the database (should be an integer)
-     * @param sessionID The text provided by the cookie in its sessionID field
-     * @return The requested plant and its associated information
+     * @param fields Comma-separated plant fields to return (every field if absent). The image URL is only generated
+     * if imageURL is included
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @param webRequest The request (used to compare its If-None-Match header with the ETag of the plant)
+     * @return The requested plant and its associated information and ETag
+     * (or a Not Modified status without a body if the plant matches the If-None-Match header)
      * @throws InvalidSessionException Thrown if the provided session ID does not match
      * with any sessions in the database
      * @throws InvalidPlantException Thrown if the plant ID is not an integer,
      * if the plant with the associated ID does not exist in the database,
      * or if the plant does exist but is linked with a different account
+     * @throws InvalidFieldsException Thrown if fields is empty or includes a field that plants do not have
      */
     @GetMapping("/plants/{plantID}")
-    public ResponseEntity<Plant> getPlant(@PathVariable String plantID, @CookieValue(name = "sessionId", defaultValue = "") String sessionID){
+    public ResponseEntity<?> getPlant(@PathVariable String plantID,
+                                      @RequestParam(name = "fields", required = false) String fields,
+                                      @AuthenticatedSession Session managedSession,
+                                      WebRequest webRequest){
+
+        PlantFields plantFields = (fields == null) ? null : PlantFields.parse(fields);
+
+        //Respond with Not Modified before loading the plant if the client already has this version of it
+        String eTag = plantTrackerService.findPlantETag(plantID, managedSession, plantFields);
+        if(webRequest.checkNotModified(eTag))
+            return null;
+
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate());
+
+        //Return only the requested fields of the plant if fields were provided
+        if(plantFields != null)
+            return responseBuilder.body(plantTrackerService.findPlantViewByPlantID(plantID, managedSession, plantFields));
 
         //Return the requested plant with the plant ID and linked to the session ID
-        return ResponseEntity.ok().body(plantTrackerService.findPlantByPlantID(plantID, sessionID));
+        return responseBuilder.body(plantTrackerService.findPlantByPlantID(plantID, managedSession));
 
     }
 
@@ -183,28 +336,54 @@ public class PlantTrackerRestController {
      * Function that attempts to add a plant to the database
      * (registration ID and Plant ID will be set by this function)
      * @param thePlant The plant to add to the database
-     * @param sessionID The text provided by the cookie in its sessionID field
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
      * @return The new plant (with its new registration ID and Plant ID)
      * @throws InvalidSessionException Thrown if the provided session ID does not match
      * with any sessions in the database
      * @throws DataIntegrityViolationException Thrown if any of the parameters of plant are too long
      */
     @PostMapping("/plants")
-    public ResponseEntity<Plant> addPlant(@RequestBody Plant thePlant, @CookieValue(name = "sessionId", defaultValue = "") String sessionID) {
+    public ResponseEntity<Plant> addPlant(@RequestBody Plant thePlant, @AuthenticatedSession Session managedSession) {
 
         //Add a new plant to the database
-        Plant newPlant = plantTrackerService.addPlant(thePlant, sessionID);
+        Plant newPlant = plantTrackerService.addPlant(thePlant, managedSession);
 
         //Send an HTTP response to the client with the new plant
         return ResponseEntity.ok().body(newPlant);
     }
 
+    /**
+     * Function that stops email reminders from being sent for a plant for a number of days
+     * (watering the plant ends the snooze)
+     * @param plantID The ID of the plant to snooze
+     * @param days The number of days to snooze the plant for (1 if absent, capped at the configured maximum)
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return The snoozed plant, including the time (in seconds) until which it is snoozed
+     * @throws InvalidSessionException Thrown if the provided session ID does not match
+     * with any sessions in the database
+     * @throws InvalidPlantException Thrown if the provided ID does not match any plants in the database linked to the account associated with the session/cookie
+     */
+    @PutMapping("/plants/{plantID}/snooze")
+    public ResponseEntity<Plant> snoozePlant(@PathVariable String plantID,
+                                             @RequestParam(name = "days", required = false) Integer days,
+                                             @AuthenticatedSession Session managedSession) {
+
+        //Snooze for a day unless a valid number of days was requested
+        int snoozeDays = (days == null || days < 1) ? 1 : Math.min(days, maximumSnoozeDays);
+
+        //Snooze the plant in the database
+        Plant snoozedPlant = plantTrackerService.snoozePlant(plantID, managedSession, snoozeDays);
+
+        //Send the snoozed plant to the client
+        return ResponseEntity.ok().body(snoozedPlant);
+    }
+
     /**
      * Function that attempts to update a plant in the database
      * if it exists and is linked to the same account as the provided session
      * (registration ID will not be updated by this function nor will image, imageKey, or imageURL)
      * @param thePlant The plant to add to the database
-     * @param sessionID The text provided by the cookie in its sessionID field
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
      * @return The updated plant
      * @throws InvalidSessionException Thrown if the provided session ID does not match
      * with any sessions in the database
@@ -212,10 +391,10 @@ public class PlantTrackerRestController {
      * @throws DataIntegrityViolationException Thrown if any of the parameters of plant are too long
      */
     @PutMapping("/plants")
-    public ResponseEntity<Plant> updatePlant(@RequestBody Plant thePlant, @CookieValue(name = "sessionId", defaultValue = "") String sessionID) {
+    public ResponseEntity<Plant> updatePlant(@RequestBody Plant thePlant, @AuthenticatedSession Session managedSession) {
 
         //Update the plant in the database
-        Plant updatedPlant = plantTrackerService.updatePlant(thePlant, sessionID);
+        Plant updatedPlant = plantTrackerService.updatePlant(thePlant, managedSession);
 
         //Send the updated plant to the client
         return ResponseEntity.ok().body(updatedPlant);
@@ -227,7 +406,7 @@ public class PlantTrackerRestController {
      * (this function only updates image-related fields)
      * @param file The file that contains the image in a multipart/form-data format
      * @param plantID The ID of the plant in the database (should be an integer)
-     * @param sessionID The text provided by the cookie in its sessionID field
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
      * @return The updated plant with an image URL linking to the new image
      * @throws InvalidSessionException Thrown if the provided session ID does not match
      * with any sessions in the database
@@ -236,12 +415,12 @@ public class PlantTrackerRestController {
     @PutMapping("/plants/{plantID}")
     public ResponseEntity<Plant> updatePlantImage(  @RequestParam("file") MultipartFile file,
                                                     @PathVariable String plantID,
-                                                    @CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+                                                    @AuthenticatedSession Session managedSession)
                                                     throws IOException{
 
         //Update the image of the plant linked to the plantID and session ID with the image stored
         //in the file
-        Plant thePlant = plantTrackerService.updatePlantImage(plantID, sessionID, file);
+        Plant thePlant = plantTrackerService.updatePlantImage(plantID, managedSession, file);
 
         //Send an HTTP response back to the client with a plant that has an updated image URL
         return ResponseEntity.ok().body(thePlant);
@@ -250,57 +429,164 @@ public class PlantTrackerRestController {
     /**
      * Function that attempts to delete a plant from the database
      * @param plantID The ID of the plant in the database (should be an integer)
-     * @param sessionID The text provided by the cookie in its sessionID field
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
      * @return The information of the deleted plant
      * @throws InvalidSessionException Thrown if the provided session ID does not match
      * with any sessions in the database
      * @throws InvalidPlantException Thrown if the provided ID does not match any plants in the database linked to the account associated with the session/cookie
      */
     @DeleteMapping("/plants/{plantID}")
-    public ResponseEntity<Plant> deletePlant(@PathVariable String plantID, @CookieValue(name = "sessionId", defaultValue = "") String sessionID) throws IOException{
+    public ResponseEntity<Plant> deletePlant(@PathVariable String plantID, @AuthenticatedSession Session managedSession) throws IOException{
 
         //Attempt to delete the plant linked with the plant ID and session ID from the database
-        Plant thePlant= plantTrackerService.deletePlant(plantID, sessionID);
+        Plant thePlant= plantTrackerService.deletePlant(plantID, managedSession);
 
         //Return back an HTTP response to the client
         return ResponseEntity.ok().body(thePlant);
     }
 
     /**
-     * Function that attempts to verify that the Plant registration ID and Account email provided by a device exist and are linked
-     * Note that there is no need to actually store information about the Device in the database
+     * Function that attempts to add several plants to the database in a single transaction
+     * (registration IDs and Plant IDs will be set by this function)
+     * @param thePlants The plants to add to the database
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return The new plants (with their new registration IDs and Plant IDs) in the order they were provided
+     * @throws InvalidSessionException Thrown if the provided session ID does not match
+     * with any sessions in the database
+     * @throws InvalidBatchException Thrown if more plants are provided than the maximum batch size
+     * @throws DataIntegrityViolationException Thrown if any of the parameters of a plant are too long
+     */
+    @PostMapping("/plants/batch")
+    public ResponseEntity<List<Plant>> addPlants(@RequestBody List<Plant> thePlants, @AuthenticatedSession Session managedSession) {
+
+        checkBatchSize(thePlants);
+
+        //Add the new plants to the database
+        List<Plant> newPlants = plantTrackerService.addPlants(thePlants, managedSession);
+
+        //Send an HTTP response to the client with the new plants
+        return ResponseEntity.ok().body(newPlants);
+    }
+
+    /**
+     * Function that attempts to update several plants in the database in a single transaction
+     * if they exist and are linked to the same account as the provided session (no plant is updated otherwise)
+     * @param thePlants The plants to update in the database
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return The updated plants
+     * @throws InvalidSessionException Thrown if the provided session ID does not match
+     * with any sessions in the database
+     * @throws InvalidBatchException Thrown if more plants are provided than the maximum batch size
+     * @throws InvalidPlantException Thrown if any provided ID does not match a plant in the database linked to the account associated with the session/cookie
+     * @throws DataIntegrityViolationException Thrown if any of the parameters of a plant are too long
+     */
+    @PutMapping("/plants/batch")
+    public ResponseEntity<List<Plant>> updatePlants(@RequestBody List<Plant> thePlants, @AuthenticatedSession Session managedSession) {
+
+        checkBatchSize(thePlants);
+
+        //Update the plants in the database
+        List<Plant> updatedPlants = plantTrackerService.updatePlants(thePlants, managedSession);
+
+        //Send the updated plants to the client
+        return ResponseEntity.ok().body(updatedPlants);
+    }
+
+    /**
+     * Function that attempts to delete several plants from the database in a single transaction
+     * if they exist and are linked to the same account as the provided session (no plant is deleted otherwise)
+     * @param plantIDs The IDs of the plants in the database
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return The information of the deleted plants
+     * @throws InvalidSessionException Thrown if the provided session ID does not match
+     * with any sessions in the database
+     * @throws InvalidBatchException Thrown if more plant IDs are provided than the maximum batch size
+     * @throws InvalidPlantException Thrown if any provided ID does not match a plant in the database linked to the account associated with the session/cookie
+     */
+    @DeleteMapping("/plants/batch")
+    public ResponseEntity<List<Plant>> deletePlants(@RequestBody List<Integer> plantIDs, @AuthenticatedSession Session managedSession) {
+
+        checkBatchSize(plantIDs);
+
+        //Attempt to delete the plants linked with the plant IDs and session ID from the database
+        List<Plant> thePlants = plantTrackerService.deletePlants(plantIDs, managedSession);
+
+        //Return back an HTTP response to the client
+        return ResponseEntity.ok().body(thePlants);
+    }
+
+    /**
+     * Function that checks that a batch request does not include more items than the maximum batch size
+     * @param batch The plants or plant IDs provided by the batch request
+     * @throws InvalidBatchException Thrown if the batch is larger than the maximum batch size
+     */
+    private void checkBatchSize(List<?> batch) throws InvalidBatchException{
+        if(batch.size() > maximumPlantBatchSize)
+            throw new InvalidBatchException("A batch can include at most " + maximumPlantBatchSize + " plants");
+    }
+
+    /**
+     * Function that attempts to verify that the Plant registration ID and Account email provided by a device exist and are linked,
+     * and issues the device a key to send instead of them (only the hash of the key is stored, in the plant)
      * @param theDevice The information provided by the device
-     * @return An HTTP message with an OK status indicating that the email and registration ID are linked
+     * @return The registration ID of the plant along with the new device key
      * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided email
      * and registrationID
      */
     @PostMapping("/devices")
-    public ResponseEntity<HTTPResponseBody> registerDevice(@RequestBody Device theDevice) {
+    public ResponseEntity<Device> registerDevice(@RequestBody Device theDevice) {
 
-        //Confirm that the registration ID and email within the device are linked
-        plantTrackerService.confirmDeviceRegistration(theDevice);
+        //Confirm that the registration ID and email within the device are linked and issue a new key to the device
+        String deviceKey = plantTrackerService.registerDevice(theDevice);
 
-        //Create body of the HTTP response to send to the client
-        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.OK, "DEVICE_VALID");
+        //Only send back the device key and the registration ID it was issued for
+        Device registeredDevice = new Device();
+        registeredDevice.setRegistrationID(theDevice.getRegistrationID());
+        registeredDevice.setDeviceKey(deviceKey);
 
         //Send HTTP response to the client
+        return ResponseEntity.ok().body(registeredDevice);
+    }
+
+    /**
+     * Function that revokes the key issued to the device of a plant (the device has to register again to update the plant)
+     * @param plantID The ID of the plant in the database (should be an integer)
+     * @param managedSession The authenticated session linked to the sessionId cookie of the request
+     * @return An HTTP message with an OK status indicating that the device key was revoked
+     * @throws InvalidSessionException Thrown if the provided session ID does not match
+     * with any sessions in the database
+     * @throws InvalidPlantException Thrown if the provided ID does not match any plants in the database linked to the account associated with the session/cookie
+     */
+    @DeleteMapping("/plants/{plantID}/device")
+    public ResponseEntity<HTTPResponseBody> revokeDeviceKey(@PathVariable String plantID, @AuthenticatedSession Session managedSession) {
+
+        //Revoke the key of the device linked to the plant
+        plantTrackerService.revokeDeviceKey(plantID, managedSession);
+
+        //Create the HTTP body to send to the client
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.OK, "DEVICE_KEY_REVOKED");
+
+        //Send back the HTTP response to the client
         return ResponseEntity.ok().body(httpResponseBody);
     }
 
     /**
-     * Function that attempts to verify that updates a timestamp of a plant if the device provides
-     * a valid Account email and Plant Registration ID that are linked
+     * Function that attempts to verify that updates a timestamp of a plant if the device provides a valid device key,
+     * or a valid Account email and Plant Registration ID that are linked
      * @param theDevice The information provided by the device
      * @return An HTTP message with an OK status indicating that the timestamp was updated
-     * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided email
-     * and registrationID
+     * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided device key,
+     * or with the provided email and registrationID
+     * @throws DeviceEventNotFlushedException Thrown in buffered mode with flush durability if the flush holding the event
+     * failed or did not commit in time
      */
     @PutMapping("/devices")
-    @Transactional
     public ResponseEntity<HTTPResponseBody> updateTimestamp(@RequestBody Device theDevice) {
 
-        //Attempt to update the timestamp associated with the Plant whose registration ID is indicated by the device
-        plantTrackerService.updateTimestamp(theDevice);
+        //In buffered mode, hand the event to the write-behind buffer (the plant is updated right away if the buffer is full)
+        //Otherwise, attempt to update the timestamp associated with the Plant whose registration ID is indicated by the device
+        if(!deviceEventBuffer.submit(theDevice))
+            plantTrackerService.updateTimestamp(theDevice);
 
         //Create the HTTP body to send to the client
         HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.OK, "TIMESTAMP_UPDATED");
@@ -308,4 +594,30 @@ public class PlantTrackerRestController {
         //Send back the HTTP response to the client
         return ResponseEntity.ok().body(httpResponseBody);
     }
+
+    /**
+     * Function that applies the watering events a device recorded while it could not connect (keeping the latest event
+     * of each plant), so a device can upload all of its presses over one connection
+     * @param theWateringEvents The events recorded by the device, possibly for several registration IDs
+     * @return An HTTP message with an OK status indicating that the events were applied (events whose device key was
+     * revoked, or whose account email and registration ID are not linked, are skipped so the device can discard every
+     * uploaded event)
+     * @throws InvalidBatchException Thrown if more events are provided than the maximum batch size or an event is
+     * missing its time or its credentials (a device key, or a registration ID and an account email)
+     */
+    @PostMapping("/devices/events")
+    public ResponseEntity<HTTPResponseBody> uploadWateringEvents(@RequestBody List<WateringEvent> theWateringEvents) {
+
+        if(theWateringEvents.size() > maximumWateringEventBatchSize)
+            throw new InvalidBatchException("A batch can include at most " + maximumWateringEventBatchSize + " events");
+
+        //Apply every event in a single transaction
+        plantTrackerService.applyWateringEvents(theWateringEvents);
+
+        //Create the HTTP body to send to the client
+        HTTPResponseBody httpResponseBody = HTTPResponseBody.newInstance(HttpStatus.OK, "EVENTS_APPLIED");
+
+        //Send back the HTTP response to the client
+        return ResponseEntity.ok().body(httpResponseBody);
+    }
 }
@@ -0,0 +1,272 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.entity.DeviceEventNotFlushedException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidPlantException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class used to buffer the watering events of devices when device updates are written behind. PUT /devices appends each
+ * event to a lock-free queue and DeviceConfig flushes the buffered events as one batch of updates, so a burst of devices
+ * reporting at once (e.g., after a power outage) takes a few transactions instead of one per device.
+ * In memory durability a device is acknowledged as soon as its event is buffered (events that were not flushed yet are lost
+ * if the node stops), and in flush durability a device is acknowledged once the flush that applied its event has committed
+ */
+@Component
+public class DeviceEventBuffer {
+
+    //Device mode in which each PUT /devices updates its plant in its own transaction (the default)
+    public static final String DIRECT_DEVICE_MODE = "direct";
+
+    //Device mode in which PUT /devices events are buffered and flushed in batches
+    public static final String BUFFERED_DEVICE_MODE = "buffered";
+
+    //Durability in which a device is acknowledged once its event is buffered (the default)
+    public static final String MEMORY_DURABILITY = "memory";
+
+    //Durability in which a device is acknowledged once its event is flushed to the database
+    public static final String FLUSH_DURABILITY = "flush";
+
+    //Whether buffered mode is enabled
+    private final boolean enabled;
+
+    //Whether devices wait for their events to be flushed before they are acknowledged
+    private final boolean waitForFlush;
+
+    //Largest number of events held by the buffer (devices reporting while the buffer is full update their plants right away)
+    private final int capacity;
+
+    //How long (in milliseconds) a device waits for its event to be flushed in flush durability
+    //(a device that waits longer updates its plant right away, or is asked to report again if a flush is holding its event)
+    private final long flushTimeout;
+
+    //The events waiting to be flushed, oldest first
+    private final ConcurrentLinkedQueue<DeviceEvent> events;
+
+    //Number of events waiting to be flushed (kept separately since the size of the queue takes linear time)
+    private final AtomicInteger size;
+
+    //Number of distinct devices updated by the last flush
+    private volatile int lastFlushBatchSize;
+
+    //How long (in milliseconds) the oldest event of the last flush waited in the buffer before the flush committed
+    private volatile long lastFlushLag;
+
+    //Number of events that were flushed (including events coalesced with another event of the same device)
+    private final AtomicLong flushedEventCount;
+
+    //Number of events that were coalesced with another event of the same device in the same flush
+    private final AtomicLong coalescedEventCount;
+
+    //Number of events that were not buffered because the buffer was full
+    private final AtomicLong overflowEventCount;
+
+    //Number of events whose device stopped waiting for a flush in flush durability
+    private final AtomicLong timedOutEventCount;
+
+    public DeviceEventBuffer(@Value("${planttracker.devices.mode:direct}") String theDeviceMode,
+                             @Value("${planttracker.devices.durability:memory}") String theDurability,
+                             @Value("${planttracker.devices.buffer-capacity:100000}") int theCapacity,
+                             @Value("${planttracker.devices.flush-timeout:10000}") long theFlushTimeout){
+        enabled = BUFFERED_DEVICE_MODE.equalsIgnoreCase(theDeviceMode);
+        waitForFlush = FLUSH_DURABILITY.equalsIgnoreCase(theDurability);
+        capacity = theCapacity;
+        flushTimeout = theFlushTimeout;
+        events = new ConcurrentLinkedQueue<DeviceEvent>();
+        size = new AtomicInteger();
+        flushedEventCount = new AtomicLong();
+        coalescedEventCount = new AtomicLong();
+        overflowEventCount = new AtomicLong();
+        timedOutEventCount = new AtomicLong();
+    }
+
+    /**
+     * Function that indicates whether device events should be buffered instead of updating each plant right away
+     * @return true if buffered mode is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Function that hands the watering event of a device to the buffer (and, in flush durability, waits for it to be flushed)
+     * @param theDevice The device with a device key (or an account email and a plant registration ID)
+     * @return true if the event was buffered, or false if buffered mode is disabled, the buffer is full, the device is
+     * missing its credentials, or no flush picked up the event within the flush timeout in flush durability (in which
+     * case the plant should be updated right away)
+     * @throws InvalidPlantException Thrown in flush durability if the flush found no plant with the device key, or with
+     * the registration ID linked to the account email
+     * @throws DeviceEventNotFlushedException Thrown in flush durability if the flush holding the event failed or did not
+     * commit within the flush timeout
+     */
+    public boolean submit(Device theDevice) throws InvalidPlantException, DeviceEventNotFlushedException{
+
+        if(!enabled || !theDevice.hasCredentials())
+            return false;
+
+        //Reserve a place in the buffer (a device reporting while the buffer is full waits for its own update instead)
+        if(size.incrementAndGet() > capacity){
+            size.decrementAndGet();
+            overflowEventCount.incrementAndGet();
+            return false;
+        }
+
+        DeviceEvent theDeviceEvent = new DeviceEvent(theDevice, System.currentTimeMillis());
+        events.add(theDeviceEvent);
+
+        if(!waitForFlush)
+            return true;
+
+        try{
+            if(!theDeviceEvent.flushed.get(flushTimeout, TimeUnit.MILLISECONDS))
+                throw new InvalidPlantException("No plant with the device key, or with the registration ID and linked to provided account email, could be found");
+        }catch(TimeoutException e){
+            timedOutEventCount.incrementAndGet();
+
+            //If no flush has picked up the event yet, take it back so the plant is updated right away instead
+            if(events.remove(theDeviceEvent)){
+                size.decrementAndGet();
+                return false;
+            }
+
+            //Otherwise a flush is holding the event but has not committed, so the device cannot be acknowledged yet
+            throw new DeviceEventNotFlushedException("The flush holding the device event did not commit in time", e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new DeviceEventNotFlushedException("Interrupted while waiting for the device event to be flushed", e);
+        }catch(ExecutionException e){
+            throw new DeviceEventNotFlushedException("Buffered device events could not be flushed", e.getCause());
+        }
+
+        return true;
+    }
+
+    /**
+     * Function that removes the oldest events from the buffer so they can be flushed
+     * @param maximumEventCount The largest number of events to remove
+     * @return The removed events, oldest first
+     */
+    public List<DeviceEvent> drain(int maximumEventCount){
+
+        List<DeviceEvent> drainedEvents = new ArrayList<DeviceEvent>();
+
+        DeviceEvent theDeviceEvent;
+        while(drainedEvents.size() < maximumEventCount && (theDeviceEvent = events.poll()) != null){
+            drainedEvents.add(theDeviceEvent);
+        }
+        size.addAndGet(-drainedEvents.size());
+
+        return drainedEvents;
+    }
+
+    /**
+     * Function that records that drained events were flushed, acknowledging the devices waiting for them
+     * @param flushedEvents The events that were drained for the flush
+     * @param updatedDevices The devices whose plants were updated by the flush
+     * @param flushedDeviceCount The number of distinct devices in the flush
+     */
+    public void complete(List<DeviceEvent> flushedEvents, Collection<Device> updatedDevices, int flushedDeviceCount){
+
+        if(flushedEvents.isEmpty()) return;
+
+        long oldestBufferedAt = Long.MAX_VALUE;
+        for(DeviceEvent theDeviceEvent : flushedEvents){
+            theDeviceEvent.flushed.complete(updatedDevices.contains(theDeviceEvent.getDevice()));
+            oldestBufferedAt = Math.min(oldestBufferedAt, theDeviceEvent.getBufferedAt());
+        }
+
+        lastFlushBatchSize = flushedDeviceCount;
+        lastFlushLag = System.currentTimeMillis() - oldestBufferedAt;
+        flushedEventCount.addAndGet(flushedEvents.size());
+        coalescedEventCount.addAndGet(flushedEvents.size() - flushedDeviceCount);
+    }
+
+    /**
+     * Function that records that drained events could not be flushed. In memory durability the devices were already
+     * acknowledged, so the events are put back to be retried by the next flush, while in flush durability the waiting
+     * devices are failed so they report again
+     * @param failedEvents The events that were drained for the flush
+     * @param e The error that stopped the flush
+     */
+    public void fail(List<DeviceEvent> failedEvents, RuntimeException e){
+
+        for(DeviceEvent theDeviceEvent : failedEvents){
+            if(waitForFlush){
+                theDeviceEvent.flushed.completeExceptionally(e);
+            }
+            else{
+                events.add(theDeviceEvent);
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    public int size(){
+        return size.get();
+    }
+
+    public int getLastFlushBatchSize() {
+        return lastFlushBatchSize;
+    }
+
+    public long getLastFlushLag() {
+        return lastFlushLag;
+    }
+
+    public long getFlushedEventCount() {
+        return flushedEventCount.get();
+    }
+
+    public long getCoalescedEventCount() {
+        return coalescedEventCount.get();
+    }
+
+    public long getOverflowEventCount() {
+        return overflowEventCount.get();
+    }
+
+    public long getTimedOutEventCount() {
+        return timedOutEventCount.get();
+    }
+
+    /**
+     * Class used to hold the watering event of a device while it waits in the buffer
+     */
+    public static class DeviceEvent {
+
+        //The device that reported the event
+        private final Device device;
+
+        //When the event was buffered in milliseconds
+        private final long bufferedAt;
+
+        //Completed with whether the plant of the device was updated once the event is flushed
+        private final CompletableFuture<Boolean> flushed;
+
+        private DeviceEvent(Device device, long bufferedAt){
+            this.device = device;
+            this.bufferedAt = bufferedAt;
+            this.flushed = new CompletableFuture<Boolean>();
+        }
+
+        public Device getDevice() {
+            return device;
+        }
+
+        public long getBufferedAt() {
+            return bufferedAt;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.entity.OutboxMessage;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class used to deliver the messages of the outbox over SMTP. A bounded pool of workers each leases a batch of messages
+ * and sends the whole batch over a single SMTP connection, while every worker shares one rate limit for the mail provider.
+ * Failed messages are retried with an exponential backoff and dead-lettered after too many failures.
+ */
+@Component
+public class OutboxMailSender {
+
+    //Address that outbox messages are sent from
+    private static final String FROM_ADDRESS = "noreply@botaniclock.com";
+
+    private PlantTrackerService plantTrackerService;
+
+    //Mail session holding the SMTP settings shared by every connection
+    private final jakarta.mail.Session mailSession;
+
+    //Host and credentials of the SMTP server
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+
+    //Workers that deliver batches of messages (each worker holds one SMTP connection at a time)
+    private final ExecutorService workers;
+
+    //Number of workers that are not delivering a batch
+    private final Semaphore idleWorkers;
+
+    //Maximum number of messages a worker sends over one SMTP connection
+    private final int messagesPerConnection;
+
+    //How long (in seconds) a worker has to deliver a batch before its messages can be leased again
+    private final long leaseTime;
+
+    //Number of failed deliveries after which a message is dead-lettered
+    private final int maximumAttempts;
+
+    //How long (in seconds) to wait before retrying a message after its first failure (doubled after each failure)
+    private final long retryBackoff;
+
+    //Minimum time between two messages sent by any worker in nanoseconds (0 if messages are not rate limited)
+    private final long sendInterval;
+
+    //The earliest time the next message can be sent in nanoseconds (System.nanoTime)
+    private long nextSendTime;
+
+    @Autowired
+    public OutboxMailSender(PlantTrackerService thePlantTrackerService,
+                            @Value("${planttracker.mail.host:smtp.gmail.com}") String theHost,
+                            @Value("${planttracker.mail.port:587}") int thePort,
+                            @Value("${planttracker.mail.credentials-file:../../../email.properties}") String theCredentialsFile,
+                            @Value("${planttracker.mail.timeout:30000}") int theTimeout,
+                            @Value("${planttracker.mail.workers:2}") int theWorkerCount,
+                            @Value("${planttracker.mail.messages-per-connection:50}") int theMessagesPerConnection,
+                            @Value("${planttracker.mail.lease-time:600}") long theLeaseTime,
+                            @Value("${planttracker.mail.maximum-attempts:8}") int theMaximumAttempts,
+                            @Value("${planttracker.mail.retry-backoff:60}") long theRetryBackoff,
+                            @Value("${planttracker.mail.maximum-messages-per-second:5}") double theMaximumMessagesPerSecond) {
+        plantTrackerService = thePlantTrackerService;
+        host = theHost;
+        port = thePort;
+        messagesPerConnection = theMessagesPerConnection;
+        leaseTime = theLeaseTime;
+        maximumAttempts = theMaximumAttempts;
+        retryBackoff = theRetryBackoff;
+        sendInterval = theMaximumMessagesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / theMaximumMessagesPerSecond) : 0;
+        nextSendTime = System.nanoTime();
+
+        //Grab the credentials of the email address used to send the messages
+        Properties emailProperties = new Properties();
+        try{
+            emailProperties.load(new FileReader(theCredentialsFile));
+        } catch(IOException e){
+            throw new RuntimeException("File could not be found");
+        }
+        username = emailProperties.getProperty("emailUsername");
+        password = emailProperties.getProperty("emailPassword");
+
+        //Bound every SMTP operation so a slow server only stalls the worker talking to it
+        Properties mailProperties = new Properties();
+        mailProperties.put("mail.transport.protocol", "smtp");
+        mailProperties.put("mail.smtp.auth", "true");
+        mailProperties.put("mail.smtp.starttls.enable", "true");
+        mailProperties.put("mail.smtp.connectiontimeout", Integer.toString(theTimeout));
+        mailProperties.put("mail.smtp.timeout", Integer.toString(theTimeout));
+        mailProperties.put("mail.smtp.writetimeout", Integer.toString(theTimeout));
+        mailSession = jakarta.mail.Session.getInstance(mailProperties);
+
+        workers = Executors.newFixedThreadPool(theWorkerCount);
+        idleWorkers = new Semaphore(theWorkerCount);
+    }
+
+    /**
+     * Function that leases batches of messages from the outbox and hands each batch to an idle worker
+     * (called by the scheduler, which returns right away while the workers deliver the messages)
+     * @return The number of messages handed to workers
+     */
+    public int drainOutbox(){
+
+        int leasedMessageCount = 0;
+
+        //Only the scheduler takes idle workers, so a worker is still idle when its batch is handed over
+        while(idleWorkers.availablePermits() > 0){
+
+            List<OutboxMessage> outboxMessages = plantTrackerService.claimOutboxMessages(messagesPerConnection, leaseTime);
+            if(outboxMessages.isEmpty())
+                break;
+
+            idleWorkers.acquireUninterruptibly();
+            workers.execute(() -> {
+                try{
+                    deliver(outboxMessages);
+                }finally{
+                    idleWorkers.release();
+                }
+            });
+            leasedMessageCount += outboxMessages.size();
+
+            //A partial batch means there are no messages left that are ready to be delivered
+            if(outboxMessages.size() < messagesPerConnection)
+                break;
+        }
+
+        return leasedMessageCount;
+    }
+
+    /**
+     * Function that sends a batch of messages over a single SMTP connection and records which messages were delivered
+     * @param outboxMessages The leased messages to deliver
+     */
+    private void deliver(List<OutboxMessage> outboxMessages){
+
+        List<Integer> deliveredMessageIDs = new ArrayList<Integer>();
+        Map<Integer, String> failedMessageErrors = new LinkedHashMap<Integer, String>();
+
+        Transport transport = null;
+        try{
+            transport = mailSession.getTransport();
+            transport.connect(host, port, username, password);
+
+            for(int i = 0; i < outboxMessages.size(); i++){
+                OutboxMessage outboxMessage = outboxMessages.get(i);
+                try{
+                    awaitSendPermit();
+                    MimeMessage mimeMessage = toMimeMessage(outboxMessage);
+                    transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                    deliveredMessageIDs.add(outboxMessage.getId());
+                }catch(MessagingException e){
+                    failedMessageErrors.put(outboxMessage.getId(), e.getMessage());
+
+                    //If the server dropped the connection (e.g., the provider is throttling us), retry the rest of the batch later
+                    if(!transport.isConnected()){
+                        for(OutboxMessage remainingMessage : outboxMessages.subList(i + 1, outboxMessages.size()))
+                            failedMessageErrors.put(remainingMessage.getId(), e.getMessage());
+                        break;
+                    }
+                }
+            }
+        }catch(MessagingException e){
+            //The connection could not be opened, so none of the remaining messages were sent
+            for(OutboxMessage outboxMessage : outboxMessages){
+                if(!deliveredMessageIDs.contains(outboxMessage.getId()))
+                    failedMessageErrors.put(outboxMessage.getId(), e.getMessage());
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }finally{
+            closeQuietly(transport);
+        }
+
+        //Messages that were neither delivered nor failed (if the worker was interrupted) are delivered again once their lease expires
+        plantTrackerService.completeOutboxMessages(deliveredMessageIDs, failedMessageErrors, maximumAttempts, retryBackoff);
+    }
+
+    /**
+     * Function that waits until the rate limit of the mail provider allows another message to be sent
+     * @throws InterruptedException Thrown if the worker is interrupted while waiting
+     */
+    private void awaitSendPermit() throws InterruptedException{
+
+        if(sendInterval == 0) return;
+
+        //Reserve the next send time shared by every worker
+        long sendTime;
+        synchronized(this){
+            sendTime = Math.max(System.nanoTime(), nextSendTime);
+            nextSendTime = sendTime + sendInterval;
+        }
+
+        TimeUnit.NANOSECONDS.sleep(sendTime - System.nanoTime());
+    }
+
+    /**
+     * Function that creates the email for a message of the outbox
+     * @param outboxMessage The message of the outbox
+     * @return The email to send
+     * @throws MessagingException Thrown if the recipient is not a valid address
+     */
+    private MimeMessage toMimeMessage(OutboxMessage outboxMessage) throws MessagingException{
+        MimeMessage mimeMessage = new MimeMessage(mailSession);
+        mimeMessage.setFrom(new InternetAddress(FROM_ADDRESS));
+        mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(outboxMessage.getRecipient()));
+        mimeMessage.setSubject(outboxMessage.getSubject());
+        mimeMessage.setText(outboxMessage.getText());
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    /**
+     * Function that closes an SMTP connection, ignoring errors since its messages were already handled
+     * @param transport The SMTP connection (null if it was never opened)
+     */
+    private void closeQuietly(Transport transport){
+        if(transport == null) return;
+        try{
+            transport.close();
+        }catch(MessagingException e){
+            //The connection is discarded either way
+        }
+    }
+
+    /**
+     * Function that stops the workers when the application shuts down (messages that are being delivered
+     * are delivered again once their lease expires)
+     */
+    @PreDestroy
+    public void shutdown(){
+        workers.shutdownNow();
+    }
+}
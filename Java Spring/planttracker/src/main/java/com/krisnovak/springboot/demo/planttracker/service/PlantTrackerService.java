@@ -7,6 +7,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 
 public interface PlantTrackerService {
@@ -14,9 +15,11 @@ public interface PlantTrackerService {
     /**
      * Function that adds an Account to the database (using the email and passwordNew of the Account)
      * @param theAccount The account to be added to the database
+     * (and the timezone of the Account if it has one, UTC otherwise)
      * @throws DataIntegrityViolationException Thrown if the account is a duplicate,
      * has empty or null email or passwordNew fields,
      * or has fields that are too long
+     * @throws InvalidTimezoneException Thrown if the timezone of the account is not a known region ID
      */
     public Account signUp(Account theAccount);
 
@@ -30,6 +33,15 @@ public interface PlantTrackerService {
      */
     public Account changePassword(Account theAccount);
 
+    /**
+     * Function that changes the timezone of the account associated with a session
+     * (the timezone determines the current date of the user and when the user's email reminders are sent)
+     * @param managedSession The authenticated session of the account
+     * @param timezone The new timezone of the account (a region ID such as America/New_York)
+     * @throws InvalidTimezoneException Thrown if the timezone is not a known region ID
+     */
+    public void changeTimezone(Session managedSession, String timezone);
+
     /**
      * Function that deletes an Account from the database
      * @param theAccount The account to be deleted
@@ -63,80 +75,281 @@ public interface PlantTrackerService {
     public ResponseCookie getExpiredCookie(String sessionID);
 
     /**
-     * Function that looks for all plants linked to an account
-     * associated with a particular cookie/session (using the provided sessionID)
+     * Function that deletes up to a fixed number of expired sessions from the database
+     * @param batchSize The maximum number of sessions to delete
+     * @return The number of sessions that were deleted
+     */
+    public int deleteExpiredSessions(int batchSize);
+
+    /**
+     * Function that adds the reminder shards that do not exist in the database yet
+     * @param shardCount The number of shards the accounts are split into
+     * @return The number of shards that were added
+     * @throws DataIntegrityViolationException Thrown if another node added one of the shards at the same time
+     */
+    public int createReminderShards(int shardCount);
+
+    /**
+     * Function that leases a reminder shard that is ready to be run to this node
+     * @param shardCount The number of shards the accounts are split into
+     * @param leaseTime How long (in seconds) this node has to send the reminders of the shard before it can be leased again
+     * @return The leased shard, or null if every shard is leased by another node or has already run
+     */
+    public ReminderShard claimReminderShard(int shardCount, long leaseTime);
+
+    /**
+     * Function that records that this node finished sending the reminders of a leased shard
+     * @param shardID The shard number
+     * @param runInterval How long (in seconds) after it was completed the shard can be claimed again
+     */
+    public void completeReminderShard(int shardID, long runInterval);
+
+    /**
+     * Function that adds an email reminder to the outbox and records that the plants it lists were reminded
+     * (in the same transaction), so they are not reminded again until the reminder period has passed
+     * @param theOutboxMessage The email reminder to deliver
+     * @param plantIDs The IDs of the plants listed by the email reminder
+     * @return The number of plants that were updated
+     */
+    public int queueReminder(OutboxMessage theOutboxMessage, List<Integer> plantIDs);
+
+    /**
+     * Function that sends email reminders for plants fired by the reminder queue: each plant is locked and checked again
+     * (plants locked by another node are skipped), one email is queued per account for the plants that are still due,
+     * and the other plants are rescheduled
+     * @param plantIDs The IDs of the plants whose reminders were fired
+     * @return The number of plants that were reminded
+     */
+    public int queueDueReminders(List<Integer> plantIDs);
+
+    /**
+     * Function that leases messages of the outbox that are ready to be delivered to the calling worker
+     * @param batchSize The maximum number of messages to lease
+     * @param leaseTime How long (in seconds) the worker has to deliver the messages before they can be leased again
+     * @return The leased messages
+     */
+    public List<OutboxMessage> claimOutboxMessages(int batchSize, long leaseTime);
+
+    /**
+     * Function that records the outcome of delivering leased messages: delivered messages are deleted from the outbox,
+     * and failed messages are either scheduled to be retried with an exponential backoff or dead-lettered
+     * @param deliveredMessageIDs The IDs of the messages that were delivered
+     * @param failedMessageErrors The errors of the messages that could not be delivered, by message ID
+     * @param maximumAttempts The number of failed deliveries after which a message is dead-lettered
+     * @param retryBackoff How long (in seconds) to wait before retrying after the first failure (doubled after each failure)
+     */
+    public void completeOutboxMessages(List<Integer> deliveredMessageIDs, Map<Integer, String> failedMessageErrors,
+                                       int maximumAttempts, long retryBackoff);
+
+    /**
+     * Function that loads signed session tokens revoked since the last refresh (possibly by other nodes)
+     * and discards revocations for tokens that have expired
+     * @return The number of revocations that were loaded
+     */
+    public int refreshRevokedSessionTokens();
+
+    /**
+     * Function that resolves the session ID of a request to the session of an authenticated account
      * @param sessionID The text of the session ID field in the cookie that identifies the cookie
-     * @return All plants linked to an account associated with the sessionID
-     * @throws InvalidSessionException Thrown if the session does not exist in the database
+     * @return The managed session linked to the session ID
+     * @throws InvalidSessionException Thrown if the session does not exist in the database or is expired
+     */
+    public Session authenticate(String sessionID);
+
+    /**
+     * Function that looks for one page of the plants linked to the account of an authenticated session
+     * @param managedSession The authenticated session of the client request
+     * @param plantPage The requested page of plants (sort order, cursor, due date filter, and page size)
+     * @return The plants linked to the account of the session that come after the cursor of the page
      */
-    public List<Plant> findPlants(String sessionID);
+    public List<Plant> findPlants(Session managedSession, PlantPage plantPage);
 
     /**
-     * Function that looks for a particular plant linked to an account
-     * associated with a particular cookie/session (using the provided sessionID)
+     * Function that looks for a particular plant linked to the account of an authenticated session
      * @param PlantID The ID of the plant to retrieve from the database
-     * @param sessionID The text of the session ID field in the cookie that identifies the cookie
+     * @param managedSession The authenticated session of the client request
      * @return The information about the particular requested plant
-     * @throws InvalidSessionException Thrown if the session does not exist in the database
      * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
      * but linked to a different Account
      */
-    public Plant findPlantByPlantID(String PlantID, String sessionID);
+    public Plant findPlantByPlantID(String PlantID, Session managedSession);
+
+    /**
+     * Function that looks for the requested fields of one page of the plants linked to the account of an authenticated session
+     * (image URLs are only generated if imageURL is requested)
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields
+     * @param plantPage The requested page of plants (sort order, cursor, due date filter, and page size)
+     * @return The requested fields of the plants linked to the account of the session that come after the cursor of the page
+     */
+    public List<PlantView> findPlantViews(Session managedSession, PlantFields plantFields, PlantPage plantPage);
+
+    /**
+     * Function that looks for the requested fields of a particular plant linked to the account of an authenticated session
+     * (the image URL is only generated if imageURL is requested)
+     * @param plantID The ID of the plant to retrieve from the database
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields
+     * @return The requested fields of the plant
+     * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
+     * but linked to a different Account
+     */
+    public PlantView findPlantViewByPlantID(String plantID, Session managedSession, PlantFields plantFields);
+
+    /**
+     * Function that computes the ETag of one page of the plants linked to the account of an authenticated session
+     * (only plant versions are read, so no plants are loaded and no image URLs are generated)
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields (null if every field is returned)
+     * @param plantPage The requested page of plants (sort order, cursor, due date filter, and page size)
+     * @return The quoted ETag of the page
+     */
+    public String findPlantsETag(Session managedSession, PlantFields plantFields, PlantPage plantPage);
+
+    /**
+     * Function that computes the ETag of a particular plant linked to the account of an authenticated session
+     * (only the plant version is read, so the plant is not loaded and no image URL is generated)
+     * @param plantID The ID of the plant in the database
+     * @param managedSession The authenticated session of the client request
+     * @param plantFields The requested fields (null if every field is returned)
+     * @return The quoted ETag of the plant
+     * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
+     * but linked to a different Account
+     */
+    public String findPlantETag(String plantID, Session managedSession, PlantFields plantFields);
+
+    /**
+     * Function that looks for the changes made to the plants linked to the account of an authenticated session since a change token
+     * @param since The change token returned by the previous sync ("0" if the client does not have a copy of the plants yet)
+     * @param managedSession The authenticated session of the client request
+     * @return The plants added or updated and the IDs of the plants deleted since the change token, along with a new change token
+     * @throws InvalidChangeTokenException Thrown if the change token was not issued for the account of the session
+     */
+    public PlantChanges findPlantChanges(String since, Session managedSession);
 
     /**
      * Function that adds a plant to the database (registration ID and Plant ID are generated by this function)
      * @param thePlant The plant to be added to the database
-     * @param sessionID The text of the session ID field in the cookie that identifies the cookie
+     * @param managedSession The authenticated session of the client request
      * @return The plant that was added to the database with updated registration ID and plant ID
-     * @throws InvalidSessionException Thrown if the session does not exist in the database
      */
-    public Plant addPlant(Plant thePlant, String sessionID);
+    public Plant addPlant(Plant thePlant, Session managedSession);
 
     /**
      * Function that updates a plant within the database (only for plantName, lastWatered, and wateringInterval)
      * @param thePlant The plant to be added to the database
-     * @param sessionID The text of the session ID field in the cookie that identifies the cookie
+     * @param managedSession The authenticated session of the client request
      * @return The plant that was successfully updated
-     * @throws InvalidSessionException Thrown if the session does not exist in the database
      * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
      * but linked to a different Account
      */
-    public Plant updatePlant(Plant thePlant, String sessionID) ;
+    public Plant updatePlant(Plant thePlant, Session managedSession) ;
+
+    /**
+     * Function that stops email reminders from being sent for a plant for a number of days
+     * @param plantID The ID of the plant to snooze
+     * @param managedSession The authenticated session of the client request
+     * @param snoozeDays The number of days to snooze the plant for
+     * @return The snoozed plant
+     * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
+     * but linked to a different Account
+     */
+    public Plant snoozePlant(String plantID, Session managedSession, int snoozeDays);
 
     /**
      * Function that deletes a plant from the database
      * @param plantID ID of the plant to remove from the database
-     * @param sessionID The text of the session ID field in the cookie that identifies the cookie
+     * @param managedSession The authenticated session of the client request
      * @return The plant that was removed
-     * @throws InvalidSessionException Thrown if the session does not exist in the database
      * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
      * but linked to a different Account
      */
-    public Plant deletePlant(String plantID, String sessionID);
+    public Plant deletePlant(String plantID, Session managedSession);
 
     /**
-     * Function that validates that a connecting device has a valid account and a valid plant linked to that account
+     * Function that adds several plants to the database in a single transaction
+     * (registration IDs and Plant IDs are generated by this function)
+     * @param thePlants The plants to be added to the database
+     * @param managedSession The authenticated session of the client request
+     * @return The plants that were added to the database with updated registration IDs and plant IDs
+     */
+    public List<Plant> addPlants(List<Plant> thePlants, Session managedSession);
+
+    /**
+     * Function that updates several plants within the database in a single transaction
+     * (only for plantName, lastWatered, and wateringInterval). No plant is updated if any plant ID is invalid
+     * @param thePlants The plants to be updated in the database
+     * @param managedSession The authenticated session of the client request
+     * @return The plants that were successfully updated
+     * @throws InvalidPlantException Thrown if any plant ID does not exist with the account of the session
+     */
+    public List<Plant> updatePlants(List<Plant> thePlants, Session managedSession);
+
+    /**
+     * Function that deletes several plants from the database in a single transaction.
+     * No plant is deleted if any plant ID is invalid
+     * @param plantIDs IDs of the plants to remove from the database
+     * @param managedSession The authenticated session of the client request
+     * @return The plants that were removed
+     * @throws InvalidPlantException Thrown if any plant ID does not exist with the account of the session
+     */
+    public List<Plant> deletePlants(List<Integer> plantIDs, Session managedSession);
+
+    /**
+     * Function that validates that a connecting device has a valid account and a valid plant linked to that account,
+     * and issues the device a key it can use instead of the account email and the registration ID (revoking the key
+     * issued to a device of the plant before)
      * @param theDevice The connecting device and its relevant fields (account email and plant registration ID)
+     * @return The new device key
      * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided email
      * and registrationID
      */
-    public void confirmDeviceRegistration(Device theDevice);
+    public String registerDevice(Device theDevice);
+
+    /**
+     * Function that revokes the key issued to the device of a plant, so the device can no longer update the plant with it
+     * @param plantID The ID of the plant
+     * @param managedSession The authenticated session of the client request
+     * @return The plant whose device key was revoked
+     * @throws InvalidPlantException Thrown if the plant ID is invalid or if the plant ID is valid
+     * but linked to a different Account
+     */
+    public Plant revokeDeviceKey(String plantID, Session managedSession);
 
     /**
      * Function that updates a timestamp for the plant linked to the provided plant registration ID by the connecting device
-     * @param theDevice The connecting device and its relevant fields (account email and plant registration ID)
-     * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided email
-     * and registrationID
+     * @param theDevice The connecting device and its relevant fields (device key, or account email and plant registration ID)
+     * @throws InvalidPlantException Thrown if no plant can be found that is associated with the provided device key,
+     * or with the provided email and registrationID
      */
     public void updateTimestamp(Device theDevice);
 
+    /**
+     * Function that updates the timestamps of the plants linked to several devices at once (used to flush the events
+     * buffered by DeviceEventBuffer)
+     * @param theDevices The devices and their relevant fields (each device at most once)
+     * @return The devices whose plants were updated (devices whose key was not issued, or whose email and registration ID
+     * are not linked, are left out)
+     */
+    public List<Device> updateTimestamps(List<Device> theDevices);
+
+    /**
+     * Function that applies watering events uploaded by devices (e.g., presses recorded while a device was offline),
+     * keeping the latest event of each device, in a single transaction
+     * @param theWateringEvents The uploaded events, possibly for several devices and in any order
+     * @return The number of plants that were updated (events of devices whose email and registration ID are not linked,
+     * and events older than the last time the plant was watered, are skipped)
+     * @throws InvalidBatchException Thrown if an event is missing its registration ID, its account email, or its time
+     */
+    public int applyWateringEvents(List<WateringEvent> theWateringEvents);
+
     /**
      * Function to update the image linked to a particular plant
      * @param plantID ID of the plant to remove from the database
-     * @param sessionID The text of the session ID field in the cookie that identifies the cookie
+     * @param managedSession The authenticated session of the client request
      * @param theFile The image file to be uploaded
      * @return The plant with an updated image URL to provide to the client
      * @throws IOException Thrown if the file is not an image file
      */
-    public Plant updatePlantImage(String plantID, String sessionID, MultipartFile theFile) throws IOException;
+    public Plant updatePlantImage(String plantID, Session managedSession, MultipartFile theFile) throws IOException;
 }
@@ -12,7 +12,10 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 //TODO: Might be able to get rid of save function
@@ -25,12 +28,21 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
     //S3 Bucket where Plant images are stored
     private S3Bucket s3Bucket;
 
+    //Signer used to create session tokens when signed session mode is enabled
+    private SessionTokenSigner sessionTokenSigner;
+
+    //Queue of plants waiting for an email reminder (only used when reminders are sent in wheel mode)
+    private ReminderQueue reminderQueue;
+
     //S3 Properties File Path
     private final static File s3PropertiesFile = new File("../../../credentials.properties");
 
     @Autowired
-    public PlantTrackerServiceImpl(PlantTrackerDAO thePlantTrackerDAO){
+    public PlantTrackerServiceImpl(PlantTrackerDAO thePlantTrackerDAO, SessionTokenSigner theSessionTokenSigner,
+                                   ReminderQueue theReminderQueue){
         this.plantTrackerDAO = thePlantTrackerDAO;
+        this.sessionTokenSigner = theSessionTokenSigner;
+        this.reminderQueue = theReminderQueue;
         this.s3Bucket = S3Bucket.newInstanceFromPropertiesFile(s3PropertiesFile);
     }
 
@@ -46,6 +58,8 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
         }
         //Create a new account with the password and email provided in the account
         Account newAccount = new Account(theAccount.getEmail(), theAccount.getPasswordNew());
+        if(theAccount.getTimezone() != null)
+            newAccount.setTimezone(Account.validTimezone(theAccount.getTimezone()));
 
         //Attempt to add the new account to the database
         return plantTrackerDAO.add(newAccount);
@@ -67,10 +81,20 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
         //Set the current password to the new password
         managedAccount.setPasswordCurrent(newPassword);
 
+        //Signed session tokens issued with the old password are no longer accepted
+        if(sessionTokenSigner.isEnabled())
+            plantTrackerDAO.add(RevokedSessionToken.forAccount(managedAccount.getId()));
+
         return managedAccount;
 
     }
 
+    @Override
+    @Transactional
+    public void changeTimezone(Session managedSession, String timezone){
+        plantTrackerDAO.updateTimezone(managedSession.getAccount().getId(), Account.validTimezone(timezone));
+    }
+
     @Override
     @Transactional
     //Deletes a provided account so long as the username and password are authenticated
@@ -84,6 +108,10 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
         List<Plant> thePlants = plantTrackerDAO.findAllPlants(managedAccount);
         for(Plant plant : thePlants) {s3Bucket.deleteImage(plant.getImageKey());}
 
+        //Signed session tokens cannot be deleted with the account, so they are revoked until they expire
+        if(sessionTokenSigner.isEnabled())
+            plantTrackerDAO.add(RevokedSessionToken.forAccount(managedAccount.getId()));
+
         //Delete the account
         plantTrackerDAO.delete(managedAccount);
 
@@ -95,6 +123,10 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
     //validateCookie provides an indication of whether a received cookie is valid or not
     //A cookie is not valid if it's session ID (text value) is not stored in the Session database or if it is expired
     public void validateCookie(String sessionID){
+        //A session that is still in the session cache is known to exist and to not be expired
+        if(plantTrackerDAO.findCachedSession(sessionID) != null)
+            return;
+
         //Grab the session from the database using the provided session ID
         //If the session cannot be retrieved, then the cookie is not valid
         Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
@@ -111,17 +143,25 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
     //createCookie makes a new cookie in the database and also provides a new cookie to the user (as a ResponseCookie)
     public ResponseCookie createCookie(Account theAccount){
 
-        //Create a new session with a managed account attached (assuming the provided account has valid credentials)
-        Session newSession = new Session(theAccount, plantTrackerDAO);
+        //In signed session mode the session is carried by a signed token rather than stored in the database
+        if(sessionTokenSigner.isEnabled()){
+            Session signedSession = new Session(theAccount, plantTrackerDAO);
+            signedSession.setSessionID(sessionTokenSigner.createToken(signedSession));
+            return signedSession.getResponseCookie();
+        }
 
-        //Get the managed account the new session
-        Account managedAccount = newSession.getAccount();
+        //Retrieve the managed account along with its sessions (assuming the provided account has valid credentials)
+        Account managedAccount = Account.managedInstanceWithSessions(theAccount, plantTrackerDAO);
 
-        //Add the new session to the managed account
+        //Create a new session and add it to the managed account
+        //(expired sessions are deleted in bulk by the session reaper in SessionConfig rather than on login)
+        Session newSession = new Session(managedAccount);
         managedAccount.addSession(newSession);
 
-        //Delete any expired sessions that the managed account has
-        managedAccount.deleteExpiredSessions();
+        //Remove the oldest sessions if the account now has too many
+        for(Session removedSession : managedAccount.removeOldestSessions(Account.MAXIMUM_SESSIONS)){
+            plantTrackerDAO.evictCachedSession(removedSession.getSessionID());
+        }
 
         //Return back a response cookie for the new session
         return newSession.getResponseCookie();
@@ -131,22 +171,168 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
     @Transactional
     //removeCookie removes a particular session from the database and returns an expired cookie to provide to the client
     public ResponseCookie getExpiredCookie(String sessionID){
-        //Retrieve account using the session ID and remove the session associated with the session ID from the account
-        Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
+
+        //In signed session mode there is no stored session to remove, so the token is revoked until it expires
+        if(sessionTokenSigner.isEnabled()){
+            Session signedSession = Session.managedInstance(sessionID, plantTrackerDAO);
+            SessionTokenSigner.SessionToken theToken = sessionTokenSigner.verify(sessionID);
+            if(!signedSession.isExpiredSession())
+                plantTrackerDAO.add(new RevokedSessionToken(theToken.getSignature(), theToken.getExpirationTime()));
+            return Session.getExpiredCookie();
+        }
+
+        //Retrieve account (with its sessions) using the session ID and remove the session associated with the session ID from the account
+        Session managedSession = Session.managedInstanceWithAccountSessions(sessionID, plantTrackerDAO);
 
         Account managedAccount = managedSession.getAccount();
 
         managedAccount.removeSession(managedSession);
 
+        //Make sure the removed session can no longer be validated from the session cache
+        plantTrackerDAO.evictCachedSession(sessionID);
+
         return Session.getExpiredCookie();
 
     }
 
     @Override
-    public List<Plant> findPlants(String sessionID){
+    @Transactional
+    public int deleteExpiredSessions(int batchSize){
+        return plantTrackerDAO.deleteExpiredSessions(System.currentTimeMillis()/1000, batchSize);
+    }
+
+    @Override
+    @Transactional
+    public int createReminderShards(int shardCount){
+
+        List<Integer> reminderShardIDs = plantTrackerDAO.findReminderShardIDs();
+
+        int addedShardCount = 0;
+        for(int shardID = 0; shardID < shardCount; shardID++){
+            if(reminderShardIDs.contains(shardID)) continue;
+            plantTrackerDAO.add(new ReminderShard(shardID));
+            addedShardCount++;
+        }
+
+        return addedShardCount;
+    }
+
+    @Override
+    @Transactional
+    public ReminderShard claimReminderShard(int shardCount, long leaseTime){
+
+        long currentTime = System.currentTimeMillis()/1000;
+
+        //Lease the shard by pushing back its next run, so other nodes skip it until the lease expires
+        ReminderShard theReminderShard = plantTrackerDAO.findClaimableReminderShard(shardCount, currentTime);
+        if(theReminderShard != null)
+            theReminderShard.lease(currentTime + leaseTime);
+
+        return theReminderShard;
+    }
+
+    @Override
+    @Transactional
+    public void completeReminderShard(int shardID, long runInterval){
+
+        ReminderShard theReminderShard = plantTrackerDAO.findReminderShard(shardID);
+        if(theReminderShard == null) return;
+
+        long currentTime = System.currentTimeMillis()/1000;
+        theReminderShard.complete(currentTime, currentTime + runInterval);
+    }
+
+    @Override
+    @Transactional
+    public int queueReminder(OutboxMessage theOutboxMessage, List<Integer> plantIDs){
+        plantTrackerDAO.add(theOutboxMessage);
+        return plantTrackerDAO.updateLastRemindedAt(plantIDs, theOutboxMessage.getTimeCreated());
+    }
+
+    @Override
+    @Transactional
+    public int queueDueReminders(List<Integer> plantIDs){
+
+        long currentTime = System.currentTimeMillis()/1000;
+
+        //Lock the plants (skipping plants another node is reminding) and recheck them, since the queue may be out of date
+        //(e.g., the plant was watered, snoozed, or reminded through another node)
+        Map<Integer, List<Plant>> duePlantsByAccount = new LinkedHashMap<Integer, List<Plant>>();
+        for(Plant plant : plantTrackerDAO.findPlantsForReminder(plantIDs)){
+            long reminderTime = plant.nextReminderTime(reminderQueue.getReminderLocalHour(), reminderQueue.getReminderPeriod());
+            if(reminderTime >= 0 && reminderTime <= currentTime)
+                duePlantsByAccount.computeIfAbsent(plant.getAccount().getId(), accountID -> new ArrayList<Plant>()).add(plant);
+            else
+                reminderQueue.update(plant);
+        }
+
+        //Queue one email to each account along with the reminders of its plants
+        int remindedPlantCount = 0;
+        for(List<Plant> accountPlants : duePlantsByAccount.values()){
+            OutboxMessage theOutboxMessage = OutboxMessage.digestReminder(accountPlants);
+            List<Integer> remindedPlantIDs = new ArrayList<Integer>();
+            for(Plant plant : accountPlants){
+                remindedPlantIDs.add(plant.getId());
+                reminderQueue.reminded(plant, theOutboxMessage.getTimeCreated());
+            }
+            remindedPlantCount += queueReminder(theOutboxMessage, remindedPlantIDs);
+        }
+
+        return remindedPlantCount;
+    }
+
+    @Override
+    @Transactional
+    public List<OutboxMessage> claimOutboxMessages(int batchSize, long leaseTime){
+
+        long currentTime = System.currentTimeMillis()/1000;
+
+        //Lease the messages by pushing back their next attempt, so other workers skip them until the lease expires
+        List<OutboxMessage> outboxMessages = plantTrackerDAO.findDueOutboxMessages(currentTime, batchSize);
+        for(OutboxMessage outboxMessage : outboxMessages){
+            outboxMessage.lease(currentTime + leaseTime);
+        }
+
+        return outboxMessages;
+    }
+
+    @Override
+    @Transactional
+    public void completeOutboxMessages(List<Integer> deliveredMessageIDs, Map<Integer, String> failedMessageErrors,
+                                       int maximumAttempts, long retryBackoff){
+
+        plantTrackerDAO.deleteOutboxMessages(deliveredMessageIDs);
+
+        long currentTime = System.currentTimeMillis()/1000;
+        for(OutboxMessage outboxMessage : plantTrackerDAO.findOutboxMessagesByIDs(new ArrayList<Integer>(failedMessageErrors.keySet()))){
+            outboxMessage.recordFailure(failedMessageErrors.get(outboxMessage.getId()), maximumAttempts, retryBackoff, currentTime);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int refreshRevokedSessionTokens(){
+        return plantTrackerDAO.refreshRevokedSessionTokens();
+    }
+
+    @Override
+    //authenticate resolves the session of a request once, so the plant functions below do not have to look it up again
+    public Session authenticate(String sessionID){
+
+        //Grab the session from the database using the provided session ID
         Session managedSession = Session.managedInstance(sessionID, plantTrackerDAO);
 
-        List<Plant> managedPlants = Plant.allManagedInstances(sessionID, plantTrackerDAO);
+        //An expired session does not authenticate the request
+        if(managedSession.isExpiredSession())
+            throw new InvalidSessionException("Cookie was expired");
+
+        return managedSession;
+    }
+
+    @Override
+    public List<Plant> findPlants(Session managedSession, PlantPage plantPage){
+
+        List<Plant> managedPlants = Plant.managedInstances(managedSession, plantPage, plantTrackerDAO);
 
         for(Plant plant : managedPlants){
             plant.generateAndSetImageURL(s3Bucket);
@@ -156,25 +342,71 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
     }
 
     @Override
-    public Plant findPlantByPlantID(String plantID, String sessionID){
+    public Plant findPlantByPlantID(String plantID, Session managedSession){
 
-        Plant managedPlant = Plant.managedInstance(plantID, sessionID, plantTrackerDAO);
+        Plant managedPlant = Plant.managedInstance(plantID, managedSession, plantTrackerDAO);
 
         managedPlant.generateAndSetImageURL(s3Bucket);
 
         return managedPlant;
     }
 
+    @Override
+    public List<PlantView> findPlantViews(Session managedSession, PlantFields plantFields, PlantPage plantPage){
+
+        List<PlantView> plantViews = PlantView.instances(managedSession, plantFields, plantPage, plantTrackerDAO);
+
+        for(PlantView plantView : plantViews){
+            plantView.generateAndSetImageURL(s3Bucket);
+        }
+
+        return plantViews;
+    }
+
+    @Override
+    public PlantView findPlantViewByPlantID(String plantID, Session managedSession, PlantFields plantFields){
+
+        PlantView plantView = PlantView.instance(plantID, managedSession, plantFields, plantTrackerDAO);
+
+        plantView.generateAndSetImageURL(s3Bucket);
+
+        return plantView;
+    }
+
+    @Override
+    public String findPlantsETag(Session managedSession, PlantFields plantFields, PlantPage plantPage){
+
+        return PlantVersion.eTag(PlantVersion.instances(managedSession, plantPage, plantTrackerDAO), plantFields);
+
+    }
+
+    @Override
+    public String findPlantETag(String plantID, Session managedSession, PlantFields plantFields){
+
+        return PlantVersion.eTag(List.of(PlantVersion.instance(plantID, managedSession, plantTrackerDAO)), plantFields);
+
+    }
+
+    @Override
+    public PlantChanges findPlantChanges(String since, Session managedSession){
+
+        PlantChanges plantChanges = PlantChanges.instance(since, managedSession, plantTrackerDAO);
+
+        plantChanges.generateAndSetImageURLs(s3Bucket);
+
+        return plantChanges;
+    }
+
     @Override
     @Transactional
-    public Plant addPlant(Plant thePlant, String sessionID){
+    public Plant addPlant(Plant thePlant, Session managedSession){
 
         if(thePlant == null){
             throw new NullPointerException("A Null Plant was provided");
         }
 
         //Give the new plant the attributes of the provided plant
-        Plant newPlant = new Plant(sessionID, plantTrackerDAO);
+        Plant newPlant = new Plant(managedSession);
         newPlant.setPlantName(thePlant.getPlantName());
         newPlant.setLastWatered(thePlant.getLastWatered());
         newPlant.setWateringInterval(thePlant.getWateringInterval());
@@ -186,7 +418,9 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
         managedAccount.addPlant(newPlant);
 
         //Save the new plant
+        newPlant.recordChange(plantTrackerDAO);
         plantTrackerDAO.add(newPlant);
+        reminderQueue.update(newPlant);
 
         return newPlant;
 
@@ -194,64 +428,225 @@ public class PlantTrackerServiceImpl implements PlantTrackerService{
 
     @Override
     @Transactional
-    public Plant updatePlant(Plant thePlant, String sessionID){
+    public Plant updatePlant(Plant thePlant, Session managedSession){
 
         if(thePlant == null)
             throw new NullPointerException("A null Plant was provided");
 
-        Plant managedPlant = Plant.managedInstance(thePlant.getId(), sessionID, plantTrackerDAO);
+        Plant managedPlant = Plant.managedInstance(thePlant.getId(), managedSession, plantTrackerDAO);
         managedPlant.setPlantName(thePlant.getPlantName());
         managedPlant.setLastWatered(thePlant.getLastWatered());
         managedPlant.setWateringInterval(thePlant.getWateringInterval());
+        managedPlant.recordChange(plantTrackerDAO);
+        reminderQueue.update(managedPlant);
 
         return managedPlant;
 
     }
 
+    @Override
+    @Transactional
+    public Plant snoozePlant(String plantID, Session managedSession, int snoozeDays){
+
+        Plant managedPlant = Plant.managedInstance(plantID, managedSession, plantTrackerDAO);
+        managedPlant.snooze(snoozeDays);
+        managedPlant.recordChange(plantTrackerDAO);
+        reminderQueue.update(managedPlant);
+
+        return managedPlant;
+    }
+
     //TODO: Make sure image in container is deleted along with plant
     @Override
     @Transactional
-    public Plant deletePlant(String PlantID, String sessionID){
+    public Plant deletePlant(String PlantID, Session managedSession){
 
-        Plant managedPlant = Plant.managedInstance(PlantID, sessionID, plantTrackerDAO);
+        Plant managedPlant = Plant.managedInstance(PlantID, managedSession, plantTrackerDAO);
 
         //Delete plant image from AWS
         s3Bucket.deleteImage(managedPlant.getImageKey());
 
+        //Leave a tombstone so clients syncing changes remove the plant from their copy
+        plantTrackerDAO.add(new PlantTombstone(managedPlant, plantTrackerDAO));
         plantTrackerDAO.delete(managedPlant);
+        reminderQueue.remove(managedPlant.getId());
 
         return managedPlant;
     }
 
     @Override
-    public void confirmDeviceRegistration(Device theDevice){
-        //Confirm that the device is valid by attempting to
-        // grab a managed instance of a plant associated with the device
-        Plant.managedInstance(theDevice, plantTrackerDAO);
+    @Transactional
+    public List<Plant> addPlants(List<Plant> thePlants, Session managedSession){
+
+        Account managedAccount = managedSession.getAccount();
+
+        //Give each new plant the attributes of the provided plant
+        List<Plant> newPlants = new ArrayList<Plant>();
+        for(Plant thePlant : thePlants){
+
+            if(thePlant == null){
+                throw new NullPointerException("A Null Plant was provided");
+            }
+
+            Plant newPlant = new Plant(managedSession);
+            newPlant.setPlantName(thePlant.getPlantName());
+            newPlant.setLastWatered(thePlant.getLastWatered());
+            newPlant.setWateringInterval(thePlant.getWateringInterval());
+
+            managedAccount.addPlant(newPlant);
+            newPlants.add(newPlant);
+        }
+
+        //Save the new plants (their IDs come from the pooled sequence, so the inserts are batched on flush)
+        Plant.recordChanges(newPlants, plantTrackerDAO);
+        for(Plant newPlant : newPlants){
+            plantTrackerDAO.add(newPlant);
+        }
+        reminderQueue.update(newPlants);
+
+        return newPlants;
     }
 
     @Override
+    @Transactional
+    public List<Plant> updatePlants(List<Plant> thePlants, Session managedSession){
+
+        List<Integer> plantIDs = new ArrayList<Integer>();
+        for(Plant thePlant : thePlants){
+
+            if(thePlant == null)
+                throw new NullPointerException("A null Plant was provided");
+
+            plantIDs.add(thePlant.getId());
+        }
+
+        //Load every plant with one query (the updates are batched on flush)
+        Map<Integer, Plant> managedPlants = Plant.managedInstances(plantIDs, managedSession, plantTrackerDAO);
+        for(Plant thePlant : thePlants){
+            Plant managedPlant = managedPlants.get(thePlant.getId());
+            managedPlant.setPlantName(thePlant.getPlantName());
+            managedPlant.setLastWatered(thePlant.getLastWatered());
+            managedPlant.setWateringInterval(thePlant.getWateringInterval());
+        }
+
+        List<Plant> updatedPlants = new ArrayList<Plant>(managedPlants.values());
+        Plant.recordChanges(updatedPlants, plantTrackerDAO);
+        reminderQueue.update(updatedPlants);
+
+        return updatedPlants;
+    }
+
+    @Override
+    @Transactional
+    public List<Plant> deletePlants(List<Integer> plantIDs, Session managedSession){
+
+        //Load every plant with one query
+        List<Plant> managedPlants = new ArrayList<Plant>(Plant.managedInstances(plantIDs, managedSession, plantTrackerDAO).values());
+
+        //Delete plant images from AWS
+        for(Plant managedPlant : managedPlants){
+            s3Bucket.deleteImage(managedPlant.getImageKey());
+        }
+
+        //Leave tombstones so clients syncing changes remove the plants from their copy (the inserts and deletes are batched on flush)
+        for(PlantTombstone plantTombstone : PlantTombstone.newInstances(managedPlants, plantTrackerDAO)){
+            plantTrackerDAO.add(plantTombstone);
+        }
+        for(Plant managedPlant : managedPlants){
+            plantTrackerDAO.delete(managedPlant);
+            reminderQueue.remove(managedPlant.getId());
+        }
+
+        return managedPlants;
+    }
+
+    @Override
+    @Transactional
+    public String registerDevice(Device theDevice){
+        //Confirm that the device is valid and issue it a key, using the device cache instead of loading the plant
+        //(only the hash of the key is stored, so this is the only time the key is available)
+        return Plant.issueDeviceKey(theDevice, plantTrackerDAO);
+    }
+
+    @Override
+    @Transactional
+    public Plant revokeDeviceKey(String plantID, Session managedSession){
+
+        Plant managedPlant = Plant.managedInstance(plantID, managedSession, plantTrackerDAO);
+        managedPlant.revokeDeviceKey();
+
+        return managedPlant;
+    }
+
+    @Override
+    @Transactional
     public void updateTimestamp(Device theDevice){
 
-        //Grab a managed instance of a plant using the device information
-        Plant managedPlant = Plant.managedInstance(theDevice, plantTrackerDAO);
+        //Update the watering time for the plant to the current date of the user in the database, without loading the plant
+        if(plantTrackerDAO.updateLastWatered(theDevice) == 0)
+            throw new InvalidPlantException("No plant with the device key, or with the registration ID and linked to provided account email, could be found");
+
+        //Only load the updated plant when its next reminder has to be rescheduled
+        if(reminderQueue.isEnabled())
+            reminderQueue.update(plantTrackerDAO.findPlantsByDevices(List.of(theDevice)));
+
+    }
+
+    @Override
+    @Transactional
+    public List<Device> updateTimestamps(List<Device> theDevices){
+
+        //Update every plant with one batch of statements
+        int[] updatedPlantCounts = plantTrackerDAO.updateLastWatered(theDevices);
+
+        List<Device> updatedDevices = new ArrayList<Device>();
+        for(int i = 0; i < theDevices.size(); i++){
+            if(updatedPlantCounts[i] > 0)
+                updatedDevices.add(theDevices.get(i));
+        }
+
+        //Only load the updated plants when their next reminders have to be rescheduled
+        if(reminderQueue.isEnabled())
+            reminderQueue.update(plantTrackerDAO.findPlantsByDevices(updatedDevices));
+
+        return updatedDevices;
+    }
+
+    @Override
+    @Transactional
+    public int applyWateringEvents(List<WateringEvent> theWateringEvents){
+
+        //Only the latest event of each device changes its plant
+        List<WateringEvent> latestEvents = WateringEvent.latestByDevice(theWateringEvents, System.currentTimeMillis()/1000);
+
+        //Update every plant with one batch of statements
+        int[] updatedPlantCounts = plantTrackerDAO.applyWateringEvents(latestEvents);
+
+        List<Device> updatedDevices = new ArrayList<Device>();
+        for(int i = 0; i < latestEvents.size(); i++){
+            if(updatedPlantCounts[i] > 0)
+                updatedDevices.add(latestEvents.get(i).getDevice());
+        }
 
-        //Update the watering time for the plant
-        managedPlant.setLastWatered(LocalDate.now());
+        //Only load the updated plants when their next reminders have to be rescheduled
+        if(reminderQueue.isEnabled())
+            reminderQueue.update(plantTrackerDAO.findPlantsByDevices(updatedDevices));
 
+        return updatedDevices.size();
     }
 
     @Override
     @Transactional
-    public Plant updatePlantImage(String PlantID, String sessionID, MultipartFile theFile) throws IOException{
+    public Plant updatePlantImage(String PlantID, Session managedSession, MultipartFile theFile) throws IOException{
 
         //Grab the plant from the database
-        Plant managedPlant = Plant.managedInstance(PlantID, sessionID, plantTrackerDAO);
+        Plant managedPlant = Plant.managedInstance(PlantID, managedSession, plantTrackerDAO);
 
         //Convert the file to an image object
         BufferedImage image = ImageIO.read(theFile.getInputStream());
 
         managedPlant.generateAndSetImageKey(image, s3Bucket);
+        managedPlant.recordChange(plantTrackerDAO);
 
         //Set an image URL in the managed plant to pass back to the client
         managedPlant.generateAndSetImageURL(s3Bucket);
@@ -0,0 +1,126 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Class used to keep track of when each plant is next due for an email reminder when reminders are sent in wheel mode.
+ * The service updates the queue whenever it changes when a plant is watered, how often it is watered, or its snooze,
+ * and the scheduler fires the reminders that are due every tick instead of rescanning the Plant table every hour.
+ * The queue only lives in memory, so every reminder it fires is checked against the database before it is sent
+ */
+@Component
+public class ReminderQueue {
+
+    //Reminder mode in which the Plant table is scanned for due plants every hour (the default)
+    public static final String SCAN_REMINDER_MODE = "scan";
+
+    //Reminder mode in which due plants are fired from the in-memory timing wheel
+    public static final String WHEEL_REMINDER_MODE = "wheel";
+
+    //Whether wheel mode is enabled
+    private final boolean enabled;
+
+    //The local hour (0-23) of each user at which their email reminders are sent
+    private final int reminderLocalHour;
+
+    //How long (in seconds) to wait before reminding about the same plant again
+    private final long reminderPeriod;
+
+    //The plants waiting for a reminder
+    private final ReminderTimingWheel timingWheel;
+
+    public ReminderQueue(@Value("${planttracker.reminders.mode:scan}") String theReminderMode,
+                         @Value("${planttracker.reminders.local-hour:9}") int theReminderLocalHour,
+                         @Value("${planttracker.reminders.period:72000}") long theReminderPeriod,
+                         @Value("${planttracker.reminders.wheel-tick-duration:60}") long theTickDuration){
+        enabled = WHEEL_REMINDER_MODE.equalsIgnoreCase(theReminderMode);
+        reminderLocalHour = theReminderLocalHour;
+        reminderPeriod = theReminderPeriod;
+        timingWheel = new ReminderTimingWheel(theTickDuration, System.currentTimeMillis()/1000);
+    }
+
+    /**
+     * Function that indicates whether reminders should be fired from the queue instead of the hourly scan
+     * @return true if wheel mode is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Function that schedules the next reminder of a plant from its next watering date, snooze, and last reminder
+     * (does nothing unless wheel mode is enabled)
+     * @param thePlant The plant (with its account loaded)
+     */
+    public void update(Plant thePlant){
+
+        if(!enabled) return;
+
+        long reminderTime = thePlant.nextReminderTime(reminderLocalHour, reminderPeriod);
+        if(reminderTime < 0)
+            timingWheel.cancel(thePlant.getId());
+        else
+            timingWheel.schedule(thePlant.getId(), reminderTime);
+    }
+
+    /**
+     * Function that schedules the next reminder of several plants
+     * @param thePlants The plants (with their accounts loaded)
+     */
+    public void update(List<Plant> thePlants){
+        for(Plant plant : thePlants){
+            update(plant);
+        }
+    }
+
+    /**
+     * Function that schedules the next reminder of a plant that was just reminded (at the first reminder hour after the
+     * reminder period, in the timezone of the plant's account)
+     * @param thePlant The plant (with its account loaded)
+     * @param remindedAt When the reminder was queued in seconds
+     */
+    public void reminded(Plant thePlant, long remindedAt){
+
+        if(!enabled) return;
+
+        long reminderTime = thePlant.nextReminderTime(reminderLocalHour, reminderPeriod, remindedAt);
+        if(reminderTime < 0)
+            timingWheel.cancel(thePlant.getId());
+        else
+            timingWheel.schedule(thePlant.getId(), reminderTime);
+    }
+
+    /**
+     * Function that removes the reminder of a plant (e.g., when the plant is deleted)
+     * @param plantID The ID of the plant
+     */
+    public void remove(int plantID){
+        if(!enabled) return;
+        timingWheel.cancel(plantID);
+    }
+
+    /**
+     * Function that returns the plants whose reminders are due, removing them from the queue
+     * @param currentTime The current time in seconds
+     * @return The IDs of the plants whose reminders are due
+     */
+    public List<Integer> advance(long currentTime){
+        return timingWheel.advance(currentTime);
+    }
+
+    public int getReminderLocalHour() {
+        return reminderLocalHour;
+    }
+
+    public long getReminderPeriod() {
+        return reminderPeriod;
+    }
+
+    public int size(){
+        return timingWheel.size();
+    }
+}
@@ -0,0 +1,189 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class used to hold the plants waiting for an email reminder in a hierarchical timing wheel. The wheel has a level of
+ * minute slots for the current hour, a level of hour slots for the current day, and a level of day slots for the next
+ * two months; an entry is moved down a level when the wheel reaches its slot, so scheduling, cancelling, and firing a
+ * reminder each take constant time no matter how many reminders are waiting
+ */
+public class ReminderTimingWheel {
+
+    //Number of slots in each level of the wheel (minutes of an hour, hours of a day, and days)
+    private static final int[] SLOT_COUNTS = {60, 24, 64};
+
+    //Number of ticks covered by one slot of each level
+    private static final long[] SLOT_SPANS = {1, 60, 60 * 24};
+
+    //Number of ticks ahead of the current tick that an entry can be scheduled
+    private static final long HORIZON_TICKS = SLOT_SPANS[2] * SLOT_COUNTS[2];
+
+    //Length of one tick in seconds
+    private final long tickDuration;
+
+    //The slots of each level, holding the IDs of the plants due within the slot
+    private final List<List<Set<Integer>>> levels;
+
+    //The slot holding each scheduled plant (so a plant can be cancelled without searching the wheel)
+    private final Map<Integer, Set<Integer>> entrySlots;
+
+    //The tick at which each scheduled plant is due
+    private final Map<Integer, Long> dueTicks;
+
+    //Plants that are due but have not been returned by advance yet
+    private final Set<Integer> expiredEntries;
+
+    //The last tick the wheel has advanced to
+    private long currentTick;
+
+    /**
+     * Function that creates an empty timing wheel
+     * @param tickDuration Length of one tick in seconds (reminders fire at the first tick at or after their time)
+     * @param currentTime The current time in seconds
+     */
+    public ReminderTimingWheel(long tickDuration, long currentTime){
+        this.tickDuration = tickDuration;
+        this.currentTick = Math.floorDiv(currentTime, tickDuration);
+        this.entrySlots = new HashMap<Integer, Set<Integer>>();
+        this.dueTicks = new HashMap<Integer, Long>();
+        this.expiredEntries = new LinkedHashSet<Integer>();
+
+        this.levels = new ArrayList<List<Set<Integer>>>();
+        for(int slotCount : SLOT_COUNTS){
+            List<Set<Integer>> slots = new ArrayList<Set<Integer>>();
+            for(int i = 0; i < slotCount; i++){
+                slots.add(new LinkedHashSet<Integer>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    /**
+     * Function that schedules (or reschedules) the reminder of a plant
+     * @param plantID The ID of the plant
+     * @param reminderTime When the reminder should fire in seconds (reminders in the past fire at the next advance)
+     * @return true if the reminder was scheduled, or false if it is further ahead than the wheel can hold
+     * (in which case any earlier reminder for the plant is cancelled)
+     */
+    public synchronized boolean schedule(int plantID, long reminderTime){
+
+        cancel(plantID);
+
+        long dueTick = Math.floorDiv(reminderTime + tickDuration - 1, tickDuration);
+        if(dueTick - currentTick >= HORIZON_TICKS)
+            return false;
+
+        dueTicks.put(plantID, dueTick);
+        place(plantID, dueTick);
+
+        return true;
+    }
+
+    /**
+     * Function that cancels the reminder of a plant
+     * @param plantID The ID of the plant
+     * @return true if the plant had a reminder scheduled
+     */
+    public synchronized boolean cancel(int plantID){
+
+        Set<Integer> slot = entrySlots.remove(plantID);
+        if(slot != null) slot.remove(plantID);
+        expiredEntries.remove(plantID);
+
+        return dueTicks.remove(plantID) != null;
+    }
+
+    /**
+     * Function that advances the wheel to the current time and returns the plants whose reminders are due
+     * (each returned plant is removed from the wheel)
+     * @param currentTime The current time in seconds
+     * @return The IDs of the plants whose reminders are due
+     */
+    public synchronized List<Integer> advance(long currentTime){
+
+        long targetTick = Math.floorDiv(currentTime, tickDuration);
+        while(currentTick < targetTick){
+            currentTick++;
+
+            //Move the entries of the day and hour that just started down to the finer levels
+            if(currentTick % SLOT_SPANS[2] == 0) cascade(2);
+            if(currentTick % SLOT_SPANS[1] == 0) cascade(1);
+
+            Set<Integer> slot = levels.get(0).get((int) (currentTick % SLOT_COUNTS[0]));
+            for(Integer plantID : slot){
+                entrySlots.remove(plantID);
+                expiredEntries.add(plantID);
+            }
+            slot.clear();
+        }
+
+        List<Integer> duePlantIDs = new ArrayList<Integer>(expiredEntries);
+        for(Integer plantID : duePlantIDs){
+            dueTicks.remove(plantID);
+        }
+        expiredEntries.clear();
+
+        return duePlantIDs;
+    }
+
+    /**
+     * Function that returns the number of scheduled reminders (including those that are due)
+     * @return The number of scheduled reminders
+     */
+    public synchronized int size(){
+        return dueTicks.size();
+    }
+
+    /**
+     * Function that returns how far ahead of the current time a reminder can be scheduled
+     * @return The horizon of the wheel in seconds
+     */
+    public long getHorizon(){
+        return HORIZON_TICKS * tickDuration;
+    }
+
+    /**
+     * Function that adds an entry to the slot of the coarsest level needed to hold it
+     * @param plantID The ID of the plant
+     * @param dueTick The tick at which the plant is due
+     */
+    private void place(int plantID, long dueTick){
+
+        long ticksAhead = dueTick - currentTick;
+        if(ticksAhead <= 0){
+            expiredEntries.add(plantID);
+            return;
+        }
+
+        for(int level = 0; level < SLOT_COUNTS.length; level++){
+            if(ticksAhead < SLOT_SPANS[level] * SLOT_COUNTS[level]){
+                Set<Integer> slot = levels.get(level).get((int) ((dueTick / SLOT_SPANS[level]) % SLOT_COUNTS[level]));
+                slot.add(plantID);
+                entrySlots.put(plantID, slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Function that moves the entries of the current slot of a level down to the finer levels
+     * @param level The level whose current slot was reached
+     */
+    private void cascade(int level){
+
+        Set<Integer> slot = levels.get(level).get((int) ((currentTick / SLOT_SPANS[level]) % SLOT_COUNTS[level]));
+        List<Integer> plantIDs = new ArrayList<Integer>(slot);
+        slot.clear();
+
+        for(Integer plantID : plantIDs){
+            entrySlots.remove(plantID);
+            place(plantID, dueTicks.get(plantID));
+        }
+    }
+}
@@ -36,6 +36,10 @@ public class S3Bucket {
     //Expiration time in milliseconds
     private static final int DURATION_BEFORE_EXPIRATION_IN_MILLISECONDS = 60*1000;
 
+    //How long (in milliseconds) a client may keep reusing image URLs it was already sent
+    //(half the expiration time, so a reused URL is always valid for at least that long)
+    public static final long IMAGE_URL_REUSE_WINDOW_IN_MILLISECONDS = DURATION_BEFORE_EXPIRATION_IN_MILLISECONDS/2;
+
     /**
      * Function that initializes the S3 bucket according to the properties in the provided file.
      * @param s3Properties The file that includes the s3 properties (should be in a .properties format)
@@ -0,0 +1,195 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Class used to create and verify HMAC-signed session tokens. When signed session mode is enabled,
+ * the sessionId cookie carries the account ID and expiry of the session itself, so it can be verified
+ * without looking the session up in the database.
+ */
+@Component
+public class SessionTokenSigner {
+
+    //Session mode in which sessions are stored in the Session table (the default)
+    public static final String DATABASE_SESSION_MODE = "database";
+
+    //Session mode in which sessions are carried by signed tokens
+    public static final String SIGNED_SESSION_MODE = "signed";
+
+    //Algorithm used to sign tokens
+    private static final String SIGNING_ALGORITHM = "HmacSHA256";
+
+    //Length of the random nonce included in each token (in number of characters)
+    private static final int NONCE_LENGTH = 16;
+
+    //Shortest secret accepted in signed session mode (in bytes, the length of an HmacSHA256 signature)
+    public static final int MINIMUM_SECRET_LENGTH = 32;
+
+    //Whether signed session mode is enabled
+    private final boolean enabled;
+
+    //Key used to sign and verify tokens (null unless signed session mode is enabled)
+    private final SecretKeySpec signingKey;
+
+    /**
+     * Function that creates a session token signer
+     * @param sessionMode The configured session mode ("database" or "signed")
+     * @param secret The secret used to sign tokens. Every node serving the API must share the same secret,
+     * so that a token issued by one node is accepted by the others and survives restarts
+     * @throws IllegalStateException Thrown if signed session mode is enabled and the secret is blank or shorter
+     * than MINIMUM_SECRET_LENGTH bytes
+     */
+    public SessionTokenSigner(@Value("${planttracker.session.mode:database}") String sessionMode,
+                              @Value("${planttracker.session.token-secret:}") String secret){
+
+        this.enabled = SIGNED_SESSION_MODE.equalsIgnoreCase(sessionMode);
+
+        //The secret is only needed to sign tokens
+        if(!this.enabled){
+            this.signingKey = null;
+            return;
+        }
+
+        if(secret == null || secret.isBlank() || secret.getBytes(StandardCharsets.UTF_8).length < MINIMUM_SECRET_LENGTH)
+            throw new IllegalStateException("planttracker.session.token-secret must be set to a secret of at least " +
+                    MINIMUM_SECRET_LENGTH + " bytes shared by every node when planttracker.session.mode is signed");
+
+        this.signingKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), SIGNING_ALGORITHM);
+    }
+
+    /**
+     * Function that indicates whether sessions should be carried by signed tokens instead of the database
+     * @return true if signed session mode is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Function that creates a signed token for the provided session
+     * @param theSession The session (with an account, a time created, and a max age) to create a token for
+     * @return A signed token of the form accountID.timeCreated.maxAge.issuedAt.nonce.signature, where issuedAt is when the
+     * token was signed in milliseconds (so it can be ordered against a revocation made in the same second)
+     */
+    public String createToken(Session theSession){
+
+        String payload = theSession.getAccount().getId() + "." +
+                theSession.getTimeCreated() + "." +
+                theSession.getMaxAge() + "." +
+                System.currentTimeMillis() + "." +
+                RandomString.generateRandomString(NONCE_LENGTH).replace('!', '-');
+
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * Function that verifies the signature of a token and returns the information that it carries
+     * @param token The text of the session ID field in the cookie provided by the client request
+     * @return The information carried by the token, or null if the token is malformed or its signature is invalid
+     * (the token may still be expired)
+     */
+    public SessionToken verify(String token){
+
+        if(token == null) return null;
+
+        //Separate the payload from the signature
+        int signatureIndex = token.lastIndexOf('.');
+        if(signatureIndex < 0) return null;
+
+        String payload = token.substring(0, signatureIndex);
+        String signature = token.substring(signatureIndex + 1);
+
+        //Compare the signatures in constant time
+        byte[] expectedSignature = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        if(!MessageDigest.isEqual(expectedSignature, signature.getBytes(StandardCharsets.US_ASCII)))
+            return null;
+
+        String[] fields = payload.split("\\.");
+        if(fields.length != 5) return null;
+
+        try{
+            return new SessionToken(Integer.parseInt(fields[0]), Long.parseLong(fields[1]), Integer.parseInt(fields[2]),
+                    Long.parseLong(fields[3]), signature);
+        }catch(NumberFormatException e){
+            return null;
+        }
+    }
+
+    /**
+     * Function that creates the signature for the provided payload
+     * @param payload The text to sign
+     * @return The base64url encoded signature
+     */
+    private String sign(String payload){
+        try{
+            Mac mac = Mac.getInstance(SIGNING_ALGORITHM);
+            mac.init(signingKey);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        }catch(GeneralSecurityException e){
+            throw new RuntimeException("Session token could not be signed", e);
+        }
+    }
+
+    /**
+     * Class that represents the information carried by a verified session token
+     */
+    public static class SessionToken {
+
+        //The database ID of the account linked to the session
+        private final int accountID;
+
+        //When the session was created in seconds
+        private final long timeCreated;
+
+        //How long the session is valid for in seconds
+        private final int maxAge;
+
+        //When the token was signed in milliseconds
+        private final long issuedAt;
+
+        //The signature of the token (used to identify the token when it is revoked)
+        private final String signature;
+
+        public SessionToken(int accountID, long timeCreated, int maxAge, long issuedAt, String signature) {
+            this.accountID = accountID;
+            this.timeCreated = timeCreated;
+            this.maxAge = maxAge;
+            this.issuedAt = issuedAt;
+            this.signature = signature;
+        }
+
+        public int getAccountID() {
+            return accountID;
+        }
+
+        public long getTimeCreated() {
+            return timeCreated;
+        }
+
+        public int getMaxAge() {
+            return maxAge;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+
+        public long getExpirationTime() {
+            return timeCreated + maxAge;
+        }
+    }
+}
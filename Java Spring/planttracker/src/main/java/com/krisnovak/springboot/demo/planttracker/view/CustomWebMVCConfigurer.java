@@ -1,6 +1,9 @@
 package com.krisnovak.springboot.demo.planttracker.view;
 
+import com.krisnovak.springboot.demo.planttracker.rest.AuthenticatedSessionArgumentResolver;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -8,10 +11,26 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Class currently just used to redirect URLs
+ * Class used to redirect URLs and to register the resolver for authenticated sessions
  */
 @Configuration
 public class CustomWebMVCConfigurer implements WebMvcConfigurer {
+
+    private AuthenticatedSessionArgumentResolver authenticatedSessionArgumentResolver;
+
+    @Autowired
+    public CustomWebMVCConfigurer(AuthenticatedSessionArgumentResolver theAuthenticatedSessionArgumentResolver) {
+        authenticatedSessionArgumentResolver = theAuthenticatedSessionArgumentResolver;
+    }
+
+    /**
+     * Function that registers the resolver that provides controller methods with the authenticated session of a request
+     * @param resolvers The list of custom argument resolvers
+     */
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authenticatedSessionArgumentResolver);
+    }
     /**
      *
      * Function that redirects any request to the appropriate index.html file without typing in index.html or
@@ -45,10 +45,17 @@ async function setUpPlantBoxesAndAddButton(){
 
 
 //This function gets all the plant info from the data base and converts it to a JSON object
+//Plants are returned a page at a time, so pages are requested until the server stops providing a next cursor
+//Each page is revalidated with its ETag, so unchanged pages are reused from the browser cache
 async function getPlantInfo(){
   try {
-          const response = await fetch("/api/v1/plants");
-          res = await response.json();
+          let res = [];
+          let cursor = "0";
+          while (cursor !== null){
+            const response = await fetch("/api/v1/plants?after=" + cursor, {cache: "no-cache"});
+            res = res.concat(await response.json());
+            cursor = response.headers.get("X-Next-Cursor");
+          }
           return res;
       } catch (e) {
           console.error(e);
@@ -0,0 +1,76 @@
+package com.krisnovak.springboot.demo.planttracker.config;
+
+import com.krisnovak.springboot.demo.planttracker.configuration.DeviceConfig;
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.service.DeviceEventBuffer;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerDeviceConfigTests {
+
+    @Mock
+    private PlantTrackerService plantTrackerService;
+
+    private Device newDevice(String registrationID){
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("test");
+        theDevice.setRegistrationID(registrationID);
+        return theDevice;
+    }
+
+    //Tests for public int flushDeviceEvents()
+    @Test
+    public void DeviceConfig_flushDeviceEvents_skippedInDirectMode(){
+
+        DeviceConfig deviceConfig = new DeviceConfig(plantTrackerService, new DeviceEventBuffer("direct", "memory", 10, 1000), 2);
+
+        Assertions.assertEquals(0, deviceConfig.flushDeviceEvents());
+        verify(plantTrackerService, never()).updateTimestamps(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void DeviceConfig_flushDeviceEvents_coalescesDevicesInBatches(){
+
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        DeviceConfig deviceConfig = new DeviceConfig(plantTrackerService, deviceEventBuffer, 2);
+
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID2"));
+
+        when(plantTrackerService.updateTimestamps(List.of(newDevice("registrationID1")))).thenReturn(List.of(newDevice("registrationID1")));
+        when(plantTrackerService.updateTimestamps(List.of(newDevice("registrationID2")))).thenReturn(List.of());
+
+        Assertions.assertEquals(1, deviceConfig.flushDeviceEvents());
+        Assertions.assertEquals(0, deviceEventBuffer.size());
+        Assertions.assertEquals(3, deviceEventBuffer.getFlushedEventCount());
+        Assertions.assertEquals(1, deviceEventBuffer.getCoalescedEventCount());
+    }
+
+    @Test
+    public void DeviceConfig_flushDeviceEvents_keepsEventsWhenFlushFails(){
+
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        DeviceConfig deviceConfig = new DeviceConfig(plantTrackerService, deviceEventBuffer, 2);
+
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID2"));
+        deviceEventBuffer.submit(newDevice("registrationID3"));
+
+        when(plantTrackerService.updateTimestamps(ArgumentMatchers.anyList())).thenThrow(new IllegalStateException());
+
+        Assertions.assertEquals(0, deviceConfig.flushDeviceEvents());
+        Assertions.assertEquals(3, deviceEventBuffer.size());
+        verify(plantTrackerService, times(1)).updateTimestamps(ArgumentMatchers.anyList());
+    }
+}
@@ -0,0 +1,180 @@
+package com.krisnovak.springboot.demo.planttracker.config;
+
+import com.krisnovak.springboot.demo.planttracker.configuration.AppConfig;
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerServiceImpl;
+import com.krisnovak.springboot.demo.planttracker.service.ReminderQueue;
+import com.krisnovak.springboot.demo.planttracker.service.SessionTokenSigner;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Benchmark of the hourly email reminder at a synthetic scale. The database is seeded with accounts that each have
+ * overdue plants, and one run of AppConfig.sendEmailReminder is timed. The benchmark only runs when the number of
+ * accounts is given, e.g.:
+ * mvn test -Dtest=PlantTrackerReminderBenchmarkTests -Dplanttracker.benchmark.accounts=1000000
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Import({PlantTrackerServiceImpl.class, SessionTokenSigner.class, ReminderQueue.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "planttracker.benchmark.accounts", matches = "\\d+")
+public class PlantTrackerReminderBenchmarkTests {
+
+    //Number of rows inserted per JDBC batch (and per commit) while seeding
+    private static final int SEED_BATCH_SIZE = 10000;
+
+    private PlantTrackerDAO plantTrackerDAO;
+
+    private PlantTrackerService plantTrackerService;
+
+    private DataSource dataSource;
+
+    private Statistics statistics;
+
+    @Autowired
+    public PlantTrackerReminderBenchmarkTests(PlantTrackerDAO plantTrackerDAO, PlantTrackerService plantTrackerService,
+                                              DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.plantTrackerDAO = plantTrackerDAO;
+        this.plantTrackerService = plantTrackerService;
+        this.dataSource = dataSource;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    //Benchmark for public int sendEmailReminder()
+    @Test
+    public void AppConfig_sendEmailReminder_benchmark() throws SQLException {
+
+        int accountCount = Integer.getInteger("planttracker.benchmark.accounts");
+        int plantsPerAccount = Integer.getInteger("planttracker.benchmark.plants-per-account", 5);
+        int pageSize = Integer.getInteger("planttracker.benchmark.page-size", 500);
+        int shardCount = Integer.getInteger("planttracker.benchmark.shard-count", 16);
+
+        long seedStart = System.nanoTime();
+        seed(accountCount, plantsPerAccount);
+        long seedTime = System.nanoTime() - seedStart;
+
+        //Send the reminders at the current UTC hour, so every seeded (UTC) account is reminded by the run
+        int reminderLocalHour = ZonedDateTime.now(ZoneOffset.UTC).getHour();
+        AppConfig appConfig = new AppConfig(plantTrackerDAO, plantTrackerService, new ReminderQueue("scan", reminderLocalHour, 72000, 60),
+                pageSize, 72000, reminderLocalHour, shardCount, 1800, 1800, 2);
+
+        System.gc();
+        for(MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()){
+            memoryPool.resetPeakUsage();
+        }
+        statistics.clear();
+
+        long runStart = System.nanoTime();
+        int queuedEmailCount = appConfig.sendEmailReminder();
+        long runTime = System.nanoTime() - runStart;
+
+        long peakHeap = 0;
+        for(MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(memoryPool.getType() == MemoryType.HEAP)
+                peakHeap += memoryPool.getPeakUsage().getUsed();
+        }
+
+        System.out.println("Reminder benchmark: " + accountCount + " accounts, " + (long) accountCount * plantsPerAccount + " plants"
+                + " (seeded in " + seedTime / 1_000_000 + " ms)");
+        System.out.println("  wall time:       " + runTime / 1_000_000 + " ms");
+        System.out.println("  statements:      " + statistics.getPrepareStatementCount()
+                + " (" + statistics.getQueryExecutionCount() + " queries, " + statistics.getEntityUpdateCount() + " entity updates)");
+        System.out.println("  peak heap:       " + peakHeap / (1024 * 1024) + " MB");
+        System.out.println("  emails queued:   " + queuedEmailCount);
+        System.out.println("  emails / second: " + (runTime == 0 ? 0 : queuedEmailCount * 1_000_000_000L / runTime));
+
+        //Every account has overdue plants, so each one should have exactly one digest email in the outbox
+        Assertions.assertEquals(accountCount, queuedEmailCount);
+        Assertions.assertEquals(accountCount, countOutboxMessages());
+    }
+
+    /**
+     * Function that inserts accounts with overdue plants straight through JDBC, since persisting millions of entities
+     * would take far longer than the run being measured
+     * @param accountCount The number of accounts to insert (all in the UTC timezone)
+     * @param plantsPerAccount The number of overdue plants to insert for each account
+     * @throws SQLException Thrown if the rows could not be inserted
+     */
+    private void seed(int accountCount, int plantsPerAccount) throws SQLException {
+
+        LocalDate lastWatered = LocalDate.now(ZoneOffset.UTC).minusDays(10);
+        LocalDate nextWateringDate = lastWatered.plusDays(7);
+
+        try(Connection connection = dataSource.getConnection()){
+            connection.setAutoCommit(false);
+
+            try(PreparedStatement accountStatement = connection.prepareStatement(
+                        "INSERT INTO account (id, email, password, timezone, change_counter) VALUES (?, ?, 'password', 'UTC', 0)");
+                PreparedStatement plantStatement = connection.prepareStatement(
+                        "INSERT INTO plant (id, plant_name, last_watered, watering_interval, registration_id, next_watering_date, "
+                                + "last_reminded_at, snoozed_until, version, change_number, account_id) "
+                                + "VALUES (?, ?, ?, 7, ?, ?, 0, 0, 0, 0, ?)")){
+
+                int plantID = 0;
+                for(int accountID = 1; accountID <= accountCount; accountID++){
+                    accountStatement.setInt(1, accountID);
+                    accountStatement.setString(2, "user" + accountID + "@test.com");
+                    accountStatement.addBatch();
+
+                    for(int i = 0; i < plantsPerAccount; i++){
+                        plantID++;
+                        plantStatement.setInt(1, plantID);
+                        plantStatement.setString(2, "Plant " + plantID);
+                        plantStatement.setDate(3, Date.valueOf(lastWatered));
+                        plantStatement.setString(4, "registration" + plantID);
+                        plantStatement.setDate(5, Date.valueOf(nextWateringDate));
+                        plantStatement.setInt(6, accountID);
+                        plantStatement.addBatch();
+                    }
+
+                    if(accountID % SEED_BATCH_SIZE == 0 || accountID == accountCount){
+                        accountStatement.executeBatch();
+                        plantStatement.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Function that counts the messages in the outbox
+     * @return The number of messages in the outbox
+     * @throws SQLException Thrown if the messages could not be counted
+     */
+    private long countOutboxMessages() throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM outbox_message")){
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
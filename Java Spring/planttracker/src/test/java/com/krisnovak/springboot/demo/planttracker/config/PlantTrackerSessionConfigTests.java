@@ -0,0 +1,74 @@
+package com.krisnovak.springboot.demo.planttracker.config;
+
+import com.krisnovak.springboot.demo.planttracker.configuration.SessionConfig;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import com.krisnovak.springboot.demo.planttracker.service.SessionTokenSigner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerSessionConfigTests {
+
+    @Mock
+    private PlantTrackerService plantTrackerService;
+
+    //Tests for public int reapExpiredSessions()
+    @Test
+    public void SessionConfig_reapExpiredSessions_deletesBatchesUntilPartialBatch(){
+
+        SessionConfig sessionConfig = new SessionConfig(plantTrackerService, new SessionTokenSigner("database", ""), 10, 100, 0);
+
+        when(plantTrackerService.deleteExpiredSessions(10)).thenReturn(10, 10, 3);
+
+        Assertions.assertEquals(23, sessionConfig.reapExpiredSessions());
+        Assertions.assertEquals(23, sessionConfig.getLastReapedSessionCount());
+        verify(plantTrackerService, times(3)).deleteExpiredSessions(10);
+    }
+
+    @Test
+    public void SessionConfig_reapExpiredSessions_stopsAtMaximumBatches(){
+
+        SessionConfig sessionConfig = new SessionConfig(plantTrackerService, new SessionTokenSigner("database", ""), 10, 2, 0);
+
+        when(plantTrackerService.deleteExpiredSessions(10)).thenReturn(10);
+
+        Assertions.assertEquals(20, sessionConfig.reapExpiredSessions());
+        verify(plantTrackerService, times(2)).deleteExpiredSessions(10);
+    }
+
+    //Tests for public boolean startReaper()
+    @Test
+    public void SessionConfig_startReaper_reapsOnReaperThread(){
+
+        SessionConfig sessionConfig = new SessionConfig(plantTrackerService, new SessionTokenSigner("database", ""), 10, 100, 0);
+
+        AtomicReference<Thread> reaperThread = new AtomicReference<Thread>();
+        when(plantTrackerService.deleteExpiredSessions(10)).thenAnswer(invocation -> {
+            reaperThread.set(Thread.currentThread());
+            return 3;
+        });
+
+        Assertions.assertTrue(sessionConfig.startReaper());
+        verify(plantTrackerService, timeout(1000)).deleteExpiredSessions(10);
+        Assertions.assertNotSame(Thread.currentThread(), reaperThread.get());
+        sessionConfig.shutdown();
+    }
+
+    //Tests for public void refreshRevokedSessionTokens()
+    @Test
+    public void SessionConfig_refreshRevokedSessionTokens_skippedInDatabaseMode(){
+
+        SessionConfig sessionConfig = new SessionConfig(plantTrackerService, new SessionTokenSigner("database", ""), 10, 2, 0);
+
+        sessionConfig.refreshRevokedSessionTokens();
+
+        verify(plantTrackerService, never()).refreshRevokedSessionTokens();
+    }
+}
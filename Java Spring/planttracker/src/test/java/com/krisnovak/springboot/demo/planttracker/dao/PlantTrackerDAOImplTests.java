@@ -5,9 +5,21 @@ import com.krisnovak.springboot.demo.planttracker.Reflector;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAOImpl;
 import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.entity.OutboxMessage;
 import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantFields;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantPage;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantTombstone;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantView;
+import com.krisnovak.springboot.demo.planttracker.entity.PlantVersion;
+import com.krisnovak.springboot.demo.planttracker.entity.ReminderShard;
+import com.krisnovak.springboot.demo.planttracker.entity.RevokedSessionToken;
 import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import com.krisnovak.springboot.demo.planttracker.entity.WateringEvent;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
+import org.hibernate.Hibernate;
 import org.checkerframework.checker.units.qual.A;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -19,7 +31,10 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.test.context.ContextConfiguration;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 
 @DataJpaTest
@@ -28,9 +43,19 @@ public class PlantTrackerDAOImplTests {
 
     private PlantTrackerDAO plantTrackerDAO;
 
+    private EntityManager entityManager;
+
+    private DeviceCache deviceCache;
+
+    private SessionTokenRevocationList sessionTokenRevocationList;
+
     @Autowired
-    public PlantTrackerDAOImplTests(PlantTrackerDAO plantTrackerDAO) {
+    public PlantTrackerDAOImplTests(PlantTrackerDAO plantTrackerDAO, EntityManager entityManager, DeviceCache deviceCache,
+                                    SessionTokenRevocationList sessionTokenRevocationList) {
         this.plantTrackerDAO = plantTrackerDAO;
+        this.entityManager = entityManager;
+        this.deviceCache = deviceCache;
+        this.sessionTokenRevocationList = sessionTokenRevocationList;
     }
 
     // tests for public Account findAccount(Account theAccount);
@@ -141,6 +166,77 @@ public class PlantTrackerDAOImplTests {
         Assertions.assertThrows(NoResultException.class, ()->{plantTrackerDAO.findAccount(newAccount);});
     }
 
+    @Test
+    public void plantTrackerDAO_deleteAccount_evictsCachedDevices(){
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+
+        plantTrackerDAO.findDeviceByRegistrationID(newPlant.getRegistrationID());
+
+        plantTrackerDAO.delete(newAccount);
+        Assertions.assertNull(deviceCache.get(newPlant.getRegistrationID()));
+    }
+
+    //tests for public Account findAccountWithSessions(Account theAccount);
+    @Test
+    public void plantTrackerDAO_findAccount_doesNotLoadSessions(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        newAccount.addSession(new Session(newAccount, plantTrackerDAO));
+
+        entityManager.flush();
+        entityManager.clear();
+
+        Account foundAccount = plantTrackerDAO.findAccount(newAccount);
+
+        Assertions.assertFalse(Hibernate.isInitialized(foundAccount.getSessions()));
+    }
+
+    @Test
+    public void plantTrackerDAO_findAccountWithSessions_loadsSessions(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        newAccount.addSession(new Session(newAccount, plantTrackerDAO));
+        newAccount.addSession(new Session(newAccount, plantTrackerDAO));
+
+        entityManager.flush();
+        entityManager.clear();
+
+        Account foundAccount = plantTrackerDAO.findAccountWithSessions(newAccount);
+
+        Assertions.assertTrue(Hibernate.isInitialized(foundAccount.getSessions()));
+        Assertions.assertEquals(2, foundAccount.getSessions().size());
+    }
+
+    //tests for public Session findSessionWithAccountSessions(String sessionID);
+    @Test
+    public void plantTrackerDAO_findSessionWithAccountSessions_loadsAccountSessions(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+        newAccount.addSession(new Session(newAccount, plantTrackerDAO));
+
+        entityManager.flush();
+        entityManager.clear();
+
+        Session foundSession = plantTrackerDAO.findSessionWithAccountSessions(newSession.getSessionID());
+
+        Assertions.assertEquals(newSession.getSessionID(), foundSession.getSessionID());
+        Assertions.assertTrue(Hibernate.isInitialized(foundSession.getAccount().getSessions()));
+        Assertions.assertEquals(2, foundSession.getAccount().getSessions().size());
+        Assertions.assertThrows(NoResultException.class, ()->{plantTrackerDAO.findSessionWithAccountSessions("fakeSessionID");});
+    }
+
     //tests for public Session findSessionBySessionID(String sessionID);
     @Test
     public void plantTrackerDAO_findSessionBySessionID_findsSession(){
@@ -156,6 +252,25 @@ public class PlantTrackerDAOImplTests {
         Assertions.assertEquals(foundSession.getSessionID(), newSession.getSessionID());
     }
 
+    @Test
+    public void plantTrackerDAO_findSessionBySessionID_cachesSession(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        plantTrackerDAO.findSessionBySessionID(newSession.getSessionID());
+        SessionCache.CachedSession cachedSession = plantTrackerDAO.findCachedSession(newSession.getSessionID());
+
+        Assertions.assertNotNull(cachedSession);
+        Assertions.assertEquals(newAccount.getId(), cachedSession.getAccountID());
+
+        plantTrackerDAO.evictCachedSession(newSession.getSessionID());
+        Assertions.assertNull(plantTrackerDAO.findCachedSession(newSession.getSessionID()));
+    }
+
     @Test
     public void plantTrackerDAO_findSessionBySessionID_throwsNoResultException(){
 
@@ -170,6 +285,116 @@ public class PlantTrackerDAOImplTests {
         Assertions.assertNotNull(plantTrackerDAO.findSessionBySessionID("fakeSessionID"));
     }
 
+    //tests for public int deleteExpiredSessions(long currentTime, int batchSize);
+    @Test
+    public void plantTrackerDAO_deleteExpiredSessions_deletesOnlyExpiredSessionsInBatches(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        long currentTime = System.currentTimeMillis()/1000;
+
+        Session validSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(validSession);
+
+        for(int i = 0; i < 3; i++){
+            Session expiredSession = new Session(newAccount, plantTrackerDAO);
+            expiredSession.setTimeCreated(currentTime - 1000);
+            expiredSession.setMaxAge(10);
+            newAccount.addSession(expiredSession);
+        }
+
+        plantTrackerDAO.findSessionBySessionID(validSession.getSessionID());
+
+        Assertions.assertEquals(2, plantTrackerDAO.deleteExpiredSessions(currentTime, 2));
+        Assertions.assertEquals(1, plantTrackerDAO.deleteExpiredSessions(currentTime, 2));
+        Assertions.assertEquals(0, plantTrackerDAO.deleteExpiredSessions(currentTime, 2));
+        Assertions.assertNotNull(plantTrackerDAO.findSessionBySessionID(validSession.getSessionID()));
+    }
+
+    //tests for public RevokedSessionToken add(RevokedSessionToken theRevokedSessionToken);
+    @Test
+    public void plantTrackerDAO_addRevokedSessionToken_revokesToken(){
+
+        long expirationTime = (System.currentTimeMillis()/1000) + 100;
+        plantTrackerDAO.add(new RevokedSessionToken("fakeSignature", expirationTime));
+
+        Assertions.assertTrue(plantTrackerDAO.isRevokedSessionToken("fakeSignature"));
+        Assertions.assertFalse(plantTrackerDAO.isRevokedSessionToken("otherSignature"));
+    }
+
+    @Test
+    public void plantTrackerDAO_addRevokedSessionToken_revokesTokensOfAccount(){
+
+        long currentTime = System.currentTimeMillis();
+        plantTrackerDAO.add(RevokedSessionToken.forAccount(-5));
+
+        //Only tokens issued before the revocation are rejected
+        Assertions.assertTrue(sessionTokenRevocationList.containsAccount(-5, currentTime - 100000));
+        Assertions.assertFalse(sessionTokenRevocationList.containsAccount(-5, currentTime + 100000));
+        Assertions.assertFalse(sessionTokenRevocationList.containsAccount(-6, currentTime - 100000));
+    }
+
+    @Test
+    public void plantTrackerDAO_addRevokedSessionToken_acceptsTokenIssuedInSameSecondAfterRevocation(){
+
+        //A revocation made halfway through a second (e.g., a password change followed right away by a new login)
+        long revokedAt = ((System.currentTimeMillis()/1000) * 1000) + 500;
+        RevokedSessionToken theRevocation = RevokedSessionToken.forAccount(-8);
+        Reflector.setField(theRevocation, "revokedAt", revokedAt);
+        plantTrackerDAO.add(theRevocation);
+
+        Assertions.assertTrue(sessionTokenRevocationList.containsAccount(-8, revokedAt - 100));
+        Assertions.assertFalse(sessionTokenRevocationList.containsAccount(-8, revokedAt + 100));
+    }
+
+    //tests for public int refreshRevokedSessionTokens();
+    @Test
+    public void plantTrackerDAO_refreshRevokedSessionTokens_loadsNewRevocations(){
+
+        //Revocations made by another node are only in the database
+        long expirationTime = (System.currentTimeMillis()/1000) + 100;
+        entityManager.persist(new RevokedSessionToken("otherNodeSignature1", expirationTime));
+        entityManager.persist(new RevokedSessionToken("otherNodeSignature2", expirationTime));
+        entityManager.flush();
+
+        Assertions.assertTrue(plantTrackerDAO.refreshRevokedSessionTokens() >= 2);
+        Assertions.assertTrue(plantTrackerDAO.isRevokedSessionToken("otherNodeSignature1"));
+        Assertions.assertTrue(plantTrackerDAO.isRevokedSessionToken("otherNodeSignature2"));
+
+        //Revocations that were already loaded are not counted again
+        Assertions.assertEquals(0, plantTrackerDAO.refreshRevokedSessionTokens());
+    }
+
+    @Test
+    public void plantTrackerDAO_refreshRevokedSessionTokens_loadsRevocationCommittedAfterLastRefresh(){
+
+        long currentTime = System.currentTimeMillis()/1000;
+        plantTrackerDAO.refreshRevokedSessionTokens();
+
+        //A revocation made before the last refresh, but only committed after it
+        RevokedSessionToken lateRevocation = new RevokedSessionToken("lateCommitSignature", currentTime + 100);
+        Reflector.setField(lateRevocation, "revokedAt", (currentTime - 30) * 1000);
+        entityManager.persist(lateRevocation);
+        entityManager.flush();
+
+        Assertions.assertEquals(1, plantTrackerDAO.refreshRevokedSessionTokens());
+        Assertions.assertTrue(plantTrackerDAO.isRevokedSessionToken("lateCommitSignature"));
+    }
+
+    @Test
+    public void plantTrackerDAO_refreshRevokedSessionTokens_loadsRevocationsOfAccounts(){
+
+        //A revocation of every token of an account made by another node
+        long currentTime = System.currentTimeMillis();
+        entityManager.persist(RevokedSessionToken.forAccount(-7));
+        entityManager.flush();
+
+        Assertions.assertTrue(plantTrackerDAO.refreshRevokedSessionTokens() >= 1);
+        Assertions.assertTrue(sessionTokenRevocationList.containsAccount(-7, currentTime - 100000));
+        Assertions.assertEquals(0, plantTrackerDAO.refreshRevokedSessionTokens());
+    }
+
     //tests for public Plant findPlantByPlantID(int plantID);
     @Test
     public void plantTrackerDAO_findPlantByPlantID_returnsPlant(){
@@ -208,6 +433,47 @@ public class PlantTrackerDAOImplTests {
         Assertions.assertNotNull(plantTrackerDAO.findPlantByPlantID(newPlant.getId()));
     }
 
+    //tests for public Plant findPlantByPlantIDAndAccountID(int plantID, int accountID);
+    @Test
+    public void plantTrackerDAO_findPlantByPlantIDAndAccountID_returnsPlantLinkedToAccount(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession);
+        plantTrackerDAO.add(newPlant);
+
+        Plant foundPlant = plantTrackerDAO.findPlantByPlantIDAndAccountID(newPlant.getId(), newAccount.getId());
+
+        Assertions.assertSame(newPlant, foundPlant);
+    }
+
+    @Test
+    public void plantTrackerDAO_findPlantByPlantIDAndAccountID_throwsNoResultExceptionForOtherAccount(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Plant newPlant1 = new Plant(newSession1);
+        plantTrackerDAO.add(newPlant1);
+
+        Account newAccount2 = new Account("test2", "password2");
+        plantTrackerDAO.add(newAccount2);
+
+        Assertions.assertThrows(NoResultException.class, ()->{
+            plantTrackerDAO.findPlantByPlantIDAndAccountID(newPlant1.getId(), newAccount2.getId());
+        });
+        Assertions.assertThrows(NoResultException.class, ()->{
+            plantTrackerDAO.findPlantByPlantIDAndAccountID(newPlant1.getId()+1, newAccount1.getId());
+        });
+    }
+
     //tests for public List<Plant> findAllPlants(Account theAccount);
     @Test
     public void plantTrackerDAO_findAllPlants_returnsListOnlyLinkedToAccount(){
@@ -253,38 +519,517 @@ public class PlantTrackerDAOImplTests {
 
     }
 
-    //tests for public List<Plant> findAllPlants();
+    //tests for public List<Plant> findPlants(Account theAccount, PlantPage plantPage);
     @Test
-    public void plantTrackerDAO_findAllPlants_returnsListOfAllPlants(){
+    public void plantTrackerDAO_findPlants_returnsPagesOnlyLinkedToAccount(){
 
         Account newAccount1 = new Account("test", "password");
         plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Account newAccount2 = new Account("test2", "password2");
+        plantTrackerDAO.add(newAccount2);
+        Session newSession2 = new Session(newAccount2, plantTrackerDAO);
+        newAccount2.addSession(newSession2);
 
+        //Interleave the plants of the two accounts
+        for(int i = 0; i < 3; i++){
+            plantTrackerDAO.add(new Plant(newSession1));
+            plantTrackerDAO.add(new Plant(newSession2));
+        }
+
+        List<Plant> firstPage = plantTrackerDAO.findPlants(newAccount1, PlantPage.firstPage(2));
+        Assertions.assertEquals(2, firstPage.size());
+        Assertions.assertTrue(firstPage.get(0).getId() < firstPage.get(1).getId());
+
+        List<Plant> secondPage = plantTrackerDAO.findPlants(newAccount1, new PlantPage(PlantPage.ID_SORT, firstPage.get(1).getId(), null, null, 2));
+        Assertions.assertEquals(1, secondPage.size());
+        Assertions.assertTrue(secondPage.get(0).getId() > firstPage.get(1).getId());
+
+        for(Plant plant : firstPage) Assertions.assertSame(newAccount1, plant.getAccount());
+        Assertions.assertSame(newAccount1, secondPage.get(0).getAccount());
+
+        Assertions.assertTrue(plantTrackerDAO.findPlants(newAccount1, new PlantPage(PlantPage.ID_SORT, secondPage.get(0).getId(), null, null, 2)).isEmpty());
+    }
+
+    @Test
+    public void plantTrackerDAO_findPlants_returnsDuePlantsByUrgency(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
         Session newSession1 = new Session(newAccount1, plantTrackerDAO);
         newAccount1.addSession(newSession1);
 
-        Plant newPlant1 = new Plant(newSession1.getSessionID(), plantTrackerDAO);
+        //Next watering dates of 2024-01-10, 2024-01-05, 2024-01-05, 2024-01-20, and none
+        int[] lastWateredDays = {1, 1, 3, 13, 0};
+        int[] wateringIntervals = {9, 4, 2, 7, 0};
+        List<Plant> newPlants = new ArrayList<Plant>();
+        for(int i = 0; i < lastWateredDays.length; i++){
+            Plant newPlant = new Plant(newSession1);
+            if(lastWateredDays[i] > 0) newPlant.setLastWatered(LocalDate.of(2024, 1, lastWateredDays[i]));
+            newPlant.setWateringInterval(wateringIntervals[i]);
+            plantTrackerDAO.add(newPlant);
+            newPlants.add(newPlant);
+        }
+
+        LocalDate dueBefore = LocalDate.of(2024, 1, 10);
+
+        //Most urgent plants come first (ties broken by plant ID), and plants due after dueBefore or never are left out
+        List<Plant> firstPage = plantTrackerDAO.findPlants(newAccount1, new PlantPage(PlantPage.URGENCY_SORT, 0, null, dueBefore, 2));
+        Assertions.assertEquals(List.of(newPlants.get(1), newPlants.get(2)), firstPage);
+
+        Plant lastPlant = firstPage.get(1);
+        List<Plant> secondPage = plantTrackerDAO.findPlants(newAccount1,
+                new PlantPage(PlantPage.URGENCY_SORT, lastPlant.getId(), lastPlant.getNextWateringDate(), dueBefore, 2));
+        Assertions.assertEquals(List.of(newPlants.get(0)), secondPage);
+
+        //Without dueBefore every plant with a next watering date is included
+        Assertions.assertEquals(4, plantTrackerDAO.findPlants(newAccount1, new PlantPage(PlantPage.URGENCY_SORT, 0, null, null, 10)).size());
+
+        //The ID sort order can also be filtered by dueBefore
+        Assertions.assertEquals(List.of(newPlants.get(0), newPlants.get(1), newPlants.get(2)),
+                plantTrackerDAO.findPlants(newAccount1, new PlantPage(PlantPage.ID_SORT, 0, null, dueBefore, 10)));
+    }
+
+    //tests for public List<PlantView> findPlantViews(Account theAccount, PlantFields plantFields, PlantPage plantPage);
+    @Test
+    public void plantTrackerDAO_findPlantViews_returnsOnlyRequestedFields(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Plant newPlant1 = new Plant(newSession1);
+        newPlant1.setPlantName("fern");
+        Reflector.setField(newPlant1, "imageKey", "fernKey");
         plantTrackerDAO.add(newPlant1);
 
+        Plant newPlant2 = new Plant(newSession1);
+        newPlant2.setPlantName("cactus");
+        plantTrackerDAO.add(newPlant2);
+
+        List<PlantView> plantViews = plantTrackerDAO.findPlantViews(newAccount1, PlantFields.parse("plantName,imageURL"), PlantPage.firstPage(10));
+
+        Assertions.assertEquals(2, plantViews.size());
+        Assertions.assertEquals(newPlant1.getId(), plantViews.get(0).getPlantID());
+        Assertions.assertEquals(List.of("plantName", "imageURL"), List.copyOf(plantViews.get(0).getFields().keySet()));
+        Assertions.assertEquals("fern", plantViews.get(0).getField("plantName"));
+        Assertions.assertEquals("fernKey", plantViews.get(0).getImageKey());
+        Assertions.assertNull(plantViews.get(0).getField("imageURL"));
+        Assertions.assertEquals("cactus", plantViews.get(1).getField("plantName"));
+        Assertions.assertNull(plantViews.get(1).getImageKey());
+
+        Assertions.assertTrue(plantTrackerDAO.findPlantViews(newAccount1, PlantFields.parse("id"), new PlantPage(PlantPage.ID_SORT, newPlant2.getId(), null, null, 10)).isEmpty());
+    }
+
+    //tests for public PlantView findPlantViewByPlantIDAndAccountID(int plantID, int accountID, PlantFields plantFields);
+    @Test
+    public void plantTrackerDAO_findPlantViewByPlantIDAndAccountID_throwsNoResultExceptionForOtherAccount(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
         Account newAccount2 = new Account("test2", "password2");
         plantTrackerDAO.add(newAccount2);
 
+        Plant newPlant = new Plant(newSession1);
+        plantTrackerDAO.add(newPlant);
+
+        PlantView plantView = plantTrackerDAO.findPlantViewByPlantIDAndAccountID(newPlant.getId(), newAccount1.getId(), PlantFields.parse("id,registrationID"));
+        Assertions.assertEquals(newPlant.getId(), plantView.getField("id"));
+        Assertions.assertEquals(newPlant.getRegistrationID(), plantView.getField("registrationID"));
+
+        Assertions.assertThrows(NoResultException.class, () -> plantTrackerDAO.findPlantViewByPlantIDAndAccountID(newPlant.getId(), newAccount2.getId(), PlantFields.parse("id")));
+    }
+
+    //tests for public List<PlantVersion> findPlantVersions(Account theAccount, PlantPage plantPage);
+    @Test
+    public void plantTrackerDAO_findPlantVersions_returnsIncrementedVersionAfterUpdate(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Plant newPlant1 = new Plant(newSession1);
+        plantTrackerDAO.add(newPlant1);
+        Plant newPlant2 = new Plant(newSession1);
+        Reflector.setField(newPlant2, "imageKey", "imageKey");
+        plantTrackerDAO.add(newPlant2);
+        entityManager.flush();
+
+        List<PlantVersion> plantVersions = plantTrackerDAO.findPlantVersions(newAccount1, PlantPage.firstPage(10));
+        Assertions.assertEquals(2, plantVersions.size());
+        Assertions.assertEquals(newPlant1.getId(), plantVersions.get(0).getPlantID());
+        Assertions.assertFalse(plantVersions.get(0).hasImage());
+        Assertions.assertTrue(plantVersions.get(1).hasImage());
+        int originalVersion = plantVersions.get(0).getVersion();
+
+        newPlant1.setPlantName("fern");
+        entityManager.flush();
+
+        Assertions.assertEquals(originalVersion + 1, plantTrackerDAO.findPlantVersions(newAccount1, PlantPage.firstPage(1)).get(0).getVersion());
+        Assertions.assertEquals(originalVersion + 1, plantTrackerDAO.findPlantVersionByPlantIDAndAccountID(newPlant1.getId(), newAccount1.getId()).getVersion());
+    }
+
+    //tests for public List<Plant> findPlantsByPlantIDsAndAccountID(List<Integer> plantIDs, int accountID);
+    @Test
+    public void plantTrackerDAO_findPlantsByPlantIDsAndAccountID_returnsOnlyPlantsOfAccount(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Account newAccount2 = new Account("test2", "password2");
+        plantTrackerDAO.add(newAccount2);
         Session newSession2 = new Session(newAccount2, plantTrackerDAO);
         newAccount2.addSession(newSession2);
 
-        Plant newPlant2 = new Plant(newSession2.getSessionID(), plantTrackerDAO);
+        Plant newPlant1 = new Plant(newSession1);
+        plantTrackerDAO.add(newPlant1);
+        Plant newPlant2 = new Plant(newSession1);
         plantTrackerDAO.add(newPlant2);
+        Plant otherPlant = new Plant(newSession2);
+        plantTrackerDAO.add(otherPlant);
 
-        Plant newPlant3 = new Plant(newSession1.getSessionID(), plantTrackerDAO);
-        plantTrackerDAO.add(newPlant3);
+        List<Plant> foundPlants = plantTrackerDAO.findPlantsByPlantIDsAndAccountID(List.of(newPlant1.getId(), newPlant2.getId(), otherPlant.getId()), newAccount1.getId());
 
-        List<Plant> thePlants = plantTrackerDAO.findAllPlants();
+        Assertions.assertEquals(2, foundPlants.size());
+        Assertions.assertTrue(foundPlants.containsAll(List.of(newPlant1, newPlant2)));
+        Assertions.assertTrue(plantTrackerDAO.findPlantsByPlantIDsAndAccountID(new ArrayList<Integer>(), newAccount1.getId()).isEmpty());
+    }
 
-        Assertions.assertEquals(thePlants.size(), 3);
-        Assertions.assertEquals(newPlant1.getId(), thePlants.get(0).getId());
-        Assertions.assertEquals(newPlant2.getId(), thePlants.get(1).getId());
-        Assertions.assertEquals(newPlant3.getId(), thePlants.get(2).getId());
+    //tests for public List<Integer> findDueAccountIDs(LocalDate dueBefore, long currentTime, long remindedBefore, List<String> timezones,
+    //                                                int shardCount, int shardID, int afterAccountID, int pageSize);
+    @Test
+    public void plantTrackerDAO_findDueAccountIDs_returnsPagesOfAccountsWithDuePlants(){
+
+        List<Account> newAccounts = new ArrayList<Account>();
+        for(int i = 0; i < 4; i++){
+            Account newAccount = new Account("test" + i, "password");
+            plantTrackerDAO.add(newAccount);
+            Session newSession = new Session(newAccount, plantTrackerDAO);
+            newAccount.addSession(newSession);
+            newAccounts.add(newAccount);
+
+            //The first three accounts have two due plants each and the last account only has a plant that is not due yet
+            for(int j = 0; j < 2; j++){
+                Plant newPlant = new Plant(newSession);
+                newPlant.setLastWatered(LocalDate.of(2024, 1, i < 3 ? 1 : 20));
+                newPlant.setWateringInterval(2);
+                plantTrackerDAO.add(newPlant);
+            }
+        }
+        entityManager.flush();
+
+        LocalDate presentDay = LocalDate.of(2024, 1, 10);
+
+        List<Integer> firstPage = plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, List.of(Account.DEFAULT_TIMEZONE), 1, 0, 0, 2);
+        Assertions.assertEquals(List.of(newAccounts.get(0).getId(), newAccounts.get(1).getId()), firstPage);
+
+        List<Integer> secondPage = plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, List.of(Account.DEFAULT_TIMEZONE), 1, 0, firstPage.get(1), 2);
+        Assertions.assertEquals(List.of(newAccounts.get(2).getId()), secondPage);
+    }
 
+    @Test
+    public void plantTrackerDAO_findDueAccountIDs_returnsOnlyAccountsInTimezones(){
+
+        List<Integer> accountIDs = new ArrayList<Integer>();
+        for(String timezone : List.of("America/New_York", "Europe/Berlin")){
+            Account newAccount = new Account(timezone, "password");
+            newAccount.setTimezone(timezone);
+            plantTrackerDAO.add(newAccount);
+            Session newSession = new Session(newAccount, plantTrackerDAO);
+            newAccount.addSession(newSession);
+            accountIDs.add(newAccount.getId());
+
+            Plant newPlant = new Plant(newSession);
+            newPlant.setLastWatered(LocalDate.of(2024, 1, 1));
+            newPlant.setWateringInterval(2);
+            plantTrackerDAO.add(newPlant);
+        }
+        entityManager.flush();
+
+        LocalDate presentDay = LocalDate.of(2024, 1, 10);
+
+        Assertions.assertEquals(List.of(accountIDs.get(1)), plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, List.of("Europe/Berlin", "Europe/Paris"), 1, 0, 0, 10));
+        Assertions.assertTrue(plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, new ArrayList<String>(), 1, 0, 0, 10).isEmpty());
+    }
+
+    //tests for public int updateTimezone(int accountID, String timezone);
+    @Test
+    public void plantTrackerDAO_updateTimezone_updatesAccount(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        entityManager.flush();
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateTimezone(newAccount.getId(), "Asia/Tokyo"));
+        entityManager.clear();
+
+        Assertions.assertEquals("Asia/Tokyo", entityManager.find(Account.class, newAccount.getId()).getTimezone());
+    }
+
+    @Test
+    public void plantTrackerDAO_findDueAccountIDs_returnsOnlyAccountsOfShard(){
+
+        List<Integer> accountIDs = new ArrayList<Integer>();
+        for(int i = 0; i < 4; i++){
+            Account newAccount = new Account("test" + i, "password");
+            plantTrackerDAO.add(newAccount);
+            Session newSession = new Session(newAccount, plantTrackerDAO);
+            newAccount.addSession(newSession);
+            accountIDs.add(newAccount.getId());
+
+            Plant newPlant = new Plant(newSession);
+            newPlant.setLastWatered(LocalDate.of(2024, 1, 1));
+            newPlant.setWateringInterval(2);
+            plantTrackerDAO.add(newPlant);
+        }
+        entityManager.flush();
+
+        LocalDate presentDay = LocalDate.of(2024, 1, 10);
+
+        //Each account belongs to exactly one of the shards
+        List<Integer> evenShard = plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, List.of(Account.DEFAULT_TIMEZONE), 2, 0, 0, 10);
+        List<Integer> oddShard = plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 1000, List.of(Account.DEFAULT_TIMEZONE), 2, 1, 0, 10);
+        Assertions.assertEquals(accountIDs.stream().filter(accountID -> accountID % 2 == 0).toList(), evenShard);
+        Assertions.assertEquals(accountIDs.stream().filter(accountID -> accountID % 2 == 1).toList(), oddShard);
+    }
+
+    //tests for public List<Plant> findDuePlantsByAccountIDs(List<Integer> accountIDs, LocalDate dueBefore, long currentTime, long remindedBefore);
+    @Test
+    public void plantTrackerDAO_findDuePlantsByAccountIDs_returnsDuePlantsGroupedByAccount(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Account newAccount2 = new Account("test2", "password2");
+        plantTrackerDAO.add(newAccount2);
+        Session newSession2 = new Session(newAccount2, plantTrackerDAO);
+        newAccount2.addSession(newSession2);
+
+        //Next watering dates of 2024-01-05 (account 2), 2024-01-03 (account 1), 2024-01-05 (account 1),
+        //2024-01-20 (account 1), and none (account 2)
+        Session[] sessions = {newSession2, newSession1, newSession1, newSession1, newSession2};
+        int[] lastWateredDays = {1, 1, 3, 13, 0};
+        int[] wateringIntervals = {4, 2, 2, 7, 0};
+        List<Plant> newPlants = new ArrayList<Plant>();
+        for(int i = 0; i < sessions.length; i++){
+            Plant newPlant = new Plant(sessions[i]);
+            if(lastWateredDays[i] > 0) newPlant.setLastWatered(LocalDate.of(2024, 1, lastWateredDays[i]));
+            newPlant.setWateringInterval(wateringIntervals[i]);
+            plantTrackerDAO.add(newPlant);
+            newPlants.add(newPlant);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        LocalDate presentDay = LocalDate.of(2024, 1, 10);
+
+        //Plants are grouped by account and the most overdue plants of an account come first,
+        //while plants not due yet or never are left out
+        List<Plant> duePlants = plantTrackerDAO.findDuePlantsByAccountIDs(List.of(newAccount1.getId(), newAccount2.getId()), presentDay, 1000, 1000);
+        Assertions.assertEquals(List.of(newPlants.get(1).getId(), newPlants.get(2).getId(), newPlants.get(0).getId()),
+                duePlants.stream().map(Plant::getId).toList());
+
+        //The account of each plant is loaded by the same query
+        Assertions.assertTrue(Hibernate.isInitialized(duePlants.get(0).getAccount()));
+        Assertions.assertEquals(newAccount1.getId(), duePlants.get(0).getAccount().getId());
+
+        Assertions.assertEquals(1, plantTrackerDAO.findDuePlantsByAccountIDs(List.of(newAccount2.getId()), presentDay, 1000, 1000).size());
+        Assertions.assertTrue(plantTrackerDAO.findDuePlantsByAccountIDs(new ArrayList<Integer>(), presentDay, 1000, 1000).isEmpty());
+    }
+
+    @Test
+    public void plantTrackerDAO_findDuePlantsByAccountIDs_leavesOutSnoozedAndRecentlyRemindedPlants(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        List<Plant> newPlants = new ArrayList<Plant>();
+        for(int i = 0; i < 3; i++){
+            Plant newPlant = new Plant(newSession1);
+            newPlant.setLastWatered(LocalDate.of(2024, 1, 1));
+            newPlant.setWateringInterval(1);
+            plantTrackerDAO.add(newPlant);
+            newPlants.add(newPlant);
+        }
+
+        //The first plant is snoozed and the second plant was reminded at time 500
+        Reflector.setField(newPlants.get(0), "snoozedUntil", 2000L);
+        entityManager.flush();
+        Assertions.assertEquals(1, plantTrackerDAO.updateLastRemindedAt(List.of(newPlants.get(1).getId()), 500));
+        entityManager.clear();
+
+        LocalDate presentDay = LocalDate.of(2024, 1, 10);
+        List<Integer> accountIDs = List.of(newAccount1.getId());
+
+        List<Plant> duePlants = plantTrackerDAO.findDuePlantsByAccountIDs(accountIDs, presentDay, 1000, 400);
+        Assertions.assertEquals(List.of(newPlants.get(2).getId()), duePlants.stream().map(Plant::getId).toList());
+
+        //Accounts whose due plants are all suppressed are not returned either
+        Assertions.assertEquals(accountIDs, plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 400, List.of(Account.DEFAULT_TIMEZONE), 1, 0, 0, 10));
+        plantTrackerDAO.updateLastRemindedAt(List.of(newPlants.get(2).getId()), 500);
+        Assertions.assertTrue(plantTrackerDAO.findDueAccountIDs(presentDay, 1000, 400, List.of(Account.DEFAULT_TIMEZONE), 1, 0, 0, 10).isEmpty());
+
+        //Once the reminder period and the snooze have passed, the plants are due again
+        duePlants = plantTrackerDAO.findDuePlantsByAccountIDs(accountIDs, presentDay, 2000, 500);
+        Assertions.assertEquals(3, duePlants.size());
+    }
+
+    //tests for public List<Plant> findPlantsDueBefore(LocalDate dueBefore, LocalDate afterNextWateringDate, int afterPlantID, int pageSize);
+    @Test
+    public void plantTrackerDAO_findPlantsDueBefore_returnsPagesOfPlantsByNextWateringDate(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        //Plants due on January 3rd, 5th, 3rd, and 20th (the last one is not due yet)
+        List<Plant> newPlants = new ArrayList<Plant>();
+        for(int day : new int[]{1, 3, 1, 18}){
+            Plant newPlant = new Plant(newSession);
+            newPlant.setLastWatered(LocalDate.of(2024, 1, day));
+            newPlant.setWateringInterval(2);
+            newPlants.add(plantTrackerDAO.add(newPlant));
+        }
+        newPlants.get(2).snooze(5);
+        entityManager.flush();
+        entityManager.clear();
+
+        LocalDate dueBefore = LocalDate.of(2024, 1, 10);
+
+        List<Plant> firstPage = plantTrackerDAO.findPlantsDueBefore(dueBefore, null, 0, 2);
+        Assertions.assertEquals(List.of(newPlants.get(0).getId(), newPlants.get(2).getId()), firstPage.stream().map(Plant::getId).toList());
+        Assertions.assertTrue(Hibernate.isInitialized(firstPage.get(0).getAccount()));
+
+        Plant lastPlant = firstPage.get(1);
+        List<Plant> secondPage = plantTrackerDAO.findPlantsDueBefore(dueBefore, lastPlant.getNextWateringDate(), lastPlant.getId(), 2);
+        Assertions.assertEquals(List.of(newPlants.get(1).getId()), secondPage.stream().map(Plant::getId).toList());
+    }
+
+    //tests for public List<Plant> findPlantsForReminder(List<Integer> plantIDs);
+    @Test
+    public void plantTrackerDAO_findPlantsForReminder_returnsPlantsWithAccounts(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant1 = plantTrackerDAO.add(new Plant(newSession));
+        Plant newPlant2 = plantTrackerDAO.add(new Plant(newSession));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Plant> foundPlants = plantTrackerDAO.findPlantsForReminder(List.of(newPlant2.getId(), 0));
+        Assertions.assertEquals(1, foundPlants.size());
+        Assertions.assertEquals(newPlant2.getId(), foundPlants.get(0).getId());
+        Assertions.assertTrue(Hibernate.isInitialized(foundPlants.get(0).getAccount()));
+        Assertions.assertTrue(plantTrackerDAO.findPlantsForReminder(new ArrayList<Integer>()).isEmpty());
+    }
+
+    //tests for public int updateLastRemindedAt(List<Integer> plantIDs, long remindedAt);
+    @Test
+    public void plantTrackerDAO_updateLastRemindedAt_updatesOnlyProvidedPlants(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Session newSession1 = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession1);
+
+        Plant newPlant1 = plantTrackerDAO.add(new Plant(newSession1));
+        Plant newPlant2 = plantTrackerDAO.add(new Plant(newSession1));
+        entityManager.flush();
+        int originalVersion = newPlant1.getVersion();
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateLastRemindedAt(List.of(newPlant1.getId()), 500));
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastRemindedAt(new ArrayList<Integer>(), 500));
+        entityManager.clear();
+
+        Plant foundPlant1 = plantTrackerDAO.findPlantByPlantIDAndAccountID(newPlant1.getId(), newAccount1.getId());
+        Plant foundPlant2 = plantTrackerDAO.findPlantByPlantIDAndAccountID(newPlant2.getId(), newAccount1.getId());
+        Assertions.assertEquals(500, foundPlant1.getLastRemindedAt());
+        Assertions.assertEquals(originalVersion, foundPlant1.getVersion());
+        Assertions.assertEquals(0, foundPlant2.getLastRemindedAt());
+    }
+
+    //tests for public ReminderShard findClaimableReminderShard(int shardCount, long currentTime);
+    @Test
+    public void plantTrackerDAO_findClaimableReminderShard_returnsShardsReadyToRun(){
+
+        for(int shardID = 0; shardID < 3; shardID++){
+            plantTrackerDAO.add(new ReminderShard(shardID));
+        }
+        Assertions.assertEquals(List.of(0, 1, 2), plantTrackerDAO.findReminderShardIDs());
+
+        //A node leases the first shard, so the next claim returns the second shard
+        ReminderShard firstShard = plantTrackerDAO.findClaimableReminderShard(2, 1000);
+        Assertions.assertEquals(0, firstShard.getId());
+        firstShard.lease(2000);
+        entityManager.flush();
+
+        ReminderShard secondShard = plantTrackerDAO.findClaimableReminderShard(2, 1000);
+        Assertions.assertEquals(1, secondShard.getId());
+        secondShard.complete(1000, 3000);
+        entityManager.flush();
+
+        //Shards beyond the shard count are left out, and leased or completed shards are claimed again once their next run arrives
+        Assertions.assertNull(plantTrackerDAO.findClaimableReminderShard(2, 1000));
+        Assertions.assertEquals(0, plantTrackerDAO.findClaimableReminderShard(2, 2000).getId());
+        Assertions.assertEquals(1000, plantTrackerDAO.findReminderShard(1).getLastCompletedAt());
+    }
+
+    //tests for public List<OutboxMessage> findDueOutboxMessages(long currentTime, int batchSize);
+    @Test
+    public void plantTrackerDAO_findDueOutboxMessages_returnsPendingMessagesInAttemptOrder(){
+
+        OutboxMessage laterMessage = plantTrackerDAO.add(new OutboxMessage("test1@test.com", "subject", "text"));
+        OutboxMessage earlierMessage = plantTrackerDAO.add(new OutboxMessage("test2@test.com", "subject", "text"));
+        OutboxMessage futureMessage = plantTrackerDAO.add(new OutboxMessage("test3@test.com", "subject", "text"));
+        OutboxMessage deadMessage = plantTrackerDAO.add(new OutboxMessage("test4@test.com", "subject", "text"));
+        laterMessage.lease(200);
+        earlierMessage.lease(100);
+        futureMessage.lease(5000);
+        deadMessage.recordFailure("550 No such user", 1, 60, 0);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<OutboxMessage> dueMessages = plantTrackerDAO.findDueOutboxMessages(1000, 10);
+        Assertions.assertEquals(List.of(earlierMessage.getId(), laterMessage.getId()), dueMessages.stream().map(OutboxMessage::getId).toList());
+
+        //The batch size limits the number of messages that are claimed
+        Assertions.assertEquals(1, plantTrackerDAO.findDueOutboxMessages(1000, 1).size());
+    }
+
+    //tests for public List<OutboxMessage> findOutboxMessagesByIDs(List<Integer> outboxMessageIDs);
+    //tests for public int deleteOutboxMessages(List<Integer> outboxMessageIDs);
+    @Test
+    public void plantTrackerDAO_deleteOutboxMessages_deletesOnlyProvidedMessages(){
+
+        OutboxMessage deliveredMessage = plantTrackerDAO.add(new OutboxMessage("test1@test.com", "subject", "text"));
+        OutboxMessage failedMessage = plantTrackerDAO.add(new OutboxMessage("test2@test.com", "subject", "text"));
+        entityManager.flush();
+
+        Assertions.assertEquals(1, plantTrackerDAO.deleteOutboxMessages(List.of(deliveredMessage.getId())));
+        Assertions.assertEquals(0, plantTrackerDAO.deleteOutboxMessages(new ArrayList<Integer>()));
+        entityManager.clear();
+
+        List<OutboxMessage> foundMessages = plantTrackerDAO.findOutboxMessagesByIDs(List.of(deliveredMessage.getId(), failedMessage.getId()));
+        Assertions.assertEquals(1, foundMessages.size());
+        Assertions.assertEquals(failedMessage.getId(), foundMessages.get(0).getId());
+        Assertions.assertTrue(plantTrackerDAO.findOutboxMessagesByIDs(new ArrayList<Integer>()).isEmpty());
     }
 
     //tests for public Plant save(Plant thePlant);
@@ -379,6 +1124,391 @@ public class PlantTrackerDAOImplTests {
 
     }
 
+    @Test
+    public void plantTrackerDAO_deletePlant_evictsCachedDevice(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+
+        plantTrackerDAO.findDeviceByRegistrationID(newPlant.getRegistrationID());
+        plantTrackerDAO.delete(newPlant);
+
+        Assertions.assertNull(deviceCache.get(newPlant.getRegistrationID()));
+        Assertions.assertThrows(NoResultException.class, ()->{plantTrackerDAO.findDeviceByRegistrationID(newPlant.getRegistrationID());});
+    }
+
+    //tests for public long nextChangeNumber(Account theAccount);
+    @Test
+    public void plantTrackerDAO_nextChangeNumber_incrementsChangeCounter(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Assertions.assertEquals(0, plantTrackerDAO.findChangeCounter(newAccount));
+        Assertions.assertEquals(1, plantTrackerDAO.nextChangeNumber(newAccount));
+        Assertions.assertEquals(2, plantTrackerDAO.nextChangeNumber(newAccount));
+        Assertions.assertEquals(2, plantTrackerDAO.findChangeCounter(newAccount));
+
+        //A block of change numbers is reserved with one statement
+        Assertions.assertEquals(52, plantTrackerDAO.reserveChangeNumbers(newAccount, 50));
+    }
+
+    //tests for public List<Plant> findChangedPlants(Account theAccount, long afterChangeNumber, long throughChangeNumber);
+    //and public List<Integer> findDeletedPlantIDs(Account theAccount, long afterChangeNumber, long throughChangeNumber);
+    @Test
+    public void plantTrackerDAO_findChangedPlants_returnsOnlyChangesInRange(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant1 = new Plant(newSession);
+        newPlant1.recordChange(plantTrackerDAO);
+        plantTrackerDAO.add(newPlant1);
+
+        Plant newPlant2 = new Plant(newSession);
+        newPlant2.recordChange(plantTrackerDAO);
+        plantTrackerDAO.add(newPlant2);
+
+        Plant newPlant3 = new Plant(newSession);
+        newPlant3.recordChange(plantTrackerDAO);
+        plantTrackerDAO.add(newPlant3);
+
+        //Update the first plant and delete the second plant
+        newPlant1.recordChange(plantTrackerDAO);
+        plantTrackerDAO.add(new PlantTombstone(newPlant2, plantTrackerDAO));
+        plantTrackerDAO.delete(newPlant2);
+        entityManager.flush();
+
+        List<Plant> changedPlants = plantTrackerDAO.findChangedPlants(newAccount, 2, 5);
+        Assertions.assertEquals(List.of(newPlant3, newPlant1), changedPlants);
+        Assertions.assertEquals(List.of(newPlant2.getId()), plantTrackerDAO.findDeletedPlantIDs(newAccount, 2, 5));
+
+        //Changes past the end of the range are left for the next sync
+        Assertions.assertEquals(List.of(newPlant3), plantTrackerDAO.findChangedPlants(newAccount, 2, 3));
+        Assertions.assertTrue(plantTrackerDAO.findDeletedPlantIDs(newAccount, 2, 4).isEmpty());
+    }
+
+    @Test
+    public void plantTrackerDAO_deleteAccount_deletesPlantTombstones(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession);
+        plantTrackerDAO.add(newPlant);
+        plantTrackerDAO.add(new PlantTombstone(newPlant, plantTrackerDAO));
+        plantTrackerDAO.delete(newPlant);
+        entityManager.flush();
+
+        plantTrackerDAO.delete(newAccount);
+        entityManager.flush();
+
+        Assertions.assertThrows(NoResultException.class, ()->{plantTrackerDAO.findAccount(newAccount);});
+        Assertions.assertTrue(plantTrackerDAO.findDeletedPlantIDs(newAccount, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    //tests for public int updateLastWatered(Device theDevice);
+    @Test
+    public void plantTrackerDAO_updateLastWatered_updatesPlantInDatabase(){
+
+        Account newAccount = new Account("test", "password");
+        newAccount.setTimezone("Pacific/Kiritimati");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant.setWateringInterval(3);
+        newPlant.setLastWatered(LocalDate.now().minusDays(10));
+        newPlant.snooze(2);
+        Reflector.setField(newPlant, "lastRemindedAt", 500L);
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+        int originalVersion = newPlant.getVersion();
+        long originalChangeCounter = plantTrackerDAO.findChangeCounter(newAccount);
+
+        Device theDevice = new Device();
+        Reflector.setField(theDevice, "accountEmail", "test");
+        Reflector.setField(theDevice, "registrationID", newPlant.getRegistrationID());
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateLastWatered(theDevice));
+        entityManager.clear();
+
+        Plant foundPlant = plantTrackerDAO.findPlantByRegistrationID(newPlant.getRegistrationID());
+        LocalDate currentDate = LocalDate.now(ZoneId.of("Pacific/Kiritimati"));
+        Assertions.assertEquals(currentDate, foundPlant.getLastWatered());
+        Assertions.assertEquals(currentDate.plusDays(3), foundPlant.getNextWateringDate());
+        Assertions.assertEquals(0, foundPlant.getLastRemindedAt());
+        Assertions.assertEquals(0, foundPlant.getSnoozedUntil());
+        Assertions.assertEquals(originalVersion + 1, foundPlant.getVersion());
+        Assertions.assertEquals(originalChangeCounter + 1, foundPlant.getChangeNumber());
+        Assertions.assertEquals(originalChangeCounter + 1, plantTrackerDAO.findChangeCounter(newAccount));
+    }
+
+    @Test
+    public void plantTrackerDAO_updateLastWatered_updatesPlantWithDeviceKey(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant.setWateringInterval(3);
+        newPlant.setLastWatered(newAccount.currentDate().minusDays(10));
+        String deviceKey = "deviceKey";
+        Reflector.setField(newPlant, "deviceKeyHash", Plant.hashDeviceKey(deviceKey));
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+        long originalChangeCounter = plantTrackerDAO.findChangeCounter(newAccount);
+
+        //The device only provides its key
+        Device theDevice = new Device();
+        theDevice.setDeviceKey(deviceKey);
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateLastWatered(theDevice));
+        entityManager.clear();
+
+        Plant foundPlant = plantTrackerDAO.findPlantByRegistrationID(newPlant.getRegistrationID());
+        Assertions.assertEquals(newAccount.currentDate(), foundPlant.getLastWatered());
+        Assertions.assertEquals(originalChangeCounter + 1, foundPlant.getChangeNumber());
+        Assertions.assertEquals(originalChangeCounter + 1, plantTrackerDAO.findChangeCounter(newAccount));
+    }
+
+    @Test
+    public void plantTrackerDAO_updateLastWatered_returnsZeroWhenDeviceKeyRevoked(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        String revokedDeviceKey = "revokedDeviceKey";
+        Reflector.setField(newPlant, "deviceKeyHash", Plant.hashDeviceKey(revokedDeviceKey));
+        newPlant.revokeDeviceKey();
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+        long originalChangeCounter = plantTrackerDAO.findChangeCounter(newAccount);
+
+        Device theDevice = new Device();
+        theDevice.setDeviceKey(revokedDeviceKey);
+
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastWatered(theDevice));
+        Assertions.assertEquals(originalChangeCounter, plantTrackerDAO.findChangeCounter(newAccount));
+    }
+
+    @Test
+    public void plantTrackerDAO_updateLastWatered_keepsRemindersWhenAlreadyWateredToday(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant.setWateringInterval(3);
+        newPlant.setLastWatered(newAccount.currentDate());
+        newPlant.snooze(2);
+        long snoozedUntil = newPlant.getSnoozedUntil();
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+
+        Device theDevice = new Device();
+        Reflector.setField(theDevice, "accountEmail", "test");
+        Reflector.setField(theDevice, "registrationID", newPlant.getRegistrationID());
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateLastWatered(theDevice));
+        entityManager.clear();
+
+        Plant foundPlant = plantTrackerDAO.findPlantByRegistrationID(newPlant.getRegistrationID());
+        Assertions.assertEquals(snoozedUntil, foundPlant.getSnoozedUntil());
+    }
+
+    @Test
+    public void plantTrackerDAO_updateLastWatered_returnsZeroWhenEmailNotLinked(){
+
+        Account newAccount1 = new Account("test", "password");
+        plantTrackerDAO.add(newAccount1);
+        Account newAccount2 = new Account("test2", "password");
+        plantTrackerDAO.add(newAccount2);
+        Session newSession = new Session(newAccount1, plantTrackerDAO);
+        newAccount1.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant.setWateringInterval(3);
+        newPlant.setLastWatered(LocalDate.now().minusDays(10));
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+        long originalChangeCounter = plantTrackerDAO.findChangeCounter(newAccount2);
+
+        Device theDevice = new Device();
+        Reflector.setField(theDevice, "accountEmail", "test2");
+        Reflector.setField(theDevice, "registrationID", newPlant.getRegistrationID());
+
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastWatered(theDevice));
+
+        Reflector.setField(theDevice, "accountEmail", "test");
+        Reflector.setField(theDevice, "registrationID", newPlant.getRegistrationID() + "a");
+
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastWatered(theDevice));
+        entityManager.clear();
+
+        Plant foundPlant = plantTrackerDAO.findPlantByRegistrationID(newPlant.getRegistrationID());
+        Assertions.assertEquals(LocalDate.now().minusDays(10), foundPlant.getLastWatered());
+        Assertions.assertEquals(originalChangeCounter, plantTrackerDAO.findChangeCounter(newAccount2));
+    }
+
+    @Test
+    public void plantTrackerDAO_updateLastWatered_evictsCachedDeviceWhenPlantDeleted(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        entityManager.flush();
+
+        //The plant was deleted (e.g., by another node) after its registration ID was cached
+        deviceCache.put(new DeviceCache.CachedDevice("deletedRegistrationID", -1, newAccount.getId(), "test"));
+
+        Device theDevice = new Device();
+        Reflector.setField(theDevice, "accountEmail", "test");
+        Reflector.setField(theDevice, "registrationID", "deletedRegistrationID");
+
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastWatered(theDevice));
+        Assertions.assertNull(deviceCache.get("deletedRegistrationID"));
+    }
+
+    //tests for public int[] updateLastWatered(List<Device> theDevices);
+    @Test
+    public void plantTrackerDAO_updateLastWateredBatch_updatesLinkedPlants(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant1 = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant1.setWateringInterval(3);
+        newPlant1.setLastWatered(LocalDate.now().minusDays(10));
+        plantTrackerDAO.add(newPlant1);
+        Plant newPlant2 = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant2.setWateringInterval(5);
+        newPlant2.setLastWatered(LocalDate.now().minusDays(10));
+        plantTrackerDAO.add(newPlant2);
+        entityManager.flush();
+        long originalChangeCounter = plantTrackerDAO.findChangeCounter(newAccount);
+
+        Device theDevice1 = new Device();
+        Reflector.setField(theDevice1, "accountEmail", "test");
+        Reflector.setField(theDevice1, "registrationID", newPlant1.getRegistrationID());
+        Device theDevice2 = new Device();
+        Reflector.setField(theDevice2, "accountEmail", "nottest");
+        Reflector.setField(theDevice2, "registrationID", newPlant2.getRegistrationID());
+
+        int[] updatedPlantCounts = plantTrackerDAO.updateLastWatered(List.of(theDevice1, theDevice2));
+        entityManager.clear();
+
+        Assertions.assertArrayEquals(new int[]{1, 0}, updatedPlantCounts);
+        Assertions.assertEquals(0, plantTrackerDAO.updateLastWatered(new ArrayList<Device>()).length);
+
+        Plant foundPlant1 = plantTrackerDAO.findPlantByRegistrationID(newPlant1.getRegistrationID());
+        Plant foundPlant2 = plantTrackerDAO.findPlantByRegistrationID(newPlant2.getRegistrationID());
+        Assertions.assertEquals(newAccount.currentDate(), foundPlant1.getLastWatered());
+        Assertions.assertEquals(newAccount.currentDate().plusDays(3), foundPlant1.getNextWateringDate());
+        Assertions.assertEquals(originalChangeCounter + 1, foundPlant1.getChangeNumber());
+        Assertions.assertEquals(LocalDate.now().minusDays(10), foundPlant2.getLastWatered());
+        Assertions.assertEquals(originalChangeCounter + 1, plantTrackerDAO.findChangeCounter(newAccount));
+    }
+
+    //tests for public int[] applyWateringEvents(List<WateringEvent> theWateringEvents);
+    @Test
+    public void plantTrackerDAO_applyWateringEvents_updatesPlantsWateredBeforeEvent(){
+
+        Account newAccount = new Account("test", "password");
+        newAccount.setTimezone("Pacific/Kiritimati");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant1 = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant1.setWateringInterval(3);
+        newPlant1.setLastWatered(newAccount.currentDate().minusDays(10));
+        newPlant1.snooze(2);
+        plantTrackerDAO.add(newPlant1);
+        Plant newPlant2 = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        newPlant2.setWateringInterval(3);
+        newPlant2.setLastWatered(newAccount.currentDate());
+        plantTrackerDAO.add(newPlant2);
+        entityManager.flush();
+        int originalVersion2 = newPlant2.getVersion();
+
+        //The first plant was watered (while the device was offline) 3 days ago, and the second plant 2 days ago
+        long currentTime = System.currentTimeMillis()/1000;
+        long wateredAt1 = currentTime - 3 * 24 * 60 * 60;
+        long wateredAt2 = currentTime - 2 * 24 * 60 * 60;
+
+        int[] updatedPlantCounts = plantTrackerDAO.applyWateringEvents(List.of(
+                new WateringEvent(newPlant1.getRegistrationID(), "test", wateredAt1),
+                new WateringEvent(newPlant2.getRegistrationID(), "test", wateredAt2),
+                new WateringEvent(newPlant1.getRegistrationID() + "a", "test", wateredAt1)));
+        entityManager.clear();
+
+        Assertions.assertArrayEquals(new int[]{1, 0, 0}, updatedPlantCounts);
+
+        Plant foundPlant1 = plantTrackerDAO.findPlantByRegistrationID(newPlant1.getRegistrationID());
+        Plant foundPlant2 = plantTrackerDAO.findPlantByRegistrationID(newPlant2.getRegistrationID());
+        LocalDate wateredDate1 = Instant.ofEpochSecond(wateredAt1).atZone(ZoneId.of("Pacific/Kiritimati")).toLocalDate();
+        Assertions.assertEquals(wateredDate1, foundPlant1.getLastWatered());
+        Assertions.assertEquals(wateredDate1.plusDays(3), foundPlant1.getNextWateringDate());
+        Assertions.assertEquals(0, foundPlant1.getSnoozedUntil());
+        Assertions.assertEquals(newAccount.currentDate(), foundPlant2.getLastWatered());
+        Assertions.assertEquals(originalVersion2, foundPlant2.getVersion());
+    }
+
+    //tests for public List<Plant> findPlantsByDevices(List<Device> theDevices);
+    @Test
+    public void plantTrackerDAO_findPlantsByDevices_returnsPlantsWithAccounts(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant1 = plantTrackerDAO.add(new Plant(newSession.getSessionID(), plantTrackerDAO));
+        Plant newPlant2 = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        String deviceKey = "deviceKey";
+        Reflector.setField(newPlant2, "deviceKeyHash", Plant.hashDeviceKey(deviceKey));
+        plantTrackerDAO.add(newPlant2);
+        plantTrackerDAO.add(new Plant(newSession.getSessionID(), plantTrackerDAO));
+        entityManager.flush();
+        entityManager.clear();
+
+        Device theDevice1 = new Device();
+        theDevice1.setRegistrationID(newPlant1.getRegistrationID());
+        Device theDevice2 = new Device();
+        theDevice2.setDeviceKey(deviceKey);
+        Device fakeDevice = new Device();
+        fakeDevice.setRegistrationID("fakeRegistrationID");
+
+        List<Plant> foundPlants = plantTrackerDAO.findPlantsByDevices(List.of(theDevice1, theDevice2, fakeDevice));
+
+        Assertions.assertEquals(2, foundPlants.size());
+        Assertions.assertEquals(newPlant1.getId(), foundPlants.get(0).getId());
+        Assertions.assertEquals(newPlant2.getId(), foundPlants.get(1).getId());
+        Assertions.assertTrue(Hibernate.isInitialized(foundPlants.get(0).getAccount()));
+        Assertions.assertTrue(plantTrackerDAO.findPlantsByDevices(new ArrayList<Device>()).isEmpty());
+    }
+
     //tests for public Plant findPlantByRegistrationID(String registrationID);
     @Test
     public void plantTrackerDAO_findPlantByRegistrationID_returnsPlant(){
@@ -397,4 +1527,62 @@ public class PlantTrackerDAOImplTests {
         Assertions.assertEquals(foundPlant.getRegistrationID(), newPlant.getRegistrationID());
     }
 
+    //tests for public DeviceCache.CachedDevice findDeviceByRegistrationID(String registrationID);
+    @Test
+    public void plantTrackerDAO_findDeviceByRegistrationID_cachesDevice(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+
+        DeviceCache.CachedDevice foundDevice = plantTrackerDAO.findDeviceByRegistrationID(newPlant.getRegistrationID());
+
+        Assertions.assertEquals(newPlant.getId(), foundDevice.getPlantID());
+        Assertions.assertEquals(newAccount.getId(), foundDevice.getAccountID());
+        Assertions.assertTrue(foundDevice.isLinkedTo("test"));
+
+        //The second lookup is served by the cache
+        long originalHitCount = deviceCache.getHitCount();
+        Assertions.assertSame(foundDevice, plantTrackerDAO.findDeviceByRegistrationID(newPlant.getRegistrationID()));
+        Assertions.assertEquals(originalHitCount + 1, deviceCache.getHitCount());
+
+        plantTrackerDAO.evictCachedDevice(newPlant.getRegistrationID());
+        Assertions.assertNull(deviceCache.get(newPlant.getRegistrationID()));
+    }
+
+    @Test
+    public void plantTrackerDAO_findDeviceByRegistrationID_throwsNoResultException(){
+
+        Assertions.assertThrows(NoResultException.class, ()->{plantTrackerDAO.findDeviceByRegistrationID("fakeRegistrationID");});
+        Assertions.assertNull(deviceCache.get("fakeRegistrationID"));
+    }
+
+    //tests for public int updateDeviceKeyHash(int plantID, String deviceKeyHash);
+    @Test
+    public void plantTrackerDAO_updateDeviceKeyHash_storesDeviceKeyHash(){
+
+        Account newAccount = new Account("test", "password");
+        plantTrackerDAO.add(newAccount);
+
+        Session newSession = new Session(newAccount, plantTrackerDAO);
+        newAccount.addSession(newSession);
+
+        Plant newPlant = new Plant(newSession.getSessionID(), plantTrackerDAO);
+        plantTrackerDAO.add(newPlant);
+        entityManager.flush();
+
+        Assertions.assertEquals(1, plantTrackerDAO.updateDeviceKeyHash(newPlant.getId(), Plant.hashDeviceKey("deviceKey")));
+        Assertions.assertEquals(0, plantTrackerDAO.updateDeviceKeyHash(-1, Plant.hashDeviceKey("deviceKey")));
+        entityManager.clear();
+
+        Plant foundPlant = plantTrackerDAO.findPlantByRegistrationID(newPlant.getRegistrationID());
+        Assertions.assertEquals(Plant.hashDeviceKey("deviceKey"), foundPlant.getDeviceKeyHash());
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.krisnovak.springboot.demo.planttracker.dao;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PlantTrackerDeviceCacheTests {
+
+    private DeviceCache.CachedDevice newCachedDevice(String registrationID, int accountID){
+        return new DeviceCache.CachedDevice(registrationID, 1, accountID, "test");
+    }
+
+    //Tests for public CachedDevice get(String registrationID)
+    @Test
+    public void DeviceCache_get_returnsCachedDeviceAndCountsHit(){
+        DeviceCache deviceCache = new DeviceCache(10);
+
+        deviceCache.put(newCachedDevice("registrationID", 1));
+        DeviceCache.CachedDevice cachedDevice = deviceCache.get("registrationID");
+
+        Assertions.assertNotNull(cachedDevice);
+        Assertions.assertEquals(1, cachedDevice.getPlantID());
+        Assertions.assertTrue(cachedDevice.isLinkedTo("test"));
+        Assertions.assertFalse(cachedDevice.isLinkedTo("test2"));
+        Assertions.assertEquals(1, deviceCache.getHitCount());
+        Assertions.assertEquals(0, deviceCache.getMissCount());
+    }
+
+    @Test
+    public void DeviceCache_get_returnsNullAndCountsMiss(){
+        DeviceCache deviceCache = new DeviceCache(10);
+
+        Assertions.assertNull(deviceCache.get("fakeRegistrationID"));
+        Assertions.assertEquals(0, deviceCache.getHitCount());
+        Assertions.assertEquals(1, deviceCache.getMissCount());
+        Assertions.assertEquals(0, deviceCache.getHitRatio());
+    }
+
+    //Tests for public void put(CachedDevice cachedDevice)
+    @Test
+    public void DeviceCache_put_evictsLeastRecentlyUsedDevice(){
+        DeviceCache deviceCache = new DeviceCache(2);
+
+        deviceCache.put(newCachedDevice("registrationID1", 1));
+        deviceCache.put(newCachedDevice("registrationID2", 1));
+
+        //Touch the first device so the second device becomes the least recently used
+        deviceCache.get("registrationID1");
+        deviceCache.put(newCachedDevice("registrationID3", 1));
+
+        Assertions.assertEquals(2, deviceCache.size());
+        Assertions.assertNotNull(deviceCache.get("registrationID1"));
+        Assertions.assertNull(deviceCache.get("registrationID2"));
+        Assertions.assertNotNull(deviceCache.get("registrationID3"));
+    }
+
+    //Tests for public void evict(String registrationID)
+    @Test
+    public void DeviceCache_evict_removesDevice(){
+        DeviceCache deviceCache = new DeviceCache(10);
+
+        deviceCache.put(newCachedDevice("registrationID", 1));
+        deviceCache.evict("registrationID");
+
+        Assertions.assertNull(deviceCache.get("registrationID"));
+    }
+
+    //Tests for public void evictAccount(int accountID)
+    @Test
+    public void DeviceCache_evictAccount_removesOnlyDevicesOfAccount(){
+        DeviceCache deviceCache = new DeviceCache(10);
+
+        deviceCache.put(newCachedDevice("registrationID1", 1));
+        deviceCache.put(newCachedDevice("registrationID2", 1));
+        deviceCache.put(newCachedDevice("registrationID3", 2));
+
+        deviceCache.evictAccount(1);
+
+        Assertions.assertEquals(1, deviceCache.size());
+        Assertions.assertNotNull(deviceCache.get("registrationID3"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.krisnovak.springboot.demo.planttracker.dao;
+
+import com.krisnovak.springboot.demo.planttracker.Reflector;
+import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerSessionCacheTests {
+
+    @Mock
+    private PlantTrackerDAO plantTrackerDAO;
+
+    private Session newSession(long timeCreated, int maxAge){
+        Account theAccount = new Account("test", "password");
+        Reflector.setField(theAccount, "id", 1);
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+        theSession.setTimeCreated(timeCreated);
+        theSession.setMaxAge(maxAge);
+        return theSession;
+    }
+
+    //Tests for public CachedSession get(String sessionID)
+    @Test
+    public void SessionCache_get_returnsCachedSessionAndCountsHit(){
+        SessionCache sessionCache = new SessionCache(10, 300);
+        Session theSession = newSession(System.currentTimeMillis()/1000, 100);
+
+        sessionCache.put(theSession);
+        SessionCache.CachedSession cachedSession = sessionCache.get(theSession.getSessionID());
+
+        Assertions.assertNotNull(cachedSession);
+        Assertions.assertEquals(1, cachedSession.getAccountID());
+        Assertions.assertEquals(theSession.getTimeCreated() + 100, cachedSession.getExpirationTime());
+        Assertions.assertEquals(1, sessionCache.getHitCount());
+        Assertions.assertEquals(0, sessionCache.getMissCount());
+    }
+
+    @Test
+    public void SessionCache_get_returnsNullAndCountsMiss(){
+        SessionCache sessionCache = new SessionCache(10, 300);
+
+        Assertions.assertNull(sessionCache.get("fakeSessionID"));
+        Assertions.assertEquals(0, sessionCache.getHitCount());
+        Assertions.assertEquals(1, sessionCache.getMissCount());
+    }
+
+    @Test
+    public void SessionCache_get_returnsNullWhenExpired(){
+        SessionCache sessionCache = new SessionCache(10, 300);
+        Session theSession = newSession(System.currentTimeMillis()/1000, 100);
+
+        sessionCache.put(theSession);
+
+        //Simulate the session expiring while it is held in the cache
+        Map<String, SessionCache.CachedSession> cachedSessions = (Map<String, SessionCache.CachedSession>) Reflector.getField(sessionCache, "cachedSessions");
+        cachedSessions.put(theSession.getSessionID(), new SessionCache.CachedSession(theSession.getSessionID(), 1, (System.currentTimeMillis()/1000) - 5));
+
+        Assertions.assertNull(sessionCache.get(theSession.getSessionID()));
+        Assertions.assertEquals(0, sessionCache.size());
+        Assertions.assertEquals(1, sessionCache.getMissCount());
+    }
+
+    //Tests for public void put(Session theSession)
+    @Test
+    public void SessionCache_put_doesNotCacheExpiredSession(){
+        SessionCache sessionCache = new SessionCache(10, 300);
+        Session theSession = newSession((System.currentTimeMillis()/1000) - 5, 3);
+
+        sessionCache.put(theSession);
+
+        Assertions.assertEquals(0, sessionCache.size());
+        Assertions.assertNull(sessionCache.get(theSession.getSessionID()));
+    }
+
+    @Test
+    public void SessionCache_put_capsEntryAtTimeToLive(){
+        SessionCache sessionCache = new SessionCache(10, 30);
+        long currentTime = System.currentTimeMillis()/1000;
+        Session theSession = newSession(currentTime, 100);
+
+        //The session is valid for 100 seconds, but the entry is only kept for 30 seconds
+        sessionCache.put(theSession);
+        SessionCache.CachedSession cachedSession = sessionCache.get(theSession.getSessionID());
+
+        Assertions.assertNotNull(cachedSession);
+        Assertions.assertTrue(cachedSession.getExpirationTime() >= currentTime + 30);
+        Assertions.assertTrue(cachedSession.getExpirationTime() < theSession.getTimeCreated() + 100);
+    }
+
+    @Test
+    public void SessionCache_put_evictsLeastRecentlyUsedSession(){
+        SessionCache sessionCache = new SessionCache(2, 300);
+        long now = System.currentTimeMillis()/1000;
+        Session session1 = newSession(now, 100);
+        Session session2 = newSession(now, 100);
+        Session session3 = newSession(now, 100);
+
+        sessionCache.put(session1);
+        sessionCache.put(session2);
+
+        //Touch the first session so the second session becomes the least recently used
+        sessionCache.get(session1.getSessionID());
+        sessionCache.put(session3);
+
+        Assertions.assertEquals(2, sessionCache.size());
+        Assertions.assertNotNull(sessionCache.get(session1.getSessionID()));
+        Assertions.assertNull(sessionCache.get(session2.getSessionID()));
+        Assertions.assertNotNull(sessionCache.get(session3.getSessionID()));
+    }
+
+    //Tests for public void evict(String sessionID)
+    @Test
+    public void SessionCache_evict_removesSession(){
+        SessionCache sessionCache = new SessionCache(10, 300);
+        Session theSession = newSession(System.currentTimeMillis()/1000, 100);
+
+        sessionCache.put(theSession);
+        sessionCache.evict(theSession.getSessionID());
+
+        Assertions.assertNull(sessionCache.get(theSession.getSessionID()));
+    }
+}
@@ -13,8 +13,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.EmptyResultDataAccessException;
 
 import java.lang.reflect.Field;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.when;
 
@@ -100,6 +104,41 @@ public class PlantTrackerAccountTests {
 
     }
 
+    //Tests for removeOldestSessions
+    @Test
+    public void Account_removeOldestSessions_removesOldestSessionsPastMaximum(){
+        Account theAccount = new Account("test", "password");
+
+        List<Session> sessionList = new ArrayList<Session>();
+        sessionList.add(mockSession1);
+        sessionList.add(mockSession2);
+
+        theAccount.setSessions(sessionList);
+
+        when(mockSession1.getTimeCreated()).thenReturn(200L);
+        when(mockSession2.getTimeCreated()).thenReturn(100L);
+        List<Session> removedSessions = theAccount.removeOldestSessions(1);
+
+        Assertions.assertEquals(1, removedSessions.size());
+        Assertions.assertSame(mockSession2, removedSessions.get(0));
+        Assertions.assertEquals(1, sessionList.size());
+        Assertions.assertSame(mockSession1, sessionList.get(0));
+    }
+
+    @Test
+    public void Account_removeOldestSessions_keepsSessionsUnderMaximum(){
+        Account theAccount = new Account("test", "password");
+
+        List<Session> sessionList = new ArrayList<Session>();
+        sessionList.add(mockSession1);
+        sessionList.add(mockSession2);
+
+        theAccount.setSessions(sessionList);
+
+        Assertions.assertTrue(theAccount.removeOldestSessions(2).isEmpty());
+        Assertions.assertEquals(2, sessionList.size());
+    }
+
     @Test
     public void Account_managedInstance_returnsAccount(){
         Account theAccount = new Account("test", "password");
@@ -122,4 +161,45 @@ public class PlantTrackerAccountTests {
 
         Assertions.assertThrows(InvalidAccountException.class, () -> {Account.managedInstance(theAccount, plantTrackerDAO);});
     }
+
+    //Tests for public static String validTimezone(String timezone)
+    @Test
+    public void Account_validTimezone_acceptsOnlyRegionIDs(){
+        Assertions.assertEquals("America/New_York", Account.validTimezone("America/New_York"));
+        Assertions.assertThrows(InvalidTimezoneException.class, () -> {Account.validTimezone("+05:00");});
+        Assertions.assertThrows(InvalidTimezoneException.class, () -> {Account.validTimezone("Mars/Olympus_Mons");});
+        Assertions.assertThrows(InvalidTimezoneException.class, () -> {Account.validTimezone(null);});
+    }
+
+    //Tests for public static Map<LocalDate, List<String>> timezonesAtLocalHour(int localHour, Instant instant)
+    @Test
+    public void Account_timezonesAtLocalHour_groupsTimezonesByLocalDate(){
+
+        //At 20:00 UTC it is 09:00 on the next day in Pacific/Auckland (UTC+13 in January)
+        //and 09:00 on the same day in Pacific/Pago_Pago (UTC-11), but 10:00 in Pacific/Honolulu (UTC-10)
+        Map<LocalDate, List<String>> timezones = Account.timezonesAtLocalHour(9, Instant.parse("2024-01-10T20:00:00Z"));
+
+        Assertions.assertEquals(2, timezones.size());
+        Assertions.assertTrue(timezones.get(LocalDate.of(2024, 1, 11)).contains("Pacific/Auckland"));
+        Assertions.assertTrue(timezones.get(LocalDate.of(2024, 1, 10)).contains("Pacific/Pago_Pago"));
+        Assertions.assertTrue(timezones.values().stream().noneMatch(zones -> zones.contains("UTC") || zones.contains("Pacific/Honolulu")));
+
+        //Every timezone is in exactly one of the 24 hourly slices of a day
+        int timezoneCount = 0;
+        for(int hour = 0; hour < 24; hour++){
+            for(List<String> zones : Account.timezonesAtLocalHour(hour, Instant.parse("2024-01-10T20:00:00Z")).values())
+                timezoneCount += zones.size();
+        }
+        Assertions.assertEquals(ZoneId.getAvailableZoneIds().size(), timezoneCount);
+    }
+
+    //Tests for public LocalDate currentDate()
+    @Test
+    public void Account_currentDate_usesTimezoneOfAccount(){
+        Account theAccount = new Account("test", "password");
+        Assertions.assertEquals(Account.DEFAULT_TIMEZONE, theAccount.getTimezone());
+
+        theAccount.setTimezone("Pacific/Kiritimati");
+        Assertions.assertEquals(LocalDate.now(ZoneId.of("Pacific/Kiritimati")), theAccount.currentDate());
+    }
 }
@@ -0,0 +1,47 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PlantTrackerOutboxMessageTests {
+
+    //Tests for new OutboxMessage(String recipient, String subject, String text)
+    @Test
+    public void OutboxMessage_new_isReadyToBeDelivered(){
+
+        OutboxMessage theOutboxMessage = new OutboxMessage("test@test.com", "subject", "x".repeat(OutboxMessage.MAXIMUM_TEXT_LENGTH + 1));
+
+        Assertions.assertEquals(OutboxMessage.PENDING_STATUS, theOutboxMessage.getStatus());
+        Assertions.assertEquals(0, theOutboxMessage.getAttempts());
+        Assertions.assertEquals(theOutboxMessage.getTimeCreated(), theOutboxMessage.getNextAttemptAt());
+        Assertions.assertEquals(OutboxMessage.MAXIMUM_TEXT_LENGTH, theOutboxMessage.getText().length());
+    }
+
+    //Tests for public void recordFailure(String error, int maximumAttempts, long retryBackoff, long currentTime)
+    @Test
+    public void OutboxMessage_recordFailure_backsOffExponentially(){
+
+        OutboxMessage theOutboxMessage = new OutboxMessage("test@test.com", "subject", "text");
+
+        theOutboxMessage.recordFailure("421 Try again later", 3, 60, 1000);
+        Assertions.assertEquals(1060, theOutboxMessage.getNextAttemptAt());
+
+        theOutboxMessage.recordFailure("421 Try again later", 3, 60, 2000);
+        Assertions.assertEquals(2120, theOutboxMessage.getNextAttemptAt());
+        Assertions.assertFalse(theOutboxMessage.isDead());
+        Assertions.assertEquals("421 Try again later", theOutboxMessage.getLastError());
+    }
+
+    @Test
+    public void OutboxMessage_recordFailure_deadLettersAfterMaximumAttempts(){
+
+        OutboxMessage theOutboxMessage = new OutboxMessage("test@test.com", "subject", "text");
+
+        theOutboxMessage.recordFailure("550 No such user", 2, 60, 1000);
+        theOutboxMessage.recordFailure("550 No such user", 2, 60, 2000);
+
+        Assertions.assertTrue(theOutboxMessage.isDead());
+        Assertions.assertEquals(2, theOutboxMessage.getAttempts());
+        Assertions.assertEquals(1060, theOutboxMessage.getNextAttemptAt());
+    }
+}
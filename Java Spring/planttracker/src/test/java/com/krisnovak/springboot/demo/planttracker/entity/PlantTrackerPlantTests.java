@@ -1,8 +1,10 @@
 package com.krisnovak.springboot.demo.planttracker.entity;
 
 import com.krisnovak.springboot.demo.planttracker.Reflector;
+import com.krisnovak.springboot.demo.planttracker.dao.DeviceCache;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import com.krisnovak.springboot.demo.planttracker.service.S3Bucket;
+import jakarta.persistence.NoResultException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,9 +16,13 @@ import org.springframework.dao.EmptyResultDataAccessException;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -86,24 +92,19 @@ public class PlantTrackerPlantTests {
 
     }
 
-    //Tests for managedInstance(String plantID, String sessionID, PlantTrackerDAO plantTrackerDAO)
+    //Tests for managedInstance(String plantID, Session managedSession, PlantTrackerDAO plantTrackerDAO)
     @Test
     public void Plant_managedInstanceStringPlantID_returnManagedPlant(){
 
         String fakePlantID = "1";
-        String fakeSessionID = "fakeSessionID";
 
-        //When looking for a managed version of a session, just return a mock session
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenReturn(mockSession);
         //When attempting to get the account of the mock session, then just get a mock account
         when(mockSession.getAccount()).thenReturn(mockAccount);
-        //When attempting to find a plant by its ID in the database, just return the mock plant
-        when(plantTrackerDAO.findPlantByPlantID(1)).thenReturn(mockPlant);
-        //When attempting to get the email of the mock account, then just return fakeEmail
-        when(mockAccount.getEmail()).thenReturn("fakeEmail@fakeEmail.com");
-        //When attempts to get the account of the mock plant, just return the mock account
-        when(mockPlant.getAccount()).thenReturn(mockAccount);
-        Plant newPlant = Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);
+        //When attempting to get the ID of the mock account, then just return 1
+        when(mockAccount.getId()).thenReturn(1);
+        //When attempting to find the plant linked to the account in the database, just return the mock plant
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, 1)).thenReturn(mockPlant);
+        Plant newPlant = Plant.managedInstance(fakePlantID, mockSession, plantTrackerDAO);
 
         Assertions.assertSame(newPlant, mockPlant);
 
@@ -113,32 +114,24 @@ public class PlantTrackerPlantTests {
     public void Plant_managedInstanceStringPlantID_throwInvalidPlantException(){
 
         String fakePlantID = "invalid";
-        String fakeSessionID = "fakeSessionID";
 
-        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);});
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(fakePlantID, mockSession, plantTrackerDAO);});
 
     }
 
-    //Tests for managedInstance(int plantID, String sessionID, PlantTrackerDAO plantTrackerDAO)
-
-    //Tests for managedInstance(String plantID, String sessionID, PlantTrackerDAO plantTrackerDAO)
+    //Tests for managedInstance(int plantID, Session managedSession, PlantTrackerDAO plantTrackerDAO)
     @Test
     public void Plant_managedInstanceIntPlantID_returnManagedPlant(){
 
         int fakePlantID = 1;
-        String fakeSessionID = "fakeSessionID";
 
-        //When looking for a managed version of a session, just return a mock session
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenReturn(mockSession);
         //When attempting to get the account of the mock session, then just get a mock account
         when(mockSession.getAccount()).thenReturn(mockAccount);
-        //When attempting to find a plant by its ID in the database, just return the mock plant
-        when(plantTrackerDAO.findPlantByPlantID(1)).thenReturn(mockPlant);
-        //When attempting to get the email of the mock account, then just return fakeEmail
-        when(mockAccount.getEmail()).thenReturn("fakeEmail@fakeEmail.com");
-        //When attempts to get the account of the mock plant, just return the mock account
-        when(mockPlant.getAccount()).thenReturn(mockAccount);
-        Plant newPlant = Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);
+        //When attempting to get the ID of the mock account, then just return 1
+        when(mockAccount.getId()).thenReturn(1);
+        //When attempting to find the plant linked to the account in the database, just return the mock plant
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, 1)).thenReturn(mockPlant);
+        Plant newPlant = Plant.managedInstance(fakePlantID, mockSession, plantTrackerDAO);
 
         Assertions.assertSame(newPlant, mockPlant);
 
@@ -148,135 +141,128 @@ public class PlantTrackerPlantTests {
     public void Plant_managedInstanceIntPlantID_throwsInvalidPlantExceptionWhenNoPlantFound(){
 
         int fakePlantID = 1;
-        String fakeSessionID = "fakeSessionID";
 
-        //When looking for a managed version of a session, just return a mock session
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenReturn(mockSession);
-        //When attempting to find a plant by its ID in the database, just return the mock plant
-        when(plantTrackerDAO.findPlantByPlantID(1)).thenThrow(EmptyResultDataAccessException.class);
+        //When attempting to get the account of the mock session, then just get a mock account
+        when(mockSession.getAccount()).thenReturn(mockAccount);
+        //When attempting to get the ID of the mock account, then just return 1
+        when(mockAccount.getId()).thenReturn(1);
+        //When attempting to find the plant in the database, report that it does not exist
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, 1)).thenThrow(EmptyResultDataAccessException.class);
 
-        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);});
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(fakePlantID, mockSession, plantTrackerDAO);});
 
     }
 
+    //Tests for String issueDeviceKey(Device theDevice, PlantTrackerDAO plantTrackerDAO)
     @Test
-    public void Plant_managedInstanceIntPlantID_throwsInvalidSessionException(){
+    public void Plant_issueDeviceKey_storesOnlyHashOfKey(){
 
-        int fakePlantID = 1;
-        String fakeSessionID = "fakeSessionID";
+        String fakeRegistrationID = "fakeRegistrationID";
+        String fakeEmail = "fakeEmail@fakeEmail.com";
+
+        when(mockDevice.getRegistrationID()).thenReturn(fakeRegistrationID);
+        when(mockDevice.getAccountEmail()).thenReturn(fakeEmail);
 
-        //When looking for a managed version of a session, just return a mock session
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenThrow(InvalidSessionException.class);
+        when(plantTrackerDAO.findDeviceByRegistrationID(fakeRegistrationID)).thenReturn(new DeviceCache.CachedDevice(fakeRegistrationID, 1, 1, fakeEmail));
+        when(plantTrackerDAO.updateDeviceKeyHash(ArgumentMatchers.eq(1), ArgumentMatchers.anyString())).thenReturn(1);
 
-        Assertions.assertThrows(InvalidSessionException.class, ()->{Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);});
+        String deviceKey = Plant.issueDeviceKey(mockDevice, plantTrackerDAO);
+
+        Assertions.assertEquals(Plant.DEVICE_KEY_LENGTH, deviceKey.length());
+        verify(plantTrackerDAO).updateDeviceKeyHash(1, Plant.hashDeviceKey(deviceKey));
+        Assertions.assertNotEquals(deviceKey, Plant.hashDeviceKey(deviceKey));
 
     }
 
     @Test
-    public void Plant_managedInstanceIntPlantID_throwsInvalidPlantExceptionBecauseAccountsDoNotMatch(){
+    public void Plant_issueDeviceKey_throwsInvalidPlantExceptionPlantNotFound(){
 
-        int fakePlantID = 1;
-        String fakeSessionID = "fakeSessionID";
+        String fakeRegistrationID = "fakeRegistrationID";
+        String fakeEmail = "fakeEmail@fakeEmail.com";
 
-        //When looking for a managed version of a session, just return a mock session
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenReturn(mockSession);
-        //When attempting to get the account of the mock session, then just get a mock account
-        when(mockSession.getAccount()).thenReturn(mockAccount);
-        //When attempting to find a plant by its ID in the database, just return the mock plant
-        when(plantTrackerDAO.findPlantByPlantID(1)).thenReturn(mockPlant);
-        //When attempting to get the email of the mock account, then just return fakeEmail
-        when(mockAccount.getEmail()).thenReturn("fakeEmail@fakeEmail.com");
-        //When attempts to get the account of the mock plant, just return the mock account
-        when(mockPlant.getAccount()).thenReturn(mockAccount2);
-        when(mockAccount2.getEmail()).thenReturn("emailFake@emailFake.com");
+        when(mockDevice.getRegistrationID()).thenReturn(fakeRegistrationID);
+        when(mockDevice.getAccountEmail()).thenReturn(fakeEmail);
 
-        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(fakePlantID, fakeSessionID, plantTrackerDAO);});
+        when(plantTrackerDAO.findDeviceByRegistrationID(fakeRegistrationID)).thenThrow(NoResultException.class);
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.issueDeviceKey(mockDevice, plantTrackerDAO);});
 
     }
 
-    //Tests for Plant managedInstance(Device theDevice, PlantTrackerDAO plantTrackerDAO)
     @Test
-    public void Plant_managedInstanceDevice_returnsPlant(){
+    public void Plant_issueDeviceKey_throwsInvalidPlantExceptionEmailsNotMatched(){
 
         String fakeRegistrationID = "fakeRegistrationID";
         String fakeEmail = "fakeEmail@fakeEmail.com";
+        String emailFake = "emailFake@emailFake.com";
 
         when(mockDevice.getRegistrationID()).thenReturn(fakeRegistrationID);
         when(mockDevice.getAccountEmail()).thenReturn(fakeEmail);
 
-        when(plantTrackerDAO.findPlantByRegistrationID(fakeRegistrationID)).thenReturn(mockPlant);
-        when(mockPlant.getAccount()).thenReturn(mockAccount);
-        when(mockAccount.getEmail()).thenReturn(fakeEmail);
-        Plant newPlant = Plant.managedInstance(mockDevice, plantTrackerDAO);
+        when(plantTrackerDAO.findDeviceByRegistrationID(fakeRegistrationID)).thenReturn(new DeviceCache.CachedDevice(fakeRegistrationID, 1, 1, emailFake));
 
-        Assertions.assertSame(newPlant, mockPlant);
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.issueDeviceKey(mockDevice, plantTrackerDAO);});
+        verify(plantTrackerDAO, never()).updateDeviceKeyHash(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString());
 
     }
 
     @Test
-    public void Plant_managedInstanceDevice_throwsInvalidPlantExceptionPlantNotFound(){
+    public void Plant_issueDeviceKey_throwsInvalidPlantExceptionWithoutEmail(){
 
-        String fakeRegistrationID = "fakeRegistrationID";
-        String fakeEmail = "fakeEmail@fakeEmail.com";
-
-        when(mockDevice.getRegistrationID()).thenReturn(fakeRegistrationID);
+        Device theDevice = new Device();
+        theDevice.setDeviceKey("fakeDeviceKey");
 
-        when(plantTrackerDAO.findPlantByRegistrationID(fakeRegistrationID)).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(mockDevice, plantTrackerDAO);});
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.issueDeviceKey(theDevice, plantTrackerDAO);});
+        verify(plantTrackerDAO, never()).findDeviceByRegistrationID(ArgumentMatchers.any());
 
     }
 
     @Test
-    public void Plant_managedInstanceDevice_throwsInvalidPlantExceptionEmailsNotMatched(){
+    public void Plant_issueDeviceKey_evictsCachedDeviceWhenPlantDeleted(){
 
         String fakeRegistrationID = "fakeRegistrationID";
         String fakeEmail = "fakeEmail@fakeEmail.com";
-        String emailFake = "emailFake@emailFake.com";
 
         when(mockDevice.getRegistrationID()).thenReturn(fakeRegistrationID);
         when(mockDevice.getAccountEmail()).thenReturn(fakeEmail);
 
-        when(plantTrackerDAO.findPlantByRegistrationID(fakeRegistrationID)).thenReturn(mockPlant);
-        when(mockPlant.getAccount()).thenReturn(mockAccount);
-        when(mockAccount.getEmail()).thenReturn(emailFake);
+        //The plant was deleted (e.g., by another node) after it was cached
+        when(plantTrackerDAO.findDeviceByRegistrationID(fakeRegistrationID)).thenReturn(new DeviceCache.CachedDevice(fakeRegistrationID, 1, 1, fakeEmail));
+        when(plantTrackerDAO.updateDeviceKeyHash(ArgumentMatchers.eq(1), ArgumentMatchers.anyString())).thenReturn(0);
 
-        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.managedInstance(mockDevice, plantTrackerDAO);});
+        Assertions.assertThrows(InvalidPlantException.class, ()->{Plant.issueDeviceKey(mockDevice, plantTrackerDAO);});
+        verify(plantTrackerDAO).evictCachedDevice(fakeRegistrationID);
 
     }
 
-    //Tests for allManagedInstances(String sessionID, PlantTrackerDAO plantTrackerDAO)
+    //Tests for hashDeviceKey(String deviceKey) and revokeDeviceKey()
     @Test
-    public void Plant_allManagedInstances_returnsAllManagedInstances(){
-
-        String fakeSessionID = "fakeSessionID";
+    public void Plant_revokeDeviceKey_removesHashOfKey(){
 
-        List<Plant> fakeManagedInstances = new ArrayList();
-        fakeManagedInstances.add(mockPlant);
-        fakeManagedInstances.add(mockPlant);
+        Plant thePlant = new Plant(mockSession);
+        Reflector.setField(thePlant, "deviceKeyHash", Plant.hashDeviceKey("fakeDeviceKey"));
 
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenReturn(mockSession);
-        when(mockSession.getAccount()).thenReturn(mockAccount);
-        when(plantTrackerDAO.findAllPlants(mockAccount)).thenReturn(fakeManagedInstances);
-        List<Plant> allManagedInstances = Plant.allManagedInstances(fakeSessionID, plantTrackerDAO);
+        Assertions.assertEquals(Plant.hashDeviceKey("fakeDeviceKey"), thePlant.getDeviceKeyHash());
+        Assertions.assertNotEquals(Plant.hashDeviceKey("fakeDeviceKey"), Plant.hashDeviceKey("otherDeviceKey"));
 
-        Assertions.assertSame(fakeManagedInstances, allManagedInstances);
+        thePlant.revokeDeviceKey();
+        Assertions.assertNull(thePlant.getDeviceKeyHash());
     }
 
+    //Tests for managedInstances(Session managedSession, PlantPage plantPage, PlantTrackerDAO plantTrackerDAO)
     @Test
-    public void Plant_allManagedInstances_throwsInvalidSessionException(){
-
-        String fakeSessionID = "fakeSessionID";
+    public void Plant_managedInstances_returnsPageOfManagedInstances(){
 
         List<Plant> fakeManagedInstances = new ArrayList();
         fakeManagedInstances.add(mockPlant);
         fakeManagedInstances.add(mockPlant);
 
-        when(Session.managedInstance(fakeSessionID, plantTrackerDAO)).thenThrow(InvalidSessionException.class);
+        when(mockSession.getAccount()).thenReturn(mockAccount);
+        when(plantTrackerDAO.findPlants(mockAccount, new PlantPage(PlantPage.ID_SORT, 5, null, null, 2))).thenReturn(fakeManagedInstances);
+        List<Plant> allManagedInstances = Plant.managedInstances(mockSession, new PlantPage(PlantPage.ID_SORT, 5, null, null, 2), plantTrackerDAO);
 
-        Assertions.assertThrows(InvalidSessionException.class, ()->{ Plant.allManagedInstances(fakeSessionID, plantTrackerDAO);});
+        Assertions.assertSame(fakeManagedInstances, allManagedInstances);
     }
 
-    //Tests for generateAndSetImageURL(S3Bucket s3Bucket)
     @Test
     public void Plant_generateAndSetImageURL_SetsImageURL(){
 
@@ -298,6 +284,95 @@ public class PlantTrackerPlantTests {
     }
 
 
+    //Tests for setLastWatered(LocalDate lastWatered) and setWateringInterval(int wateringInterval)
+    @Test
+    public void Plant_setLastWateredAndWateringInterval_maintainNextWateringDate(){
+
+        when(mockSession.getAccount()).thenReturn(mockAccount);
+        Plant thePlant = new Plant(mockSession);
+
+        //No next watering date until both the last watered date and the watering interval are set
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 1));
+        Assertions.assertNull(thePlant.getNextWateringDate());
+
+        thePlant.setWateringInterval(7);
+        Assertions.assertEquals(LocalDate.of(2024, 1, 8), thePlant.getNextWateringDate());
+
+        thePlant.setLastWatered(LocalDate.of(2024, 2, 1));
+        Assertions.assertEquals(LocalDate.of(2024, 2, 8), thePlant.getNextWateringDate());
+
+        thePlant.setWateringInterval(0);
+        Assertions.assertNull(thePlant.getNextWateringDate());
+
+        thePlant.setWateringInterval(3);
+        thePlant.setLastWatered(null);
+        Assertions.assertNull(thePlant.getNextWateringDate());
+    }
+
+    //Tests for snooze(int snoozeDays)
+    @Test
+    public void Plant_snooze_isEndedByWatering(){
+
+        when(mockSession.getAccount()).thenReturn(mockAccount);
+        Plant thePlant = new Plant(mockSession);
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 1));
+        Reflector.setField(thePlant, "lastRemindedAt", 500L);
+
+        long presentTime = System.currentTimeMillis()/1000;
+        thePlant.snooze(2);
+        Assertions.assertTrue(thePlant.getSnoozedUntil() >= presentTime + 2 * 24 * 60 * 60);
+
+        //Providing the same date does not count as watering the plant
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 1));
+        Assertions.assertNotEquals(0, thePlant.getSnoozedUntil());
+        Assertions.assertEquals(500, thePlant.getLastRemindedAt());
+
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 2));
+        Assertions.assertEquals(0, thePlant.getSnoozedUntil());
+        Assertions.assertEquals(0, thePlant.getLastRemindedAt());
+    }
+
+    //Tests for nextReminderTime(int reminderLocalHour, long reminderPeriod)
+    @Test
+    public void Plant_nextReminderTime_usesReminderHourOfAccountTimezone(){
+
+        Account theAccount = new Account("test", "password");
+        theAccount.setTimezone("America/New_York");
+        when(mockSession.getAccount()).thenReturn(theAccount);
+        Plant thePlant = new Plant(mockSession);
+        Assertions.assertEquals(-1, thePlant.nextReminderTime(9, 72000));
+
+        //9:00 in New York on January 3rd is 14:00 UTC
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 1));
+        thePlant.setWateringInterval(2);
+        long dueTime = Instant.parse("2024-01-03T14:00:00Z").getEpochSecond();
+        Assertions.assertEquals(dueTime, thePlant.nextReminderTime(9, 72000));
+
+        //A recent reminder or a snooze pushes back the next reminder to the reminder hour of a later day
+        Reflector.setField(thePlant, "lastRemindedAt", dueTime);
+        Assertions.assertEquals(dueTime + 86400, thePlant.nextReminderTime(9, 72000));
+        Reflector.setField(thePlant, "snoozedUntil", dueTime + 100000);
+        Assertions.assertEquals(dueTime + 2 * 86400, thePlant.nextReminderTime(9, 72000));
+    }
+
+    @Test
+    public void Plant_nextReminderTime_keepsRepeatRemindersAtReminderHour(){
+
+        Account theAccount = new Account("test", "password");
+        theAccount.setTimezone("America/New_York");
+        when(mockSession.getAccount()).thenReturn(theAccount);
+        Plant thePlant = new Plant(mockSession);
+        thePlant.setLastWatered(LocalDate.of(2024, 1, 1));
+        thePlant.setWateringInterval(2);
+
+        //A plant still overdue is reminded again at 9:00 in New York every day instead of 20 hours later each time
+        long remindedAt = Instant.parse("2024-01-03T14:00:00Z").getEpochSecond();
+        long secondDayTime = Instant.parse("2024-01-04T14:00:00Z").getEpochSecond();
+        Assertions.assertEquals(secondDayTime, thePlant.nextReminderTime(9, 72000, remindedAt));
+        long thirdDayTime = Instant.parse("2024-01-05T14:00:00Z").getEpochSecond();
+        Assertions.assertEquals(thirdDayTime, thePlant.nextReminderTime(9, 72000, secondDayTime));
+    }
+
     //Tests for generateAndSetImageKey(BufferedImage image, S3Bucket s3Bucket)
     @Test
     public void Plant_generateAndSetImageKey_ReturnsAndSetsImageKey() throws IOException {
@@ -362,4 +437,49 @@ public class PlantTrackerPlantTests {
         Assertions.assertNotEquals(result.getWidth(), 0);
     }
 
+    //Tests for public static PlantFields parse(String fields) (PlantFields)
+    @Test
+    public void PlantFields_parse_returnsRequestedFieldsInOrder(){
+
+        PlantFields plantFields = PlantFields.parse(" imageURL,plantName,imageURL ");
+
+        Assertions.assertEquals(List.of("imageURL", "plantName"), plantFields.getFieldNames());
+        Assertions.assertEquals("imageKey", plantFields.getAttribute("imageURL"));
+        Assertions.assertTrue(plantFields.contains("plantName"));
+        Assertions.assertFalse(plantFields.contains("id"));
+    }
+
+    @Test
+    public void PlantFields_parse_throwsInvalidFieldsException(){
+
+        Assertions.assertThrows(InvalidFieldsException.class, ()->{PlantFields.parse("");});
+        Assertions.assertThrows(InvalidFieldsException.class, ()->{PlantFields.parse("plantName,,id");});
+        Assertions.assertThrows(InvalidFieldsException.class, ()->{PlantFields.parse("imageKey");});
+    }
+
+    //Tests for public static PlantPage parse(String sort, String after, LocalDate dueBefore, int pageSize) (PlantPage)
+    @Test
+    public void PlantPage_parse_returnsRequestedPage(){
+
+        LocalDate dueBefore = LocalDate.of(2024, 3, 1);
+
+        Assertions.assertEquals(PlantPage.firstPage(50), PlantPage.parse(null, null, null, 50));
+        Assertions.assertEquals(new PlantPage(PlantPage.ID_SORT, 12, null, dueBefore, 50), PlantPage.parse("id", "12", dueBefore, 50));
+
+        PlantPage urgencyPage = PlantPage.parse("urgency", "2024-02-03_12", null, 50);
+        Assertions.assertEquals(new PlantPage(PlantPage.URGENCY_SORT, 12, LocalDate.of(2024, 2, 3), null, 50), urgencyPage);
+
+        //The next cursor of a page can be parsed back into the following page
+        Assertions.assertEquals("2024-02-05_7", urgencyPage.nextCursor(7, LocalDate.of(2024, 2, 5)));
+        Assertions.assertEquals("7", PlantPage.firstPage(50).nextCursor(7, LocalDate.of(2024, 2, 5)));
+    }
+
+    @Test
+    public void PlantPage_parse_throwsInvalidPageException(){
+
+        Assertions.assertThrows(InvalidPageException.class, ()->{PlantPage.parse("plantName", null, null, 50);});
+        Assertions.assertThrows(InvalidPageException.class, ()->{PlantPage.parse("id", "2024-02-03_12", null, 50);});
+        Assertions.assertThrows(InvalidPageException.class, ()->{PlantPage.parse("urgency", "12", null, 50);});
+        Assertions.assertThrows(InvalidPageException.class, ()->{PlantPage.parse("urgency", "2024-02-30_12", null, 50);});
+    }
 }
@@ -0,0 +1,71 @@
+package com.krisnovak.springboot.demo.planttracker.entity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class PlantTrackerWateringEventTests {
+
+    //Tests for public static List<WateringEvent> latestByDevice(List<WateringEvent> theWateringEvents, long currentTime)
+    @Test
+    public void WateringEvent_latestByDevice_keepsLatestEventOfEachDevice(){
+
+        List<WateringEvent> latestEvents = WateringEvent.latestByDevice(List.of(
+                new WateringEvent("registrationID1", "test", 300),
+                new WateringEvent("registrationID2", "test", 100),
+                new WateringEvent("registrationID1", "test", 500),
+                new WateringEvent("registrationID1", "test", 200),
+                new WateringEvent("registrationID1", "nottest", 100)), 1000);
+
+        Assertions.assertEquals(3, latestEvents.size());
+        Assertions.assertEquals("registrationID1", latestEvents.get(0).getRegistrationID());
+        Assertions.assertEquals(500, latestEvents.get(0).getWateredAt());
+        Assertions.assertEquals("registrationID2", latestEvents.get(1).getRegistrationID());
+        Assertions.assertEquals(100, latestEvents.get(1).getWateredAt());
+        Assertions.assertEquals("nottest", latestEvents.get(2).getAccountEmail());
+    }
+
+    @Test
+    public void WateringEvent_latestByDevice_movesFutureEventsToCurrentTime(){
+
+        List<WateringEvent> latestEvents = WateringEvent.latestByDevice(List.of(new WateringEvent("registrationID", "test", 5000)), 1000);
+
+        Assertions.assertEquals(1000, latestEvents.get(0).getWateredAt());
+    }
+
+    @Test
+    public void WateringEvent_latestByDevice_throwsInvalidBatchExceptionWhenEventIsIncomplete(){
+
+        Assertions.assertThrows(InvalidBatchException.class, ()->{
+            WateringEvent.latestByDevice(List.of(new WateringEvent(null, "test", 100)), 1000);});
+        Assertions.assertThrows(InvalidBatchException.class, ()->{
+            WateringEvent.latestByDevice(List.of(new WateringEvent("registrationID", null, 100)), 1000);});
+        Assertions.assertThrows(InvalidBatchException.class, ()->{
+            WateringEvent.latestByDevice(List.of(new WateringEvent("registrationID", "test", 0)), 1000);});
+        Assertions.assertThrows(InvalidBatchException.class, ()->{
+            WateringEvent.latestByDevice(List.of(new WateringEvent(null, 100)), 1000);});
+    }
+
+    @Test
+    public void WateringEvent_latestByDevice_acceptsEventsWithDeviceKey(){
+
+        List<WateringEvent> latestEvents = WateringEvent.latestByDevice(List.of(
+                new WateringEvent("deviceKey", 300),
+                new WateringEvent("deviceKey", 500)), 1000);
+
+        Assertions.assertEquals(1, latestEvents.size());
+        Assertions.assertEquals("deviceKey", latestEvents.get(0).getDeviceKey());
+        Assertions.assertEquals(500, latestEvents.get(0).getWateredAt());
+    }
+
+    //Tests for public Device getDevice()
+    @Test
+    public void WateringEvent_getDevice_returnsDeviceOfEvent(){
+
+        Device theDevice = new WateringEvent("registrationID", "test", 100).getDevice();
+
+        Assertions.assertEquals("registrationID", theDevice.getRegistrationID());
+        Assertions.assertEquals("test", theDevice.getAccountEmail());
+    }
+}
@@ -0,0 +1,56 @@
+package com.krisnovak.springboot.demo.planttracker.rest;
+
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidSessionException;
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerAuthenticatedSessionArgumentResolverTests {
+
+    @Mock
+    private PlantTrackerService plantTrackerService;
+
+    @Mock
+    private Session mockSession;
+
+    //Tests for public Object resolveArgument(...)
+    @Test
+    public void AuthenticatedSessionArgumentResolver_resolveArgument_resolvesSessionOncePerRequest(){
+
+        AuthenticatedSessionArgumentResolver resolver = new AuthenticatedSessionArgumentResolver(plantTrackerService);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("sessionId", "fakeSessionID"));
+        ServletWebRequest webRequest = new ServletWebRequest(request);
+
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+
+        Assertions.assertSame(mockSession, resolver.resolveArgument(null, null, webRequest, null));
+        Assertions.assertSame(mockSession, resolver.resolveArgument(null, null, webRequest, null));
+        verify(plantTrackerService, times(1)).authenticate("fakeSessionID");
+    }
+
+    @Test
+    public void AuthenticatedSessionArgumentResolver_resolveArgument_throwsInvalidSessionExceptionWithoutCookie(){
+
+        AuthenticatedSessionArgumentResolver resolver = new AuthenticatedSessionArgumentResolver(plantTrackerService);
+
+        ServletWebRequest webRequest = new ServletWebRequest(new MockHttpServletRequest());
+
+        when(plantTrackerService.authenticate("")).thenThrow(InvalidSessionException.class);
+
+        Assertions.assertThrows(InvalidSessionException.class, ()->{resolver.resolveArgument(null, null, webRequest, null);});
+    }
+}
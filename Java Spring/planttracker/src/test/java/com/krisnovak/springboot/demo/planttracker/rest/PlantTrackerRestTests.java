@@ -7,7 +7,9 @@ import com.krisnovak.springboot.demo.planttracker.configuration.AppConfig;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAOImpl;
 import com.krisnovak.springboot.demo.planttracker.entity.*;
+import com.krisnovak.springboot.demo.planttracker.service.DeviceEventBuffer;
 import com.krisnovak.springboot.demo.planttracker.service.PlantTrackerService;
+import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.Cookie;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Assertions;
@@ -15,12 +17,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.AdditionalMatchers;
 import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.*;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -37,6 +41,7 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -60,9 +65,15 @@ public class PlantTrackerRestTests {
     @MockBean
     private PlantTrackerDAO plantTrackerDAO;
 
+    @MockBean
+    private DeviceEventBuffer deviceEventBuffer;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Mock
+    private Session mockSession;
+
     //Tests for @PostMapping("/session") ResponseEntity<HTTPResponseBody>
     //validateCookie(@CookieValue(name = "sessionId", defaultValue = "") String sessionId)
     @Test
@@ -222,6 +233,43 @@ public class PlantTrackerRestTests {
         response.andExpect(MockMvcResultMatchers.status().isBadRequest());
     }
 
+    //Tests for @PutMapping("/account/timezone")
+    //public ResponseEntity<HTTPResponseBody> changeTimezone(@RequestParam String timezone, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_changeTimezone_ReturnsOkStatusCode() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/account/timezone")
+                .param("timezone", "America/Chicago")
+                .cookie(new Cookie("sessionId", theSession.getSessionID())));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService).changeTimezone(theSession, "America/Chicago");
+    }
+
+    @Test
+    public void PlantTrackerRestController_changeTimezone_Returns400InvalidTimezone() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+        doThrow(InvalidTimezoneException.class).when(plantTrackerService).changeTimezone(theSession, "Central");
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/account/timezone")
+                .param("timezone", "Central")
+                .cookie(new Cookie("sessionId", theSession.getSessionID())));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("INVALID_TIMEZONE"));
+    }
+
     //Tests for @PostMapping("/account/delete")
     //public ResponseEntity<HTTPResponseBody> deleteAccount(@RequestBody Account theAccount)
     @Test
@@ -252,7 +300,7 @@ public class PlantTrackerRestTests {
     }
 
     //Tests for @GetMapping("/plants")
-    //public ResponseEntity<List<Plant>> getPlants(@CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+    //public ResponseEntity<List<?>> getPlants(int after, Integer limit, String fields, @AuthenticatedSession Session managedSession, WebRequest webRequest)
 
     @Test
     public void PlantTrackerRestController_getPlants_ReturnsPlants() throws Exception{
@@ -271,7 +319,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.findPlants(theSession.getSessionID())).thenReturn(plants);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlants(theSession, PlantPage.firstPage(50))).thenReturn(plants);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
                 .cookie(theCookie));
 
@@ -282,20 +332,245 @@ public class PlantTrackerRestTests {
                 .andExpect(MockMvcResultMatchers.content().json(json));
     }
 
+    @Test
+    public void PlantTrackerRestController_getPlants_ReturnsNextCursorForFullPage() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerDAO.findSessionBySessionID(ArgumentMatchers.any(String.class))).thenReturn(theSession);
+        Plant plant1 = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Plant plant2 = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Reflector.setField(plant1, "id", 11);
+        Reflector.setField(plant2, "id", 12);
+        List<Plant> plants = new ArrayList<>();
+        plants.add(plant1);
+        plants.add(plant2);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlants(theSession, new PlantPage(PlantPage.ID_SORT, 10, null, null, 2))).thenReturn(plants);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("after", "10")
+                .param("limit", "2")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(PlantTrackerRestController.NEXT_CURSOR_HEADER, "12"));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_OmitsNextCursorForLastPage() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        //Limits above the maximum page size are reduced to the maximum page size
+        when(plantTrackerService.findPlants(theSession, PlantPage.firstPage(200))).thenReturn(new ArrayList<Plant>());
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("limit", "100000")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(PlantTrackerRestController.NEXT_CURSOR_HEADER))
+                .andExpect(MockMvcResultMatchers.content().json("[]"));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_ReturnsOnlyRequestedFields() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        PlantView plantView1 = new PlantView(11);
+        plantView1.setImageKey("imageKey");
+        plantView1.setField("plantName", "fern");
+        PlantView plantView2 = new PlantView(12);
+        plantView2.setField("plantName", "cactus");
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlantViews(theSession, PlantFields.parse("plantName"), PlantPage.firstPage(2))).thenReturn(List.of(plantView1, plantView2));
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("limit", "2")
+                .param("fields", "plantName")
+                .cookie(theCookie));
+
+        //The cursor is the plant ID even though id was not requested, and the image key is never returned
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(PlantTrackerRestController.NEXT_CURSOR_HEADER, "12"))
+                .andExpect(MockMvcResultMatchers.content().json("[{\"plantName\":\"fern\"},{\"plantName\":\"cactus\"}]", true));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_ReturnsDuePlantsByUrgency() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant plant1 = new Plant(theSession);
+        Plant plant2 = new Plant(theSession);
+        Reflector.setField(plant1, "id", 11);
+        Reflector.setField(plant2, "id", 12);
+        plant1.setWateringInterval(2);
+        plant1.setLastWatered(LocalDate.of(2024, 1, 3));
+        plant2.setWateringInterval(1);
+        plant2.setLastWatered(LocalDate.of(2024, 1, 4));
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        PlantPage plantPage = new PlantPage(PlantPage.URGENCY_SORT, 10, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 10), 2);
+        when(plantTrackerService.findPlants(theSession, plantPage)).thenReturn(List.of(plant1, plant2));
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("sort", "urgency")
+                .param("after", "2024-01-05_10")
+                .param("dueBefore", "2024-01-10")
+                .param("limit", "2")
+                .cookie(theCookie));
+
+        //The cursor of the urgency sort order is the next watering date and plant ID of the last plant
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(PlantTrackerRestController.NEXT_CURSOR_HEADER, "2024-01-05_12"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].nextWateringDate").value("2024-01-05"));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_Returns400InvalidPage() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("sort", "urgency")
+                .param("after", "12")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("INVALID_PAGE"));
+        verify(plantTrackerService, never()).findPlants(ArgumentMatchers.any(), ArgumentMatchers.any(PlantPage.class));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_Returns400InvalidFields() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .param("fields", "plantName,account")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(plantTrackerService, never()).findPlantViews(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_Returns304WhenETagMatches() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlantsETag(theSession, null, PlantPage.firstPage(50))).thenReturn("\"fakeETag\"");
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"fakeETag\"")
+                .cookie(theCookie));
+
+        //Plants are not loaded (or given image URLs) if the client already has the page
+        response.andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"fakeETag\""))
+                .andExpect(MockMvcResultMatchers.content().string(""));
+        verify(plantTrackerService, never()).findPlants(ArgumentMatchers.any(), ArgumentMatchers.any(PlantPage.class));
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlants_ReturnsETagWhenChanged() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlantsETag(theSession, null, PlantPage.firstPage(50))).thenReturn("\"newETag\"");
+        when(plantTrackerService.findPlants(theSession, PlantPage.firstPage(50))).thenReturn(new ArrayList<Plant>());
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"oldETag\"")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"newETag\""))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andExpect(MockMvcResultMatchers.content().json("[]"));
+    }
+
     @Test
     public void PlantTrackerRestController_getPlants_Returns403BadSession() throws Exception{
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.findPlants("fakeSessionID")).thenThrow(InvalidSessionException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenThrow(InvalidSessionException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
                 .cookie(theCookie));
 
         response.andExpect(MockMvcResultMatchers.status().isForbidden());
     }
 
+    @Test
+    public void PlantTrackerRestController_getPlants_Returns403WhenAccountOfSessionDeleted() throws Exception{
+
+        Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
+
+        //A signed session whose account was deleted on another node before the revocation reached this node
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+        when(plantTrackerService.findPlants(eq(mockSession), ArgumentMatchers.any(PlantPage.class))).thenThrow(EntityNotFoundException.class);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("INVALID_COOKIE"));
+    }
+
     //Tests for @GetMapping("/plants/{plantID}")
-    //public ResponseEntity<Plant> getPlant(@PathVariable String plantID, @CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+    //public ResponseEntity<?> getPlant(@PathVariable String plantID, String fields, @AuthenticatedSession Session managedSession, WebRequest webRequest)
     @Test
     public void PlantTrackerRestController_getPlant_ReturnsPlant() throws Exception{
 
@@ -309,7 +584,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.findPlantByPlantID("1", theSession.getSessionID())).thenReturn(plant1);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.findPlantByPlantID("1", theSession)).thenReturn(plant1);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/1")
                 .cookie(theCookie));
 
@@ -320,12 +597,27 @@ public class PlantTrackerRestTests {
                 .andExpect(MockMvcResultMatchers.content().json(json));
     }
 
+    @Test
+    public void PlantTrackerRestController_getPlant_Returns304WhenETagMatches() throws Exception{
+
+        Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
+
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+        when(plantTrackerService.findPlantETag("1", mockSession, null)).thenReturn("\"fakeETag\"");
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"fakeETag\"")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isNotModified());
+        verify(plantTrackerService, never()).findPlantByPlantID(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
     @Test
     public void PlantTrackerRestController_getPlant_Returns403BadSession() throws Exception{
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.findPlantByPlantID("1", "fakeSessionID")).thenThrow(InvalidSessionException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenThrow(InvalidSessionException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/1")
                 .cookie(theCookie));
 
@@ -337,15 +629,48 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.findPlantByPlantID("1", "fakeSessionID")).thenThrow(InvalidPlantException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+        when(plantTrackerService.findPlantByPlantID("1", mockSession)).thenThrow(InvalidPlantException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/1")
                 .cookie(theCookie));
 
         response.andExpect(MockMvcResultMatchers.status().isNotFound());
     }
 
+    //Tests for @GetMapping("/plants/changes")
+    //public ResponseEntity<PlantChanges> getPlantChanges(String since, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_getPlantChanges_ReturnsChanges() throws Exception{
+
+        Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
+
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+        when(plantTrackerService.findPlantChanges("4", mockSession)).thenReturn(new PlantChanges(new ArrayList<Plant>(), List.of(3), "9"));
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/changes")
+                .param("since", "4")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("{\"plants\":[],\"deletedPlantIDs\":[3],\"token\":\"9\"}", true));
+        verify(plantTrackerService, never()).findPlantByPlantID(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void PlantTrackerRestController_getPlantChanges_Returns400InvalidToken() throws Exception{
+
+        Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
+
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+        when(plantTrackerService.findPlantChanges("10", mockSession)).thenThrow(InvalidChangeTokenException.class);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/plants/changes")
+                .param("since", "10")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     //Tests for @PostMapping("/plants")
-    //public ResponseEntity<Plant> addPlant(@RequestBody Plant thePlant, @CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+    //public ResponseEntity<Plant> addPlant(@RequestBody Plant thePlant, @AuthenticatedSession Session managedSession)
     @Test
     public void PlantTrackerRestController_addPlant_ReturnsPlant() throws Exception{
 
@@ -359,7 +684,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.addPlant(plant, theSession.getSessionID())).thenReturn(plant);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.addPlant(plant, theSession)).thenReturn(plant);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/plants")
                 .cookie(theCookie)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -372,6 +699,53 @@ public class PlantTrackerRestTests {
                 .andExpect(MockMvcResultMatchers.content().json(json));
     }
 
+    //Tests for @PostMapping("/plants/batch")
+    //public ResponseEntity<List<Plant>> addPlants(@RequestBody List<Plant> thePlants, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_addPlants_ReturnsPlants() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        List<Plant> plants = List.of(new Plant(theSession), new Plant(theSession));
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.addPlants(plants, theSession)).thenReturn(plants);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/plants/batch")
+                .cookie(theCookie)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(plants)));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(plants)));
+    }
+
+    //Tests for @DeleteMapping("/plants/batch")
+    //public ResponseEntity<List<Plant>> deletePlants(@RequestBody List<Integer> plantIDs, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_deletePlants_Returns400BatchTooLarge() throws Exception{
+
+        Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
+
+        when(plantTrackerService.authenticate("fakeSessionID")).thenReturn(mockSession);
+
+        List<Integer> plantIDs = new ArrayList<Integer>();
+        for(int i = 1; i <= 201; i++) plantIDs.add(i);
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/batch")
+                .cookie(theCookie)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(plantIDs)));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(plantTrackerService, never()).deletePlants(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
     @Test
     public void PlantTrackerRestController_addPlant_Returns403BadSession() throws Exception{
 
@@ -385,7 +759,7 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.addPlant(plant, "fakeSessionID")).thenThrow(InvalidSessionException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenThrow(InvalidSessionException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/plants")
                 .cookie(theCookie)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -395,7 +769,7 @@ public class PlantTrackerRestTests {
     }
 
     //Tests for @PutMapping("/plants")
-    //public ResponseEntity<Plant> updatePlant(@RequestBody Plant thePlant, @CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+    //public ResponseEntity<Plant> updatePlant(@RequestBody Plant thePlant, @AuthenticatedSession Session managedSession)
     @Test
     public void PlantTrackerRestController_updatePlant_ReturnsPlant() throws Exception{
 
@@ -409,7 +783,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.updatePlant(plant, theSession.getSessionID())).thenReturn(plant);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.updatePlant(plant, theSession)).thenReturn(plant);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/plants")
                 .cookie(theCookie)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -435,7 +811,7 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.updatePlant(plant, "fakeSessionID")).thenThrow(InvalidSessionException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenThrow(InvalidSessionException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/plants")
                 .cookie(theCookie)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -444,14 +820,87 @@ public class PlantTrackerRestTests {
         response.andExpect(MockMvcResultMatchers.status().isForbidden());
     }
 
+    @Test
+    public void PlantTrackerRestController_updatePlant_Returns409WhenPlantChangedConcurrently() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant plant = new Plant(theSession);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        //The plant was watered by its device after it was read by the update
+        when(plantTrackerService.updatePlant(ArgumentMatchers.any(Plant.class), eq(theSession)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Plant.class, 1));
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/plants")
+                .cookie(theCookie)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(plant)));
+
+        response.andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("PLANT_CONFLICT"));
+    }
+
+    //Tests for @PutMapping("/plants/{plantID}/snooze")
+    //public ResponseEntity<Plant> snoozePlant(@PathVariable String plantID, @RequestParam Integer days, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_snoozePlant_CapsSnoozeDays() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant plant = new Plant(theSession);
+        Reflector.setField(plant, "id", 1);
+        Reflector.setField(plant, "snoozedUntil", 1000L);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        //Requests above the maximum number of days are snoozed for the maximum number of days
+        when(plantTrackerService.snoozePlant("1", theSession, 30)).thenReturn(plant);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/plants/1/snooze")
+                .param("days", "365")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.snoozedUntil").value(1000));
+    }
+
+    @Test
+    public void PlantTrackerRestController_snoozePlant_Returns404InvalidPlant() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.snoozePlant("1", theSession, 1)).thenThrow(InvalidPlantException.class);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/plants/1/snooze")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
     // Tests for @PutMapping("/plants/{plantID}")
     //public ResponseEntity<Plant> updatePlantImage(
     // @RequestParam("file") MultipartFile file,
     // @PathVariable String plantID
-    // @CookieValue(name = "sessionId", defaultValue = "") String sessionID)
+    // @AuthenticatedSession Session managedSession)
 
     // Tests for @DeleteMapping("/plants/{plantID}")
-    //public ResponseEntity<Plant> deletePlant(@PathVariable String plantID, @CookieValue(name = "sessionId", defaultValue = "") String sessionID) throws IOException
+    //public ResponseEntity<Plant> deletePlant(@PathVariable String plantID, @AuthenticatedSession Session managedSession) throws IOException
     @Test
     public void PlantTrackerRestController_deletePlant_ReturnsPlant() throws Exception{
 
@@ -465,7 +914,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.deletePlant("1", theSession.getSessionID())).thenReturn(plant);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.deletePlant("1", theSession)).thenReturn(plant);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/1")
                 .cookie(theCookie));
 
@@ -481,7 +932,7 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", "fakeSessionID");
 
-        when(plantTrackerService.deletePlant("1", "fakeSessionID")).thenThrow(InvalidSessionException.class);
+        when(plantTrackerService.authenticate("fakeSessionID")).thenThrow(InvalidSessionException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/1")
                 .cookie(theCookie));
 
@@ -501,7 +952,9 @@ public class PlantTrackerRestTests {
 
         Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
 
-        when(plantTrackerService.deletePlant("1", theSession.getSessionID())).thenThrow(InvalidPlantException.class);
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.deletePlant("1", theSession)).thenThrow(InvalidPlantException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/1")
                 .cookie(theCookie));
 
@@ -509,20 +962,22 @@ public class PlantTrackerRestTests {
     }
 
     //Tests for @PostMapping("/devices")
-    //public ResponseEntity<HTTPResponseBody> registerDevice(@RequestBody Device theDevice)
+    //public ResponseEntity<Device> registerDevice(@RequestBody Device theDevice)
     @Test
-    public void PlantTrackerRestController_registerDevice_ReturnsOKStatus() throws Exception{
+    public void PlantTrackerRestController_registerDevice_ReturnsDeviceKey() throws Exception{
 
         Device theDevice = new Device();
         theDevice.setAccountUsername("fakeAccountUsername");
         theDevice.setRegistrationID("fakeRegistrationID");
 
-        doThrow(InvalidPlantException.class).when(plantTrackerService).confirmDeviceRegistration(AdditionalMatchers.not(ArgumentMatchers.eq(theDevice)));
+        when(plantTrackerService.registerDevice(theDevice)).thenReturn("fakeDeviceKey");
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(theDevice)));
 
-        response.andExpect(MockMvcResultMatchers.status().isOk());
+        response.andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.registrationID").value("fakeRegistrationID"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.deviceKey").value("fakeDeviceKey"));
     }
 
     @Test
@@ -536,7 +991,7 @@ public class PlantTrackerRestTests {
         badDevice.setAccountUsername("badAccountUsername");
         badDevice.setRegistrationID("fakeRegistrationID");
 
-        doThrow(InvalidPlantException.class).when(plantTrackerService).confirmDeviceRegistration(AdditionalMatchers.not(ArgumentMatchers.eq(theDevice)));
+        when(plantTrackerService.registerDevice(AdditionalMatchers.not(ArgumentMatchers.eq(theDevice)))).thenThrow(InvalidPlantException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(badDevice)));
@@ -555,7 +1010,7 @@ public class PlantTrackerRestTests {
         badDevice.setAccountUsername("fakeAccountUsername");
         badDevice.setRegistrationID("badRegistrationID");
 
-        doThrow(InvalidPlantException.class).when(plantTrackerService).confirmDeviceRegistration(AdditionalMatchers.not(ArgumentMatchers.eq(theDevice)));
+        when(plantTrackerService.registerDevice(AdditionalMatchers.not(ArgumentMatchers.eq(theDevice)))).thenThrow(InvalidPlantException.class);
         ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(badDevice)));
@@ -563,7 +1018,171 @@ public class PlantTrackerRestTests {
         response.andExpect(MockMvcResultMatchers.status().isNotFound());
     }
 
-    //Tests for @PutMapping("/devices") @Transactional
+    //Tests for @DeleteMapping("/plants/{plantID}/device")
+    //public ResponseEntity<HTTPResponseBody> revokeDeviceKey(@PathVariable String plantID, @AuthenticatedSession Session managedSession)
+    @Test
+    public void PlantTrackerRestController_revokeDeviceKey_ReturnsOKStatus() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/1/device")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService).revokeDeviceKey("1", theSession);
+    }
+
+    @Test
+    public void PlantTrackerRestController_revokeDeviceKey_Returns404InvalidPlant() throws Exception{
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Cookie theCookie = new Cookie("sessionId", theSession.getSessionID());
+
+        when(plantTrackerService.authenticate(theSession.getSessionID())).thenReturn(theSession);
+
+        when(plantTrackerService.revokeDeviceKey("1", theSession)).thenThrow(InvalidPlantException.class);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.delete("/api/v1/plants/1/device")
+                .cookie(theCookie));
+
+        response.andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    //Tests for @PutMapping("/devices")
     //public ResponseEntity<HTTPResponseBody> updateTimestamp(@RequestBody Device theDevice)
+    @Test
+    public void PlantTrackerRestController_updateTimestamp_UpdatesPlantWhenNotBuffered() throws Exception{
+
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("fakeAccountUsername");
+        theDevice.setRegistrationID("fakeRegistrationID");
+
+        when(deviceEventBuffer.submit(theDevice)).thenReturn(false);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/devices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theDevice)));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService).updateTimestamp(theDevice);
+    }
+
+    @Test
+    public void PlantTrackerRestController_updateTimestamp_SkipsUpdateWhenBuffered() throws Exception{
+
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("fakeAccountUsername");
+        theDevice.setRegistrationID("fakeRegistrationID");
+
+        when(deviceEventBuffer.submit(theDevice)).thenReturn(true);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/devices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theDevice)));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService, never()).updateTimestamp(ArgumentMatchers.any(Device.class));
+    }
+
+    @Test
+    public void PlantTrackerRestController_updateTimestamp_UpdatesPlantWithDeviceKey() throws Exception{
+
+        Device theDevice = new Device();
+        theDevice.setDeviceKey("fakeDeviceKey");
+
+        when(deviceEventBuffer.submit(theDevice)).thenReturn(false);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/devices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deviceKey\":\"fakeDeviceKey\"}"));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService).updateTimestamp(theDevice);
+    }
+
+    @Test
+    public void PlantTrackerRestController_updateTimestamp_Returns404WhenNoPlant() throws Exception{
+
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("fakeAccountUsername");
+        theDevice.setRegistrationID("badRegistrationID");
+
+        when(deviceEventBuffer.submit(theDevice)).thenReturn(false);
+        doThrow(InvalidPlantException.class).when(plantTrackerService).updateTimestamp(theDevice);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/devices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theDevice)));
+
+        response.andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    public void PlantTrackerRestController_updateTimestamp_Returns503WhenFlushDoesNotCommit() throws Exception{
+
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("fakeAccountUsername");
+        theDevice.setRegistrationID("fakeRegistrationID");
+
+        when(deviceEventBuffer.submit(theDevice)).thenThrow(DeviceEventNotFlushedException.class);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/devices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theDevice)));
+
+        response.andExpect(MockMvcResultMatchers.status().isServiceUnavailable());
+        verify(plantTrackerService, never()).updateTimestamp(ArgumentMatchers.any(Device.class));
+    }
+
+    //Tests for @PostMapping("/devices/events")
+    //public ResponseEntity<HTTPResponseBody> uploadWateringEvents(@RequestBody List<WateringEvent> theWateringEvents)
+    @Test
+    public void PlantTrackerRestController_uploadWateringEvents_ReturnsOKStatus() throws Exception{
+
+        List<WateringEvent> theWateringEvents = List.of(new WateringEvent("fakeRegistrationID", "fakeAccountUsername", 100),
+                new WateringEvent("fakeRegistrationID", "fakeAccountUsername", 200));
+
+        when(plantTrackerService.applyWateringEvents(ArgumentMatchers.anyList())).thenReturn(1);
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices/events")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theWateringEvents)));
+
+        response.andExpect(MockMvcResultMatchers.status().isOk());
+        verify(plantTrackerService).applyWateringEvents(ArgumentMatchers.argThat(events -> events.size() == 2));
+    }
+
+    @Test
+    public void PlantTrackerRestController_uploadWateringEvents_Returns400WhenBatchIsTooLarge() throws Exception{
+
+        List<WateringEvent> theWateringEvents = new ArrayList<WateringEvent>();
+        for(int i = 0; i < 501; i++){
+            theWateringEvents.add(new WateringEvent("fakeRegistrationID", "fakeAccountUsername", 100 + i));
+        }
+
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices/events")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theWateringEvents)));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(plantTrackerService, never()).applyWateringEvents(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void PlantTrackerRestController_uploadWateringEvents_Returns400WhenEventIsIncomplete() throws Exception{
+
+        List<WateringEvent> theWateringEvents = List.of(new WateringEvent(null, "fakeAccountUsername", 100));
+
+        doThrow(InvalidBatchException.class).when(plantTrackerService).applyWateringEvents(ArgumentMatchers.anyList());
+        ResultActions response = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/devices/events")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(theWateringEvents)));
+
+        response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
 
 }
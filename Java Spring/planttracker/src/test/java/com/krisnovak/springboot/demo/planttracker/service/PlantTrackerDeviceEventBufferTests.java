@@ -0,0 +1,189 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.entity.Device;
+import com.krisnovak.springboot.demo.planttracker.entity.DeviceEventNotFlushedException;
+import com.krisnovak.springboot.demo.planttracker.entity.InvalidPlantException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PlantTrackerDeviceEventBufferTests {
+
+    private Device newDevice(String registrationID){
+        Device theDevice = new Device();
+        theDevice.setAccountUsername("test");
+        theDevice.setRegistrationID(registrationID);
+        return theDevice;
+    }
+
+    //Tests for public boolean submit(Device theDevice)
+    @Test
+    public void DeviceEventBuffer_submit_skippedInDirectMode(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("direct", "memory", 10, 1000);
+
+        Assertions.assertFalse(deviceEventBuffer.submit(newDevice("registrationID")));
+        Assertions.assertEquals(0, deviceEventBuffer.size());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_buffersEventInMemoryDurability(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+
+        Assertions.assertTrue(deviceEventBuffer.submit(newDevice("registrationID")));
+        Assertions.assertEquals(1, deviceEventBuffer.size());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_rejectsEventWhenFull(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 1, 1000);
+
+        Assertions.assertTrue(deviceEventBuffer.submit(newDevice("registrationID1")));
+        Assertions.assertFalse(deviceEventBuffer.submit(newDevice("registrationID2")));
+        Assertions.assertEquals(1, deviceEventBuffer.size());
+        Assertions.assertEquals(1, deviceEventBuffer.getOverflowEventCount());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_rejectsDeviceWithoutRegistrationID(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+
+        Assertions.assertFalse(deviceEventBuffer.submit(newDevice(null)));
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_buffersDeviceWithDeviceKey(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        Device theDevice = new Device();
+        theDevice.setDeviceKey("deviceKey");
+
+        Assertions.assertTrue(deviceEventBuffer.submit(theDevice));
+        Assertions.assertEquals(1, deviceEventBuffer.size());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_waitsForFlushInFlushDurability(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "flush", 10, 10000);
+        Device theDevice = newDevice("registrationID");
+
+        CompletableFuture<Boolean> submitted = CompletableFuture.supplyAsync(() -> deviceEventBuffer.submit(theDevice));
+
+        //Flush the event once the device has buffered it
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents = new ArrayList<DeviceEventBuffer.DeviceEvent>();
+        while(deviceEvents.isEmpty()){
+            deviceEvents = deviceEventBuffer.drain(10);
+        }
+        Assertions.assertFalse(submitted.isDone());
+        deviceEventBuffer.complete(deviceEvents, List.of(theDevice), 1);
+
+        Assertions.assertTrue(submitted.join());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_throwsInvalidPlantExceptionWhenFlushFindsNoPlant(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "flush", 10, 10000);
+
+        CompletableFuture<Boolean> submitted = CompletableFuture.supplyAsync(() -> deviceEventBuffer.submit(newDevice("registrationID")));
+
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents = new ArrayList<DeviceEventBuffer.DeviceEvent>();
+        while(deviceEvents.isEmpty()){
+            deviceEvents = deviceEventBuffer.drain(10);
+        }
+        deviceEventBuffer.complete(deviceEvents, new ArrayList<Device>(), 1);
+
+        Exception e = Assertions.assertThrows(Exception.class, submitted::join);
+        Assertions.assertInstanceOf(InvalidPlantException.class, e.getCause());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_takesEventBackAfterFlushTimeout(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "flush", 10, 10);
+
+        //No flush picks up the event, so the device updates its plant right away instead of being acknowledged
+        Assertions.assertFalse(deviceEventBuffer.submit(newDevice("registrationID")));
+        Assertions.assertEquals(0, deviceEventBuffer.size());
+        Assertions.assertTrue(deviceEventBuffer.drain(10).isEmpty());
+        Assertions.assertEquals(1, deviceEventBuffer.getTimedOutEventCount());
+    }
+
+    @Test
+    public void DeviceEventBuffer_submit_throwsDeviceEventNotFlushedExceptionWhenFlushStalls(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "flush", 10, 200);
+
+        CompletableFuture<Boolean> submitted = CompletableFuture.supplyAsync(() -> deviceEventBuffer.submit(newDevice("registrationID")));
+
+        //A flush drains the event but never commits
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents = new ArrayList<DeviceEventBuffer.DeviceEvent>();
+        while(deviceEvents.isEmpty()){
+            deviceEvents = deviceEventBuffer.drain(10);
+        }
+
+        Exception e = Assertions.assertThrows(Exception.class, submitted::join);
+        Assertions.assertInstanceOf(DeviceEventNotFlushedException.class, e.getCause());
+        Assertions.assertEquals(1, deviceEventBuffer.getTimedOutEventCount());
+    }
+
+    //Tests for public List<DeviceEvent> drain(int maximumEventCount)
+    @Test
+    public void DeviceEventBuffer_drain_removesOldestEvents(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID2"));
+        deviceEventBuffer.submit(newDevice("registrationID3"));
+
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents = deviceEventBuffer.drain(2);
+
+        Assertions.assertEquals(2, deviceEvents.size());
+        Assertions.assertEquals("registrationID1", deviceEvents.get(0).getDevice().getRegistrationID());
+        Assertions.assertEquals("registrationID2", deviceEvents.get(1).getDevice().getRegistrationID());
+        Assertions.assertEquals(1, deviceEventBuffer.size());
+    }
+
+    //Tests for public void complete(List<DeviceEvent> flushedEvents, Collection<Device> updatedDevices, int flushedDeviceCount)
+    @Test
+    public void DeviceEventBuffer_complete_recordsFlushMetrics(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID2"));
+
+        deviceEventBuffer.complete(deviceEventBuffer.drain(10), List.of(newDevice("registrationID1")), 2);
+
+        Assertions.assertEquals(2, deviceEventBuffer.getLastFlushBatchSize());
+        Assertions.assertEquals(3, deviceEventBuffer.getFlushedEventCount());
+        Assertions.assertEquals(1, deviceEventBuffer.getCoalescedEventCount());
+        Assertions.assertTrue(deviceEventBuffer.getLastFlushLag() >= 0);
+    }
+
+    //Tests for public void fail(List<DeviceEvent> failedEvents, RuntimeException e)
+    @Test
+    public void DeviceEventBuffer_fail_requeuesEventsInMemoryDurability(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "memory", 10, 1000);
+        deviceEventBuffer.submit(newDevice("registrationID1"));
+        deviceEventBuffer.submit(newDevice("registrationID2"));
+
+        deviceEventBuffer.fail(deviceEventBuffer.drain(10), new RuntimeException());
+
+        Assertions.assertEquals(2, deviceEventBuffer.size());
+        Assertions.assertEquals(2, deviceEventBuffer.drain(10).size());
+    }
+
+    @Test
+    public void DeviceEventBuffer_fail_failsWaitingDevicesInFlushDurability(){
+        DeviceEventBuffer deviceEventBuffer = new DeviceEventBuffer("buffered", "flush", 10, 10000);
+
+        CompletableFuture<Boolean> submitted = CompletableFuture.supplyAsync(() -> deviceEventBuffer.submit(newDevice("registrationID")));
+
+        List<DeviceEventBuffer.DeviceEvent> deviceEvents = new ArrayList<DeviceEventBuffer.DeviceEvent>();
+        while(deviceEvents.isEmpty()){
+            deviceEvents = deviceEventBuffer.drain(10);
+        }
+        deviceEventBuffer.fail(deviceEvents, new IllegalStateException());
+
+        Exception e = Assertions.assertThrows(Exception.class, submitted::join);
+        Assertions.assertInstanceOf(DeviceEventNotFlushedException.class, e.getCause());
+        Assertions.assertEquals(0, deviceEventBuffer.size());
+    }
+}
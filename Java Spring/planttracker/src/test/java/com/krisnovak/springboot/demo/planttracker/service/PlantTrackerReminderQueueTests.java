@@ -0,0 +1,55 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.Reflector;
+import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.Plant;
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerReminderQueueTests {
+
+    @Mock
+    private Session mockSession;
+
+    //Tests for public void reminded(Plant thePlant, long remindedAt)
+    @Test
+    public void ReminderQueue_reminded_firesSecondDayReminderAtReminderHour(){
+        ReminderQueue reminderQueue = new ReminderQueue("wheel", 9, 72000, 60);
+
+        Account theAccount = new Account("test", "password");
+        when(mockSession.getAccount()).thenReturn(theAccount);
+        Plant thePlant = new Plant(mockSession);
+        Reflector.setField(thePlant, "id", 1);
+        thePlant.setLastWatered(LocalDate.now(ZoneOffset.UTC).minusDays(10));
+        thePlant.setWateringInterval(2);
+
+        //The plant was just reminded at 9:00 UTC today and is still overdue
+        long remindedAt = LocalDate.now(ZoneOffset.UTC).atTime(9, 0).toEpochSecond(ZoneOffset.UTC);
+        reminderQueue.reminded(thePlant, remindedAt);
+
+        //The next reminder goes out at 9:00 the next day, not once the 20 hour reminder period has passed
+        Assertions.assertTrue(reminderQueue.advance(remindedAt + 72000).isEmpty());
+        Assertions.assertTrue(reminderQueue.advance(remindedAt + 86400 - 60).isEmpty());
+        Assertions.assertEquals(List.of(1), reminderQueue.advance(remindedAt + 86400));
+    }
+
+    @Test
+    public void ReminderQueue_reminded_skippedInScanMode(){
+        ReminderQueue reminderQueue = new ReminderQueue("scan", 9, 72000, 60);
+
+        reminderQueue.reminded(new Plant(mockSession), System.currentTimeMillis()/1000);
+
+        Assertions.assertEquals(0, reminderQueue.size());
+    }
+}
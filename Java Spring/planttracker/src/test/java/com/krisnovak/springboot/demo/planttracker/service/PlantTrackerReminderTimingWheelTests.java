@@ -0,0 +1,82 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class PlantTrackerReminderTimingWheelTests {
+
+    //Start of a day in seconds (so every level of the wheel starts at its first slot)
+    private static final long START_TIME = 1704067200;
+
+    //Tests for public synchronized List<Integer> advance(long currentTime)
+    @Test
+    public void ReminderTimingWheel_advance_firesRemindersAtTheirTick(){
+        ReminderTimingWheel timingWheel = new ReminderTimingWheel(60, START_TIME);
+
+        //Reminders held by the minute, hour, and day levels of the wheel
+        timingWheel.schedule(1, START_TIME + 5 * 60);
+        timingWheel.schedule(2, START_TIME + 3 * 60 * 60 + 30);
+        timingWheel.schedule(3, START_TIME + 3 * 24 * 60 * 60 + 7 * 60 * 60 + 15 * 60);
+        Assertions.assertEquals(3, timingWheel.size());
+
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 4 * 60).isEmpty());
+        Assertions.assertEquals(List.of(1), timingWheel.advance(START_TIME + 5 * 60));
+
+        //A reminder fires at the first tick at or after its time
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 3 * 60 * 60).isEmpty());
+        Assertions.assertEquals(List.of(2), timingWheel.advance(START_TIME + 3 * 60 * 60 + 60));
+
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 3 * 24 * 60 * 60 + 7 * 60 * 60 + 14 * 60).isEmpty());
+        Assertions.assertEquals(List.of(3), timingWheel.advance(START_TIME + 3 * 24 * 60 * 60 + 7 * 60 * 60 + 15 * 60));
+        Assertions.assertEquals(0, timingWheel.size());
+    }
+
+    @Test
+    public void ReminderTimingWheel_advance_firesPastRemindersRightAway(){
+        ReminderTimingWheel timingWheel = new ReminderTimingWheel(60, START_TIME);
+
+        Assertions.assertTrue(timingWheel.schedule(1, START_TIME - 24 * 60 * 60));
+
+        Assertions.assertEquals(List.of(1), timingWheel.advance(START_TIME));
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 60).isEmpty());
+    }
+
+    //Tests for public synchronized boolean schedule(int plantID, long reminderTime)
+    @Test
+    public void ReminderTimingWheel_schedule_replacesEarlierReminder(){
+        ReminderTimingWheel timingWheel = new ReminderTimingWheel(60, START_TIME);
+
+        timingWheel.schedule(1, START_TIME + 60);
+        timingWheel.schedule(1, START_TIME + 2 * 60 * 60);
+
+        Assertions.assertEquals(1, timingWheel.size());
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 60 * 60).isEmpty());
+        Assertions.assertEquals(List.of(1), timingWheel.advance(START_TIME + 2 * 60 * 60));
+    }
+
+    @Test
+    public void ReminderTimingWheel_schedule_rejectsRemindersPastHorizon(){
+        ReminderTimingWheel timingWheel = new ReminderTimingWheel(60, START_TIME);
+
+        timingWheel.schedule(1, START_TIME + 60);
+        Assertions.assertFalse(timingWheel.schedule(1, START_TIME + timingWheel.getHorizon()));
+
+        Assertions.assertEquals(0, timingWheel.size());
+    }
+
+    //Tests for public synchronized boolean cancel(int plantID)
+    @Test
+    public void ReminderTimingWheel_cancel_removesReminder(){
+        ReminderTimingWheel timingWheel = new ReminderTimingWheel(60, START_TIME);
+
+        timingWheel.schedule(1, START_TIME + 2 * 24 * 60 * 60);
+        timingWheel.schedule(2, START_TIME - 60);
+
+        Assertions.assertTrue(timingWheel.cancel(1));
+        Assertions.assertTrue(timingWheel.cancel(2));
+        Assertions.assertFalse(timingWheel.cancel(3));
+        Assertions.assertTrue(timingWheel.advance(START_TIME + 3 * 24 * 60 * 60).isEmpty());
+    }
+}
@@ -1,12 +1,15 @@
 package com.krisnovak.springboot.demo.planttracker.service;
 
 import com.krisnovak.springboot.demo.planttracker.Reflector;
+import com.krisnovak.springboot.demo.planttracker.dao.DeviceCache;
 import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.dao.SessionCache;
 import com.krisnovak.springboot.demo.planttracker.entity.*;
 import jakarta.persistence.NoResultException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -23,9 +26,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +45,12 @@ public class PlantTrackerServiceImplTests {
     @Mock
     private S3Bucket s3Bucket;
 
+    @Mock
+    private SessionTokenSigner sessionTokenSigner;
+
+    @Mock
+    private ReminderQueue reminderQueue;
+
     @InjectMocks
     private PlantTrackerServiceImpl plantTrackerService;
 
@@ -59,6 +73,38 @@ public class PlantTrackerServiceImplTests {
 
     }
 
+    @Test
+    public void PlantTrackerService_signUp_SetsTimezone(){
+
+        Account newAccount = new Account("test", "password");
+        newAccount.setTimezone("Europe/Paris");
+
+        ArgumentCaptor<Account> accountCaptor = ArgumentCaptor.forClass(Account.class);
+        when(plantTrackerDAO.add(accountCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+        plantTrackerService.signUp(newAccount);
+
+        Assertions.assertEquals("Europe/Paris", accountCaptor.getValue().getTimezone());
+
+        newAccount.setTimezone("Europe/Atlantis");
+        Assertions.assertThrows(InvalidTimezoneException.class, () -> {plantTrackerService.signUp(newAccount);});
+    }
+
+    //Tests for public void changeTimezone(Session managedSession, String timezone);
+    @Test
+    public void PlantTrackerService_changeTimezone_UpdatesTimezone(){
+
+        Account theAccount = new Account("test", "password");
+        Reflector.setField(theAccount, "id", 1);
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        plantTrackerService.changeTimezone(theSession, "Asia/Tokyo");
+        verify(plantTrackerDAO).updateTimezone(1, "Asia/Tokyo");
+
+        Assertions.assertThrows(InvalidTimezoneException.class, () -> {plantTrackerService.changeTimezone(theSession, "Asia/Atlantis");});
+    }
+
     //Tests for public void changePassword(Account theAccount);
 
     @Test
@@ -80,6 +126,23 @@ public class PlantTrackerServiceImplTests {
 
     }
 
+    @Test
+    public void PlantTrackerService_changePassword_revokesSignedTokensOfAccount(){
+
+        Account theAccount = new Account("test", "passwordNew");
+
+        Account managedAccount = new Account("test", "passwordOld");
+        Reflector.setField(managedAccount, "id", 1);
+
+        when(sessionTokenSigner.isEnabled()).thenReturn(true);
+        when(plantTrackerDAO.findAccount(theAccount)).thenReturn(managedAccount);
+
+        plantTrackerService.changePassword(theAccount);
+
+        verify(plantTrackerDAO).add(ArgumentMatchers.argThat((RevokedSessionToken r) ->
+                r.getAccountID() == 1 && r.getSignature() == null));
+    }
+
     //Tests for public Account deleteAccount(Account theAccount);
 
     @Test
@@ -105,6 +168,26 @@ public class PlantTrackerServiceImplTests {
 
     }
 
+    @Test
+    public void PlantTrackerService_deleteAccount_revokesSignedTokensOfAccount(){
+
+        Account theAccount = new Account("test", "password");
+
+        Account managedAccount = new Account("test", null);
+        Reflector.setField(managedAccount, "id", 1);
+        Reflector.setField(managedAccount, "passwordCurrent", "password");
+
+        when(sessionTokenSigner.isEnabled()).thenReturn(true);
+        when(plantTrackerDAO.findAccount(theAccount)).thenReturn(managedAccount);
+        when(plantTrackerDAO.findAllPlants(managedAccount)).thenReturn(new ArrayList<Plant>());
+
+        plantTrackerService.deleteAccount(theAccount);
+
+        verify(plantTrackerDAO).add(ArgumentMatchers.argThat((RevokedSessionToken r) ->
+                r.getAccountID() == 1 && r.getExpirationTime() >= (r.getRevokedAt()/1000) + Session.MAXIMUM_COOKIE_AGE));
+        verify(plantTrackerDAO).delete(managedAccount);
+    }
+
     //Tests for public void validateCookie(String sessionID);
     @Test
     public void PlantTrackerService_validateCookie_ReturnsWithoutException(){
@@ -158,6 +241,18 @@ public class PlantTrackerServiceImplTests {
 
     }
 
+    @Test
+    public void PlantTrackerService_validateCookie_usesCachedSessionWithoutQuery(){
+
+        String cachedSessionID = "cachedSessionID";
+        SessionCache.CachedSession cachedSession = new SessionCache.CachedSession(cachedSessionID, 1, (System.currentTimeMillis()/1000) + 100);
+
+        when(plantTrackerDAO.findCachedSession(cachedSessionID)).thenReturn(cachedSession);
+
+        Assertions.assertDoesNotThrow(()->{plantTrackerService.validateCookie(cachedSessionID);});
+        verify(plantTrackerDAO, never()).findSessionBySessionID(ArgumentMatchers.anyString());
+    }
+
     //Tests for public ResponseCookie createCookie(Account theAccount);
     @Test
     public void PlantTrackerService_createCookie_createsAndAddsValidCookie(){
@@ -168,7 +263,7 @@ public class PlantTrackerServiceImplTests {
         Reflector.setField(managedAccount, "id", 1);
         Reflector.setField(managedAccount, "passwordCurrent", "password");
 
-        when(plantTrackerDAO.findAccount(theAccount)).thenReturn(managedAccount);
+        when(plantTrackerDAO.findAccountWithSessions(theAccount)).thenReturn(managedAccount);
         ResponseCookie theCookie = plantTrackerService.createCookie(theAccount);
 
         Assertions.assertDoesNotThrow(()->{managedAccount.getSessions().get(0);});
@@ -179,6 +274,33 @@ public class PlantTrackerServiceImplTests {
 
     }
 
+    @Test
+    public void PlantTrackerService_createCookie_removesOldestSessionPastMaximum(){
+
+        Account theAccount = new Account("test", "password");
+
+        Account managedAccount = new Account("test", null);
+        Reflector.setField(managedAccount, "id", 1);
+        Reflector.setField(managedAccount, "passwordCurrent", "password");
+
+        //Give the account the maximum number of sessions, with the first session being the oldest
+        long currentTime = System.currentTimeMillis()/1000;
+        for(int i = 0; i < Account.MAXIMUM_SESSIONS; i++){
+            Session existingSession = new Session(managedAccount);
+            existingSession.setTimeCreated(currentTime - Account.MAXIMUM_SESSIONS + i);
+            managedAccount.addSession(existingSession);
+        }
+        Session oldestSession = managedAccount.getSessions().get(0);
+
+        when(plantTrackerDAO.findAccountWithSessions(theAccount)).thenReturn(managedAccount);
+        plantTrackerService.createCookie(theAccount);
+
+        Assertions.assertEquals(Account.MAXIMUM_SESSIONS, managedAccount.getSessions().size());
+        Assertions.assertFalse(managedAccount.getSessions().contains(oldestSession));
+        verify(plantTrackerDAO).evictCachedSession(oldestSession.getSessionID());
+
+    }
+
     @Test
     public void PlantTrackerService_createCookie_throwsInvalidAccountException(){
 
@@ -188,12 +310,36 @@ public class PlantTrackerServiceImplTests {
         Reflector.setField(managedAccount, "id", 1);
         Reflector.setField(managedAccount, "passwordCurrent", "password");
 
-        when(plantTrackerDAO.findAccount(theAccount)).thenThrow(EmptyResultDataAccessException.class);
+        when(plantTrackerDAO.findAccountWithSessions(theAccount)).thenThrow(EmptyResultDataAccessException.class);
 
         Assertions.assertThrows(InvalidAccountException.class, ()->{plantTrackerService.createCookie(theAccount);});
 
     }
 
+    @Test
+    public void PlantTrackerService_createCookie_createsSignedCookieWithoutStoringSession(){
+
+        Account theAccount = new Account("test", "password");
+
+        Account managedAccount = new Account("test", null);
+        Reflector.setField(managedAccount, "id", 1);
+        Reflector.setField(managedAccount, "passwordCurrent", "password");
+
+        SessionTokenSigner signedSessionTokenSigner = new SessionTokenSigner("signed", "secretsecretsecretsecretsecretse");
+        Reflector.setField(plantTrackerService, "sessionTokenSigner", signedSessionTokenSigner);
+
+        when(plantTrackerDAO.findAccount(theAccount)).thenReturn(managedAccount);
+        ResponseCookie theCookie = plantTrackerService.createCookie(theAccount);
+
+        Assertions.assertNull(managedAccount.getSessions());
+
+        SessionTokenSigner.SessionToken theToken = signedSessionTokenSigner.verify(theCookie.getValue());
+        Assertions.assertNotNull(theToken);
+        Assertions.assertEquals(1, theToken.getAccountID());
+        Assertions.assertEquals(theToken.getMaxAge(), theCookie.getMaxAge().toSeconds());
+
+    }
+
     //Tests for public ResponseCookie getExpiredCookie(String sessionID);
     @Test
     public void PlantTrackerService_getExpiredCookie_removesCookie(){
@@ -212,10 +358,11 @@ public class PlantTrackerServiceImplTests {
 
         managedAccount.addSession(managedSession);
 
-        when(plantTrackerDAO.findSessionBySessionID(managedSession.getSessionID())).thenReturn(managedSession);
+        when(plantTrackerDAO.findSessionWithAccountSessions(managedSession.getSessionID())).thenReturn(managedSession);
         ResponseCookie expiredCookie = plantTrackerService.getExpiredCookie(managedSession.getSessionID());
 
         Assertions.assertTrue(managedAccount.getSessions().isEmpty());
+        verify(plantTrackerDAO).evictCachedSession(managedSession.getSessionID());
 
         Assertions.assertEquals(expiredCookie.getValue(), "");
         Assertions.assertEquals(expiredCookie.getMaxAge().toSeconds(), 0);
@@ -227,47 +374,93 @@ public class PlantTrackerServiceImplTests {
 
         String fakeSessionID = "fakeSessionID";
 
-        when(plantTrackerDAO.findSessionBySessionID(fakeSessionID)).thenThrow(EmptyResultDataAccessException.class);
+        when(plantTrackerDAO.findSessionWithAccountSessions(fakeSessionID)).thenThrow(EmptyResultDataAccessException.class);
 
         Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.getExpiredCookie(fakeSessionID);});
 
     }
 
-    //Tests for public List<Plant> findPlants(String sessionID);
     @Test
-    public void PlantTrackerService_findPlants_returnsListOfPlants(){
+    public void PlantTrackerService_getExpiredCookie_revokesSignedToken(){
+
+        Account theAccount = new Account("test", "password");
+        Reflector.setField(theAccount, "id", 1);
+
+        SessionTokenSigner signedSessionTokenSigner = new SessionTokenSigner("signed", "secretsecretsecretsecretsecretse");
+        Reflector.setField(plantTrackerService, "sessionTokenSigner", signedSessionTokenSigner);
+
+        when(plantTrackerDAO.findAccount(theAccount)).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+        String token = signedSessionTokenSigner.createToken(theSession);
+        Session signedSession = Session.signedInstance(token, theAccount, theSession.getTimeCreated(), theSession.getMaxAge());
+
+        when(plantTrackerDAO.findSessionBySessionID(token)).thenReturn(signedSession);
+        ResponseCookie expiredCookie = plantTrackerService.getExpiredCookie(token);
+
+        verify(plantTrackerDAO).add(ArgumentMatchers.argThat((RevokedSessionToken r) ->
+                token.endsWith(r.getSignature()) && r.getExpirationTime() == theSession.getTimeCreated() + theSession.getMaxAge()));
+        Assertions.assertEquals(expiredCookie.getMaxAge().toSeconds(), 0);
+
+    }
+
+    //Tests for public Session authenticate(String sessionID);
+    @Test
+    public void PlantTrackerService_authenticate_returnsSession(){
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        List<Plant> accountPlants = new ArrayList<Plant>();
         when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
 
-        Plant plant1 = new Plant(theSession.getSessionID(), plantTrackerDAO);
-        Plant plant2 = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Assertions.assertSame(theSession, plantTrackerService.authenticate(theSession.getSessionID()));
+    }
 
-        List<Plant> thePlants = plantTrackerService.findPlants(theSession.getSessionID());
+    @Test
+    public void PlantTrackerService_authenticate_throwsInvalidSessionException(){
 
-        Assertions.assertIterableEquals(accountPlants, thePlants);
+        String fakeSessionID = "fakeSessionID";
+
+        when(plantTrackerDAO.findSessionBySessionID(fakeSessionID)).thenThrow(EmptyResultDataAccessException.class);
+
+        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.authenticate(fakeSessionID);});
     }
 
     @Test
-    public void PlantTrackerService_findPlants_throwsInvalidSessionException(){
+    public void PlantTrackerService_authenticate_throwsInvalidSessionExceptionWhenExpired(){
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
+        theSession.setTimeCreated((System.currentTimeMillis()/1000) - 1000);
+        theSession.setMaxAge(10);
 
-        List<Plant> accountPlants = new ArrayList<Plant>();
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenThrow(EmptyResultDataAccessException.class);
+        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
 
-        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.findPlants(theSession.getSessionID());});
+        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.authenticate(theSession.getSessionID());});
     }
 
-    //Tests for public Plant findPlantByPlantID(String PlantID, String sessionID);
+    //Tests for public List<Plant> findPlants(Session managedSession, PlantPage plantPage);
+    @Test
+    public void PlantTrackerService_findPlants_returnsListOfPlants(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        List<Plant> accountPlants = new ArrayList<Plant>();
+        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+
+        Plant plant1 = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Plant plant2 = new Plant(theSession.getSessionID(), plantTrackerDAO);
+
+        List<Plant> thePlants = plantTrackerService.findPlants(theSession, PlantPage.firstPage(50));
+
+        Assertions.assertIterableEquals(accountPlants, thePlants);
+    }
 
     @Test
     public void PlantTrackerService_findPlantByPlantID_returnsRequestedPlant(){
@@ -283,14 +476,14 @@ public class PlantTrackerServiceImplTests {
         Plant plant = new Plant(theSession.getSessionID(), plantTrackerDAO);
         Reflector.setField(plant, "id", 1);
 
-        when(plantTrackerDAO.findPlantByPlantID(plant.getId())).thenReturn(plant);
-        Plant managedPlant = plantTrackerService.findPlantByPlantID(Integer.toString(plant.getId()), theSession.getSessionID());
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(plant.getId(), theAccount.getId())).thenReturn(plant);
+        Plant managedPlant = plantTrackerService.findPlantByPlantID(Integer.toString(plant.getId()), theSession);
 
         Assertions.assertSame(plant, managedPlant);
     }
 
     @Test
-    public void PlantTrackerService_findPlantByPlantID_throwsInvalidSessionException(){
+    public void PlantTrackerService_findPlantByPlantID_throwsInvalidPlantException(){
 
         Account theAccount = new Account("test", "password");
 
@@ -303,33 +496,134 @@ public class PlantTrackerServiceImplTests {
         Plant plant = new Plant(theSession.getSessionID(), plantTrackerDAO);
         Reflector.setField(plant, "id", 1);
 
-        String wrongSessionID = theSession.getSessionID() + 'a';
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(2, theAccount.getId())).thenThrow(InvalidPlantException.class);
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.findPlantByPlantID(Integer.toString(2), theSession);});
 
-        when(plantTrackerDAO.findSessionBySessionID(wrongSessionID)).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.findPlantByPlantID(Integer.toString(plant.getId()), wrongSessionID);});
+    }
+
+    //Tests for public List<PlantView> findPlantViews(Session managedSession, PlantFields plantFields, PlantPage plantPage);
+    @Test
+    public void PlantTrackerService_findPlantViews_doesNotGenerateImageURLUnlessRequested(){
 
+        //Setting s3Bucket to mock value to prevent connection to AWS
+        Reflector.setField(plantTrackerService, "s3Bucket", s3Bucket);
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        PlantFields plantFields = PlantFields.parse("id,plantName");
+        PlantView plantView = new PlantView(1);
+        plantView.setImageKey("imageKey");
+        plantView.setField("id", 1);
+        plantView.setField("plantName", "fern");
+
+        when(plantTrackerDAO.findPlantViews(theAccount, plantFields, PlantPage.firstPage(50))).thenReturn(List.of(plantView));
+        List<PlantView> plantViews = plantTrackerService.findPlantViews(theSession, plantFields, PlantPage.firstPage(50));
+
+        Assertions.assertSame(plantView, plantViews.get(0));
+        Assertions.assertFalse(plantViews.get(0).getFields().containsKey("imageURL"));
+        verify(s3Bucket, never()).generateImageURL(ArgumentMatchers.any());
     }
 
+    //Tests for public PlantView findPlantViewByPlantID(String plantID, Session managedSession, PlantFields plantFields);
     @Test
-    public void PlantTrackerService_findPlantByPlantID_throwsInvalidPlantException(){
+    public void PlantTrackerService_findPlantViewByPlantID_generatesRequestedImageURL(){
+
+        //Setting s3Bucket to mock value to prevent connection to AWS
+        Reflector.setField(plantTrackerService, "s3Bucket", s3Bucket);
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        List<Plant> accountPlants = new ArrayList<Plant>();
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+        PlantFields plantFields = PlantFields.parse("imageURL");
+        PlantView plantView = new PlantView(1);
+        plantView.setImageKey("imageKey");
+        plantView.setField("imageURL", null);
 
-        Plant plant = new Plant(theSession.getSessionID(), plantTrackerDAO);
-        Reflector.setField(plant, "id", 1);
+        when(plantTrackerDAO.findPlantViewByPlantIDAndAccountID(1, theAccount.getId(), plantFields)).thenReturn(plantView);
+        when(s3Bucket.generateImageURL("imageKey")).thenReturn("imageURL");
+        PlantView managedPlantView = plantTrackerService.findPlantViewByPlantID("1", theSession, plantFields);
 
-        when(plantTrackerDAO.findPlantByPlantID(2)).thenThrow(InvalidPlantException.class);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.findPlantByPlantID(Integer.toString(2), theSession.getSessionID());});
+        Assertions.assertEquals("imageURL", managedPlantView.getField("imageURL"));
+    }
+
+    @Test
+    public void PlantTrackerService_findPlantViewByPlantID_doesNotGenerateImageURLWithoutImage(){
+
+        //Setting s3Bucket to mock value to prevent connection to AWS
+        Reflector.setField(plantTrackerService, "s3Bucket", s3Bucket);
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        PlantFields plantFields = PlantFields.parse("imageURL");
+        PlantView plantView = new PlantView(1);
+        plantView.setField("imageURL", null);
+
+        when(plantTrackerDAO.findPlantViewByPlantIDAndAccountID(1, theAccount.getId(), plantFields)).thenReturn(plantView);
+        PlantView managedPlantView = plantTrackerService.findPlantViewByPlantID("1", theSession, plantFields);
 
+        Assertions.assertNull(managedPlantView.getField("imageURL"));
+        verify(s3Bucket, never()).generateImageURL(ArgumentMatchers.any());
     }
 
-    //Tests for public Plant addPlant(Plant thePlant, String sessionID);
+    //Tests for public String findPlantsETag(Session managedSession, PlantFields plantFields, PlantPage plantPage);
+    @Test
+    public void PlantTrackerService_findPlantsETag_changesOnlyWhenVersionsChange(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerDAO.findPlantVersions(theAccount, PlantPage.firstPage(50))).thenReturn(
+                List.of(new PlantVersion(1, 0, null), new PlantVersion(2, 3, null)),
+                List.of(new PlantVersion(1, 0, null), new PlantVersion(2, 3, null)),
+                List.of(new PlantVersion(1, 0, null), new PlantVersion(2, 4, null)));
+
+        String eTag = plantTrackerService.findPlantsETag(theSession, null, PlantPage.firstPage(50));
+
+        Assertions.assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+        Assertions.assertEquals(eTag, plantTrackerService.findPlantsETag(theSession, null, PlantPage.firstPage(50)));
+        Assertions.assertNotEquals(eTag, plantTrackerService.findPlantsETag(theSession, null, PlantPage.firstPage(50)));
+        verify(plantTrackerDAO, never()).findPlants(ArgumentMatchers.any(), ArgumentMatchers.any(PlantPage.class));
+    }
+
+    //Tests for public String findPlantETag(String plantID, Session managedSession, PlantFields plantFields);
+    @Test
+    public void PlantTrackerService_findPlantETag_dependsOnRequestedFields(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerDAO.findPlantVersionByPlantIDAndAccountID(1, theAccount.getId())).thenReturn(new PlantVersion(1, 0, null));
+
+        Assertions.assertNotEquals(plantTrackerService.findPlantETag("1", theSession, null),
+                plantTrackerService.findPlantETag("1", theSession, PlantFields.parse("plantName")));
+    }
+
+    @Test
+    public void PlantTrackerService_findPlantETag_throwsInvalidPlantException(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerDAO.findPlantVersionByPlantIDAndAccountID(2, theAccount.getId())).thenThrow(NoResultException.class);
+
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.findPlantETag("2", theSession, null);});
+    }
+
+    //Tests for public Plant addPlant(Plant thePlant, Session managedSession);
     @Test
     public void PlantTrackerService_addPlant_returnsManagedPlant(){
 
@@ -349,7 +643,7 @@ public class PlantTrackerServiceImplTests {
             return thePlant;
         });
 
-        Plant addedPlant = plantTrackerService.addPlant(newPlant, theSession.getSessionID());
+        Plant addedPlant = plantTrackerService.addPlant(newPlant, theSession);
 
         Assertions.assertEquals(addedPlant.getId(), 1);
         Assertions.assertEquals(addedPlant.getPlantName(), newPlant.getPlantName());
@@ -361,7 +655,7 @@ public class PlantTrackerServiceImplTests {
     }
 
     @Test
-    public void PlantTrackerService_addPlant_throwsInvalidSessionException(){
+    public void PlantTrackerService_updatePlant_returnsManagedPlant(){
 
         Account theAccount = new Account("test", "password");
 
@@ -369,21 +663,23 @@ public class PlantTrackerServiceImplTests {
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
         when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+        Plant updatePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Reflector.setField(updatePlant, "id", 1);
 
-        Plant newPlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
-        Reflector.setField(newPlant, "id", 0);
-
-        String fakeSessionID = theSession.getSessionID() + 'a';
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(updatePlant.getId(), theAccount.getId())).thenReturn(updatePlant);
+        Plant updatedPlant = plantTrackerService.updatePlant(updatePlant, theSession);
 
-        when(plantTrackerDAO.findSessionBySessionID(fakeSessionID)).thenThrow(InvalidSessionException.class);
-        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.addPlant(newPlant, fakeSessionID);});
+        Assertions.assertEquals(updatedPlant.getId(), 1);
+        Assertions.assertEquals(updatedPlant.getPlantName(), updatePlant.getPlantName());
+        Assertions.assertEquals(updatedPlant.getLastWatered(), updatePlant.getLastWatered());
+        Assertions.assertEquals(updatedPlant.getWateringInterval(), updatePlant.getWateringInterval());
+        Assertions.assertNotNull(updatedPlant.getRegistrationID());
+        Assertions.assertSame(updatedPlant.getAccount(), updatePlant.getAccount());
 
     }
 
-    //Tests for public Plant updatePlant(Plant thePlant, String sessionID);
-
     @Test
-    public void PlantTrackerService_updatePlant_returnsManagedPlant(){
+    public void PlantTrackerService_updatePlant_throwsInvalidPlantException(){
 
         Account theAccount = new Account("test", "password");
 
@@ -391,61 +687,163 @@ public class PlantTrackerServiceImplTests {
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
         when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+
         Plant updatePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
         Reflector.setField(updatePlant, "id", 1);
 
-        when(plantTrackerDAO.findPlantByPlantID(updatePlant.getId())).thenReturn(updatePlant);
-        Plant updatedPlant = plantTrackerService.updatePlant(updatePlant, theSession.getSessionID());
-
-        Assertions.assertEquals(updatedPlant.getId(), 1);
-        Assertions.assertEquals(updatedPlant.getPlantName(), updatePlant.getPlantName());
-        Assertions.assertEquals(updatedPlant.getLastWatered(), updatePlant.getLastWatered());
-        Assertions.assertEquals(updatedPlant.getWateringInterval(), updatePlant.getWateringInterval());
-        Assertions.assertNotNull(updatedPlant.getRegistrationID());
-        Assertions.assertSame(updatedPlant.getAccount(), updatePlant.getAccount());
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, theAccount.getId())).thenThrow(EmptyResultDataAccessException.class);
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.updatePlant(updatePlant, theSession);});
 
     }
 
+    //Tests for public Plant snoozePlant(String plantID, Session managedSession, int snoozeDays);
     @Test
-    public void PlantTrackerService_updatePlant_throwsInvalidSessionException(){
+    public void PlantTrackerService_snoozePlant_snoozesPlantAndRecordsChange(){
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+        Plant thePlant = new Plant(theSession);
+        Reflector.setField(thePlant, "id", 1);
 
-        Plant updatePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
-        Reflector.setField(updatePlant, "id", 1);
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, theAccount.getId())).thenReturn(thePlant);
+        when(plantTrackerDAO.nextChangeNumber(theAccount)).thenReturn(7L);
+        Plant snoozedPlant = plantTrackerService.snoozePlant("1", theSession, 3);
 
-        String fakeSessionID = theSession.getSessionID() + 'a';
+        Assertions.assertSame(thePlant, snoozedPlant);
+        Assertions.assertTrue(snoozedPlant.getSnoozedUntil() > System.currentTimeMillis()/1000);
+        Assertions.assertEquals(7, snoozedPlant.getChangeNumber());
+    }
 
-        when(plantTrackerDAO.findSessionBySessionID(fakeSessionID)).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.updatePlant(updatePlant, fakeSessionID);});
+    //Tests for public int createReminderShards(int shardCount);
+    @Test
+    public void PlantTrackerService_createReminderShards_addsOnlyMissingShards(){
 
+        when(plantTrackerDAO.findReminderShardIDs()).thenReturn(List.of(0, 2));
+
+        Assertions.assertEquals(2, plantTrackerService.createReminderShards(4));
+
+        ArgumentCaptor<ReminderShard> reminderShardCaptor = ArgumentCaptor.forClass(ReminderShard.class);
+        verify(plantTrackerDAO, times(2)).add(reminderShardCaptor.capture());
+        Assertions.assertEquals(List.of(1, 3), reminderShardCaptor.getAllValues().stream().map(ReminderShard::getId).toList());
     }
 
+    //Tests for public ReminderShard claimReminderShard(int shardCount, long leaseTime);
     @Test
-    public void PlantTrackerService_updatePlant_throwsInvalidPlantException(){
+    public void PlantTrackerService_claimReminderShard_leasesShard(){
 
-        Account theAccount = new Account("test", "password");
+        ReminderShard theReminderShard = new ReminderShard(3);
+
+        when(plantTrackerDAO.findClaimableReminderShard(ArgumentMatchers.eq(16), ArgumentMatchers.anyLong())).thenReturn(theReminderShard);
+
+        Assertions.assertSame(theReminderShard, plantTrackerService.claimReminderShard(16, 1800));
+        Assertions.assertTrue(theReminderShard.getNextRunAt() >= (System.currentTimeMillis()/1000) + 1799);
+    }
+
+    @Test
+    public void PlantTrackerService_claimReminderShard_returnsNullWhenNoShardIsReady(){
+
+        when(plantTrackerDAO.findClaimableReminderShard(ArgumentMatchers.eq(16), ArgumentMatchers.anyLong())).thenReturn(null);
+
+        Assertions.assertNull(plantTrackerService.claimReminderShard(16, 1800));
+    }
+
+    //Tests for public void completeReminderShard(int shardID, long runInterval);
+    @Test
+    public void PlantTrackerService_completeReminderShard_schedulesNextRun(){
+
+        ReminderShard theReminderShard = new ReminderShard(3);
+        theReminderShard.lease(Long.MAX_VALUE);
+
+        when(plantTrackerDAO.findReminderShard(3)).thenReturn(theReminderShard);
+        plantTrackerService.completeReminderShard(3, 1800);
+
+        Assertions.assertEquals(theReminderShard.getLastCompletedAt() + 1800, theReminderShard.getNextRunAt());
+        Assertions.assertTrue(theReminderShard.getLastCompletedAt() > 0);
+    }
+
+    //Tests for public int queueReminder(OutboxMessage theOutboxMessage, List<Integer> plantIDs);
+    @Test
+    public void PlantTrackerService_queueReminder_addsMessageAndUpdatesLastRemindedAt(){
+
+        OutboxMessage theOutboxMessage = new OutboxMessage("test@test.com", "subject", "text");
+
+        when(plantTrackerDAO.updateLastRemindedAt(List.of(1, 2), theOutboxMessage.getTimeCreated())).thenReturn(2);
+
+        Assertions.assertEquals(2, plantTrackerService.queueReminder(theOutboxMessage, List.of(1, 2)));
+        verify(plantTrackerDAO).add(theOutboxMessage);
+    }
+
+    //Tests for public int queueDueReminders(List<Integer> plantIDs);
+    @Test
+    public void PlantTrackerService_queueDueReminders_remindsDuePlantsAndReschedulesOthers(){
+
+        Account theAccount = new Account("test@test.com", "password");
+        Reflector.setField(theAccount, "id", 1);
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
+        Plant duePlant = new Plant(theSession);
+        Reflector.setField(duePlant, "id", 1);
+        duePlant.setPlantName("Fern");
+        duePlant.setLastWatered(LocalDate.now().minusDays(10));
+        duePlant.setWateringInterval(2);
+
+        //The second plant was snoozed through another node after its reminder was queued
+        Plant snoozedPlant = new Plant(theSession);
+        Reflector.setField(snoozedPlant, "id", 2);
+        snoozedPlant.setLastWatered(LocalDate.now().minusDays(10));
+        snoozedPlant.setWateringInterval(2);
+        snoozedPlant.snooze(1);
+
+        when(reminderQueue.getReminderLocalHour()).thenReturn(0);
+        when(reminderQueue.getReminderPeriod()).thenReturn(72000L);
+        when(plantTrackerDAO.findPlantsForReminder(List.of(1, 2))).thenReturn(List.of(duePlant, snoozedPlant));
+        when(plantTrackerDAO.updateLastRemindedAt(ArgumentMatchers.eq(List.of(1)), ArgumentMatchers.anyLong())).thenReturn(1);
+
+        Assertions.assertEquals(1, plantTrackerService.queueDueReminders(List.of(1, 2)));
+
+        ArgumentCaptor<OutboxMessage> outboxMessageCaptor = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(plantTrackerDAO).add(outboxMessageCaptor.capture());
+        Assertions.assertEquals("Fern is ready to be watered", outboxMessageCaptor.getValue().getSubject());
+        verify(reminderQueue).reminded(duePlant, outboxMessageCaptor.getValue().getTimeCreated());
+        verify(reminderQueue).update(snoozedPlant);
+    }
 
-        Plant updatePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
-        Reflector.setField(updatePlant, "id", 1);
+    //Tests for public List<OutboxMessage> claimOutboxMessages(int batchSize, long leaseTime);
+    @Test
+    public void PlantTrackerService_claimOutboxMessages_leasesMessages(){
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
-        when(plantTrackerDAO.findPlantByPlantID(1)).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.updatePlant(updatePlant, theSession.getSessionID());});
+        OutboxMessage theOutboxMessage = new OutboxMessage("test@test.com", "subject", "text");
+
+        when(plantTrackerDAO.findDueOutboxMessages(ArgumentMatchers.anyLong(), ArgumentMatchers.eq(50))).thenReturn(List.of(theOutboxMessage));
+        List<OutboxMessage> claimedMessages = plantTrackerService.claimOutboxMessages(50, 600);
 
+        Assertions.assertEquals(List.of(theOutboxMessage), claimedMessages);
+        Assertions.assertTrue(theOutboxMessage.getNextAttemptAt() >= (System.currentTimeMillis()/1000) + 599);
     }
 
-    //Tests for public Plant deletePlant(String plantID, String sessionID);
+    //Tests for public void completeOutboxMessages(List<Integer> deliveredMessageIDs, Map<Integer, String> failedMessageErrors,
+    //                                             int maximumAttempts, long retryBackoff);
+    @Test
+    public void PlantTrackerService_completeOutboxMessages_deletesDeliveredAndRetriesFailedMessages(){
+
+        OutboxMessage failedMessage = new OutboxMessage("test@test.com", "subject", "text");
+        Reflector.setField(failedMessage, "id", 2);
+
+        when(plantTrackerDAO.findOutboxMessagesByIDs(List.of(2))).thenReturn(List.of(failedMessage));
+        plantTrackerService.completeOutboxMessages(List.of(1), Map.of(2, "421 Try again later"), 8, 60);
+
+        verify(plantTrackerDAO).deleteOutboxMessages(List.of(1));
+        Assertions.assertEquals(1, failedMessage.getAttempts());
+        Assertions.assertEquals("421 Try again later", failedMessage.getLastError());
+        Assertions.assertFalse(failedMessage.isDead());
+    }
+
+    //Tests for public Plant deletePlant(String plantID, Session managedSession);
 
     @Test
     public void PlantTrackerService_deletePlant_returnsPlant(){
@@ -459,16 +857,16 @@ public class PlantTrackerServiceImplTests {
         Plant toDeletePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
         Reflector.setField(toDeletePlant, "id", 1);
 
-        when(plantTrackerDAO.findPlantByPlantID(toDeletePlant.getId())).thenReturn(toDeletePlant);
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(toDeletePlant.getId(), theAccount.getId())).thenReturn(toDeletePlant);
         when(plantTrackerDAO.delete(ArgumentMatchers.any(Plant.class))).thenAnswer(i->i.getArgument(0));
-        Plant deletedPlant = plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), theSession.getSessionID());
+        Plant deletedPlant = plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), theSession);
 
         Assertions.assertSame(toDeletePlant, deletedPlant);
 
     }
 
     @Test
-    public void PlantTrackerService_deletePlant_throwsInvalidSessionException(){
+    public void PlantTrackerService_deletePlant_throwsInvalidPlantException(){
 
         Account theAccount = new Account("test", "password");
 
@@ -479,35 +877,197 @@ public class PlantTrackerServiceImplTests {
         Plant toDeletePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
         Reflector.setField(toDeletePlant, "id", 1);
 
-        String fakeSessionID = theSession.getSessionID() + 'a';
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(toDeletePlant.getId(), theAccount.getId())).thenThrow(EmptyResultDataAccessException.class);
 
-        when(plantTrackerDAO.findSessionBySessionID(fakeSessionID)).thenThrow(EmptyResultDataAccessException.class);
-
-        Assertions.assertThrows(InvalidSessionException.class, ()->{plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), fakeSessionID);});
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), theSession);});
 
     }
 
     @Test
-    public void PlantTrackerService_deletePlant_throwsInvalidPlantException(){
+    public void PlantTrackerService_deletePlant_addsTombstone(){
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
-        Plant toDeletePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Plant toDeletePlant = new Plant(theSession);
         Reflector.setField(toDeletePlant, "id", 1);
 
-        when(plantTrackerDAO.findPlantByPlantID(toDeletePlant.getId())).thenThrow(EmptyResultDataAccessException.class);
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(toDeletePlant.getId(), theAccount.getId())).thenReturn(toDeletePlant);
+        when(plantTrackerDAO.nextChangeNumber(theAccount)).thenReturn(7L);
+        plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), theSession);
+
+        ArgumentCaptor<PlantTombstone> tombstoneCaptor = ArgumentCaptor.forClass(PlantTombstone.class);
+        verify(plantTrackerDAO).add(tombstoneCaptor.capture());
+        Assertions.assertEquals(1, tombstoneCaptor.getValue().getPlantID());
+        Assertions.assertEquals(7L, tombstoneCaptor.getValue().getChangeNumber());
+        verify(plantTrackerDAO).delete(toDeletePlant);
+    }
+
+    //Tests for public PlantChanges findPlantChanges(String since, Session managedSession);
+    @Test
+    public void PlantTrackerService_findPlantChanges_returnsChangesSinceToken(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant changedPlant = new Plant(theSession);
+
+        when(plantTrackerDAO.findChangeCounter(theAccount)).thenReturn(9L);
+        when(plantTrackerDAO.findChangedPlants(theAccount, 4L, 9L)).thenReturn(List.of(changedPlant));
+        when(plantTrackerDAO.findDeletedPlantIDs(theAccount, 4L, 9L)).thenReturn(List.of(3));
+        PlantChanges plantChanges = plantTrackerService.findPlantChanges("4", theSession);
+
+        Assertions.assertEquals(List.of(changedPlant), plantChanges.getPlants());
+        Assertions.assertEquals(List.of(3), plantChanges.getDeletedPlantIDs());
+        Assertions.assertEquals("9", plantChanges.getToken());
+    }
+
+    @Test
+    public void PlantTrackerService_findPlantChanges_returnsAllPlantsForInitialToken(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant thePlant = new Plant(theSession);
+
+        when(plantTrackerDAO.findChangeCounter(theAccount)).thenReturn(9L);
+        when(plantTrackerDAO.findAllPlants(theAccount)).thenReturn(List.of(thePlant));
+        PlantChanges plantChanges = plantTrackerService.findPlantChanges(PlantChanges.INITIAL_CHANGE_TOKEN, theSession);
+
+        Assertions.assertEquals(List.of(thePlant), plantChanges.getPlants());
+        Assertions.assertTrue(plantChanges.getDeletedPlantIDs().isEmpty());
+        Assertions.assertEquals("9", plantChanges.getToken());
+        verify(plantTrackerDAO, never()).findDeletedPlantIDs(ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong());
+    }
+
+    @Test
+    public void PlantTrackerService_findPlantChanges_throwsInvalidChangeTokenException(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        when(plantTrackerDAO.findChangeCounter(theAccount)).thenReturn(9L);
+
+        Assertions.assertThrows(InvalidChangeTokenException.class, ()->{plantTrackerService.findPlantChanges("notAToken", theSession);});
+        Assertions.assertThrows(InvalidChangeTokenException.class, ()->{plantTrackerService.findPlantChanges("10", theSession);});
+        Assertions.assertThrows(InvalidChangeTokenException.class, ()->{plantTrackerService.findPlantChanges("-1", theSession);});
+    }
+
+    //Tests for public List<Plant> addPlants(List<Plant> thePlants, Session managedSession);
+    @Test
+    public void PlantTrackerService_addPlants_reservesChangeNumbersOnce(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant plant1 = new Plant(theSession);
+        plant1.setPlantName("fern");
+        Plant plant2 = new Plant(theSession);
+        plant2.setPlantName("cactus");
+
+        when(plantTrackerDAO.reserveChangeNumbers(theAccount, 2)).thenReturn(12L);
+        List<Plant> newPlants = plantTrackerService.addPlants(List.of(plant1, plant2), theSession);
+
+        Assertions.assertEquals("fern", newPlants.get(0).getPlantName());
+        Assertions.assertEquals("cactus", newPlants.get(1).getPlantName());
+        Assertions.assertEquals(11L, newPlants.get(0).getChangeNumber());
+        Assertions.assertEquals(12L, newPlants.get(1).getChangeNumber());
+        verify(plantTrackerDAO).add(newPlants.get(0));
+        verify(plantTrackerDAO).add(newPlants.get(1));
+        verify(plantTrackerDAO, never()).nextChangeNumber(ArgumentMatchers.any());
+    }
+
+    //Tests for public List<Plant> updatePlants(List<Plant> thePlants, Session managedSession);
+    @Test
+    public void PlantTrackerService_updatePlants_returnsUpdatedPlants(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant managedPlant = new Plant(theSession);
+        Reflector.setField(managedPlant, "id", 1);
+
+        Plant thePlant = new Plant(theSession);
+        Reflector.setField(thePlant, "id", 1);
+        thePlant.setPlantName("fern");
+        thePlant.setWateringInterval(3);
 
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.deletePlant(Integer.toString(toDeletePlant.getId()), theSession.getSessionID());});
+        when(plantTrackerDAO.findPlantsByPlantIDsAndAccountID(List.of(1), theAccount.getId())).thenReturn(List.of(managedPlant));
+        List<Plant> updatedPlants = plantTrackerService.updatePlants(List.of(thePlant), theSession);
 
+        Assertions.assertSame(managedPlant, updatedPlants.get(0));
+        Assertions.assertEquals("fern", managedPlant.getPlantName());
+        Assertions.assertEquals(3, managedPlant.getWateringInterval());
     }
 
-    //Tests for public void confirmDeviceRegistration(Device theDevice);
     @Test
-    public void PlantTrackerService_confirmDeviceRegistration_DoesNotThrow(){
+    public void PlantTrackerService_updatePlants_throwsInvalidPlantException(){
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant managedPlant = new Plant(theSession);
+        Reflector.setField(managedPlant, "id", 1);
+
+        Plant otherPlant = new Plant(theSession);
+        Reflector.setField(otherPlant, "id", 2);
+
+        //The second plant is not linked to the account, so no plant is updated
+        when(plantTrackerDAO.findPlantsByPlantIDsAndAccountID(List.of(1, 2), theAccount.getId())).thenReturn(List.of(managedPlant));
+
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.updatePlants(List.of(managedPlant, otherPlant), theSession);});
+        verify(plantTrackerDAO, never()).reserveChangeNumbers(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+    }
+
+    //Tests for public List<Plant> deletePlants(List<Integer> plantIDs, Session managedSession);
+    @Test
+    public void PlantTrackerService_deletePlants_addsTombstones(){
+
+        //Setting s3Bucket to mock value to prevent connection to AWS
+        Reflector.setField(plantTrackerService, "s3Bucket", s3Bucket);
+
+        Account theAccount = new Account("test", "password");
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        Session theSession = new Session(theAccount, plantTrackerDAO);
+
+        Plant plant1 = new Plant(theSession);
+        Reflector.setField(plant1, "id", 1);
+        Plant plant2 = new Plant(theSession);
+        Reflector.setField(plant2, "id", 2);
+
+        when(plantTrackerDAO.findPlantsByPlantIDsAndAccountID(List.of(1, 2), theAccount.getId())).thenReturn(List.of(plant2, plant1));
+        when(plantTrackerDAO.reserveChangeNumbers(theAccount, 2)).thenReturn(8L);
+        List<Plant> deletedPlants = plantTrackerService.deletePlants(List.of(1, 2), theSession);
+
+        Assertions.assertEquals(List.of(plant1, plant2), deletedPlants);
+
+        ArgumentCaptor<PlantTombstone> tombstoneCaptor = ArgumentCaptor.forClass(PlantTombstone.class);
+        verify(plantTrackerDAO, times(2)).add(tombstoneCaptor.capture());
+        Assertions.assertEquals(1, tombstoneCaptor.getAllValues().get(0).getPlantID());
+        Assertions.assertEquals(7L, tombstoneCaptor.getAllValues().get(0).getChangeNumber());
+        Assertions.assertEquals(8L, tombstoneCaptor.getAllValues().get(1).getChangeNumber());
+        verify(plantTrackerDAO).delete(plant1);
+        verify(plantTrackerDAO).delete(plant2);
+    }
+
+    //Tests for public String registerDevice(Device theDevice);
+    @Test
+    public void PlantTrackerService_registerDevice_IssuesDeviceKey(){
 
         Account theAccount = new Account("test", "password");
 
@@ -521,13 +1081,18 @@ public class PlantTrackerServiceImplTests {
         Reflector.setField(theDevice, "accountEmail", "test");
         Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID());
 
-        when(plantTrackerDAO.findPlantByRegistrationID(thePlant.getRegistrationID())).thenReturn(thePlant);
-        Assertions.assertDoesNotThrow(()->{plantTrackerService.confirmDeviceRegistration(theDevice);});
+        when(plantTrackerDAO.findDeviceByRegistrationID(thePlant.getRegistrationID()))
+                .thenReturn(new DeviceCache.CachedDevice(thePlant.getRegistrationID(), thePlant.getId(), theAccount.getId(), theAccount.getEmail()));
+        when(plantTrackerDAO.updateDeviceKeyHash(ArgumentMatchers.eq(thePlant.getId()), ArgumentMatchers.anyString())).thenReturn(1);
+        String deviceKey = plantTrackerService.registerDevice(theDevice);
+
+        Assertions.assertEquals(Plant.DEVICE_KEY_LENGTH, deviceKey.length());
+        verify(plantTrackerDAO).updateDeviceKeyHash(thePlant.getId(), Plant.hashDeviceKey(deviceKey));
 
     }
 
     @Test
-    public void PlantTrackerService_confirmDeviceRegistration_ThrowsInvalidPlantExceptionWhenInvalidEmail(){
+    public void PlantTrackerService_registerDevice_ThrowsInvalidPlantExceptionWhenInvalidEmail(){
 
         Account theAccount = new Account("test", "password");
 
@@ -541,13 +1106,15 @@ public class PlantTrackerServiceImplTests {
         Reflector.setField(theDevice, "accountEmail", "nottest");
         Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID());
 
-        when(plantTrackerDAO.findPlantByRegistrationID(thePlant.getRegistrationID())).thenReturn(thePlant);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.confirmDeviceRegistration(theDevice);});
+        when(plantTrackerDAO.findDeviceByRegistrationID(thePlant.getRegistrationID()))
+                .thenReturn(new DeviceCache.CachedDevice(thePlant.getRegistrationID(), thePlant.getId(), theAccount.getId(), theAccount.getEmail()));
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.registerDevice(theDevice);});
+        verify(plantTrackerDAO, never()).updateDeviceKeyHash(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString());
 
     }
 
     @Test
-    public void PlantTrackerService_confirmDeviceRegistration_ThrowsInvalidPlantExceptionWhenInvalidRegistrationID(){
+    public void PlantTrackerService_registerDevice_ThrowsInvalidPlantExceptionWhenInvalidRegistrationID(){
 
         Account theAccount = new Account("test", "password");
 
@@ -561,39 +1128,47 @@ public class PlantTrackerServiceImplTests {
         Reflector.setField(theDevice, "accountEmail", "test");
         Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID() + 'a');
 
-        when(plantTrackerDAO.findPlantByRegistrationID(theDevice.getRegistrationID())).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.confirmDeviceRegistration(theDevice);});
+        when(plantTrackerDAO.findDeviceByRegistrationID(theDevice.getRegistrationID())).thenThrow(NoResultException.class);
+        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.registerDevice(theDevice);});
 
     }
 
-    //Tests for public void updateTimestamp(Device theDevice);
+    //Tests for public Plant revokeDeviceKey(String plantID, Session managedSession);
     @Test
-    public void PlantTrackerService_updateTimestamp_UpdatesTimestamp(){
+    public void PlantTrackerService_revokeDeviceKey_RevokesDeviceKey(){
 
         Account theAccount = new Account("test", "password");
 
         when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
         Session theSession = new Session(theAccount, plantTrackerDAO);
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
-        Plant thePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Plant thePlant = new Plant(theSession);
+        Reflector.setField(thePlant, "deviceKeyHash", Plant.hashDeviceKey("deviceKey"));
+
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(1, theAccount.getId())).thenReturn(thePlant);
 
-        LocalDate lastWatered = LocalDate.now().minusDays(5);
-        Reflector.setField(thePlant, "lastWatered", lastWatered);
+        Assertions.assertEquals(thePlant, plantTrackerService.revokeDeviceKey("1", theSession));
+        Assertions.assertNull(thePlant.getDeviceKeyHash());
+    }
+
+    //Tests for public void updateTimestamp(Device theDevice);
+    @Test
+    public void PlantTrackerService_updateTimestamp_UpdatesTimestamp(){
 
         Device theDevice = new Device();
         Reflector.setField(theDevice, "accountEmail", "test");
-        Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID());
+        Reflector.setField(theDevice, "registrationID", "registrationID");
 
-        when(plantTrackerDAO.findPlantByRegistrationID(thePlant.getRegistrationID())).thenReturn(thePlant);
+        when(plantTrackerDAO.updateLastWatered(theDevice)).thenReturn(1);
+        when(reminderQueue.isEnabled()).thenReturn(false);
 
         Assertions.assertDoesNotThrow(()->{plantTrackerService.updateTimestamp(theDevice);});
-        Assertions.assertNotEquals(lastWatered, thePlant.getLastWatered());
+        verify(plantTrackerDAO, never()).findPlantsByDevices(ArgumentMatchers.anyList());
 
     }
 
     @Test
-    public void PlantTrackerService_updateTimestamp_ThrowsInvalidPlantExceptionWhenInvalidEmail(){
+    public void PlantTrackerService_updateTimestamp_ReschedulesReminderInWheelMode(){
 
         Account theAccount = new Account("test", "password");
 
@@ -604,35 +1179,97 @@ public class PlantTrackerServiceImplTests {
         Plant thePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
 
         Device theDevice = new Device();
-        Reflector.setField(theDevice, "accountEmail", "nottest");
+        Reflector.setField(theDevice, "accountEmail", "test");
         Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID());
 
-        when(plantTrackerDAO.findPlantByRegistrationID(thePlant.getRegistrationID())).thenReturn(thePlant);
+        when(plantTrackerDAO.updateLastWatered(theDevice)).thenReturn(1);
+        when(reminderQueue.isEnabled()).thenReturn(true);
+        when(plantTrackerDAO.findPlantsByDevices(List.of(theDevice))).thenReturn(List.of(thePlant));
+
+        plantTrackerService.updateTimestamp(theDevice);
+
+        verify(reminderQueue).update(List.of(thePlant));
+    }
+
+    @Test
+    public void PlantTrackerService_updateTimestamp_ThrowsInvalidPlantExceptionWhenNoPlantUpdated(){
+
+        Device theDevice = new Device();
+        Reflector.setField(theDevice, "accountEmail", "nottest");
+        Reflector.setField(theDevice, "registrationID", "registrationID");
+
+        when(plantTrackerDAO.updateLastWatered(theDevice)).thenReturn(0);
+
         Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.updateTimestamp(theDevice);});
+        verify(reminderQueue, never()).update(ArgumentMatchers.anyList());
 
     }
 
+    //Tests for public List<Device> updateTimestamps(List<Device> theDevices);
     @Test
-    public void PlantTrackerService_updateTimestamp_ThrowsInvalidPlantExceptionWhenInvalidRegistrationID(){
+    public void PlantTrackerService_updateTimestamps_ReturnsUpdatedDevices(){
 
-        Account theAccount = new Account("test", "password");
+        Device theDevice1 = new Device();
+        Reflector.setField(theDevice1, "accountEmail", "test");
+        Reflector.setField(theDevice1, "registrationID", "registrationID1");
+        Device theDevice2 = new Device();
+        Reflector.setField(theDevice2, "accountEmail", "test");
+        Reflector.setField(theDevice2, "registrationID", "registrationID2");
 
-        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
-        Session theSession = new Session(theAccount, plantTrackerDAO);
+        when(plantTrackerDAO.updateLastWatered(List.of(theDevice1, theDevice2))).thenReturn(new int[]{0, 1});
+        when(reminderQueue.isEnabled()).thenReturn(false);
 
-        when(plantTrackerDAO.findSessionBySessionID(theSession.getSessionID())).thenReturn(theSession);
-        Plant thePlant = new Plant(theSession.getSessionID(), plantTrackerDAO);
+        Assertions.assertEquals(List.of(theDevice2), plantTrackerService.updateTimestamps(List.of(theDevice1, theDevice2)));
+        verify(plantTrackerDAO, never()).findPlantsByDevices(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void PlantTrackerService_updateTimestamps_ReschedulesRemindersInWheelMode(){
 
         Device theDevice = new Device();
         Reflector.setField(theDevice, "accountEmail", "test");
-        Reflector.setField(theDevice, "registrationID", thePlant.getRegistrationID() + 'a');
+        Reflector.setField(theDevice, "registrationID", "registrationID");
+        List<Plant> updatedPlants = new ArrayList<Plant>();
 
-        when(plantTrackerDAO.findPlantByRegistrationID(theDevice.getRegistrationID())).thenThrow(EmptyResultDataAccessException.class);
-        Assertions.assertThrows(InvalidPlantException.class, ()->{plantTrackerService.updateTimestamp(theDevice);});
+        when(plantTrackerDAO.updateLastWatered(List.of(theDevice))).thenReturn(new int[]{1});
+        when(reminderQueue.isEnabled()).thenReturn(true);
+        when(plantTrackerDAO.findPlantsByDevices(List.of(theDevice))).thenReturn(updatedPlants);
+
+        plantTrackerService.updateTimestamps(List.of(theDevice));
+
+        verify(reminderQueue).update(updatedPlants);
+    }
+
+    //Tests for public int applyWateringEvents(List<WateringEvent> theWateringEvents);
+    @Test
+    public void PlantTrackerService_applyWateringEvents_AppliesLatestEventOfEachDevice(){
+
+        WateringEvent event1 = new WateringEvent("registrationID1", "test", 100);
+        WateringEvent event2 = new WateringEvent("registrationID1", "test", 300);
+        WateringEvent event3 = new WateringEvent("registrationID2", "test", 200);
+
+        when(plantTrackerDAO.applyWateringEvents(ArgumentMatchers.anyList())).thenReturn(new int[]{1, 0});
+        when(reminderQueue.isEnabled()).thenReturn(true);
+        when(plantTrackerDAO.findPlantsByDevices(List.of(event2.getDevice()))).thenReturn(new ArrayList<Plant>());
+
+        Assertions.assertEquals(1, plantTrackerService.applyWateringEvents(List.of(event1, event2, event3)));
+
+        ArgumentCaptor<List<WateringEvent>> appliedEvents = ArgumentCaptor.forClass(List.class);
+        verify(plantTrackerDAO).applyWateringEvents(appliedEvents.capture());
+        Assertions.assertEquals(2, appliedEvents.getValue().size());
+        Assertions.assertEquals(300, appliedEvents.getValue().get(0).getWateredAt());
+        Assertions.assertEquals(200, appliedEvents.getValue().get(1).getWateredAt());
+    }
+
+    @Test
+    public void PlantTrackerService_applyWateringEvents_ThrowsInvalidBatchExceptionWhenEventIsIncomplete(){
 
+        Assertions.assertThrows(InvalidBatchException.class, ()->{
+            plantTrackerService.applyWateringEvents(List.of(new WateringEvent(null, "test", 100)));});
+        verify(plantTrackerDAO, never()).applyWateringEvents(ArgumentMatchers.anyList());
     }
 
-    //Tests for public Plant updatePlantImage(String plantID, String sessionID, MultipartFile theFile) throws IOException;
+    //Tests for public Plant updatePlantImage(String plantID, Session managedSession, MultipartFile theFile) throws IOException;
 
     @Test
     public void PlantTrackerService_updatePlantImage_ReturnsPlantWithUpdatedImageKey() throws IOException{
@@ -658,10 +1295,10 @@ public class PlantTrackerServiceImplTests {
         //Setting s3Bucket to mock value to prevent connection to AWS
         Reflector.setField(plantTrackerService, "s3Bucket", s3Bucket);
 
-        when(plantTrackerDAO.findPlantByPlantID(managedPlant.getId())).thenReturn(managedPlant);
+        when(plantTrackerDAO.findPlantByPlantIDAndAccountID(managedPlant.getId(), theAccount.getId())).thenReturn(managedPlant);
         when(s3Bucket.addImage(ArgumentMatchers.any(BufferedImage.class))).thenReturn("FakeKey");
         when(s3Bucket.generateImageURL("FakeKey")).thenReturn("https://www.fakeURL.com");
-        plantTrackerService.updatePlantImage(Integer.toString(managedPlant.getId()), theSession.getSessionID(), mockMultipartFile);
+        plantTrackerService.updatePlantImage(Integer.toString(managedPlant.getId()), theSession, mockMultipartFile);
 
         Assertions.assertEquals(managedPlant.getImageURL(), "https://www.fakeURL.com");
 
@@ -0,0 +1,89 @@
+package com.krisnovak.springboot.demo.planttracker.service;
+
+import com.krisnovak.springboot.demo.planttracker.Reflector;
+import com.krisnovak.springboot.demo.planttracker.dao.PlantTrackerDAO;
+import com.krisnovak.springboot.demo.planttracker.entity.Account;
+import com.krisnovak.springboot.demo.planttracker.entity.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PlantTrackerSessionTokenSignerTests {
+
+    @Mock
+    private PlantTrackerDAO plantTrackerDAO;
+
+    private static final String SECRET = "secretsecretsecretsecretsecretse";
+
+    private static final String OTHER_SECRET = "otherSecretotherSecretotherSecre";
+
+    private Session newSession(){
+        Account theAccount = new Account("test", "password");
+        Reflector.setField(theAccount, "id", 7);
+
+        when(plantTrackerDAO.findAccount(ArgumentMatchers.any(Account.class))).thenReturn(theAccount);
+        return new Session(theAccount, plantTrackerDAO);
+    }
+
+    //Tests for public SessionTokenSigner(String sessionMode, String secret)
+    @Test
+    public void SessionTokenSigner_newSessionTokenSigner_isEnabledOnlyInSignedMode(){
+        Assertions.assertTrue(new SessionTokenSigner("signed", SECRET).isEnabled());
+        Assertions.assertFalse(new SessionTokenSigner("database", "secret").isEnabled());
+    }
+
+    @Test
+    public void SessionTokenSigner_newSessionTokenSigner_throwsIllegalStateExceptionWithoutSecret(){
+        Assertions.assertThrows(IllegalStateException.class, ()->{new SessionTokenSigner("signed", "");});
+        Assertions.assertThrows(IllegalStateException.class, ()->{new SessionTokenSigner("signed", "   ");});
+        Assertions.assertThrows(IllegalStateException.class, ()->{new SessionTokenSigner("signed", "secret");});
+        Assertions.assertDoesNotThrow(()->{new SessionTokenSigner("database", "");});
+    }
+
+    //Tests for public String createToken(Session theSession) and public SessionToken verify(String token)
+    @Test
+    public void SessionTokenSigner_verify_returnsInformationCarriedByToken(){
+        SessionTokenSigner sessionTokenSigner = new SessionTokenSigner("signed", SECRET);
+        Session theSession = newSession();
+
+        long issuedAfter = System.currentTimeMillis();
+        String token = sessionTokenSigner.createToken(theSession);
+        long issuedBefore = System.currentTimeMillis();
+        SessionTokenSigner.SessionToken theToken = sessionTokenSigner.verify(token);
+
+        Assertions.assertNotNull(theToken);
+        Assertions.assertEquals(7, theToken.getAccountID());
+        Assertions.assertEquals(theSession.getTimeCreated(), theToken.getTimeCreated());
+        Assertions.assertEquals(theSession.getMaxAge(), theToken.getMaxAge());
+        Assertions.assertTrue(theToken.getIssuedAt() >= issuedAfter && theToken.getIssuedAt() <= issuedBefore);
+        Assertions.assertTrue(token.endsWith(theToken.getSignature()));
+    }
+
+    @Test
+    public void SessionTokenSigner_verify_returnsNullForTamperedToken(){
+        SessionTokenSigner sessionTokenSigner = new SessionTokenSigner("signed", SECRET);
+
+        String token = sessionTokenSigner.createToken(newSession());
+        String tamperedToken = "8" + token.substring(1);
+
+        Assertions.assertNull(sessionTokenSigner.verify(tamperedToken));
+        Assertions.assertNull(sessionTokenSigner.verify("notAToken"));
+        Assertions.assertNull(sessionTokenSigner.verify(null));
+    }
+
+    @Test
+    public void SessionTokenSigner_verify_returnsNullForTokenSignedWithDifferentSecret(){
+        SessionTokenSigner sessionTokenSigner = new SessionTokenSigner("signed", SECRET);
+        SessionTokenSigner otherSessionTokenSigner = new SessionTokenSigner("signed", OTHER_SECRET);
+
+        String token = otherSessionTokenSigner.createToken(newSession());
+
+        Assertions.assertNull(sessionTokenSigner.verify(token));
+    }
+}